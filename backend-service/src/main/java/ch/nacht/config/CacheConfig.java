@@ -1,6 +1,9 @@
 package ch.nacht.config;
 
+import ch.nacht.service.RechnungStorageService;
+import ch.nacht.service.StatistikCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
@@ -13,9 +16,29 @@ import java.util.concurrent.TimeUnit;
 @EnableCaching
 public class CacheConfig {
 
+    /**
+     * Obergrenze des Statistik-Caches als Gewicht (≈ Zeilen aller gecachten Monate, siehe
+     * {@link StatistikCache.MonatsEintrag#gewicht()}) statt Anzahl Einträge: ein Monat mit
+     * 30 Einheiten wiegt ein Vielfaches eines leeren Monats.
+     */
+    private static final long STATISTIK_MAX_GEWICHT = 500_000;
+
     @Bean
-    public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager("statistik", "lizenzen", "featureFlags");
+    public CacheManager cacheManager(@Value("${rechnung.archiv.cache-mb:32}") long rechnungPdfCacheMb) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager("lizenzen", "featureFlags");
+        // Statistik: Einträge je (Mandant, Monat), nach Gewicht begrenzt
+        cacheManager.registerCustomCache(StatistikCache.CACHE_NAME, Caffeine.newBuilder()
+                .expireAfterWrite(15, TimeUnit.MINUTES)
+                .maximumWeight(STATISTIK_MAX_GEWICHT)
+                .<Object, Object>weigher((key, value) ->
+                        value instanceof StatistikCache.MonatsEintrag eintrag ? eintrag.gewicht() : 1)
+                .build());
+        // Rechnungs-PDFs (Inhalt je SHA-256, siehe RechnungStorageService): nach Bytes begrenzt,
+        // das Archiv auf der Platte bleibt die Quelle
+        cacheManager.registerCustomCache(RechnungStorageService.CACHE_NAME, Caffeine.newBuilder()
+                .maximumWeight(rechnungPdfCacheMb * 1024 * 1024)
+                .<Object, Object>weigher((key, value) -> value instanceof byte[] pdf ? pdf.length : 1)
+                .build());
         cacheManager.setCaffeine(Caffeine.newBuilder()
                 .expireAfterWrite(15, TimeUnit.MINUTES)
                 .maximumSize(100));
@@ -0,0 +1,66 @@
+package ch.nacht.config;
+
+import ch.nacht.service.DatenVersionService;
+import ch.nacht.service.OrganizationContextService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Bedingte GETs für Lese-Endpunkte (Statistik, Messwerte, Tarife, Einheiten): starker ETag aus
+ * Mandant und {@link DatenVersionService Datenstand}. Passt {@code If-None-Match}, antwortet der
+ * Interceptor mit 304, bevor Controller, Abfragen oder Caches laufen.
+ *
+ * <p>Die Version wird <b>vor</b> dem Lesen ermittelt: schreibt jemand dazwischen, trägt die
+ * Antwort einen älteren ETag als ihre Daten – der nächste Aufruf lädt dann erneut (nie umgekehrt).
+ * Der {@code Accept}-Header fliesst ein, weil {@code /by-einheit} mehrere Darstellungen hat.
+ * Läuft nach dem {@link OrganizationInterceptor} (Mandant gesetzt).
+ */
+@Component
+public class DatenVersionInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(DatenVersionInterceptor.class);
+
+    private final DatenVersionService datenVersionService;
+    private final OrganizationContextService organizationContextService;
+
+    public DatenVersionInterceptor(DatenVersionService datenVersionService,
+                                   OrganizationContextService organizationContextService) {
+        this.datenVersionService = datenVersionService;
+        this.organizationContextService = organizationContextService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!HttpMethod.GET.matches(request.getMethod()) || !organizationContextService.hasOrganization()) {
+            return true;
+        }
+        Long orgId = organizationContextService.getCurrentOrgId();
+        String etag = etag(orgId, datenVersionService.epoche(), datenVersionService.version(orgId),
+                request.getHeader(HttpHeaders.ACCEPT));
+
+        // Browser sollen speichern, aber jedes Mal mit If-None-Match nachfragen
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            log.debug("304 Not Modified - {} (ETag {})", request.getRequestURI(), etag);
+            return false;
+        }
+        return true;
+    }
+
+    /** {@code "<org>-<epoche>-<version>-<accept>"} (Epoche und Accept-Hash hexadezimal). */
+    static String etag(Long orgId, long epoche, long version, String accept) {
+        int acceptHash = accept != null ? accept.hashCode() : 0;
+        return "\"" + orgId + "-" + Long.toHexString(epoche) + "-" + version + "-"
+                + Integer.toHexString(acceptHash) + "\"";
+    }
+}
@@ -11,9 +11,12 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebMvcConfig implements WebMvcConfigurer {
 
     private final OrganizationInterceptor organizationInterceptor;
+    private final DatenVersionInterceptor datenVersionInterceptor;
 
-    public WebMvcConfig(OrganizationInterceptor organizationInterceptor) {
+    public WebMvcConfig(OrganizationInterceptor organizationInterceptor,
+                        DatenVersionInterceptor datenVersionInterceptor) {
         this.organizationInterceptor = organizationInterceptor;
+        this.datenVersionInterceptor = datenVersionInterceptor;
     }
 
     @Override
@@ -21,5 +24,11 @@ public class WebMvcConfig implements WebMvcConfigurer {
         registry.addInterceptor(organizationInterceptor)
                 .addPathPatterns("/api/**")
                 .excludePathPatterns("/api/public/**", "/actuator/**", "/ping");
+        // Nach dem OrganizationInterceptor: ETag braucht den Mandanten. Nur Antworten, die allein
+        // vom Datenstand abhängen – /api/statistik/luecken hängt zusätzlich vom aktuellen Datum ab.
+        registry.addInterceptor(datenVersionInterceptor)
+                .addPathPatterns("/api/statistik", "/api/statistik/letztes-datum",
+                        "/api/messwerte/by-einheit", "/api/messwerte/by-einheiten", "/api/messwerte/aggregate",
+                        "/api/tarife", "/api/einheit");
     }
 }
@@ -0,0 +1,20 @@
+package ch.nacht.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * Uhr der Anwendung: lokale Zeitzone des Backends (Europe/Zurich, siehe ZaehlerAggregationService).
+ * Services, deren Ergebnis vom aktuellen Zeitpunkt abhängt, beziehen "jetzt" von hier – in Tests
+ * mit {@link Clock#fixed} ersetzbar.
+ */
+@Configuration
+public class ZeitConfig {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
@@ -5,6 +5,7 @@ import ch.nacht.service.DebitorService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Slice;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -13,9 +14,12 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for debitor entries (invoice tracking).
+ * Besides the full quarter list, {@code /seite} delivers a server-side paged, sorted and filtered
+ * view ({@code hatMehr} flag, as for Systemmeldungen).
  */
 @RestController
 @RequestMapping("/api/debitoren")
@@ -41,6 +45,25 @@ public class DebitorController {
         return debitoren;
     }
 
+    @GetMapping("/seite")
+    public Map<String, Object> getDebitorenSeite(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate von,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bis,
+            @RequestParam(required = false) Boolean offen,
+            @RequestParam(required = false) String suche,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "datumVon") String sortSpalte,
+            @RequestParam(defaultValue = "ASC") String sortRichtung) {
+        log.info("Fetching debitor page {} from {} to {}", page, von, bis);
+        Slice<DebitorDTO> slice = debitorService.getSeite(
+                von, bis, offen, suche, page, size, sortSpalte, sortRichtung);
+        return Map.of(
+                "items", slice.getContent(),
+                "hatMehr", slice.hasNext(),
+                "page", page);
+    }
+
     @PostMapping
     public ResponseEntity<?> createDebitor(@Valid @RequestBody DebitorDTO dto) {
         log.info("Creating debitor entry for mieterId={}", dto.getMieterId());
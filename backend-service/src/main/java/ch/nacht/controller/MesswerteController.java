@@ -1,25 +1,32 @@
 package ch.nacht.controller;
 
+import ch.nacht.dto.MesswerteAggregatDTO;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.FeatureFlag;
 import ch.nacht.entity.MeldungLevel;
 import ch.nacht.exception.FeatureDisabledException;
 import ch.nacht.service.CalculationProgressService;
 import ch.nacht.service.EinheitService;
+import ch.nacht.service.ExportAusgabe;
 import ch.nacht.service.FeatureFlagService;
+import ch.nacht.service.MesswerteAggregatService;
 import ch.nacht.service.MesswerteService;
+import ch.nacht.service.MesswerteSpaltenSchreiber;
 import ch.nacht.service.MetricsService;
 import ch.nacht.service.OrganizationContextService;
 import ch.nacht.service.SystemmeldungService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -36,6 +43,7 @@ public class MesswerteController {
     private static final DateTimeFormatter DATUM_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
     private final MesswerteService messwerteService;
+    private final MesswerteAggregatService messwerteAggregatService;
     private final MetricsService metricsService;
     private final EinheitService einheitService;
     private final CalculationProgressService calculationProgressService;
@@ -43,13 +51,16 @@ public class MesswerteController {
     private final FeatureFlagService featureFlagService;
     private final SystemmeldungService systemmeldungService;
 
-    public MesswerteController(MesswerteService messwerteService, MetricsService metricsService,
+    public MesswerteController(MesswerteService messwerteService,
+                               MesswerteAggregatService messwerteAggregatService,
+                               MetricsService metricsService,
                                EinheitService einheitService,
                                CalculationProgressService calculationProgressService,
                                OrganizationContextService organizationContextService,
                                FeatureFlagService featureFlagService,
                                SystemmeldungService systemmeldungService) {
         this.messwerteService = messwerteService;
+        this.messwerteAggregatService = messwerteAggregatService;
         this.metricsService = metricsService;
         this.einheitService = einheitService;
         this.calculationProgressService = calculationProgressService;
@@ -207,16 +218,18 @@ public class MesswerteController {
     public ResponseEntity<List<Map<String, Object>>> getMesswerteByEinheit(
             @RequestParam("einheitId") Long einheitId,
             @RequestParam("dateFrom") String dateFromStr,
-            @RequestParam("dateTo") String dateToStr) {
+            @RequestParam("dateTo") String dateToStr,
+            @RequestParam(value = "maxPoints", required = false) Integer maxPoints) {
 
-        log.info("Get messwerte request - einheitId: {}, dateFrom: {}, dateTo: {}",
-                einheitId, dateFromStr, dateToStr);
+        log.info("Get messwerte request - einheitId: {}, dateFrom: {}, dateTo: {}, maxPoints: {}",
+                einheitId, dateFromStr, dateToStr, maxPoints);
 
         try {
             LocalDate dateFrom = LocalDate.parse(dateFromStr);
             LocalDate dateTo = LocalDate.parse(dateToStr);
 
-            List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(einheitId, dateFrom, dateTo);
+            List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(einheitId, dateFrom, dateTo,
+                    maxPoints);
 
             log.info("Retrieved {} messwerte records for einheitId: {}", result.size(), einheitId);
             return ResponseEntity.ok(result);
@@ -228,6 +241,131 @@ public class MesswerteController {
         }
     }
 
+    /**
+     * Spaltenweise Variante von {@code /by-einheit} ({@code Accept: application/vnd.zev.spalten+json}):
+     * Beginn, Schritt und je Spalte ein Zahlen-Array, direkt aus dem Cursor gestreamt.
+     */
+    @GetMapping(value = "/by-einheit", produces = MesswerteSpaltenSchreiber.MEDIA_TYPE_JSON)
+    @PreAuthorize("hasAuthority('messwerte:read')")
+    public ResponseEntity<StreamingResponseBody> getMesswerteSpaltenJson(
+            @RequestParam("einheitId") Long einheitId,
+            @RequestParam("dateFrom") String dateFromStr,
+            @RequestParam("dateTo") String dateToStr) {
+        return spalten(einheitId, dateFromStr, dateToStr, MesswerteSpaltenSchreiber.Format.JSON,
+                MesswerteSpaltenSchreiber.MEDIA_TYPE_JSON);
+    }
+
+    /**
+     * Binäre Variante von {@code /by-einheit} ({@code Accept: application/vnd.zev.spalten.f32le}):
+     * Little-Endian {@code float32}, Aufbau siehe {@link MesswerteSpaltenSchreiber}.
+     */
+    @GetMapping(value = "/by-einheit", produces = MesswerteSpaltenSchreiber.MEDIA_TYPE_F32LE)
+    @PreAuthorize("hasAuthority('messwerte:read')")
+    public ResponseEntity<StreamingResponseBody> getMesswerteSpaltenF32le(
+            @RequestParam("einheitId") Long einheitId,
+            @RequestParam("dateFrom") String dateFromStr,
+            @RequestParam("dateTo") String dateToStr) {
+        return spalten(einheitId, dateFromStr, dateToStr, MesswerteSpaltenSchreiber.Format.F32LE,
+                MesswerteSpaltenSchreiber.MEDIA_TYPE_F32LE);
+    }
+
+    private ResponseEntity<StreamingResponseBody> spalten(Long einheitId, String dateFromStr, String dateToStr,
+                                                          MesswerteSpaltenSchreiber.Format format, String mediaType) {
+        log.info("Get messwerte spalten request - einheitId: {}, dateFrom: {}, dateTo: {}, format: {}",
+                einheitId, dateFromStr, dateToStr, format);
+
+        try {
+            LocalDate dateFrom = LocalDate.parse(dateFromStr);
+            LocalDate dateTo = LocalDate.parse(dateToStr);
+
+            ExportAusgabe ausgabe = messwerteService.getMesswerteSpalten(einheitId, dateFrom, dateTo,
+                    format);
+            StreamingResponseBody body = out -> {
+                try {
+                    ausgabe.schreibeNach(out);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Messwerte spalten aborted while streaming - einheitId: {}, error: {}",
+                            einheitId, e.getMessage());
+                    throw e;
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(mediaType))
+                    .body(body);
+
+        } catch (Exception e) {
+            log.error("Failed to retrieve messwerte spalten - einheitId: {}, error: {}",
+                    einheitId, e.getMessage(), e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Zeitreihen mehrerer Einheiten in einem Aufruf (Einheit-ID → Punkte), optional per LTTB auf
+     * {@code maxPoints} Punkte je Einheit reduziert.
+     */
+    @GetMapping("/by-einheiten")
+    @PreAuthorize("hasAuthority('messwerte:read')")
+    public ResponseEntity<Map<Long, List<Map<String, Object>>>> getMesswerteByEinheiten(
+            @RequestParam("einheitIds") List<Long> einheitIds,
+            @RequestParam("dateFrom") String dateFromStr,
+            @RequestParam("dateTo") String dateToStr,
+            @RequestParam(value = "maxPoints", required = false) Integer maxPoints) {
+
+        log.info("Get messwerte request - einheitIds: {}, dateFrom: {}, dateTo: {}, maxPoints: {}",
+                einheitIds, dateFromStr, dateToStr, maxPoints);
+
+        try {
+            LocalDate dateFrom = LocalDate.parse(dateFromStr);
+            LocalDate dateTo = LocalDate.parse(dateToStr);
+
+            Map<Long, List<Map<String, Object>>> result = messwerteService.getMesswerteByEinheiten(
+                    einheitIds, dateFrom, dateTo, maxPoints);
+
+            log.info("Retrieved messwerte for {} einheiten", result.size());
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            log.error("Failed to retrieve messwerte - einheitIds: {}, error: {}",
+                    einheitIds, e.getMessage(), e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Summen je Einheit und Bucket ({@code hour|day|week|month}), in der Datenbank gruppiert und
+     * spaltenweise ausgeliefert.
+     */
+    @GetMapping("/aggregate")
+    @PreAuthorize("hasAuthority('messwerte:read')")
+    public ResponseEntity<MesswerteAggregatDTO> getAggregat(
+            @RequestParam("bucket") String bucket,
+            @RequestParam("einheiten") List<Long> einheitIds,
+            @RequestParam("dateFrom") String dateFromStr,
+            @RequestParam("dateTo") String dateToStr) {
+
+        log.info("Aggregate request - bucket: {}, einheiten: {}, dateFrom: {}, dateTo: {}",
+                bucket, einheitIds, dateFromStr, dateToStr);
+
+        try {
+            LocalDate dateFrom = LocalDate.parse(dateFromStr);
+            LocalDate dateTo = LocalDate.parse(dateToStr);
+            if (dateFrom.isAfter(dateTo)) {
+                log.warn("Invalid date range - dateFrom ({}) is after dateTo ({})", dateFrom, dateTo);
+                return ResponseEntity.badRequest().build();
+            }
+
+            MesswerteAggregatDTO result = messwerteAggregatService.aggregiere(
+                    MesswerteAggregatService.Bucket.von(bucket), einheitIds, dateFrom, dateTo);
+            return ResponseEntity.ok(result);
+
+        } catch (Exception e) {
+            log.error("Failed to aggregate messwerte - einheiten: {}, error: {}",
+                    einheitIds, e.getMessage(), e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/calculation-progress")
     @PreAuthorize("hasAuthority('messwerte:write')")
     public ResponseEntity<Map<String, Object>> getCalculationProgress() {
@@ -1,31 +1,42 @@
 package ch.nacht.controller;
 
 import ch.nacht.dto.RechnungDTO;
+import ch.nacht.dto.RechnungJobDTO;
 import ch.nacht.service.DebitorService;
+import ch.nacht.service.RechnungJobService;
 import ch.nacht.service.RechnungPdfService;
 import ch.nacht.service.RechnungService;
 import ch.nacht.service.RechnungStorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * REST Controller for invoice generation and download.
@@ -41,84 +52,82 @@ public class RechnungController {
     private final RechnungPdfService rechnungPdfService;
     private final RechnungStorageService rechnungStorageService;
     private final DebitorService debitorService;
+    private final RechnungJobService rechnungJobService;
 
     public RechnungController(RechnungService rechnungService,
                               RechnungPdfService rechnungPdfService,
                               RechnungStorageService rechnungStorageService,
-                              DebitorService debitorService) {
+                              DebitorService debitorService,
+                              RechnungJobService rechnungJobService) {
         this.rechnungService = rechnungService;
         this.rechnungPdfService = rechnungPdfService;
         this.rechnungStorageService = rechnungStorageService;
         this.debitorService = debitorService;
+        this.rechnungJobService = rechnungJobService;
         log.info("RechnungController initialized");
     }
 
     /**
      * Generate invoices for the selected units and time period.
+     * The calculation runs in its own read-only transaction; the PDFs are rendered afterwards,
+     * in parallel and without holding a database connection. The download keys carry the run
+     * id returned as {@code lauf}.
      *
      * @param request Request containing date range and unit IDs
      * @return List of generated invoice metadata
      */
-    @Transactional
     @PostMapping("/generate")
     public ResponseEntity<Map<String, Object>> generateRechnungen(@Valid @RequestBody GenerateRequest request) {
         log.info("Generating invoices for {} units from {} to {}",
                 request.einheitIds.size(), request.von, request.bis);
 
-        // Validate request
-        if (request.von == null || request.bis == null) {
-            log.warn("Invalid date range: von={}, bis={}", request.von, request.bis);
-            return ResponseEntity.badRequest().body(Map.of("error", "Date range is required"));
+        String fehler = validate(request);
+        if (fehler != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", fehler));
         }
-        if (request.von.isAfter(request.bis)) {
-            log.warn("Invalid date range: von ({}) is after bis ({})", request.von, request.bis);
-            return ResponseEntity.badRequest().body(Map.of("error", "Start date must be before end date"));
-        }
-        if (request.einheitIds == null || request.einheitIds.isEmpty()) {
-            log.warn("No units selected for invoice generation");
-            return ResponseEntity.badRequest().body(Map.of("error", "At least one unit must be selected"));
-        }
-
-        // Clear previous invoices
-        rechnungStorageService.clearAll();
 
         // Calculate invoices. A missing-tariff / coverage gap throws IllegalStateException,
-        // which propagates out of this @Transactional method (clean rollback) and is mapped
-        // to HTTP 400 with the validation message by GlobalExceptionHandler. Catching it here
-        // would let the rollback-only transaction fail its commit with a generic 500.
+        // which propagates out of the read-only calculation transaction and is mapped to
+        // HTTP 400 with the validation message by GlobalExceptionHandler.
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(
                 request.einheitIds, request.von, request.bis);
 
-        // Generate PDFs and store them
-        List<Map<String, Object>> generatedList = new ArrayList<>();
+        // Render PDFs (parallel, results in invoice order; unchanged invoices are taken from
+        // the archive by fingerprint), then store them
         String sprache = request.sprache != null ? request.sprache : "de";
+        List<RechnungPdfService.PdfErgebnis> pdfs = new ArrayList<>(rechnungen.size());
+        rechnungPdfService.generatePdfs(rechnungen, sprache, rechnungStorageService::findMemo, pdfs::add);
+        List<Map<String, Object>> generatedList = new ArrayList<>();
 
-        for (RechnungDTO rechnung : rechnungen) {
+        // Run id as prefix of the download keys: concurrent runs of the organisation (other
+        // requests, background jobs) never overwrite each other's PDFs
+        String lauf = "L" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        List<RechnungDTO> erzeugt = new ArrayList<>();
+        for (RechnungPdfService.PdfErgebnis ergebnis : pdfs) {
+            if (ergebnis.erfolgreich()) {
+                erzeugt.add(ergebnis.rechnung());
+            } else {
+                log.error("Failed to generate invoice for unit {}: {}",
+                        ergebnis.rechnung().getEinheitName(), ergebnis.fehler().getMessage(), ergebnis.fehler());
+            }
+        }
+
+        // Persist debitor entries before storing the PDFs: an invoice whose upsert fails gets no PDF
+        Set<RechnungDTO> ohneDebitor = upsertDebitoren(erzeugt);
+
+        for (RechnungPdfService.PdfErgebnis ergebnis : pdfs) {
+            RechnungDTO rechnung = ergebnis.rechnung();
+            if (!ergebnis.erfolgreich() || ohneDebitor.contains(rechnung)) {
+                continue;
+            }
             try {
-                byte[] pdf = rechnungPdfService.generatePdf(rechnung, sprache);
                 // Include mieterId in key to distinguish multiple tenants per unit
                 String keyBase = rechnung.getMieterId() != null
                         ? rechnung.getEinheitName() + "_" + rechnung.getMieterId()
                         : rechnung.getEinheitName();
-                String key = rechnungStorageService.sanitizeKey(keyBase);
-
-                // Persist debitor entry before storing PDF: if upsert fails, no PDF is stored.
-                // 0-Rechnungen (z.B. kein Verbrauch im Zeitraum): PDF wird erzeugt, aber keine
-                // Forderung angelegt (debitor.betrag hat CHECK > 0).
-                BigDecimal betrag = BigDecimal.valueOf(rechnung.getEndBetrag()).setScale(2, RoundingMode.HALF_UP);
-                if (rechnung.getMieterId() != null && betrag.compareTo(BigDecimal.ZERO) > 0) {
-                    debitorService.upsertFromRechnung(
-                            rechnung.getMieterId(),
-                            betrag,
-                            rechnung.getVon(),
-                            rechnung.getBis()
-                    );
-                } else if (rechnung.getMieterId() != null) {
-                    log.info("Kein Debitor-Eintrag für 0-Rechnung (mieterId={}, einheit={}, {}–{})",
-                            rechnung.getMieterId(), rechnung.getEinheitName(), rechnung.getVon(), rechnung.getBis());
-                }
+                String key = rechnungStorageService.sanitizeKey(lauf + "_" + keyBase);
 
-                rechnungStorageService.store(key, pdf);
+                rechnungStorageService.store(key, ergebnis.pdf(), ergebnis.fingerabdruck());
 
                 Map<String, Object> meta = new HashMap<>();
                 meta.put("einheitId", rechnung.getEinheitId());
@@ -142,35 +151,291 @@ public class RechnungController {
         Map<String, Object> response = new HashMap<>();
         response.put("rechnungen", generatedList);
         response.put("count", generatedList.size());
+        response.put("lauf", lauf);
 
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Download a generated invoice by unit name key.
+     * Submit an invoice run as a background job: the invoices are calculated in this request
+     * (tariff gaps → 400), rendering, debitor upsert and storage run in the background.
+     * Progress: {@code GET /jobs/{id}} or the SSE stream {@code GET /jobs/{id}/events}; completed
+     * invoices can be downloaded via {@code /download/{key}} while the rest is still rendering.
+     *
+     * @param request Request containing date range and unit IDs
+     * @return 202 with the job state
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<?> starteJob(@Valid @RequestBody GenerateRequest request) {
+        String fehler = validate(request);
+        if (fehler != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", fehler));
+        }
+        log.info("Submitting invoice job for {} units from {} to {}",
+                request.einheitIds.size(), request.von, request.bis);
+        String sprache = request.sprache != null ? request.sprache : "de";
+        return ResponseEntity.accepted()
+                .body(rechnungJobService.starte(request.einheitIds, request.von, request.bis, sprache));
+    }
+
+    /**
+     * State of an invoice job with its completed invoices.
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<RechnungJobDTO> getJob(@PathVariable Long id) {
+        return rechnungJobService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Progress of an invoice job as server-sent events: {@code status} (job state) and one
+     * {@code rechnung} per completed invoice, first the ones already completed.
+     */
+    @GetMapping(path = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable Long id) {
+        return rechnungJobService.abonniere(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Cancel a running invoice job; completed invoices remain available.
+     */
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<RechnungJobDTO> cancelJob(@PathVariable Long id) {
+        return rechnungJobService.abbrechen(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Download a generated invoice by unit name key. The PDF is streamed from the archive;
+     * a single byte range ({@code Range: bytes=…}) is answered with 206.
      *
      * @param key The sanitized unit name (download key)
+     * @param range Optional {@code Range} header
      * @return PDF file as attachment
      */
     @GetMapping("/download/{key}")
-    public ResponseEntity<byte[]> downloadRechnung(@PathVariable String key) {
+    public ResponseEntity<StreamingResponseBody> downloadRechnung(
+            @PathVariable String key,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
         log.info("Download requested for invoice: {}", key);
 
-        return rechnungStorageService.get(key)
-                .map(pdf -> {
-                    String filename = rechnungStorageService.getFilename(key);
-                    log.info("Serving invoice download: {}, size: {} bytes", filename, pdf.length);
-
-                    return ResponseEntity.ok()
-                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                            .contentType(MediaType.APPLICATION_PDF)
-                            .contentLength(pdf.length)
-                            .body(pdf);
-                })
-                .orElseGet(() -> {
-                    log.warn("Invoice not found or expired: {}", key);
-                    return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-                });
+        Optional<RechnungStorageService.Archivdatei> gefunden = rechnungStorageService.find(key);
+        if (gefunden.isEmpty()) {
+            log.warn("Invoice not found or expired: {}", key);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        RechnungStorageService.Archivdatei datei = gefunden.get();
+        long groesse = datei.groesse();
+        long start = 0;
+        long ende = groesse - 1;
+        boolean teil = false;
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // Mehrere Bereiche (multipart/byteranges) nicht unterstützt: ganze Datei (RFC 9110 erlaubt das)
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(groesse);
+                    ende = ranges.get(0).getRangeEnd(groesse);
+                    teil = true;
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid range for invoice {}: {}", key, range);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + groesse)
+                        .build();
+            }
+        }
+
+        String filename = rechnungStorageService.getFilename(key);
+        long von = start;
+        long laenge = ende - start + 1;
+        log.info("Serving invoice download: {}, bytes {}-{} of {}", filename, start, ende, groesse);
+        StreamingResponseBody body = out -> {
+            try {
+                rechnungStorageService.uebertrage(datei, von, laenge, out);
+            } catch (IOException | RuntimeException e) {
+                log.error("Invoice download aborted while streaming - {}: {}", filename, e.getMessage());
+                throw e;
+            }
+        };
+
+        ResponseEntity.BodyBuilder antwort = ResponseEntity.status(teil ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.APPLICATION_PDF)
+                .contentLength(laenge);
+        if (teil) {
+            antwort.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + ende + "/" + groesse);
+        }
+        return antwort.body(body);
+    }
+
+    /**
+     * Download all invoices of one run (or the given keys, in that order) as one ZIP,
+     * streamed from the archive.
+     *
+     * @param lauf Run id returned by {@code POST /generate}
+     * @param jobId Invoice job
+     * @param keys Download keys; one of {@code lauf}, {@code jobId} or {@code keys} is required
+     * @return ZIP file as attachment, 400 without run or keys
+     */
+    @GetMapping("/bundle/zip")
+    public ResponseEntity<StreamingResponseBody> downloadZip(@RequestParam(required = false) String lauf,
+                                                             @RequestParam(required = false) Long jobId,
+                                                             @RequestParam(required = false) List<String> keys) {
+        List<String> auswahl = bundleKeys(lauf, jobId, keys);
+        if (auswahl == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        Map<String, RechnungStorageService.Archivdatei> dateien = new LinkedHashMap<>();
+        for (String key : auswahl) {
+            rechnungStorageService.find(key)
+                    .ifPresent(datei -> dateien.put(rechnungStorageService.getFilename(key), datei));
+        }
+        if (dateien.isEmpty()) {
+            log.warn("No invoices found for ZIP download");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        log.info("Serving ZIP download with {} invoices", dateien.size());
+        StreamingResponseBody body = out -> {
+            try {
+                rechnungStorageService.schreibeZip(dateien, out);
+            } catch (IOException | RuntimeException e) {
+                log.error("ZIP download aborted while streaming: {}", e.getMessage());
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rechnungen.zip\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    /**
+     * Download all invoices of one run (or the given keys, in that order) merged into
+     * one printable PDF, streamed from the archive.
+     *
+     * @param lauf Run id returned by {@code POST /generate}
+     * @param jobId Invoice job
+     * @param keys Download keys; one of {@code lauf}, {@code jobId} or {@code keys} is required
+     * @return PDF file as attachment, 400 without run or keys
+     */
+    @GetMapping("/bundle/pdf")
+    public ResponseEntity<StreamingResponseBody> downloadSammelPdf(@RequestParam(required = false) String lauf,
+                                                                   @RequestParam(required = false) Long jobId,
+                                                                   @RequestParam(required = false) List<String> keys) {
+        List<String> auswahl = bundleKeys(lauf, jobId, keys);
+        if (auswahl == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<RechnungStorageService.Archivdatei> dateien = new ArrayList<>();
+        for (String key : auswahl) {
+            rechnungStorageService.find(key).ifPresent(dateien::add);
+        }
+        if (dateien.isEmpty()) {
+            log.warn("No invoices found for merged PDF download");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        log.info("Serving merged PDF download with {} invoices", dateien.size());
+        StreamingResponseBody body = out -> {
+            try {
+                rechnungStorageService.schreibeSammelPdf(dateien, out);
+            } catch (IOException | RuntimeException e) {
+                log.error("Merged PDF download aborted while streaming: {}", e.getMessage());
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"rechnungen.pdf\"")
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(body);
+    }
+
+    /**
+     * Keys of a bundle: the given keys, or those of the explicitly named run — never simply
+     * everything in the organisation's archive, which may hold several runs at once.
+     *
+     * @return Keys in bundle order, {@code null} if neither keys nor a run are given
+     */
+    private List<String> bundleKeys(String lauf, Long jobId, List<String> keys) {
+        if (keys != null) {
+            return keys;
+        }
+        if (jobId != null) {
+            return rechnungStorageService.keys(RechnungJobService.lauf(jobId));
+        }
+        if (lauf != null && !lauf.isBlank()) {
+            return rechnungStorageService.keys(lauf);
+        }
+        return null;
+    }
+
+    /**
+     * Upsert the debitor entries of the run in one batch. 0-Rechnungen (z.B. kein Verbrauch im
+     * Zeitraum) get a PDF but no debitor entry (debitor.betrag hat CHECK > 0). If the batch
+     * fails, the entries are upserted one by one so that only the affected invoices are dropped.
+     *
+     * @return Invoices whose debitor entry could not be written
+     */
+    private Set<RechnungDTO> upsertDebitoren(List<RechnungDTO> rechnungen) {
+        List<RechnungDTO> mitForderung = new ArrayList<>();
+        List<DebitorService.RechnungsForderung> forderungen = new ArrayList<>();
+        for (RechnungDTO rechnung : rechnungen) {
+            BigDecimal betrag = BigDecimal.valueOf(rechnung.getEndBetrag()).setScale(2, RoundingMode.HALF_UP);
+            if (rechnung.getMieterId() != null && betrag.compareTo(BigDecimal.ZERO) > 0) {
+                mitForderung.add(rechnung);
+                forderungen.add(new DebitorService.RechnungsForderung(
+                        rechnung.getMieterId(), betrag, rechnung.getVon(), rechnung.getBis()));
+            } else if (rechnung.getMieterId() != null) {
+                log.info("Kein Debitor-Eintrag für 0-Rechnung (mieterId={}, einheit={}, {}–{})",
+                        rechnung.getMieterId(), rechnung.getEinheitName(), rechnung.getVon(), rechnung.getBis());
+            }
+        }
+        Set<RechnungDTO> fehlgeschlagen = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (forderungen.isEmpty()) {
+            return fehlgeschlagen;
+        }
+        try {
+            debitorService.upsertFromRechnungen(forderungen);
+        } catch (RuntimeException e) {
+            log.warn("Debitor batch failed ({}), retrying invoice by invoice", e.getMessage());
+            for (int i = 0; i < forderungen.size(); i++) {
+                DebitorService.RechnungsForderung f = forderungen.get(i);
+                try {
+                    debitorService.upsertFromRechnung(f.mieterId(), f.betrag(), f.datumVon(), f.datumBis());
+                } catch (RuntimeException einzeln) {
+                    log.error("Failed to store debitor for unit {}: {}",
+                            mitForderung.get(i).getEinheitName(), einzeln.getMessage(), einzeln);
+                    fehlgeschlagen.add(mitForderung.get(i));
+                }
+            }
+        }
+        return fehlgeschlagen;
+    }
+
+    /**
+     * Validate a generation request.
+     *
+     * @return Error message, or {@code null} if valid
+     */
+    private static String validate(GenerateRequest request) {
+        if (request.von == null || request.bis == null) {
+            log.warn("Invalid date range: von={}, bis={}", request.von, request.bis);
+            return "Date range is required";
+        }
+        if (request.von.isAfter(request.bis)) {
+            log.warn("Invalid date range: von ({}) is after bis ({})", request.von, request.bis);
+            return "Start date must be before end date";
+        }
+        if (request.einheitIds == null || request.einheitIds.isEmpty()) {
+            log.warn("No units selected for invoice generation");
+            return "At least one unit must be selected";
+        }
+        return null;
     }
 
     /**
@@ -1,6 +1,9 @@
 package ch.nacht.controller;
 
+import ch.nacht.dto.AbdeckungsLueckeDTO;
 import ch.nacht.dto.StatistikDTO;
+import ch.nacht.service.AbdeckungService;
+import ch.nacht.service.ExportAusgabe;
 import ch.nacht.service.StatistikPdfService;
 import ch.nacht.service.StatistikService;
 import org.slf4j.Logger;
@@ -11,9 +14,12 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/statistik")
@@ -23,10 +29,13 @@ public class StatistikController {
     private static final Logger log = LoggerFactory.getLogger(StatistikController.class);
     private final StatistikService statistikService;
     private final StatistikPdfService statistikPdfService;
+    private final AbdeckungService abdeckungService;
 
-    public StatistikController(StatistikService statistikService, StatistikPdfService statistikPdfService) {
+    public StatistikController(StatistikService statistikService, StatistikPdfService statistikPdfService,
+                               AbdeckungService abdeckungService) {
         this.statistikService = statistikService;
         this.statistikPdfService = statistikPdfService;
+        this.abdeckungService = abdeckungService;
         log.info("StatistikController initialized");
     }
 
@@ -78,8 +87,37 @@ public class StatistikController {
         }
     }
 
+    @GetMapping("/luecken")
+    public ResponseEntity<List<AbdeckungsLueckeDTO>> getLuecken(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate von,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bis) {
+
+        log.info("Luecken request - von: {}, bis: {}", von, bis);
+
+        try {
+            if (von.isAfter(bis)) {
+                log.warn("Invalid date range - von ({}) is after bis ({})", von, bis);
+                return ResponseEntity.badRequest().build();
+            }
+
+            List<AbdeckungsLueckeDTO> luecken = abdeckungService.ermittleLuecken(von, bis);
+            log.info("Luecken retrieved - {} gaps", luecken.size());
+            return ResponseEntity.ok(luecken);
+
+        } catch (Exception e) {
+            log.error("Failed to retrieve luecken - von: {}, bis: {}, error: {}",
+                    von, bis, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streamt den CSV-Export ({@link StreamingResponseBody}): Einheit und Mandant werden vorab
+     * geprüft (400), die Zeilen erst beim Senden der Antwort gelesen. Fehler während des
+     * Streamings können den Status nicht mehr ändern und werden nur geloggt.
+     */
     @GetMapping("/export/csv")
-    public ResponseEntity<byte[]> exportCsv(
+    public ResponseEntity<StreamingResponseBody> exportCsv(
             @RequestParam Long einheitId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate von,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bis,
@@ -93,17 +131,27 @@ public class StatistikController {
                 return ResponseEntity.badRequest().build();
             }
 
-            byte[] csv = statistikService.exportMesswerteCsv(einheitId, von, bis, sprache);
+            ExportAusgabe csv = statistikService.exportMesswerteCsv(einheitId, von, bis, sprache);
             // Server-seitiger Fallback-Dateiname (ASCII-sicher); das Frontend setzt den
             // benutzerfreundlichen Namen mit Einheiten-Name selbst.
             String filename = String.format("verbrauch_%d_%04d-%02d.csv", einheitId, von.getYear(), von.getMonthValue());
 
-            log.info("CSV export successful - filename: {}, size: {} bytes", filename, csv.length);
+            StreamingResponseBody body = out -> {
+                try {
+                    csv.schreibeNach(out);
+                } catch (IOException | RuntimeException e) {
+                    log.error("CSV export aborted while streaming - einheitId: {}, error: {}",
+                            einheitId, e.getMessage());
+                    throw e;
+                }
+            };
+
+            log.info("CSV export started - filename: {}", filename);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
                     .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
-                    .body(csv);
+                    .body(body);
 
         } catch (IllegalArgumentException e) {
             log.warn("CSV export abgelehnt - einheitId: {}, error: {}", einheitId, e.getMessage());
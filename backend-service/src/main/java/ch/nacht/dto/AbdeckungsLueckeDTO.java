@@ -0,0 +1,10 @@
+package ch.nacht.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Zusammenhängende Lücke in den 15-Minuten-Messwerten einer Einheit: {@code von} ist das erste,
+ * {@code bis} das letzte fehlende Intervall (jeweils Intervallbeginn).
+ */
+public record AbdeckungsLueckeDTO(Long einheitId, String einheitName, LocalDateTime von,
+                                  LocalDateTime bis, int intervalle) {}
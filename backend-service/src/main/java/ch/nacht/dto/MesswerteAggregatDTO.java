@@ -0,0 +1,15 @@
+package ch.nacht.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Zeitreihen je Einheit, in der Datenbank auf Buckets (Stunde/Tag/Woche/Monat) summiert.
+ * Spaltenweise statt je Punkt ein Objekt: {@code zeit[i]} ist der Bucket-Beginn (mit Offset
+ * Europe/Zurich) zu {@code total[i]}, {@code zev[i]} und {@code zevCalculated[i]} in kWh.
+ */
+public record MesswerteAggregatDTO(String bucket, List<Reihe> einheiten) {
+
+    public record Reihe(Long einheitId, List<OffsetDateTime> zeit, double[] total, double[] zev,
+                        double[] zevCalculated) {}
+}
@@ -0,0 +1,9 @@
+package ch.nacht.dto;
+
+/**
+ * Abgeschlossene Rechnung eines Rechnungslaufs – gleiche Felder wie die Metadaten von
+ * {@code POST /api/rechnungen/generate}. {@code downloadKey} ist {@code null} und {@code fehler}
+ * gesetzt, wenn das PDF nicht erzeugt werden konnte.
+ */
+public record RechnungJobArtefaktDTO(int position, Long einheitId, String einheitName, String mieterName,
+                                     double endBetrag, String filename, String downloadKey, String fehler) {}
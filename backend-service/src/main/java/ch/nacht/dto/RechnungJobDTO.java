@@ -0,0 +1,14 @@
+package ch.nacht.dto;
+
+import ch.nacht.entity.RechnungJobStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Zustand eines Rechnungslaufs im Hintergrund: {@code erledigt} von {@code anzahl} Rechnungen
+ * sind abgeschlossen, {@code rechnungen} enthält deren Artefakte in Laufreihenfolge.
+ */
+public record RechnungJobDTO(Long id, RechnungJobStatus status, LocalDate von, LocalDate bis,
+                             int anzahl, int erledigt, String fehler,
+                             List<RechnungJobArtefaktDTO> rechnungen) {}
@@ -0,0 +1,149 @@
+package ch.nacht.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Filter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint des Catch-up-Modus der MQTT-Aggregation: existiert, solange eine Einheit einen
+ * Rückstand abarbeitet (mehr als ein Lauf). {@code verarbeitetBis} ist die High-Water-Mark –
+ * sie wird in derselben Transaktion wie die Messwerte eines Abschnitts fortgeschrieben, damit
+ * ein Neustart mitten im Lauf am letzten Abschnitt weitermacht. {@code verteilungAb} hält den
+ * frühesten noch nicht verteilten Intervallstart (Solarverteilung erst nach dem Aufholen).
+ */
+@Entity
+@Table(name = "aggregation_checkpoint", schema = "zev")
+@Filter(name = "orgFilter", condition = "org_id = :orgId")
+public class AggregationCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "aggregation_checkpoint_seq")
+    @SequenceGenerator(name = "aggregation_checkpoint_seq", sequenceName = "zev.aggregation_checkpoint_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "org_id", nullable = false)
+    private Long orgId;
+
+    @Column(name = "einheit_id", nullable = false, unique = true)
+    private Long einheitId;
+
+    /** Intervallstart des ersten aufzuholenden Intervalls (Basis der Fortschrittsanzeige). */
+    @Column(name = "start_bei", nullable = false)
+    private LocalDateTime startBei;
+
+    /** High-Water-Mark: alle Intervalle mit Ende {@code <=} diesem Zeitpunkt sind verarbeitet. */
+    @Column(name = "verarbeitet_bis", nullable = false)
+    private LocalDateTime verarbeitetBis;
+
+    /** Aktuelles Ziel (letztes abgeschlossenes Intervallende des laufenden Durchgangs). */
+    @Column(name = "ziel", nullable = false)
+    private LocalDateTime ziel;
+
+    /** Frühester noch nicht verteilter Intervallstart; {@code null} = noch kein Messwert. */
+    @Column(name = "verteilung_ab")
+    private LocalDateTime verteilungAb;
+
+    @Column(name = "gestartet_am", nullable = false)
+    private LocalDateTime gestartetAm;
+
+    /** Verarbeitungszeit aller Abschnitte (ohne Pausen zwischen Läufen) – Basis der Hochrechnung. */
+    @Column(name = "aktiv_millis", nullable = false)
+    private long aktivMillis;
+
+    @Column(name = "aktualisiert_am", nullable = false)
+    private LocalDateTime aktualisiertAm;
+
+    public AggregationCheckpoint() {
+    }
+
+    public AggregationCheckpoint(Long orgId, Long einheitId, LocalDateTime startBei, LocalDateTime jetzt) {
+        this.orgId = orgId;
+        this.einheitId = einheitId;
+        this.startBei = startBei;
+        this.verarbeitetBis = startBei;
+        this.ziel = startBei;
+        this.gestartetAm = jetzt;
+        this.aktualisiertAm = jetzt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getOrgId() {
+        return orgId;
+    }
+
+    public void setOrgId(Long orgId) {
+        this.orgId = orgId;
+    }
+
+    public Long getEinheitId() {
+        return einheitId;
+    }
+
+    public void setEinheitId(Long einheitId) {
+        this.einheitId = einheitId;
+    }
+
+    public LocalDateTime getStartBei() {
+        return startBei;
+    }
+
+    public void setStartBei(LocalDateTime startBei) {
+        this.startBei = startBei;
+    }
+
+    public LocalDateTime getVerarbeitetBis() {
+        return verarbeitetBis;
+    }
+
+    public void setVerarbeitetBis(LocalDateTime verarbeitetBis) {
+        this.verarbeitetBis = verarbeitetBis;
+    }
+
+    public LocalDateTime getZiel() {
+        return ziel;
+    }
+
+    public void setZiel(LocalDateTime ziel) {
+        this.ziel = ziel;
+    }
+
+    public LocalDateTime getVerteilungAb() {
+        return verteilungAb;
+    }
+
+    public void setVerteilungAb(LocalDateTime verteilungAb) {
+        this.verteilungAb = verteilungAb;
+    }
+
+    public LocalDateTime getGestartetAm() {
+        return gestartetAm;
+    }
+
+    public void setGestartetAm(LocalDateTime gestartetAm) {
+        this.gestartetAm = gestartetAm;
+    }
+
+    public long getAktivMillis() {
+        return aktivMillis;
+    }
+
+    public void setAktivMillis(long aktivMillis) {
+        this.aktivMillis = aktivMillis;
+    }
+
+    public LocalDateTime getAktualisiertAm() {
+        return aktualisiertAm;
+    }
+
+    public void setAktualisiertAm(LocalDateTime aktualisiertAm) {
+        this.aktualisiertAm = aktualisiertAm;
+    }
+}
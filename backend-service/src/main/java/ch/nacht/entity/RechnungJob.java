@@ -0,0 +1,177 @@
+package ch.nacht.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Filter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Rechnungslauf im Hintergrund. Die beim Einreichen berechneten Rechnungen ({@code rechnungen},
+ * JSON) sind die Eingabe; {@code erledigt} ist die High-Water-Mark – sie wird in derselben
+ * Transaktion wie Debitor-Eintrag und {@link RechnungJobArtefakt} einer Rechnung fortgeschrieben,
+ * damit eine Wiederaufnahme nach Absturz oder Redeploy bei der ersten offenen Rechnung weitermacht.
+ * {@code aktualisiertAm} ist das Lebenszeichen des ausführenden Workers.
+ */
+@Entity
+@Table(name = "rechnung_job", schema = "zev")
+@Filter(name = "orgFilter", condition = "org_id = :orgId")
+public class RechnungJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rechnung_job_seq")
+    @SequenceGenerator(name = "rechnung_job_seq", sequenceName = "zev.rechnung_job_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "org_id", nullable = false)
+    private Long orgId;
+
+    @Column(name = "von", nullable = false)
+    private LocalDate von;
+
+    @Column(name = "bis", nullable = false)
+    private LocalDate bis;
+
+    @Column(name = "sprache", length = 5, nullable = false)
+    private String sprache;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private RechnungJobStatus status;
+
+    /** Anzahl Rechnungen des Laufs. */
+    @Column(name = "anzahl", nullable = false)
+    private int anzahl;
+
+    /** High-Water-Mark: Rechnungen mit Position {@code < erledigt} sind abgeschlossen. */
+    @Column(name = "erledigt", nullable = false)
+    private int erledigt;
+
+    /** Berechnete Rechnungen ({@code RechnungDTO}-Liste als JSON), unverändert bei Wiederaufnahme. */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "rechnungen", nullable = false, columnDefinition = "jsonb")
+    private String rechnungen;
+
+    @Column(name = "fehler")
+    private String fehler;
+
+    @Column(name = "gestartet_am", nullable = false)
+    private LocalDateTime gestartetAm;
+
+    @Column(name = "aktualisiert_am", nullable = false)
+    private LocalDateTime aktualisiertAm;
+
+    public RechnungJob() {
+    }
+
+    public RechnungJob(Long orgId, LocalDate von, LocalDate bis, String sprache, int anzahl,
+                       String rechnungen, LocalDateTime jetzt) {
+        this.orgId = orgId;
+        this.von = von;
+        this.bis = bis;
+        this.sprache = sprache;
+        this.status = RechnungJobStatus.LAUFEND;
+        this.anzahl = anzahl;
+        this.rechnungen = rechnungen;
+        this.gestartetAm = jetzt;
+        this.aktualisiertAm = jetzt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getOrgId() {
+        return orgId;
+    }
+
+    public void setOrgId(Long orgId) {
+        this.orgId = orgId;
+    }
+
+    public LocalDate getVon() {
+        return von;
+    }
+
+    public void setVon(LocalDate von) {
+        this.von = von;
+    }
+
+    public LocalDate getBis() {
+        return bis;
+    }
+
+    public void setBis(LocalDate bis) {
+        this.bis = bis;
+    }
+
+    public String getSprache() {
+        return sprache;
+    }
+
+    public void setSprache(String sprache) {
+        this.sprache = sprache;
+    }
+
+    public RechnungJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RechnungJobStatus status) {
+        this.status = status;
+    }
+
+    public int getAnzahl() {
+        return anzahl;
+    }
+
+    public void setAnzahl(int anzahl) {
+        this.anzahl = anzahl;
+    }
+
+    public int getErledigt() {
+        return erledigt;
+    }
+
+    public void setErledigt(int erledigt) {
+        this.erledigt = erledigt;
+    }
+
+    public String getRechnungen() {
+        return rechnungen;
+    }
+
+    public void setRechnungen(String rechnungen) {
+        this.rechnungen = rechnungen;
+    }
+
+    public String getFehler() {
+        return fehler;
+    }
+
+    public void setFehler(String fehler) {
+        this.fehler = fehler;
+    }
+
+    public LocalDateTime getGestartetAm() {
+        return gestartetAm;
+    }
+
+    public void setGestartetAm(LocalDateTime gestartetAm) {
+        this.gestartetAm = gestartetAm;
+    }
+
+    public LocalDateTime getAktualisiertAm() {
+        return aktualisiertAm;
+    }
+
+    public void setAktualisiertAm(LocalDateTime aktualisiertAm) {
+        this.aktualisiertAm = aktualisiertAm;
+    }
+}
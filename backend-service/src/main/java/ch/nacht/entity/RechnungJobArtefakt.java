@@ -0,0 +1,131 @@
+package ch.nacht.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Filter;
+
+/**
+ * Abgeschlossene Rechnung eines {@link RechnungJob}: {@code downloadKey} verweist auf das PDF in
+ * der Ablage, {@code fehler} ist gesetzt, wenn das PDF nicht erzeugt werden konnte. Abrufbar,
+ * während die übrigen Rechnungen des Laufs noch dargestellt werden.
+ */
+@Entity
+@Table(name = "rechnung_job_artefakt", schema = "zev")
+@Filter(name = "orgFilter", condition = "org_id = :orgId")
+public class RechnungJobArtefakt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rechnung_job_artefakt_seq")
+    @SequenceGenerator(name = "rechnung_job_artefakt_seq", sequenceName = "zev.rechnung_job_artefakt_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "org_id", nullable = false)
+    private Long orgId;
+
+    /** Position der Rechnung im Lauf (0-basiert, Reihenfolge der Berechnung). */
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "einheit_id")
+    private Long einheitId;
+
+    @Column(name = "einheit_name")
+    private String einheitName;
+
+    @Column(name = "mieter_name")
+    private String mieterName;
+
+    @Column(name = "end_betrag", nullable = false)
+    private double endBetrag;
+
+    @Column(name = "download_key")
+    private String downloadKey;
+
+    @Column(name = "fehler")
+    private String fehler;
+
+    public RechnungJobArtefakt() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public Long getOrgId() {
+        return orgId;
+    }
+
+    public void setOrgId(Long orgId) {
+        this.orgId = orgId;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public Long getEinheitId() {
+        return einheitId;
+    }
+
+    public void setEinheitId(Long einheitId) {
+        this.einheitId = einheitId;
+    }
+
+    public String getEinheitName() {
+        return einheitName;
+    }
+
+    public void setEinheitName(String einheitName) {
+        this.einheitName = einheitName;
+    }
+
+    public String getMieterName() {
+        return mieterName;
+    }
+
+    public void setMieterName(String mieterName) {
+        this.mieterName = mieterName;
+    }
+
+    public double getEndBetrag() {
+        return endBetrag;
+    }
+
+    public void setEndBetrag(double endBetrag) {
+        this.endBetrag = endBetrag;
+    }
+
+    public String getDownloadKey() {
+        return downloadKey;
+    }
+
+    public void setDownloadKey(String downloadKey) {
+        this.downloadKey = downloadKey;
+    }
+
+    public String getFehler() {
+        return fehler;
+    }
+
+    public void setFehler(String fehler) {
+        this.fehler = fehler;
+    }
+}
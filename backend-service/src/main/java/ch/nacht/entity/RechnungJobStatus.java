@@ -0,0 +1,12 @@
+package ch.nacht.entity;
+
+/**
+ * Zustand eines {@link RechnungJob}. Nur {@code LAUFEND} wird (wieder) ausgeführt; die übrigen
+ * sind Endzustände.
+ */
+public enum RechnungJobStatus {
+    LAUFEND,
+    ABGESCHLOSSEN,
+    ABGEBROCHEN,
+    FEHLGESCHLAGEN
+}
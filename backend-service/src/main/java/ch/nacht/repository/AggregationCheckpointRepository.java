@@ -0,0 +1,32 @@
+package ch.nacht.repository;
+
+import ch.nacht.entity.AggregationCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Checkpoints des Catch-up-Modus der MQTT-Aggregation. Hintergrund-Lauf ohne Request-Kontext:
+ * alle Abfragen sind org-explizit bzw. mandantenübergreifend (kein {@code orgFilter}).
+ */
+@Repository
+public interface AggregationCheckpointRepository extends JpaRepository<AggregationCheckpoint, Long> {
+
+    Optional<AggregationCheckpoint> findByEinheitId(Long einheitId);
+
+    /** Mandanten, in denen mindestens eine Einheit noch aufholt (Verteilung zurückstellen). */
+    @Query("SELECT DISTINCT c.orgId FROM AggregationCheckpoint c")
+    List<Long> findOrgIdsMitRueckstand();
+
+    /** Merkt eine zurückgestellte Verteilung ab {@code von} in allen Checkpoints des Mandanten vor. */
+    @Modifying
+    @Query("UPDATE AggregationCheckpoint c SET c.verteilungAb = :von "
+            + "WHERE c.orgId = :orgId AND (c.verteilungAb IS NULL OR c.verteilungAb > :von)")
+    int merkeVerteilungVor(@Param("orgId") Long orgId, @Param("von") LocalDateTime von);
+}
@@ -1,6 +1,8 @@
 package ch.nacht.repository;
 
 import ch.nacht.entity.Debitor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -31,6 +33,50 @@ public interface DebitorRepository extends JpaRepository<Debitor, Long> {
         @Param("bis") LocalDate bis
     );
 
+    /**
+     * Like {@link #findByDatumVonBetween}, but joins the tenant name in the same query — the
+     * overview needs no lookup per row.
+     * Hibernate org filter must be enabled before calling this method.
+     *
+     * @param von Start date (inclusive)
+     * @param bis End date (inclusive)
+     * @return Rows {@code [debitor, mieterName]} ordered by datum_von; mieterName is null if the
+     *         tenant no longer exists
+     */
+    @Query("SELECT d, m.name FROM Debitor d LEFT JOIN Mieter m ON m.id = d.mieterId "
+           + "WHERE d.datumVon >= :von AND d.datumVon <= :bis ORDER BY d.datumVon, d.mieterId")
+    List<Object[]> findMitMieterNameByDatumVonBetween(
+        @Param("von") LocalDate von,
+        @Param("bis") LocalDate bis
+    );
+
+    /**
+     * Filtered, sorted page of debitor entries with the tenant name joined in the same query.
+     * Sort properties refer to the aliases {@code d} (debitor) and {@code m} (mieter).
+     * {@code Slice} provides {@code hasNext()} without a count query.
+     * Hibernate org filter must be enabled before calling this method.
+     *
+     * @param von   Start date (inclusive)
+     * @param bis   End date (inclusive)
+     * @param offen {@code true} = unpaid only, {@code false} = paid only, {@code null} = all
+     * @param suche Lower-case LIKE pattern on tenant or unit name, {@code null} = no filter
+     * @return Rows {@code [debitor, mieterName]}
+     */
+    @Query("SELECT d, m.name FROM Debitor d LEFT JOIN Mieter m ON m.id = d.mieterId "
+           + "WHERE d.datumVon >= :von AND d.datumVon <= :bis "
+           + "AND (:offen IS NULL OR (:offen = true AND d.zahldatum IS NULL) "
+           + "OR (:offen = false AND d.zahldatum IS NOT NULL)) "
+           + "AND (:suche IS NULL OR LOWER(m.name) LIKE :suche "
+           + "OR EXISTS (SELECT 1 FROM MieterEinheit me JOIN Einheit e ON e.id = me.einheitId "
+           + "WHERE me.mieterId = d.mieterId AND LOWER(e.name) LIKE :suche))")
+    Slice<Object[]> findMitMieterNameByFilter(
+        @Param("von") LocalDate von,
+        @Param("bis") LocalDate bis,
+        @Param("offen") Boolean offen,
+        @Param("suche") String suche,
+        Pageable pageable
+    );
+
     /**
      * Upsert a debitor entry by unique key (mieter_id, datum_von, org_id).
      * Updates betrag and datum_bis only if zahldatum is not yet set.
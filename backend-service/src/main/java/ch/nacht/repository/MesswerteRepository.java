@@ -3,6 +3,7 @@ package ch.nacht.repository;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.Messwerte;
+import ch.nacht.entity.Quelle;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,8 +11,10 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface MesswerteRepository extends JpaRepository<Messwerte, Long> {
@@ -25,16 +28,59 @@ public interface MesswerteRepository extends JpaRepository<Messwerte, Long> {
     @Query("SELECT m FROM Messwerte m WHERE m.einheit = :einheit AND m.zeit BETWEEN :dateFrom AND :dateTo ORDER BY m.zeit")
     List<Messwerte> findByEinheitAndZeitBetween(@Param("einheit") Einheit einheit, @Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
+    /**
+     * Zeitreihen mehrerer Einheiten als schlanke Projektion {@code [einheitId, zeit, total, zev]},
+     * sortiert nach Einheit und Zeit – ohne Entities, als Stream (nur innerhalb einer Transaktion).
+     */
+    @Query("SELECT m.einheit.id, m.zeit, m.total, m.zev FROM Messwerte m "
+            + "WHERE m.einheit.id IN :einheitIds AND m.zeit BETWEEN :dateFrom AND :dateTo "
+            + "ORDER BY m.einheit.id, m.zeit")
+    Stream<Object[]> streamZeitreihen(@Param("einheitIds") Collection<Long> einheitIds,
+                                      @Param("dateFrom") LocalDateTime dateFrom,
+                                      @Param("dateTo") LocalDateTime dateTo);
+
+    /**
+     * Summen je Einheit und Bucket ({@code date_trunc}: hour, day, week, month) im Zeitraum
+     * {@code [dateFrom, dateTo)}, sortiert nach Einheit und Bucket-Beginn. Rückgabe je Zeile
+     * {@code [einheitId, beginn, total, zev, zevCalculated]}. {@code zeit} ist lokale Zeit
+     * (Europe/Zurich), die Bucket-Grenzen sind damit lokale Tages-/Wochen-/Monatsgrenzen.
+     * Native SQL → Mandant explizit.
+     */
+    @Query(value = "SELECT einheit_id, date_trunc(:bucket, zeit) AS beginn, SUM(total), SUM(zev), "
+            + "SUM(zev_calculated) FROM zev.messwerte "
+            + "WHERE org_id = :orgId AND einheit_id IN (:einheitIds) AND zeit >= :dateFrom AND zeit < :dateTo "
+            + "GROUP BY einheit_id, beginn ORDER BY einheit_id, beginn", nativeQuery = true)
+    List<Object[]> sumByEinheitAndBucket(@Param("orgId") Long orgId, @Param("bucket") String bucket,
+                                         @Param("einheitIds") Collection<Long> einheitIds,
+                                         @Param("dateFrom") LocalDateTime dateFrom,
+                                         @Param("dateTo") LocalDateTime dateTo);
+
     /** Für Upsert aus der MQTT-Aggregation (ein Messwert je Einheit + Zeitpunkt). */
     Optional<Messwerte> findByEinheitAndZeit(Einheit einheit, LocalDateTime zeit);
 
+    /** Zeitpunkte einer Einheit in {@code (von, bis]} mit der gegebenen Quelle (ohne Entity-Hydration). */
+    @Query("SELECT m.zeit FROM Messwerte m WHERE m.einheit.id = :einheitId AND m.quelle = :quelle "
+            + "AND m.zeit > :von AND m.zeit <= :bis")
+    List<LocalDateTime> findZeitenByEinheitIdAndQuelleAndZeitBetween(@Param("einheitId") Long einheitId,
+                                                                     @Param("quelle") Quelle quelle,
+                                                                     @Param("von") LocalDateTime von,
+                                                                     @Param("bis") LocalDateTime bis);
+
+    /**
+     * Je Mandant der Zeitraum gestreamter Consumer-Messwerte ab {@code ab}, die noch keine
+     * Solarverteilung erhalten haben ({@code zev_calculated} NULL): {@code [orgId, minZeit, maxZeit]}.
+     * Hintergrund-Lauf ohne Request-Kontext → mandantenübergreifend (kein orgFilter).
+     */
+    @Query("SELECT m.orgId, MIN(m.zeit), MAX(m.zeit) FROM Messwerte m WHERE m.quelle = :quelle "
+            + "AND m.einheit.typ = ch.nacht.entity.EinheitTyp.CONSUMER AND m.zevCalculated IS NULL "
+            + "AND m.zeit >= :ab GROUP BY m.orgId")
+    List<Object[]> findUnverteilteConsumerZeitraeume(@Param("quelle") Quelle quelle,
+                                                     @Param("ab") LocalDateTime ab);
+
     // Statistik-Abfragen
     @Query("SELECT MAX(m.zeit) FROM Messwerte m")
     Optional<LocalDateTime> findMaxZeit();
 
-    @Query("SELECT DISTINCT CAST(m.zeit AS LocalDate) FROM Messwerte m WHERE m.zeit >= :dateFrom AND m.zeit < :dateTo ORDER BY CAST(m.zeit AS LocalDate)")
-    List<LocalDate> findDistinctDatesInRange(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
-
     @Query("SELECT COALESCE(SUM(m.total), 0) FROM Messwerte m WHERE m.einheit.typ = :typ AND m.zeit >= :dateFrom AND m.zeit < :dateTo")
     Double sumTotalByEinheitTypAndZeitBetween(@Param("typ") EinheitTyp typ, @Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
@@ -61,8 +107,51 @@ public interface MesswerteRepository extends JpaRepository<Messwerte, Long> {
             + "FROM Messwerte m WHERE m.zeit >= :dateFrom AND m.zeit < :dateTo GROUP BY m.zeit ORDER BY m.zeit")
     List<Object[]> sumBilanzKomponentenPerZeitBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
 
-    @Query("SELECT m FROM Messwerte m WHERE CAST(m.zeit AS LocalDate) = :date")
-    List<Messwerte> findByDate(@Param("date") LocalDate date);
+    /**
+     * Single-Pass-Grundlage der Statistik: Tagessummen je Einheit über den ganzen Zeitraum in
+     * einer Abfrage; Monatssummen, Tagesabweichungen, Einheit-Summen und Vollständigkeit werden
+     * daraus im Speicher gebildet. Rückgabe je Zeile:
+     * {@code [tag, einheitId, typ, summeTotal, summeZev, summeZevCalculated]} (Summen ohne
+     * Betragsbildung, {@code null} wenn alle Werte des Tages {@code null}).
+     * JPQL → der Hibernate-orgFilter greift (Mandanten-Isolation).
+     */
+    @Query("SELECT CAST(m.zeit AS LocalDate), m.einheit.id, m.einheit.typ, "
+            + "SUM(m.total), SUM(m.zev), SUM(m.zevCalculated) "
+            + "FROM Messwerte m WHERE m.zeit >= :dateFrom AND m.zeit < :dateTo "
+            + "GROUP BY CAST(m.zeit AS LocalDate), m.einheit.id, m.einheit.typ")
+    List<Object[]> sumTageJeEinheitBetween(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+    /** Messwerte eines Tages; als Zeitbereich statt {@code CAST(zeit AS date)}, damit der Index greift. */
+    default List<Messwerte> findByDate(LocalDate date) {
+        return findByZeitRange(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    @Query("SELECT m FROM Messwerte m WHERE m.zeit >= :dateFrom AND m.zeit < :dateTo")
+    List<Messwerte> findByZeitRange(@Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+    /**
+     * Abdeckungs-Bitmaps ({@code zev.messwerte_abdeckung}, per Trigger gepflegt) im Zeitraum.
+     * Rückgabe je Zeile {@code [einheitId, tag, slots0bis63, slots64bis95]}: Intervall i des
+     * Tages ist Bit {@code 63 - (i % 64)} des jeweiligen Werts. Native SQL → der orgFilter greift
+     * nicht, der Mandant wird explizit übergeben.
+     */
+    @Query(value = "SELECT einheit_id, tag, CAST(CAST(slots AS BIT(64)) AS BIGINT), "
+            + "CAST(CAST(slots << 64 AS BIT(64)) AS BIGINT) "
+            + "FROM zev.messwerte_abdeckung WHERE org_id = :orgId AND tag BETWEEN :von AND :bis "
+            + "ORDER BY einheit_id, tag", nativeQuery = true)
+    List<Object[]> findAbdeckungBetween(@Param("orgId") Long orgId, @Param("von") LocalDate von,
+                                        @Param("bis") LocalDate bis);
+
+    /**
+     * Einheiten und Tage mit mindestens einem Messwert aus der Abdeckungs-Bitmap
+     * ({@code [einheitId, tag]}); Grundlage der Vollständigkeitsprüfung der Statistik. Zeilen,
+     * deren Bits durch Löschungen wieder leer sind, zählen nicht. Native SQL → Mandant explizit.
+     */
+    @Query(value = "SELECT einheit_id, tag FROM zev.messwerte_abdeckung "
+            + "WHERE org_id = :orgId AND tag BETWEEN :von AND :bis AND BIT_COUNT(slots) > 0",
+            nativeQuery = true)
+    List<Object[]> findAbgedeckteTageBetween(@Param("orgId") Long orgId, @Param("von") LocalDate von,
+                                             @Param("bis") LocalDate bis);
 
     // Summen pro Einheit für Statistik
     @Query("SELECT COALESCE(SUM(m.total), 0) FROM Messwerte m WHERE m.einheit = :einheit AND m.zeit >= :dateFrom AND m.zeit < :dateTo")
@@ -73,4 +162,18 @@ public interface MesswerteRepository extends JpaRepository<Messwerte, Long> {
 
     @Query("SELECT COALESCE(SUM(m.zevCalculated), 0) FROM Messwerte m WHERE m.einheit = :einheit AND m.zeit >= :dateFrom AND m.zeit < :dateTo")
     Double sumZevCalculatedByEinheitAndZeitBetween(@Param("einheit") Einheit einheit, @Param("dateFrom") LocalDateTime dateFrom, @Param("dateTo") LocalDateTime dateTo);
+
+    /**
+     * Tagessummen von {@code total} und {@code zevCalculated} je Einheit für einen ganzen
+     * Rechnungslauf in einer Abfrage. Die Rechnungszeilen (Tarif ∩ Mietzeitraum) beginnen und
+     * enden immer an Tagesgrenzen und lassen sich daraus im Speicher summieren.
+     * Rückgabe je Zeile {@code [einheitId, tag, total, zevCalculated]}; Summen können
+     * {@code null} sein.
+     */
+    @Query("SELECT m.einheit.id, CAST(m.zeit AS LocalDate), SUM(m.total), SUM(m.zevCalculated) "
+            + "FROM Messwerte m WHERE m.einheit.id IN :einheitIds AND m.zeit >= :dateFrom AND m.zeit < :dateTo "
+            + "GROUP BY m.einheit.id, CAST(m.zeit AS LocalDate)")
+    List<Object[]> sumTotalAndZevCalculatedByEinheitAndTag(@Param("einheitIds") Collection<Long> einheitIds,
+                                                           @Param("dateFrom") LocalDateTime dateFrom,
+                                                           @Param("dateTo") LocalDateTime dateTo);
 }
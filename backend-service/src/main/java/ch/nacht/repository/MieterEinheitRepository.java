@@ -55,4 +55,15 @@ public interface MieterEinheitRepository extends JpaRepository<MieterEinheit, Lo
      */
     @Query("SELECT me.einheitId FROM MieterEinheit me WHERE me.mieterId = :mieterId ORDER BY me.einheitId")
     List<Long> findEinheitIdsByMieterId(@Param("mieterId") Long mieterId);
+
+    /**
+     * Unit names of several tenants in one query — fills the unit column of a whole debitor list
+     * instead of one lookup per tenant and unit.
+     *
+     * @param mieterIds Tenant IDs
+     * @return Rows {@code [mieterId, einheitName]}, ordered by unit ID
+     */
+    @Query("SELECT me.mieterId, e.name FROM MieterEinheit me JOIN Einheit e ON e.id = me.einheitId "
+           + "WHERE me.mieterId IN :mieterIds ORDER BY me.einheitId")
+    List<Object[]> findEinheitNamenByMieterIdIn(@Param("mieterIds") Collection<Long> mieterIds);
 }
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -117,4 +118,24 @@ public interface MieterRepository extends JpaRepository<Mieter, Long> {
         @Param("quartalBeginn") LocalDate quartalBeginn,
         @Param("quartalEnde") LocalDate quartalEnde
     );
+
+    /**
+     * Like {@link #findByEinheitIdAndQuartal}, but for several units at once — one query for a
+     * whole invoice run instead of one per unit.
+     *
+     * @param einheitIds Unit IDs
+     * @param quartalBeginn Quarter start date
+     * @param quartalEnde Quarter end date
+     * @return Rows {@code [einheitId, mieter]}, ordered by lease start date
+     */
+    @Query("SELECT me.einheitId, m FROM Mieter m JOIN MieterEinheit me ON me.mieterId = m.id "
+           + "WHERE me.einheitId IN :einheitIds "
+           + "AND m.mietbeginn <= :quartalEnde "
+           + "AND (m.mietende IS NULL OR m.mietende >= :quartalBeginn) "
+           + "ORDER BY m.mietbeginn")
+    List<Object[]> findByEinheitIdsAndQuartal(
+        @Param("einheitIds") Collection<Long> einheitIds,
+        @Param("quartalBeginn") LocalDate quartalBeginn,
+        @Param("quartalEnde") LocalDate quartalEnde
+    );
 }
@@ -0,0 +1,17 @@
+package ch.nacht.repository;
+
+import ch.nacht.entity.RechnungJobArtefakt;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Abgeschlossene Rechnungen eines Rechnungslaufs. Abfragen über die (org-explizit geladene)
+ * Job-ID, ohne {@code orgFilter}.
+ */
+@Repository
+public interface RechnungJobArtefaktRepository extends JpaRepository<RechnungJobArtefakt, Long> {
+
+    List<RechnungJobArtefakt> findByJobIdOrderByPosition(Long jobId);
+}
@@ -0,0 +1,60 @@
+package ch.nacht.repository;
+
+import ch.nacht.entity.RechnungJob;
+import ch.nacht.entity.RechnungJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Rechnungsläufe im Hintergrund. Der Worker hat keinen Request-Kontext: alle Abfragen sind
+ * org-explizit bzw. mandantenübergreifend (kein {@code orgFilter}).
+ */
+@Repository
+public interface RechnungJobRepository extends JpaRepository<RechnungJob, Long> {
+
+    Optional<RechnungJob> findByIdAndOrgId(Long id, Long orgId);
+
+    /** Laufende Jobs ohne Lebenszeichen seit {@code grenze} (Worker abgestürzt oder neu deployt). */
+    @Query("SELECT j.id FROM RechnungJob j WHERE j.status = ch.nacht.entity.RechnungJobStatus.LAUFEND "
+            + "AND j.aktualisiertAm < :grenze ORDER BY j.id")
+    List<Long> findVerwaisteIds(@Param("grenze") LocalDateTime grenze);
+
+    /**
+     * Übernimmt einen verwaisten Job (Lebenszeichen setzen). Liefert 0, wenn ein anderer Worker
+     * schneller war oder der Job nicht mehr läuft.
+     */
+    @Modifying
+    @Query("UPDATE RechnungJob j SET j.aktualisiertAm = :jetzt WHERE j.id = :id "
+            + "AND j.status = ch.nacht.entity.RechnungJobStatus.LAUFEND AND j.aktualisiertAm < :grenze")
+    int uebernimm(@Param("id") Long id, @Param("grenze") LocalDateTime grenze, @Param("jetzt") LocalDateTime jetzt);
+
+    /** Lebenszeichen für die Jobs einer Instanz (auch wartende), damit sie nicht als verwaist gelten. */
+    @Modifying
+    @Query("UPDATE RechnungJob j SET j.aktualisiertAm = :jetzt WHERE j.id IN :ids "
+            + "AND j.status = ch.nacht.entity.RechnungJobStatus.LAUFEND")
+    int meldeLebenszeichen(@Param("ids") Collection<Long> ids, @Param("jetzt") LocalDateTime jetzt);
+
+    /**
+     * Schreibt die High-Water-Mark fort. Liefert 0, wenn der Job nicht mehr läuft (abgebrochen) –
+     * der Worker hört dann auf.
+     */
+    @Modifying
+    @Query("UPDATE RechnungJob j SET j.erledigt = :erledigt, j.aktualisiertAm = :jetzt WHERE j.id = :id "
+            + "AND j.status = ch.nacht.entity.RechnungJobStatus.LAUFEND")
+    int schreibeFort(@Param("id") Long id, @Param("erledigt") int erledigt, @Param("jetzt") LocalDateTime jetzt);
+
+    /** Setzt den Endzustand eines laufenden Jobs; 0, wenn er bereits beendet ist. */
+    @Modifying
+    @Query("UPDATE RechnungJob j SET j.status = :status, j.fehler = :fehler, j.aktualisiertAm = :jetzt "
+            + "WHERE j.id = :id AND j.status = ch.nacht.entity.RechnungJobStatus.LAUFEND")
+    int beende(@Param("id") Long id, @Param("status") RechnungJobStatus status, @Param("fehler") String fehler,
+               @Param("jetzt") LocalDateTime jetzt);
+}
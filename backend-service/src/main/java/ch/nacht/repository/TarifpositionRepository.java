@@ -41,13 +41,13 @@ public interface TarifpositionRepository extends JpaRepository<Tarifposition, Lo
      * @param vonQuartal Quarter of the period start
      * @param bisJahr Year of the period end
      * @param bisQuartal Quarter of the period end
-     * @return Positions with a quantity greater than zero, oldest quarter first
+     * @return Positions with a quantity greater than zero (tariff fetched), oldest quarter first
      */
-    @Query("SELECT p FROM Tarifposition p WHERE p.einheit.id IN :einheitIds "
+    @Query("SELECT p FROM Tarifposition p JOIN FETCH p.tarif t WHERE p.einheit.id IN :einheitIds "
             + "AND p.menge > 0 "
             + "AND (p.jahr * 4 + p.quartal) >= (:vonJahr * 4 + :vonQuartal) "
             + "AND (p.jahr * 4 + p.quartal) <= (:bisJahr * 4 + :bisQuartal) "
-            + "ORDER BY p.jahr, p.quartal, p.tarif.bezeichnung")
+            + "ORDER BY p.jahr, p.quartal, t.bezeichnung")
     List<Tarifposition> findByEinheitIdsAndQuartalOverlapping(
             @Param("einheitIds") Collection<Long> einheitIds,
             @Param("vonJahr") int vonJahr,
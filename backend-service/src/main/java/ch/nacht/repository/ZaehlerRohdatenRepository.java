@@ -37,4 +37,68 @@ public interface ZaehlerRohdatenRepository extends JpaRepository<ZaehlerRohdaten
     int markVerarbeitet(@Param("einheitId") Long einheitId,
                         @Param("bis") LocalDateTime bis,
                         @Param("jetzt") LocalDateTime jetzt);
+
+    /**
+     * Markiert nur die Rohdaten eines Intervalls {@code (von, bis]} als verarbeitet (Streaming-
+     * Aggregation): verspätete Messungen früherer Intervalle bleiben für den Cron-Job offen.
+     */
+    @Modifying
+    @Query("UPDATE ZaehlerRohdaten r SET r.verarbeitet = true, r.verarbeitetAm = :jetzt "
+            + "WHERE r.einheitId = :einheitId AND r.zeit > :von AND r.zeit <= :bis AND r.verarbeitet = false")
+    int markVerarbeitetImIntervall(@Param("einheitId") Long einheitId,
+                                   @Param("von") LocalDateTime von,
+                                   @Param("bis") LocalDateTime bis,
+                                   @Param("jetzt") LocalDateTime jetzt);
+
+    /**
+     * Mengenbasierte Aggregation: alle Intervalle {@code (ende - 15 min, ende]} in
+     * {@code (von, bis]} mit mindestens einer Messung, je Intervall der letzte Stand und –
+     * per {@code LAG()} – der Referenzstand (letzter Stand des vorangehenden belegten Intervalls
+     * bzw. letzter Stand {@code <= von}). Entspricht je Intervall den beiden
+     * {@code findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc}-Lookups.
+     *
+     * <p>Rückgabe je Zeile, aufsteigend nach {@code ende}:
+     * {@code [ende, referenz_zeit, delta_bezug, delta_einspeisung, referenz_seriennummer,
+     * seriennummer]}; ohne Referenzstand sind die Referenz-/Delta-Spalten {@code NULL}.
+     * Die Deltas sind roh (ggf. negativ) – Reset-Guard und Zählertausch-Prüfung macht der Aufrufer.
+     */
+    @Query(value = """
+        WITH letzte AS (
+            SELECT DISTINCT ON (b.ende) b.ende, b.zeit, b.zaehlerstand_bezug, b.zaehlerstand_einspeisung, b.seriennummer
+            FROM (
+                SELECT r.*,
+                       date_bin('15 minutes', r.zeit - INTERVAL '1 microsecond', TIMESTAMP '2000-01-01')
+                           + INTERVAL '15 minutes' AS ende
+                FROM zev.zaehler_rohdaten r
+                WHERE r.einheit_id = :einheitId AND r.zeit > :von AND r.zeit <= :bis
+            ) b
+            ORDER BY b.ende, b.zeit DESC
+        ),
+        referenz AS (
+            SELECT CAST(:von AS timestamp) AS ende, r.zeit, r.zaehlerstand_bezug, r.zaehlerstand_einspeisung, r.seriennummer
+            FROM zev.zaehler_rohdaten r
+            WHERE r.einheit_id = :einheitId AND r.zeit <= :von
+            ORDER BY r.zeit DESC
+            LIMIT 1
+        ),
+        folge AS (
+            SELECT s.ende, s.zeit, s.zaehlerstand_bezug, s.zaehlerstand_einspeisung, s.seriennummer,
+                   LAG(s.zeit) OVER w AS ref_zeit,
+                   LAG(s.zaehlerstand_bezug) OVER w AS ref_bezug,
+                   LAG(s.zaehlerstand_einspeisung) OVER w AS ref_einspeisung,
+                   LAG(s.seriennummer) OVER w AS ref_seriennummer
+            FROM (SELECT * FROM referenz UNION ALL SELECT * FROM letzte) s
+            WINDOW w AS (ORDER BY s.ende)
+        )
+        SELECT f.ende, f.ref_zeit,
+               f.zaehlerstand_bezug - f.ref_bezug,
+               f.zaehlerstand_einspeisung - f.ref_einspeisung,
+               f.ref_seriennummer, f.seriennummer
+        FROM folge f
+        WHERE f.ende > :von
+        ORDER BY f.ende
+        """, nativeQuery = true)
+    List<Object[]> findIntervallDeltas(@Param("einheitId") Long einheitId,
+                                       @Param("von") LocalDateTime von,
+                                       @Param("bis") LocalDateTime bis);
 }
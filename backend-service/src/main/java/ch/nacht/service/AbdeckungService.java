@@ -0,0 +1,150 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.AbdeckungsLueckeDTO;
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.repository.EinheitRepository;
+import ch.nacht.repository.MesswerteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vollständigkeit der 15-Minuten-Messwerte je Einheit über die Abdeckungs-Bitmaps
+ * ({@code zev.messwerte_abdeckung}, 96 Bit je Einheit und Tag, per Trigger gepflegt).
+ *
+ * <p>Statt Zeitstempel aus {@code zev.messwerte} zu laden und zu vergleichen, wird je Einheit
+ * und Tag nur eine Bitmap gelesen: Lücken sind Folgen nicht gesetzter Bits (auch über
+ * Tagesgrenzen hinweg).
+ *
+ * <p>Die Bits folgen der lokalen Uhrzeit ({@code messwerte.zeit} ohne Offset, Europe/Zurich):
+ * Am Tag der Umstellung auf Sommerzeit existieren 02:00 bis 02:45 nicht und zählen nicht als
+ * Lücke; die doppelte Stunde im Oktober ist im lokalen Raster nicht unterscheidbar.
+ */
+@Service
+public class AbdeckungService {
+
+    private static final Logger log = LoggerFactory.getLogger(AbdeckungService.class);
+
+    static final int INTERVALLE_PRO_TAG = 96;
+    /** Bits 64..95 liegen in den oberen 32 Bit des zweiten Werts. */
+    private static final long VOLL_TEIL_2 = 0xFFFF_FFFF_0000_0000L;
+    private static final ZoneRules ZONEN_REGELN = MesswerteAggregatService.ZONE.getRules();
+
+    private final MesswerteRepository messwerteRepository;
+    private final EinheitRepository einheitRepository;
+    private final HibernateFilterService hibernateFilterService;
+    private final OrganizationContextService organizationContextService;
+    private final Clock clock;
+
+    public AbdeckungService(MesswerteRepository messwerteRepository,
+                            EinheitRepository einheitRepository,
+                            HibernateFilterService hibernateFilterService,
+                            OrganizationContextService organizationContextService,
+                            Clock clock) {
+        this.messwerteRepository = messwerteRepository;
+        this.einheitRepository = einheitRepository;
+        this.hibernateFilterService = hibernateFilterService;
+        this.organizationContextService = organizationContextService;
+        this.clock = clock;
+    }
+
+    /**
+     * Lückenbericht für {@code von} bis {@code bis} (inklusive): je Einheit die zusammenhängenden
+     * fehlenden Intervalle, über Tagesgrenzen zusammengefasst. Intervalle nach {@code jetzt}
+     * zählen nicht als Lücke. Ladestationen erhalten keine Messwerte und fehlen im Bericht.
+     */
+    @Transactional(readOnly = true)
+    public List<AbdeckungsLueckeDTO> ermittleLuecken(LocalDate von, LocalDate bis) {
+        hibernateFilterService.enableOrgFilter();
+        Long orgId = organizationContextService.getCurrentOrgId();
+        LocalDateTime jetzt = LocalDateTime.now(clock);
+
+        // einheitId → (Tag → Bitmap); Abfrage ist nach Einheit und Tag sortiert
+        Map<Long, Map<LocalDate, long[]>> bitmaps = new HashMap<>();
+        for (Object[] zeile : messwerteRepository.findAbdeckungBetween(orgId, von, bis)) {
+            bitmaps.computeIfAbsent(((Number) zeile[0]).longValue(), id -> new HashMap<>())
+                    .put(alsDatum(zeile[1]),
+                            new long[]{((Number) zeile[2]).longValue(), ((Number) zeile[3]).longValue()});
+        }
+
+        List<AbdeckungsLueckeDTO> luecken = new ArrayList<>();
+        for (Einheit einheit : einheitRepository.findAll()) {
+            if (einheit.getTyp() == EinheitTyp.LADESTATION) {
+                continue;
+            }
+            sammleLuecken(einheit, bitmaps.getOrDefault(einheit.getId(), Map.of()), von, bis, jetzt, luecken);
+        }
+        log.info("Lückenbericht {} – {}: {} Lücken", von, bis, luecken.size());
+        return luecken;
+    }
+
+    static void sammleLuecken(Einheit einheit, Map<LocalDate, long[]> tage, LocalDate von, LocalDate bis,
+                              LocalDateTime jetzt, List<AbdeckungsLueckeDTO> luecken) {
+        LocalDateTime lueckeVon = null;
+        LocalDateTime lueckeBis = null;
+        int anzahl = 0;
+        for (LocalDate tag = von; !tag.isAfter(bis); tag = tag.plusDays(1)) {
+            long[] bitmap = tage.get(tag);
+            if (bitmap != null && bitmap[0] == -1L && bitmap[1] == VOLL_TEIL_2) {
+                // Voller Tag: offene Lücke endet am Vortag 23:45
+                if (lueckeVon != null) {
+                    luecken.add(luecke(einheit, lueckeVon, lueckeBis, anzahl));
+                    lueckeVon = null;
+                }
+                continue;
+            }
+            LocalDateTime tagesbeginn = tag.atStartOfDay();
+            for (int slot = 0; slot < INTERVALLE_PRO_TAG; slot++) {
+                LocalDateTime zeit = tagesbeginn.plusMinutes(15L * slot);
+                if (zeit.isAfter(jetzt)) {
+                    break;
+                }
+                if (ZONEN_REGELN.getValidOffsets(zeit).isEmpty()) {
+                    // Lokale Zeit in der Sommerzeit-Lücke: kein Intervall, eine offene Lücke läuft weiter
+                    continue;
+                }
+                if (bitmap != null && gesetzt(bitmap, slot)) {
+                    if (lueckeVon != null) {
+                        luecken.add(luecke(einheit, lueckeVon, lueckeBis, anzahl));
+                        lueckeVon = null;
+                    }
+                } else if (lueckeVon == null) {
+                    lueckeVon = zeit;
+                    lueckeBis = zeit;
+                    anzahl = 1;
+                } else {
+                    lueckeBis = zeit;
+                    anzahl++;
+                }
+            }
+        }
+        if (lueckeVon != null) {
+            luecken.add(luecke(einheit, lueckeVon, lueckeBis, anzahl));
+        }
+    }
+
+    /** Intervall {@code slot} (0 = 00:00) gesetzt; Bit 0 ist das höchstwertige Bit. */
+    static boolean gesetzt(long[] bitmap, int slot) {
+        return ((bitmap[slot >>> 6] >>> (63 - (slot & 63))) & 1L) != 0;
+    }
+
+    private static AbdeckungsLueckeDTO luecke(Einheit einheit, LocalDateTime von, LocalDateTime bis,
+                                              int anzahl) {
+        return new AbdeckungsLueckeDTO(einheit.getId(), einheit.getName(), von, bis, anzahl);
+    }
+
+    private static LocalDate alsDatum(Object wert) {
+        return wert instanceof java.sql.Date datum ? datum.toLocalDate() : (LocalDate) wert;
+    }
+}
@@ -0,0 +1,64 @@
+package ch.nacht.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotoner Datenstand je Mandant für ETags und bedingte GETs ({@code If-None-Match}).
+ *
+ * <p>Jeder schreibende Vorgang, der Statistik, Messwerte, Tarife, Einheiten oder Einstellungen
+ * eines Mandanten ändert, ruft {@link #erhoehe(Long)} auf – innerhalb einer Transaktion erst
+ * <b>nach dem Commit</b> (wie {@link StatistikCache#verwerfe}), damit ein paralleler Leser den
+ * alten Stand nicht unter der neuen Version ausliefert.
+ *
+ * <p>Der Zähler lebt im Speicher der Instanz (wie der Statistik-Cache). Die Epoche (Startzeit)
+ * ist Teil des ETags: nach einem Neustart passt kein alter ETag mehr.
+ */
+@Service
+public class DatenVersionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DatenVersionService.class);
+
+    private final long epoche = System.currentTimeMillis();
+    private final ConcurrentMap<Long, AtomicLong> versionen = new ConcurrentHashMap<>();
+
+    /** Startzeit dieser Instanz; unterscheidet Versionen über Neustarts hinweg. */
+    public long epoche() {
+        return epoche;
+    }
+
+    /** Aktuelle Version des Mandanten ({@code 0} bis zur ersten Änderung). */
+    public long version(Long orgId) {
+        AtomicLong version = versionen.get(orgId);
+        return version != null ? version.get() : 0L;
+    }
+
+    /** Erhöht die Version des Mandanten – nach dem Commit, sonst sofort. */
+    public void erhoehe(Long orgId) {
+        if (orgId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    erhoeheSofort(orgId);
+                }
+            });
+        } else {
+            erhoeheSofort(orgId);
+        }
+    }
+
+    private void erhoeheSofort(Long orgId) {
+        long neu = versionen.computeIfAbsent(orgId, id -> new AtomicLong()).incrementAndGet();
+        log.debug("Datenversion org={} → {}", orgId, neu);
+    }
+}
@@ -2,21 +2,30 @@ package ch.nacht.service;
 
 import ch.nacht.dto.DebitorDTO;
 import ch.nacht.entity.Debitor;
+import ch.nacht.entity.Mieter;
 import ch.nacht.repository.DebitorRepository;
-import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.MieterEinheitRepository;
 import ch.nacht.repository.MieterRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * Service for managing debitor entries (invoice tracking).
@@ -26,25 +35,53 @@ public class DebitorService {
 
     private static final Logger log = LoggerFactory.getLogger(DebitorService.class);
 
+    /** Wie {@link DebitorRepository#upsert}, als JDBC-Batch für ganze Rechnungsläufe. */
+    private static final String UPSERT_SQL = """
+            INSERT INTO zev.debitor (mieter_id, betrag, datum_von, datum_bis, zahldatum, org_id)
+            VALUES (?, ?, ?, ?, NULL, ?)
+            ON CONFLICT (mieter_id, datum_von, org_id)
+            DO UPDATE SET betrag = EXCLUDED.betrag, datum_bis = EXCLUDED.datum_bis
+            WHERE zev.debitor.zahldatum IS NULL
+            """;
+
+    /** Sortable columns of the overview and their query expression (whitelist against sort injection). */
+    private static final Map<String, String> SORTIERBAR = Map.of(
+            "datumVon", "d.datumVon",
+            "datumBis", "d.datumBis",
+            "betrag", "d.betrag",
+            "zahldatum", "d.zahldatum",
+            "mieterName", "m.name");
+
+    /**
+     * Debitor entry of a generated invoice ({@link #upsertFromRechnungen}).
+     *
+     * @param mieterId FK to mieter
+     * @param betrag   Invoice amount in CHF
+     * @param datumVon Start of billing period
+     * @param datumBis End of billing period
+     */
+    public record RechnungsForderung(Long mieterId, BigDecimal betrag, LocalDate datumVon, LocalDate datumBis) {
+    }
+
     private final DebitorRepository debitorRepository;
     private final MieterRepository mieterRepository;
-    private final EinheitRepository einheitRepository;
     private final MieterEinheitRepository mieterEinheitRepository;
     private final OrganizationContextService organizationContextService;
     private final HibernateFilterService hibernateFilterService;
+    private final JdbcTemplate jdbcTemplate;
 
     public DebitorService(DebitorRepository debitorRepository,
                           MieterRepository mieterRepository,
-                          EinheitRepository einheitRepository,
                           MieterEinheitRepository mieterEinheitRepository,
                           OrganizationContextService organizationContextService,
-                          HibernateFilterService hibernateFilterService) {
+                          HibernateFilterService hibernateFilterService,
+                          JdbcTemplate jdbcTemplate) {
         this.debitorRepository = debitorRepository;
         this.mieterRepository = mieterRepository;
-        this.einheitRepository = einheitRepository;
         this.mieterEinheitRepository = mieterEinheitRepository;
         this.organizationContextService = organizationContextService;
         this.hibernateFilterService = hibernateFilterService;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     /**
@@ -58,9 +95,35 @@ public class DebitorService {
     public List<DebitorDTO> getDebitoren(LocalDate von, LocalDate bis) {
         hibernateFilterService.enableOrgFilter();
         log.info("Loading debitors from {} to {}", von, bis);
-        return debitorRepository.findByDatumVonBetween(von, bis).stream()
-                .map(this::toDTO)
-                .toList();
+        return toDTOs(debitorRepository.findMitMieterNameByDatumVonBetween(von, bis));
+    }
+
+    /**
+     * Get a filtered, sorted page of debitor entries for the given date range. Like
+     * {@link #getDebitoren}, the page is loaded with two queries regardless of its size.
+     *
+     * @param von          Start date (inclusive)
+     * @param bis          End date (inclusive)
+     * @param offen        {@code true} = unpaid only, {@code false} = paid only, {@code null} = all
+     * @param suche        Part of the tenant or unit name (case-insensitive), blank = all
+     * @param page         Page number (0-based)
+     * @param size         Page size
+     * @param sortSpalte   Sort column (datumVon, datumBis, betrag, zahldatum, mieterName)
+     * @param sortRichtung ASC or DESC
+     * @return Page of debitor DTOs
+     */
+    @Transactional(readOnly = true)
+    public Slice<DebitorDTO> getSeite(LocalDate von, LocalDate bis, Boolean offen, String suche,
+                                      int page, int size, String sortSpalte, String sortRichtung) {
+        hibernateFilterService.enableOrgFilter();
+        Sort.Direction dir = "DESC".equalsIgnoreCase(sortRichtung) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        String property = SORTIERBAR.getOrDefault(sortSpalte, "d.datumVon");
+        // Eindeutige Nachsortierung, damit die Seitengrenzen stabil bleiben
+        Pageable pageable = PageRequest.of(page, size, Sort.by(dir, property).and(Sort.by("d.id")));
+        String muster = suche == null || suche.isBlank()
+                ? null : "%" + suche.strip().toLowerCase(Locale.ROOT) + "%";
+        Slice<Object[]> zeilen = debitorRepository.findMitMieterNameByFilter(von, bis, offen, muster, pageable);
+        return new SliceImpl<>(toDTOs(zeilen.getContent()), pageable, zeilen.hasNext());
     }
 
     /**
@@ -149,11 +212,50 @@ public class DebitorService {
      */
     @Transactional
     public void upsertFromRechnung(Long mieterId, BigDecimal betrag, LocalDate datumVon, LocalDate datumBis) {
-        Long orgId = organizationContextService.getCurrentOrgId();
+        upsertFromRechnungForOrg(organizationContextService.getCurrentOrgId(), mieterId, betrag, datumVon, datumBis);
+    }
+
+    /**
+     * Upsert a debitor entry for an explicitly given tenant organisation — for background invoice
+     * jobs without request context. Same semantics as {@link #upsertFromRechnung}.
+     */
+    @Transactional
+    public void upsertFromRechnungForOrg(Long orgId, Long mieterId, BigDecimal betrag,
+                                         LocalDate datumVon, LocalDate datumBis) {
         debitorRepository.upsert(mieterId, betrag, datumVon, datumBis, orgId);
         log.info("Upserted debitor for mieterId={}, datumVon={}, betrag={}", mieterId, datumVon, betrag);
     }
 
+    /**
+     * Upsert the debitor entries of a whole invoice run in one JDBC batch and one transaction,
+     * instead of one round trip per invoice. Same semantics as calling {@link #upsertFromRechnung}
+     * for each entry in order: a later entry with the same key (mieter, datumVon) wins; paid
+     * entries (zahldatum set) are not changed.
+     *
+     * @param forderungen Debitor entries of the run
+     */
+    @Transactional
+    public void upsertFromRechnungen(List<RechnungsForderung> forderungen) {
+        if (forderungen.isEmpty()) {
+            return;
+        }
+        Long orgId = organizationContextService.getCurrentOrgId();
+        // Nach Schlüssel sortiert (stabil: Duplikate behalten ihre Reihenfolge), damit parallele
+        // Läufe die Zeilen in derselben Reihenfolge sperren
+        List<RechnungsForderung> zeilen = forderungen.stream()
+                .sorted(Comparator.comparing(RechnungsForderung::mieterId)
+                        .thenComparing(RechnungsForderung::datumVon))
+                .toList();
+        jdbcTemplate.batchUpdate(UPSERT_SQL, zeilen, zeilen.size(), (ps, f) -> {
+            ps.setLong(1, f.mieterId());
+            ps.setBigDecimal(2, f.betrag());
+            ps.setObject(3, f.datumVon());
+            ps.setObject(4, f.datumBis());
+            ps.setLong(5, orgId);
+        });
+        log.info("Upserted {} debitors for org {} in one batch", zeilen.size(), orgId);
+    }
+
     private void validate(DebitorDTO dto) {
         if (dto.getMieterId() == null) {
             throw new IllegalArgumentException("Mieter ist Pflicht");
@@ -173,6 +275,40 @@ public class DebitorService {
     }
 
     private DebitorDTO toDTO(Debitor d) {
+        String mieterName = mieterRepository.findById(d.getMieterId()).map(Mieter::getName).orElse(null);
+        return toDTO(d, mieterName, einheitNamen(List.of(d.getMieterId())));
+    }
+
+    /**
+     * Maps rows {@code [debitor, mieterName]}; the unit names of all tenants are loaded with one
+     * further query.
+     */
+    private List<DebitorDTO> toDTOs(List<Object[]> zeilen) {
+        if (zeilen.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, String> einheiten = einheitNamen(zeilen.stream()
+                .map(z -> ((Debitor) z[0]).getMieterId())
+                .distinct()
+                .toList());
+        return zeilen.stream()
+                .map(z -> toDTO((Debitor) z[0], (String) z[1], einheiten))
+                .toList();
+    }
+
+    /**
+     * Unit names per tenant, joined with ", " — a tenant can be assigned to several units
+     * (Wohnung + Ladestation(en)); the debitor list shows all of them.
+     */
+    private Map<Long, String> einheitNamen(List<Long> mieterIds) {
+        Map<Long, String> namen = new HashMap<>();
+        for (Object[] zeile : mieterEinheitRepository.findEinheitNamenByMieterIdIn(mieterIds)) {
+            namen.merge((Long) zeile[0], (String) zeile[1], (a, b) -> a + ", " + b);
+        }
+        return namen;
+    }
+
+    private DebitorDTO toDTO(Debitor d, String mieterName, Map<Long, String> einheiten) {
         DebitorDTO dto = new DebitorDTO();
         dto.setId(d.getId());
         dto.setMieterId(d.getMieterId());
@@ -180,17 +316,10 @@ public class DebitorService {
         dto.setDatumVon(d.getDatumVon());
         dto.setDatumBis(d.getDatumBis());
         dto.setZahldatum(d.getZahldatum());
-        mieterRepository.findById(d.getMieterId()).ifPresent(m -> {
-            dto.setMieterName(m.getName());
-            // Ein Mieter kann mehreren Einheiten zugeordnet sein (Wohnung + Ladestation(en)) -
-            // fuer die Debitorenanzeige werden alle Namen genannt.
-            String einheiten = mieterEinheitRepository.findEinheitIdsByMieterId(m.getId()).stream()
-                    .map(einheitRepository::findById)
-                    .filter(Optional::isPresent)
-                    .map(e -> e.get().getName())
-                    .collect(Collectors.joining(", "));
-            dto.setEinheitName(einheiten.isEmpty() ? null : einheiten);
-        });
+        if (mieterName != null) {
+            dto.setMieterName(mieterName);
+            dto.setEinheitName(einheiten.get(d.getMieterId()));
+        }
         return dto;
     }
 }
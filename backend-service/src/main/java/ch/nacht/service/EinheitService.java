@@ -21,15 +21,18 @@ public class EinheitService {
     private final MieterEinheitRepository mieterEinheitRepository;
     private final OrganizationContextService organizationContextService;
     private final HibernateFilterService hibernateFilterService;
+    private final DatenVersionService datenVersionService;
 
     public EinheitService(EinheitRepository einheitRepository,
                           MieterEinheitRepository mieterEinheitRepository,
                           OrganizationContextService organizationContextService,
-                          HibernateFilterService hibernateFilterService) {
+                          HibernateFilterService hibernateFilterService,
+                          DatenVersionService datenVersionService) {
         this.einheitRepository = einheitRepository;
         this.mieterEinheitRepository = mieterEinheitRepository;
         this.organizationContextService = organizationContextService;
         this.hibernateFilterService = hibernateFilterService;
+        this.datenVersionService = datenVersionService;
     }
 
     @Transactional(readOnly = true)
@@ -52,7 +55,9 @@ public class EinheitService {
         }
         pruefeLadestationMesspunkt(einheit, -1L);
         einheit.setOrgId(organizationContextService.getCurrentOrgId());
-        return einheitRepository.save(einheit);
+        Einheit saved = einheitRepository.save(einheit);
+        datenVersionService.erhoehe(saved.getOrgId());
+        return saved;
     }
 
     @Transactional
@@ -68,7 +73,9 @@ public class EinheitService {
         pruefeLadestationMesspunkt(einheit, id);
         einheit.setId(id);
         einheit.setOrgId(existingEinheit.get().getOrgId());
-        return Optional.of(einheitRepository.save(einheit));
+        Einheit saved = einheitRepository.save(einheit);
+        datenVersionService.erhoehe(saved.getOrgId());
+        return Optional.of(saved);
     }
 
     /**
@@ -109,6 +116,7 @@ public class EinheitService {
                     "Einheit kann nicht gelöscht werden: " + zugeordneteMieter + " Mieter zugeordnet");
         }
         einheitRepository.deleteById(id);
+        datenVersionService.erhoehe(organizationContextService.getCurrentOrgId());
         return true;
     }
 }
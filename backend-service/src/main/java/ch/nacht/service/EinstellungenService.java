@@ -28,11 +28,14 @@ public class EinstellungenService {
 
     private final OrganisationRepository organisationRepository;
     private final OrganizationContextService organizationContextService;
+    private final DatenVersionService datenVersionService;
 
     public EinstellungenService(OrganisationRepository organisationRepository,
-                                OrganizationContextService organizationContextService) {
+                                OrganizationContextService organizationContextService,
+                                DatenVersionService datenVersionService) {
         this.organisationRepository = organisationRepository;
         this.organizationContextService = organizationContextService;
+        this.datenVersionService = datenVersionService;
     }
 
     /**
@@ -114,6 +117,7 @@ public class EinstellungenService {
         org.setKonfiguration(toJson(dto.getRechnung()));
         Organisation saved = organisationRepository.save(org);
         log.info("Settings saved for organisation ID: {}", saved.getId());
+        datenVersionService.erhoehe(orgId);
         return toDTO(saved);
     }
 
@@ -0,0 +1,13 @@
+package ch.nacht.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Geprüfter, noch nicht geschriebener Export (wird beim Senden der Antwort ausgeführt), z.B.
+ * {@link MesswerteCsvSchreiber} oder {@link MesswerteSpaltenSchreiber}.
+ */
+@FunctionalInterface
+public interface ExportAusgabe {
+    void schreibeNach(OutputStream out) throws IOException;
+}
@@ -0,0 +1,130 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.MesswerteAggregatDTO;
+import ch.nacht.repository.EinheitRepository;
+import ch.nacht.repository.MesswerteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Zeitreihen-Aggregation für Diagramme und Auswertungen: Summen von {@code total}, {@code zev}
+ * und {@code zev_calculated} je Einheit und Bucket, gruppiert in PostgreSQL
+ * ({@code date_trunc}) statt 15-Minuten-Zeilen zu laden und im Client zu summieren.
+ *
+ * <p>{@code messwerte.zeit} ist lokale Zeit ohne Offset (Europe/Zurich, siehe
+ * ZaehlerAggregationService), {@code date_trunc} liefert damit lokale Stunden-, Tages-, Wochen-
+ * (Montag) und Monatsgrenzen. Gebuckt wird auf der lokalen Uhrzeit, nicht auf Instants: Im März
+ * fehlt die Stunde 02:00 (23 Stunden-Buckets), im Oktober gibt es 24 – die doppelte Stunde 02:00
+ * ist im lokalen Raster nicht unterscheidbar und bildet <b>einen</b> Bucket. Der Bucket-Beginn
+ * wird mit dem an diesem Zeitpunkt gültigen Offset ausgeliefert, bei der doppelten Stunde mit
+ * dem früheren (Sommerzeit).
+ */
+@Service
+public class MesswerteAggregatService {
+
+    private static final Logger log = LoggerFactory.getLogger(MesswerteAggregatService.class);
+
+    static final ZoneId ZONE = ZoneId.of("Europe/Zurich");
+
+    /** Erlaubte Bucket-Grössen ({@code date_trunc}-Feld). */
+    public enum Bucket {
+        HOUR, DAY, WEEK, MONTH;
+
+        String feld() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /** {@code "hour"}, {@code "Day"}, ... → Bucket; unbekannt → {@link IllegalArgumentException}. */
+        public static Bucket von(String wert) {
+            try {
+                return valueOf(wert.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Unbekannter Bucket: " + wert);
+            }
+        }
+    }
+
+    private final MesswerteRepository messwerteRepository;
+    private final EinheitRepository einheitRepository;
+    private final HibernateFilterService hibernateFilterService;
+    private final OrganizationContextService organizationContextService;
+
+    public MesswerteAggregatService(MesswerteRepository messwerteRepository,
+                                    EinheitRepository einheitRepository,
+                                    HibernateFilterService hibernateFilterService,
+                                    OrganizationContextService organizationContextService) {
+        this.messwerteRepository = messwerteRepository;
+        this.einheitRepository = einheitRepository;
+        this.hibernateFilterService = hibernateFilterService;
+        this.organizationContextService = organizationContextService;
+    }
+
+    /**
+     * Summen je Einheit und Bucket für {@code dateFrom} bis {@code dateTo} (inklusive). Jede
+     * angefragte Einheit erscheint in der Antwort, ohne Messwerte mit leeren Spalten.
+     */
+    @Transactional(readOnly = true)
+    public MesswerteAggregatDTO aggregiere(Bucket bucket, List<Long> einheitIds, LocalDate dateFrom, LocalDate dateTo) {
+        hibernateFilterService.enableOrgFilter();
+        Long orgId = organizationContextService.getCurrentOrgId();
+
+        List<Long> ids = einheitIds.stream().distinct().toList();
+        if (ids.isEmpty() || einheitRepository.findAllById(ids).size() != ids.size()) {
+            log.error("Einheit not found - einheitIds: {}", ids);
+            throw new IllegalArgumentException("Einheit not found");
+        }
+
+        Map<Long, List<Object[]>> zeilenJeEinheit = new LinkedHashMap<>();
+        for (Long id : ids) {
+            zeilenJeEinheit.put(id, new ArrayList<>());
+        }
+        List<Object[]> zeilen = messwerteRepository.sumByEinheitAndBucket(orgId, bucket.feld(), ids,
+                dateFrom.atStartOfDay(), dateTo.plusDays(1).atStartOfDay());
+        for (Object[] zeile : zeilen) {
+            zeilenJeEinheit.get(((Number) zeile[0]).longValue()).add(zeile);
+        }
+
+        List<MesswerteAggregatDTO.Reihe> reihen = new ArrayList<>(ids.size());
+        zeilenJeEinheit.forEach((einheitId, werte) -> reihen.add(reihe(einheitId, werte)));
+        log.info("Aggregat {} für {} Einheiten ({} – {}): {} Buckets", bucket, ids.size(), dateFrom, dateTo,
+                zeilen.size());
+        return new MesswerteAggregatDTO(bucket.feld(), reihen);
+    }
+
+    private static MesswerteAggregatDTO.Reihe reihe(Long einheitId, List<Object[]> werte) {
+        int n = werte.size();
+        List<OffsetDateTime> zeit = new ArrayList<>(n);
+        double[] total = new double[n];
+        double[] zev = new double[n];
+        double[] zevCalculated = new double[n];
+        for (int i = 0; i < n; i++) {
+            Object[] zeile = werte.get(i);
+            zeit.add(alsLokaleZeit(zeile[1]).atZone(ZONE).toOffsetDateTime());
+            total[i] = wert(zeile[2]);
+            zev[i] = wert(zeile[3]);
+            zevCalculated[i] = wert(zeile[4]);
+        }
+        return new MesswerteAggregatDTO.Reihe(einheitId, zeit, total, zev, zevCalculated);
+    }
+
+    private static LocalDateTime alsLokaleZeit(Object wert) {
+        return wert instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) wert;
+    }
+
+    private static double wert(Object wert) {
+        return wert != null ? ((Number) wert).doubleValue() : 0.0;
+    }
+}
@@ -0,0 +1,208 @@
+package ch.nacht.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Streamt den CSV-Export der 15-Minuten-Werte einer Einheit (Spec Export-Messdaten) direkt in
+ * die HTTP-Antwort – mit konstantem Speicherbedarf, unabhängig vom Zeitraum.
+ *
+ * <ul>
+ *   <li>Vorwärts-Cursor über JDBC ({@code fetchSize}, keine Entities), nur {@code zeit},
+ *       {@code total}, {@code zev}.</li>
+ *   <li>Zwei Durchläufe in <b>einer</b> read-only {@code REPEATABLE READ}-Transaktion: der erste
+ *       summiert die gerundeten Werte für die Kopfzeile (Header == Summe der Zeilen), der zweite
+ *       schreibt die Zeilen. Beide sehen denselben Datenstand.</li>
+ *   <li>Rundung auf 3 NKS in Tausendstel ({@code long}) statt über {@link BigDecimal}; nur Werte
+ *       nahe am Rundungspunkt gehen über die Dezimaldarstellung (Ergebnis identisch zu
+ *       {@code BigDecimal.valueOf(v).setScale(3, HALF_UP)}).</li>
+ * </ul>
+ *
+ * <p>Native SQL umgeht den orgFilter: Einheit und Mandant prüft der Aufrufer
+ * ({@link StatistikService#exportMesswerteCsv}); die Abfrage schränkt zusätzlich auf
+ * {@code org_id} ein.
+ */
+@Component
+public class MesswerteCsvSchreiber {
+
+    private static final Logger log = LoggerFactory.getLogger(MesswerteCsvSchreiber.class);
+
+    private static final int FETCH_SIZE = 2_000;
+    private static final int PUFFER_ZEICHEN = 64 * 1024;
+    /** Ab diesem Betrag (in Tausendstel) ist {@code v * 1000} nicht mehr genau genug. */
+    private static final double GRENZE_PRIMITIV = 1e9;
+    /** Abstand zum Rundungspunkt (in Tausendstel), unterhalb dessen exakt gerundet wird. */
+    private static final double TOLERANZ_RUNDUNGSPUNKT = 1e-6;
+
+    private static final String MESSWERTE_SQL = """
+            SELECT zeit, total, zev FROM zev.messwerte
+            WHERE org_id = ? AND einheit_id = ? AND zeit >= ? AND zeit < ?
+            ORDER BY zeit
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lesen;
+
+    public MesswerteCsvSchreiber(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lesen = new TransactionTemplate(transactionManager);
+        this.lesen.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.lesen.setReadOnly(true);
+    }
+
+    /**
+     * Export der Einheit für {@code von} bis {@code bis} (inklusive) mit den übersetzten
+     * Spaltentiteln. Liest erst beim Aufruf von {@link ExportAusgabe#schreibeNach}.
+     */
+    public ExportAusgabe export(Long orgId, Long einheitId, LocalDate von, LocalDate bis,
+                          String titelZeit, String titelTotal, String titelZev) {
+        Timestamp ab = Timestamp.valueOf(von.atStartOfDay());
+        Timestamp vor = Timestamp.valueOf(bis.plusDays(1).atStartOfDay());
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), PUFFER_ZEICHEN);
+            try {
+                lesen.executeWithoutResult(status -> {
+                    // 1. Durchlauf: Summen der gerundeten Werte für die Kopfzeile
+                    long[] summen = new long[3]; // total, zev, Zeilen
+                    leseZeilen(orgId, einheitId, ab, vor, rs -> {
+                        summen[0] += tausendstel(rs.getDouble(2));
+                        summen[1] += tausendstel(rs.getDouble(3));
+                        summen[2]++;
+                    });
+
+                    StringBuilder zeile = new StringBuilder(64);
+                    zeile.append(csv(titelZeit)).append(',')
+                            .append(csv(titelTotal + " (" + formatiere(summen[0]) + ")")).append(',')
+                            .append(csv(titelZev + " (" + formatiere(summen[1]) + ")")).append('\n');
+                    schreibe(writer, zeile);
+
+                    // 2. Durchlauf: Zeilen (Zeit dd.MM.yyyy HH:mm, Punkt-Dezimal, 3 NKS)
+                    leseZeilen(orgId, einheitId, ab, vor, rs -> {
+                        zeile.setLength(0);
+                        haengeZeitAn(zeile, rs.getObject(1, LocalDateTime.class));
+                        zeile.append(',');
+                        haengeTausendstelAn(zeile, tausendstel(rs.getDouble(2)));
+                        zeile.append(',');
+                        haengeTausendstelAn(zeile, tausendstel(rs.getDouble(3)));
+                        zeile.append('\n');
+                        schreibe(writer, zeile);
+                    });
+                    log.info("CSV-Export für Einheit {} ({} – {}): {} Zeilen", einheitId, von, bis, summen[2]);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    private void leseZeilen(Long orgId, Long einheitId, Timestamp ab, Timestamp vor, RowCallbackHandler zeile) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(MESSWERTE_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setLong(1, orgId);
+            ps.setLong(2, einheitId);
+            ps.setTimestamp(3, ab);
+            ps.setTimestamp(4, vor);
+            return ps;
+        }, zeile);
+    }
+
+    private static void schreibe(Writer writer, StringBuilder zeile) {
+        try {
+            writer.append(zeile);
+        } catch (IOException e) {
+            // z.B. Client hat den Download abgebrochen → Cursor-Transaktion beenden
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Auf 3 NKS gerundeter Wert in Tausendstel, HALF_UP wie
+     * {@code BigDecimal.valueOf(v).setScale(3, HALF_UP)} ({@code null}/SQL-NULL → 0).
+     */
+    static long tausendstel(double v) {
+        double skaliert = Math.abs(v * 1000.0);
+        double rest = skaliert - Math.floor(skaliert);
+        if (skaliert >= GRENZE_PRIMITIV || Math.abs(rest - 0.5) < TOLERANZ_RUNDUNGSPUNKT) {
+            // Nahe am Rundungspunkt entscheidet die Dezimaldarstellung (wie bisher über BigDecimal)
+            return BigDecimal.valueOf(v).setScale(3, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+        long gerundet = (long) Math.floor(skaliert + 0.5);
+        return v < 0 ? -gerundet : gerundet;
+    }
+
+    /** Tausendstel als Dezimalzahl mit genau 3 NKS ({@code 1500 → "1.500"}, {@code 0 → "0.000"}). */
+    static String formatiere(long tausendstel) {
+        StringBuilder sb = new StringBuilder(16);
+        haengeTausendstelAn(sb, tausendstel);
+        return sb.toString();
+    }
+
+    private static void haengeTausendstelAn(StringBuilder sb, long tausendstel) {
+        long betrag = tausendstel;
+        if (betrag < 0) {
+            sb.append('-');
+            betrag = -betrag;
+        }
+        long rest = betrag % 1000;
+        sb.append(betrag / 1000).append('.');
+        if (rest < 100) {
+            sb.append('0');
+        }
+        if (rest < 10) {
+            sb.append('0');
+        }
+        sb.append(rest);
+    }
+
+    /** {@code dd.MM.yyyy HH:mm} ohne Formatter-Objekte je Zeile. */
+    private static void haengeZeitAn(StringBuilder sb, LocalDateTime zeit) {
+        zweistellig(sb, zeit.getDayOfMonth());
+        sb.append('.');
+        zweistellig(sb, zeit.getMonthValue());
+        sb.append('.').append(zeit.getYear()).append(' ');
+        zweistellig(sb, zeit.getHour());
+        sb.append(':');
+        zweistellig(sb, zeit.getMinute());
+    }
+
+    private static void zweistellig(StringBuilder sb, int wert) {
+        if (wert < 10) {
+            sb.append('0');
+        }
+        sb.append(wert);
+    }
+
+    /** CSV-Feld escapen (nur nötig bei Komma/Quote/Zeilenumbruch, z.B. in übersetzten Titeln). */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -10,9 +10,9 @@ import ch.nacht.entity.Quelle;
 import ch.nacht.entity.Verteilmodus;
 import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.MesswerteRepository;
+import ch.nacht.util.ZeitreihenDownsampling;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -24,10 +24,16 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class MesswerteService {
@@ -40,6 +46,9 @@ public class MesswerteService {
     private final CalculationProgressService calculationProgressService;
     private final EinstellungenService einstellungenService;
     private final SystemmeldungService systemmeldungService;
+    private final StatistikCache statistikCache;
+    private final MesswerteSpaltenSchreiber spaltenSchreiber;
+    private final DatenVersionService datenVersionService;
 
     public MesswerteService(MesswerteRepository messwerteRepository,
                             EinheitRepository einheitRepository,
@@ -47,7 +56,10 @@ public class MesswerteService {
                             HibernateFilterService hibernateFilterService,
                             CalculationProgressService calculationProgressService,
                             EinstellungenService einstellungenService,
-                            SystemmeldungService systemmeldungService) {
+                            SystemmeldungService systemmeldungService,
+                            StatistikCache statistikCache,
+                            MesswerteSpaltenSchreiber spaltenSchreiber,
+                            DatenVersionService datenVersionService) {
         this.messwerteRepository = messwerteRepository;
         this.einheitRepository = einheitRepository;
         this.organizationContextService = organizationContextService;
@@ -55,11 +67,13 @@ public class MesswerteService {
         this.calculationProgressService = calculationProgressService;
         this.einstellungenService = einstellungenService;
         this.systemmeldungService = systemmeldungService;
+        this.statistikCache = statistikCache;
+        this.spaltenSchreiber = spaltenSchreiber;
+        this.datenVersionService = datenVersionService;
         log.info("MesswerteService initialized");
     }
 
     @Transactional
-    @CacheEvict(value = "statistik", allEntries = true)
     public Map<String, Object> processCsvUpload(MultipartFile file, Long einheitId, String dateStr) throws Exception {
         hibernateFilterService.enableOrgFilter();
         log.info("Starting CSV upload processing - einheitId: {}, date: {}, filename: {}, size: {} bytes",
@@ -117,6 +131,9 @@ public class MesswerteService {
 
         messwerteRepository.saveAll(messwerteList);
         log.info("Successfully saved {} messwerte records for einheit: {}", messwerteList.size(), einheit.getName());
+        statistikCache.verwerfe(organizationContextService.getCurrentOrgId(), dateTimeFrom,
+                spaetere(dateTimeTo, messwerteList));
+        datenVersionService.erhoehe(organizationContextService.getCurrentOrgId());
 
         return Map.of(
                 "status", "success",
@@ -135,7 +152,6 @@ public class MesswerteService {
      * beider Einheiten (Monat des dateStr-Parameters).
      */
     @Transactional
-    @CacheEvict(value = "statistik", allEntries = true)
     public Map<String, Object> processBilanzCsvUpload(MultipartFile file, String dateStr) throws Exception {
         hibernateFilterService.enableOrgFilter();
         log.info("Starting Bilanz CSV upload - date: {}, filename: {}, size: {} bytes",
@@ -222,6 +238,8 @@ public class MesswerteService {
 
         messwerteRepository.saveAll(messwerteList);
         log.info("Successfully saved {} Bilanz messwerte records", messwerteList.size());
+        statistikCache.verwerfe(orgId, monatVon, spaetere(monatBis, messwerteList));
+        datenVersionService.erhoehe(orgId);
 
         return Map.of(
                 "status", "success",
@@ -231,40 +249,135 @@ public class MesswerteService {
     }
 
     @Transactional(readOnly = true)
-    public List<Map<String, Object>> getMesswerteByEinheit(Long einheitId, LocalDate dateFrom, LocalDate dateTo) {
+    public List<Map<String, Object>> getMesswerteByEinheit(Long einheitId, LocalDate dateFrom, LocalDate dateTo,
+                                                           Integer maxPoints) {
+        return getMesswerteByEinheiten(List.of(einheitId), dateFrom, dateTo, maxPoints).get(einheitId);
+    }
+
+    /**
+     * Zeitreihen ({@code zeit}, {@code total}, {@code zev}) mehrerer Einheiten für die Diagramme,
+     * in einem Durchlauf über eine schlanke Projektion statt Entities. Mit {@code maxPoints} wird
+     * jede Reihe per LTTB ({@link ZeitreihenDownsampling}) auf höchstens {@code maxPoints} Punkte
+     * reduziert: je die Hälfte wird nach {@code total} und nach {@code zev} ausgewählt und
+     * vereinigt, damit die Spitzen beider Kurven sichtbar bleiben.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Map<String, Object>>> getMesswerteByEinheiten(List<Long> einheitIds, LocalDate dateFrom,
+                                                                        LocalDate dateTo, Integer maxPoints) {
         hibernateFilterService.enableOrgFilter();
-        log.info("Fetching messwerte for einheitId: {}, dateFrom: {}, dateTo: {}", einheitId, dateFrom, dateTo);
+        log.info("Fetching messwerte for einheitIds: {}, dateFrom: {}, dateTo: {}, maxPoints: {}",
+                einheitIds, dateFrom, dateTo, maxPoints);
 
-        LocalDateTime dateTimeFrom = dateFrom.atStartOfDay();
-        LocalDateTime dateTimeTo = dateTo.atTime(23, 59, 59);
+        if (maxPoints != null && maxPoints < 2 * ZeitreihenDownsampling.MIN_PUNKTE) {
+            throw new IllegalArgumentException("maxPoints must be at least " + 2 * ZeitreihenDownsampling.MIN_PUNKTE);
+        }
+        List<Long> ids = einheitIds.stream().distinct().toList();
+        if (einheitRepository.findAllById(ids).size() != ids.size()) {
+            log.error("Einheit not found - einheitIds: {}", ids);
+            throw new RuntimeException("Einheit not found");
+        }
 
-        Einheit einheit = einheitRepository.findById(einheitId)
-                .orElseThrow(() -> {
-                    log.error("Einheit not found with id: {}", einheitId);
-                    return new RuntimeException("Einheit not found");
-                });
+        Map<Long, List<Map<String, Object>>> result = new LinkedHashMap<>();
+        for (Long id : ids) {
+            result.put(id, List.of());
+        }
+        try (Stream<Object[]> zeilen = messwerteRepository.streamZeitreihen(ids,
+                dateFrom.atStartOfDay(), dateTo.atTime(23, 59, 59))) {
+            Zeitreihe reihe = null;
+            for (Iterator<Object[]> it = zeilen.iterator(); it.hasNext(); ) {
+                Object[] zeile = it.next();
+                Long einheitId = (Long) zeile[0];
+                if (reihe == null || !reihe.einheitId.equals(einheitId)) {
+                    if (reihe != null) {
+                        result.put(reihe.einheitId, reihe.ausgabe(maxPoints));
+                    }
+                    reihe = new Zeitreihe(einheitId);
+                }
+                reihe.add((LocalDateTime) zeile[1], (Double) zeile[2], (Double) zeile[3]);
+            }
+            if (reihe != null) {
+                result.put(reihe.einheitId, reihe.ausgabe(maxPoints));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Zeitreihe einer Einheit spaltenweise ({@link MesswerteSpaltenSchreiber}): Einheit und
+     * Mandant werden hier geprüft, die Werte erst beim Schreiben der Antwort per Cursor gelesen.
+     */
+    @Transactional(readOnly = true)
+    public ExportAusgabe getMesswerteSpalten(Long einheitId, LocalDate dateFrom, LocalDate dateTo,
+                                             MesswerteSpaltenSchreiber.Format format) {
+        hibernateFilterService.enableOrgFilter();
+        if (dateFrom.isAfter(dateTo)) {
+            throw new IllegalArgumentException("dateFrom must not be after dateTo");
+        }
+        if (einheitRepository.findAllById(List.of(einheitId)).isEmpty()) {
+            log.error("Einheit not found with id: {}", einheitId);
+            throw new IllegalArgumentException("Einheit not found");
+        }
+        Long orgId = organizationContextService.getCurrentOrgId();
+        return spaltenSchreiber.export(orgId, einheitId, dateFrom, dateTo, format);
+    }
 
-        List<Messwerte> messwerte = messwerteRepository.findByEinheitAndZeitBetween(einheit, dateTimeFrom, dateTimeTo);
-        log.info("Found {} messwerte records for einheit: {}", messwerte.size(), einheit.getName());
-
-        return messwerte.stream()
-                .map(m -> {
-                    Map<String, Object> data = new java.util.HashMap<>();
-                    data.put("zeit", m.getZeit().toString());
-                    data.put("total", m.getTotal() != null ? m.getTotal() : 0.0);
-                    data.put("zev", m.getZev() != null ? m.getZev() : 0.0);
-                    return data;
-                })
-                .collect(Collectors.toList());
+    /** Zeitreihe einer Einheit in primitiven Arrays (wachsend), Ausgabe optional per LTTB reduziert. */
+    private static final class Zeitreihe {
+        private final Long einheitId;
+        private LocalDateTime[] zeiten = new LocalDateTime[1024];
+        private double[] x = new double[1024];
+        private double[] total = new double[1024];
+        private double[] zev = new double[1024];
+        private int n;
+
+        Zeitreihe(Long einheitId) {
+            this.einheitId = einheitId;
+        }
+
+        void add(LocalDateTime zeit, Double totalWert, Double zevWert) {
+            if (n == zeiten.length) {
+                int neu = n * 2;
+                zeiten = Arrays.copyOf(zeiten, neu);
+                x = Arrays.copyOf(x, neu);
+                total = Arrays.copyOf(total, neu);
+                zev = Arrays.copyOf(zev, neu);
+            }
+            zeiten[n] = zeit;
+            x[n] = zeit.toEpochSecond(ZoneOffset.UTC);
+            total[n] = totalWert != null ? totalWert : 0.0;
+            zev[n] = zevWert != null ? zevWert : 0.0;
+            n++;
+        }
+
+        List<Map<String, Object>> ausgabe(Integer maxPoints) {
+            int[] indizes = maxPoints == null || n <= maxPoints
+                    ? ZeitreihenDownsampling.alle(n)
+                    : ZeitreihenDownsampling.vereinige(
+                            ZeitreihenDownsampling.lttb(x, total, n, maxPoints / 2),
+                            ZeitreihenDownsampling.lttb(x, zev, n, maxPoints - maxPoints / 2));
+            log.info("Messwerte for einheit {}: {} of {} points", einheitId, indizes.length, n);
+
+            List<Map<String, Object>> punkte = new ArrayList<>(indizes.length);
+            for (int i : indizes) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("zeit", zeiten[i].toString());
+                data.put("total", total[i]);
+                data.put("zev", zev[i]);
+                punkte.add(data);
+            }
+            return punkte;
+        }
     }
 
     @Transactional
-    @CacheEvict(value = "statistik", allEntries = true)
     public CalculationResult calculateSolarDistribution(LocalDateTime dateFrom, LocalDateTime dateTo,
             String algorithm) {
         hibernateFilterService.enableOrgFilter();
         // Fortschritt über den Request-Org-Kontext (UI-Polling)
-        return distribute(dateFrom, dateTo, algorithm, organizationContextService.getCurrentOrgId(), true);
+        Long orgId = organizationContextService.getCurrentOrgId();
+        statistikCache.verwerfe(orgId, dateFrom, dateTo);
+        datenVersionService.erhoehe(orgId);
+        return distribute(dateFrom, dateTo, algorithm, orgId, true);
     }
 
     /**
@@ -274,13 +387,23 @@ public class MesswerteService {
      * Fortschritts-Tracking (im Hintergrund-Job gibt es kein UI-Polling).
      */
     @Transactional
-    @CacheEvict(value = "statistik", allEntries = true)
     public CalculationResult calculateSolarDistributionForOrg(Long orgId, LocalDateTime dateFrom,
             LocalDateTime dateTo, String algorithm, boolean showProgress) {
         hibernateFilterService.enableOrgFilter(orgId);
+        statistikCache.verwerfe(orgId, dateFrom, dateTo);
+        datenVersionService.erhoehe(orgId);
         return distribute(dateFrom, dateTo, algorithm, orgId, showProgress);
     }
 
+    /**
+     * Ende des geschriebenen Bereichs für die Cache-Verwerfung: Monatsende bzw. der letzte
+     * Zeitstempel, falls der Upload über das Monatsende hinaus fortgeschrieben wurde.
+     */
+    private static LocalDateTime spaetere(LocalDateTime monatsEnde, List<Messwerte> geschrieben) {
+        LocalDateTime letzte = geschrieben.isEmpty() ? monatsEnde : geschrieben.getLast().getZeit();
+        return letzte.isAfter(monatsEnde) ? letzte : monatsEnde;
+    }
+
     /**
      * Kern der Solarverteilung über alle Zeitpunkte im Bereich. Der orgFilter muss bereits aktiviert
      * sein. Bei {@code showProgress = true} wird der Fortschritt für {@code progressOrgId} gemeldet
@@ -0,0 +1,219 @@
+package ch.nacht.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Spaltenweise Ausgabe der 15-Minuten-Werte einer Einheit für Diagramme – kompakter als eine
+ * Liste von Objekten mit Schlüsseln und Zeitstempel je Punkt.
+ *
+ * <p>Raster: Beginn {@code von 00:00} (lokale Zeit wie {@code messwerte.zeit}), Schritt
+ * 15 Minuten, 96 Intervalle je Tag bis {@code bis} (inklusive). Intervalle ohne Messwert sind
+ * {@code null} (JSON) bzw. {@code NaN} (binär); SQL-NULL in {@code total}/{@code zev} wird wie
+ * in {@code /by-einheit} als 0 ausgegeben. Doppelte Zeilen je Zeitpunkt zählen einmal.
+ *
+ * <ul>
+ *   <li>{@link Format#JSON}: {@code {"einheitId", "start", "schrittMinuten", "anzahl",
+ *       "total": [...], "zev": [...]}}, geschrieben mit einem {@link JsonGenerator}.</li>
+ *   <li>{@link Format#F32LE}: Little-Endian; {@code int64} Start (Sekunden seit 1970 in lokaler
+ *       Zeit), {@code int32} Schritt in Sekunden, {@code int32} Anzahl, danach {@code anzahl}
+ *       {@code float32} total und {@code anzahl} {@code float32} zev.</li>
+ * </ul>
+ *
+ * <p>Wie {@link MesswerteCsvSchreiber}: Vorwärts-Cursor über JDBC, je Spalte ein Durchlauf in
+ * <b>einer</b> read-only {@code REPEATABLE READ}-Transaktion, konstanter Speicherbedarf. Native
+ * SQL umgeht den orgFilter – Einheit und Mandant prüft der Aufrufer, die Abfrage schränkt
+ * zusätzlich auf {@code org_id} ein.
+ */
+@Component
+public class MesswerteSpaltenSchreiber {
+
+    private static final Logger log = LoggerFactory.getLogger(MesswerteSpaltenSchreiber.class);
+
+    /** Spaltenweises JSON ({@code Accept}-Header von {@code /api/messwerte/by-einheit}). */
+    public static final String MEDIA_TYPE_JSON = "application/vnd.zev.spalten+json";
+    /** Binär, Little-Endian {@code float32} ({@code Accept}-Header von {@code /api/messwerte/by-einheit}). */
+    public static final String MEDIA_TYPE_F32LE = "application/vnd.zev.spalten.f32le";
+
+    static final int SCHRITT_MINUTEN = 15;
+    static final int INTERVALLE_PRO_TAG = 96;
+
+    private static final int FETCH_SIZE = 2_000;
+    private static final int PUFFER_BYTES = 64 * 1024;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final String MESSWERTE_SQL = """
+            SELECT zeit, total, zev FROM zev.messwerte
+            WHERE org_id = ? AND einheit_id = ? AND zeit >= ? AND zeit < ?
+            ORDER BY zeit
+            """;
+
+    public enum Format {
+        JSON, F32LE
+    }
+
+    /** Schreibt den Wert eines Intervalls. */
+    @FunctionalInterface
+    private interface Wert {
+        void schreibe(double wert) throws IOException;
+    }
+
+    /** Schreibt ein Intervall ohne Messwert. */
+    @FunctionalInterface
+    private interface Luecke {
+        void schreibe() throws IOException;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate lesen;
+
+    public MesswerteSpaltenSchreiber(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lesen = new TransactionTemplate(transactionManager);
+        this.lesen.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.lesen.setReadOnly(true);
+    }
+
+    /** Anzahl Intervalle im Raster für {@code von} bis {@code bis} (inklusive). */
+    static int anzahl(LocalDate von, LocalDate bis) {
+        return Math.toIntExact((ChronoUnit.DAYS.between(von, bis) + 1) * INTERVALLE_PRO_TAG);
+    }
+
+    /**
+     * Spalten der Einheit für {@code von} bis {@code bis} (inklusive) im gewünschten Format.
+     * Liest erst beim Aufruf von {@link ExportAusgabe#schreibeNach}.
+     */
+    public ExportAusgabe export(Long orgId, Long einheitId, LocalDate von, LocalDate bis,
+                                                Format format) {
+        LocalDateTime start = von.atStartOfDay();
+        int anzahl = anzahl(von, bis);
+        return out -> {
+            try {
+                lesen.executeWithoutResult(status -> {
+                    try {
+                        if (format == Format.JSON) {
+                            schreibeJson(out, orgId, einheitId, start, anzahl);
+                        } else {
+                            schreibeF32le(out, orgId, einheitId, start, anzahl);
+                        }
+                    } catch (IOException e) {
+                        // z.B. Client hat den Download abgebrochen → Cursor-Transaktion beenden
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            log.info("Spalten-Export ({}) für Einheit {} ({} – {}): {} Intervalle", format, einheitId, von, bis,
+                    anzahl);
+        };
+    }
+
+    private void schreibeJson(OutputStream out, Long orgId, Long einheitId, LocalDateTime start, int anzahl)
+            throws IOException {
+        try (JsonGenerator gen = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.writeStartObject();
+            gen.writeNumberField("einheitId", einheitId);
+            gen.writeStringField("start", start.toString());
+            gen.writeNumberField("schrittMinuten", SCHRITT_MINUTEN);
+            gen.writeNumberField("anzahl", anzahl);
+            for (int spalte = 2; spalte <= 3; spalte++) {
+                gen.writeArrayFieldStart(spalte == 2 ? "total" : "zev");
+                int geschrieben = leseSpalte(orgId, einheitId, start, anzahl, spalte,
+                        gen::writeNumber, gen::writeNull);
+                for (int i = geschrieben; i < anzahl; i++) {
+                    gen.writeNull();
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    private void schreibeF32le(OutputStream out, Long orgId, Long einheitId, LocalDateTime start, int anzahl)
+            throws IOException {
+        ByteBuffer puffer = ByteBuffer.allocate(PUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        puffer.putLong(start.toEpochSecond(ZoneOffset.UTC));
+        puffer.putInt((int) Duration.ofMinutes(SCHRITT_MINUTEN).toSeconds());
+        puffer.putInt(anzahl);
+        for (int spalte = 2; spalte <= 3; spalte++) {
+            int geschrieben = leseSpalte(orgId, einheitId, start, anzahl, spalte,
+                    wert -> putFloat(out, puffer, (float) wert),
+                    () -> putFloat(out, puffer, Float.NaN));
+            for (int i = geschrieben; i < anzahl; i++) {
+                putFloat(out, puffer, Float.NaN);
+            }
+        }
+        out.write(puffer.array(), 0, puffer.position());
+        out.flush();
+    }
+
+    private static void putFloat(OutputStream out, ByteBuffer puffer, float wert) throws IOException {
+        if (puffer.remaining() < Float.BYTES) {
+            out.write(puffer.array(), 0, puffer.position());
+            puffer.clear();
+        }
+        puffer.putFloat(wert);
+    }
+
+    /**
+     * Ein Cursor-Durchlauf über eine Spalte ({@code 2} = total, {@code 3} = zev): Lücken und
+     * Werte in Raster-Reihenfolge. Liefert die Anzahl geschriebener Intervalle (Rest sind Lücken).
+     */
+    private int leseSpalte(Long orgId, Long einheitId, LocalDateTime start, int anzahl, int spalte,
+                           Wert wert, Luecke luecke) {
+        int[] naechster = {0};
+        RowCallbackHandler zeile = rs -> {
+            LocalDateTime zeit = rs.getObject(1, LocalDateTime.class);
+            long index = ChronoUnit.MINUTES.between(start, zeit) / SCHRITT_MINUTEN;
+            if (index < naechster[0] || index >= anzahl) {
+                return; // doppelte Zeile je Zeitpunkt
+            }
+            try {
+                while (naechster[0] < index) {
+                    luecke.schreibe();
+                    naechster[0]++;
+                }
+                wert.schreibe(rs.getDouble(spalte)); // SQL-NULL → 0
+                naechster[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(MESSWERTE_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setLong(1, orgId);
+            ps.setLong(2, einheitId);
+            ps.setTimestamp(3, Timestamp.valueOf(start));
+            ps.setTimestamp(4, Timestamp.valueOf(start.plusMinutes((long) anzahl * SCHRITT_MINUTEN)));
+            return ps;
+        }, zeile);
+        return naechster[0];
+    }
+}
@@ -12,6 +12,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -183,6 +185,31 @@ public class MieterService {
         return ladeEinheiten(mieterRepository.findByEinheitIdAndQuartal(einheitId, quartalBeginn, quartalEnde));
     }
 
+    /**
+     * Tenants of several units within a quarter, with their unit IDs filled — one query for the
+     * tenants and one for their assignments, for a whole invoice run.
+     *
+     * @param einheitIds Unit IDs
+     * @param quartalBeginn Quarter start date
+     * @param quartalEnde Quarter end date
+     * @return Tenants per unit ID, ordered by lease start; units without tenants are missing
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<Mieter>> getMieterForEinheitenAndQuartal(Collection<Long> einheitIds,
+                                                                   LocalDate quartalBeginn,
+                                                                   LocalDate quartalEnde) {
+        hibernateFilterService.enableOrgFilter();
+        Map<Long, List<Mieter>> jeEinheit = new LinkedHashMap<>();
+        Map<Long, Mieter> mieter = new LinkedHashMap<>();
+        for (Object[] zeile : mieterRepository.findByEinheitIdsAndQuartal(einheitIds, quartalBeginn, quartalEnde)) {
+            Mieter m = (Mieter) zeile[1];
+            jeEinheit.computeIfAbsent((Long) zeile[0], id -> new ArrayList<>()).add(m);
+            mieter.putIfAbsent(m.getId(), m);
+        }
+        ladeEinheiten(new ArrayList<>(mieter.values()));
+        return jeEinheit;
+    }
+
     /**
      * Unit IDs assigned to a tenant — used by the invoice calculation to collect the positions of
      * all units of a tenant.
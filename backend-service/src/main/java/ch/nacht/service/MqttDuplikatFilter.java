@@ -0,0 +1,88 @@
+package ch.nacht.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Begrenzter In-Memory-Filter gegen doppelt zugestellte MQTT-Messwerte (QoS 1 Redelivery nach
+ * Reconnect, Puffer-Replay des Pi-Gateways nach einem Ausfall). Eine exakte Wiederholung
+ * (gleicher Mandant, Messpunkt, Zeitpunkt, gleiche Zählerstände und Seriennummer) wird
+ * verworfen, <b>bevor</b> Einheiten aufgelöst oder Rohdaten gelesen/geschrieben werden.
+ *
+ * <p>Schlüssel ist der Messpunkt statt der Einheit: die Auflösung Messpunkt → Einheit(en) ist
+ * bereits eine DB-Abfrage, und ein Messpunkt bestimmt die Einheiten eindeutig (Bilanzmesspunkt:
+ * beide Einheiten erhalten dieselbe Meldung).
+ *
+ * <p>LRU-begrenzt ({@code mqtt.dedup.max-eintraege}) mit Zeitfenster
+ * ({@code mqtt.dedup.fenster}): ältere Wiederholungen laufen wieder durch den normalen
+ * Upsert und sind dort idempotent. Ein Schlüssel wird erst <b>nach dem Commit</b> gemerkt –
+ * schlägt das Schreiben fehl, darf die Redelivery nicht als Duplikat verworfen werden.
+ */
+@Component
+@Profile("mqtt")
+public class MqttDuplikatFilter {
+
+    /**
+     * Identität einer Meldung. Zählerstände werden ohne nachlaufende Nullen verglichen,
+     * damit {@code 123.45} und {@code 123.4500} als gleich gelten (wie {@code compareTo}).
+     */
+    record Schluessel(long orgId, String messpunkt, LocalDateTime zeit,
+                      BigDecimal bezug, BigDecimal einspeisung, String seriennummer) {
+
+        Schluessel {
+            bezug = bezug.stripTrailingZeros();
+            einspeisung = einspeisung.stripTrailingZeros();
+        }
+    }
+
+    private final Cache<Schluessel, Boolean> gesehen;
+    private final MqttMetrics metrics;
+
+    public MqttDuplikatFilter(MqttMetrics metrics,
+                              @Value("${mqtt.dedup.max-eintraege:100000}") long maxEintraege,
+                              @Value("${mqtt.dedup.fenster:PT6H}") Duration fenster) {
+        this.metrics = metrics;
+        this.gesehen = Caffeine.newBuilder()
+                .maximumSize(maxEintraege)
+                .expireAfterWrite(fenster)
+                .build();
+    }
+
+    /**
+     * Prüft, ob die Meldung bereits (erfolgreich) verarbeitet wurde, und zählt sie in diesem
+     * Fall als unterdrücktes Duplikat.
+     */
+    public boolean istDuplikat(Schluessel schluessel) {
+        if (gesehen.getIfPresent(schluessel) == null) {
+            return false;
+        }
+        metrics.recordDuplicate();
+        return true;
+    }
+
+    /**
+     * Merkt sich die Meldung als verarbeitet. Innerhalb einer Transaktion erst nach deren
+     * Commit, sonst sofort.
+     */
+    public void merke(Schluessel schluessel) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    gesehen.put(schluessel, Boolean.TRUE);
+                }
+            });
+        } else {
+            gesehen.put(schluessel, Boolean.TRUE);
+        }
+    }
+}
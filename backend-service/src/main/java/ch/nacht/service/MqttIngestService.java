@@ -6,17 +6,22 @@ import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.ZaehlerRohdaten;
 import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.ZaehlerRohdatenRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Verarbeitet eingehende MQTT-Messwert-Nachrichten (FR-4): Topic/Payload parsen, validieren,
@@ -27,6 +32,15 @@ import java.util.List;
  * je Einheit nur das relevante Register übernommen (BEZUG: nur Bezug, RUECKLIEFERUNG: nur
  * Einspeisung; das jeweils andere = 0).
  *
+ * <p>Neben Einzelmeldungen (JSON-Objekt) wird auf demselben Topic ein <b>Batch</b> (JSON-Array
+ * von Meldungen) angenommen – der Gateway-Catch-up nach einem Ausfall zahlt den Overhead je
+ * Nachricht (Transaktion, Einheiten-Auflösung) dann einmal statt je Messung, und die Rohdaten
+ * werden je Einheit als ein JDBC-Batch geschrieben. Bewusste Abweichung vom Repository-Pattern
+ * (wie {@code DatenbankService}): Spring Data bietet keinen mehrzeiligen Upsert.
+ *
+ * <p>Exakte Wiederholungen (QoS-1-Redelivery, Puffer-Replay des Gateways) werden über den
+ * {@link MqttDuplikatFilter} vor jedem DB-Zugriff verworfen.
+ *
  * <p>Kein Request-Scope/JWT: die Mandanten-ID stammt aus dem Topic und wird explizit gesetzt
  * (kein {@code OrganizationContextService}, kein {@code orgFilter}). Fehler werden geloggt und
  * die Nachricht verworfen – niemals nach aussen geworfen (der Adapter gilt als konsumiert).
@@ -40,15 +54,41 @@ public class MqttIngestService {
     /** Spaltenlänge von {@code zaehler_rohdaten.seriennummer} – längere Werte werden gekürzt. */
     private static final int MAX_SERIENNUMMER_LAENGE = 64;
 
+    /** Obergrenze an Einträgen je Batch-Payload (Schutz gegen Runaway-Replays). */
+    private static final int MAX_BATCH_GROESSE = 10_000;
+
+    private static final TypeReference<List<ZaehlerMesswertPayloadDTO>> BATCH_TYP = new TypeReference<>() {
+    };
+
+    /** Batch-Upsert; Konfliktbehandlung wie der Einzel-Upsert über {@code uk_zaehler_rohdaten}. */
+    private static final String UPSERT_ROHDATEN_SQL = """
+            INSERT INTO zev.zaehler_rohdaten
+                (org_id, einheit_id, zeit, zaehlerstand_bezug, zaehlerstand_einspeisung,
+                 seriennummer, empfangen_am, verarbeitet)
+            VALUES (?, ?, ?, ?, ?, ?, ?, FALSE)
+            ON CONFLICT (einheit_id, zeit)
+            DO UPDATE SET zaehlerstand_bezug = EXCLUDED.zaehlerstand_bezug,
+                          zaehlerstand_einspeisung = EXCLUDED.zaehlerstand_einspeisung,
+                          seriennummer = EXCLUDED.seriennummer,
+                          empfangen_am = EXCLUDED.empfangen_am,
+                          verarbeitet = FALSE
+            """;
+
     private final EinheitRepository einheitRepository;
     private final ZaehlerRohdatenRepository rohdatenRepository;
     private final ObjectMapper objectMapper;
     private final MqttMetrics metrics;
+    private final MqttDuplikatFilter duplikatFilter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ZaehlerStromAggregator stromAggregator;
 
     public MqttIngestService(EinheitRepository einheitRepository,
                              ZaehlerRohdatenRepository rohdatenRepository,
                              ObjectMapper objectMapper,
-                             MqttMetrics metrics) {
+                             MqttMetrics metrics,
+                             MqttDuplikatFilter duplikatFilter,
+                             JdbcTemplate jdbcTemplate,
+                             ZaehlerStromAggregator stromAggregator) {
         this.einheitRepository = einheitRepository;
         this.rohdatenRepository = rohdatenRepository;
         // Offset-behaftete Zeit NICHT auf die Kontext-Zeitzone normalisieren, damit die vom Pi
@@ -56,6 +96,9 @@ public class MqttIngestService {
         this.objectMapper = objectMapper.copy()
                 .disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
         this.metrics = metrics;
+        this.duplikatFilter = duplikatFilter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.stromAggregator = stromAggregator;
     }
 
     @Transactional
@@ -85,21 +128,46 @@ public class MqttIngestService {
             }
             String messpunkt = parts[2];
 
-            // 2) Payload parsen + validieren
-            ZaehlerMesswertPayloadDTO p = objectMapper.readValue(payload, ZaehlerMesswertPayloadDTO.class);
-            if (p.getTimestamp() == null || p.getZaehlerstandBezug() == null
-                    || p.getZaehlerstandEinspeisung() == null) {
-                log.warn("MQTT: Pflichtfeld fehlt (Topic {}) – verworfen", topic);
+            // 2) Payload parsen + validieren: Einzelmeldung (Objekt) oder Batch (Array, Catch-up
+            //    des Gateways nach einem Ausfall). Ungültige Einträge eines Batches werden
+            //    einzeln verworfen und gezählt – die gültigen werden trotzdem übernommen.
+            boolean batch = istBatch(payload);
+            List<ZaehlerMesswertPayloadDTO> meldungen = batch
+                    ? objectMapper.readValue(payload, BATCH_TYP)
+                    : List.of(objectMapper.readValue(payload, ZaehlerMesswertPayloadDTO.class));
+            if (meldungen == null || meldungen.isEmpty()) {
+                log.warn("MQTT: leerer Batch (Topic {}) – verworfen", topic);
                 metrics.recordFailed();
                 return;
             }
-            if (p.getZaehlerstandBezug().signum() < 0 || p.getZaehlerstandEinspeisung().signum() < 0) {
-                log.warn("MQTT: negativer Zählerstand (Topic {}) – verworfen", topic);
+            if (meldungen.size() > MAX_BATCH_GROESSE) {
+                log.warn("MQTT: Batch mit {} Einträgen überschreitet das Maximum von {} (Topic {}) – verworfen",
+                        meldungen.size(), MAX_BATCH_GROESSE, topic);
                 metrics.recordFailed();
                 return;
             }
 
-            // 3) Einheiten über (org_id, messpunkt) auflösen (Mandanten-Isolation). Mehrere
+            // 3) Exakte Wiederholungen (QoS-1-Redelivery, Gateway-Replay) vor jedem DB-Zugriff verwerfen
+            List<ZaehlerMesswertPayloadDTO> neu = new ArrayList<>(meldungen.size());
+            List<MqttDuplikatFilter.Schluessel> schluessel = new ArrayList<>(meldungen.size());
+            for (ZaehlerMesswertPayloadDTO p : meldungen) {
+                if (!istGueltig(p, topic)) {
+                    metrics.recordFailed();
+                    continue;
+                }
+                MqttDuplikatFilter.Schluessel s = schluesselFuer(orgId, messpunkt, p);
+                if (duplikatFilter.istDuplikat(s)) {
+                    log.debug("MQTT: Duplikat verworfen (org={}, messpunkt={}, zeit={})", orgId, messpunkt, s.zeit());
+                    continue;
+                }
+                neu.add(p);
+                schluessel.add(s);
+            }
+            if (neu.isEmpty()) {
+                return;
+            }
+
+            // 4) Einheiten über (org_id, messpunkt) auflösen (Mandanten-Isolation). Mehrere
             //    Treffer sind zulässig: BEZUG/RUECKLIEFERUNG dürfen denselben Bilanzmesspunkt
             //    teilen – die Meldung wird dann je Einheit auf das relevante Register projiziert.
             //    Ladestationen bleiben aussen vor: Ihr `messpunkt` ist eine RFID, keine
@@ -115,39 +183,76 @@ public class MqttIngestService {
                 return;
             }
 
-            // 4) Rohdaten upsert je Einheit (org_id explizit)
-            // Der Pi sendet die lokale Zeit mit Offset (ISO 8601); die lokale Wanduhrzeit
-            // wird verbatim übernommen – konsistent mit dem CSV-Upload und der messwerte-Tabelle
-            // (naive lokale Zeit). Unabhängig von der Backend-Zeitzone.
-            LocalDateTime zeit = p.getTimestamp().toLocalDateTime();
+            // 5) Rohdaten upsert je Einheit (org_id explizit); ein Batch als ein JDBC-Batch je Einheit.
+            //    Die gespeicherten Stände gehen nach dem Commit an die Streaming-Aggregation.
             for (Einheit einheit : einheiten) {
-                upsertRohdaten(orgId, einheit, zeit, p);
+                List<ZaehlerRohdaten> staende;
+                if (batch) {
+                    staende = upsertRohdatenBatch(orgId, einheit, neu);
+                } else {
+                    ZaehlerMesswertPayloadDTO p = neu.get(0);
+                    staende = List.of(upsertRohdaten(orgId, einheit, lokaleZeit(p), p));
+                }
+                stromAggregator.uebernimm(einheit, staende);
             }
 
+            schluessel.forEach(duplikatFilter::merke);
             metrics.recordProcessed();
-            log.debug("MQTT: Rohdaten gespeichert (org={}, messpunkt={}, zeit={}, einheiten={})",
-                    orgId, messpunkt, zeit, einheiten.size());
+            log.debug("MQTT: Rohdaten gespeichert (org={}, messpunkt={}, meldungen={}, einheiten={})",
+                    orgId, messpunkt, neu.size(), einheiten.size());
         } catch (Exception e) {
             metrics.recordFailed();
             log.warn("MQTT: Nachricht verworfen (Topic {}): {}", topic, e.getMessage());
         }
     }
 
+    /** Batch-Payload = JSON-Array; Einzelmeldungen bleiben ein Objekt (rückwärtskompatibel). */
+    private boolean istBatch(String payload) {
+        return payload != null && payload.stripLeading().startsWith("[");
+    }
+
+    /** Pflichtfelder vorhanden, Zählerstände nicht negativ. Loggt den Verwerfungsgrund. */
+    private boolean istGueltig(ZaehlerMesswertPayloadDTO p, String topic) {
+        if (p == null || p.getTimestamp() == null || p.getZaehlerstandBezug() == null
+                || p.getZaehlerstandEinspeisung() == null) {
+            log.warn("MQTT: Pflichtfeld fehlt (Topic {}) – verworfen", topic);
+            return false;
+        }
+        if (p.getZaehlerstandBezug().signum() < 0 || p.getZaehlerstandEinspeisung().signum() < 0) {
+            log.warn("MQTT: negativer Zählerstand (Topic {}) – verworfen", topic);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Der Pi sendet die lokale Zeit mit Offset (ISO 8601); die lokale Wanduhrzeit wird verbatim
+     * übernommen – konsistent mit dem CSV-Upload und der messwerte-Tabelle (naive lokale Zeit).
+     * Unabhängig von der Backend-Zeitzone.
+     */
+    private LocalDateTime lokaleZeit(ZaehlerMesswertPayloadDTO p) {
+        return p.getTimestamp().toLocalDateTime();
+    }
+
+    /** Seriennummer wie gespeichert normalisiert: {@code " ABC "}, {@code "ABC"} bzw. leer und fehlend sind gleich. */
+    private MqttDuplikatFilter.Schluessel schluesselFuer(long orgId, String messpunkt, ZaehlerMesswertPayloadDTO p) {
+        return new MqttDuplikatFilter.Schluessel(orgId, messpunkt, lokaleZeit(p),
+                p.getZaehlerstandBezug(), p.getZaehlerstandEinspeisung(), normalisiereSeriennummer(p.getSeriennummer()));
+    }
+
     /**
      * Schreibt (Upsert) den Rohdatensatz einer Einheit. Bilanz-Typen erhalten nur ihr
      * relevantes Register (FR-2.4): BEZUG nur den Bezug, RUECKLIEFERUNG nur die Einspeisung,
      * das jeweils andere Register wird auf 0 gesetzt – so zählt eine BEZUG-Einheit nie
      * Einspeisung (und umgekehrt), auch wenn der physische Bilanzzähler beide Register in
      * einer Meldung liefert. PRODUCER/CONSUMER übernehmen die Payload unverändert.
+     *
+     * @return der gespeicherte Stand als losgelöste Kopie (für die Streaming-Aggregation)
      */
-    private void upsertRohdaten(long orgId, Einheit einheit, LocalDateTime zeit, ZaehlerMesswertPayloadDTO p) {
-        BigDecimal bezug = p.getZaehlerstandBezug();
-        BigDecimal einspeisung = p.getZaehlerstandEinspeisung();
-        if (einheit.getTyp() == EinheitTyp.BEZUG) {
-            einspeisung = BigDecimal.ZERO;
-        } else if (einheit.getTyp() == EinheitTyp.RUECKLIEFERUNG) {
-            bezug = BigDecimal.ZERO;
-        }
+    private ZaehlerRohdaten upsertRohdaten(long orgId, Einheit einheit, LocalDateTime zeit,
+                                           ZaehlerMesswertPayloadDTO p) {
+        BigDecimal bezug = bezugFuer(einheit, p);
+        BigDecimal einspeisung = einspeisungFuer(einheit, p);
 
         ZaehlerRohdaten row = rohdatenRepository.findByEinheitIdAndZeit(einheit.getId(), zeit).orElse(null);
         if (row == null) {
@@ -160,6 +265,52 @@ public class MqttIngestService {
         row.setEmpfangenAm(LocalDateTime.now());
         row.setVerarbeitet(false);
         rohdatenRepository.save(row);
+
+        ZaehlerRohdaten stand = new ZaehlerRohdaten(orgId, einheit.getId(), zeit, bezug, einspeisung);
+        stand.setSeriennummer(row.getSeriennummer());
+        return stand;
+    }
+
+    /**
+     * Batch-Variante von {@link #upsertRohdaten}: schreibt alle Meldungen einer Einheit als
+     * einen JDBC-Batch ({@code INSERT ... ON CONFLICT (einheit_id, zeit) DO UPDATE}) statt je
+     * Meldung Lookup + Save. Gleiche Semantik: Register-Projektion, normalisierte Seriennummer,
+     * {@code empfangen_am = jetzt}, {@code verarbeitet = false}. Mehrere Meldungen zum selben
+     * Zeitpunkt: die letzte im Batch gewinnt (wie bei nacheinander eintreffenden Einzelmeldungen).
+     *
+     * @return die geschriebenen Stände (für die Streaming-Aggregation)
+     */
+    private List<ZaehlerRohdaten> upsertRohdatenBatch(long orgId, Einheit einheit,
+                                                      List<ZaehlerMesswertPayloadDTO> meldungen) {
+        Map<LocalDateTime, ZaehlerRohdaten> jeZeit = new LinkedHashMap<>();
+        for (ZaehlerMesswertPayloadDTO p : meldungen) {
+            ZaehlerRohdaten stand = new ZaehlerRohdaten(orgId, einheit.getId(), lokaleZeit(p),
+                    bezugFuer(einheit, p), einspeisungFuer(einheit, p));
+            stand.setSeriennummer(normalisiereSeriennummer(p.getSeriennummer()));
+            jeZeit.put(stand.getZeit(), stand);
+        }
+        List<ZaehlerRohdaten> zeilen = new ArrayList<>(jeZeit.values());
+        LocalDateTime jetzt = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(UPSERT_ROHDATEN_SQL, zeilen, zeilen.size(), (ps, r) -> {
+            ps.setLong(1, orgId);
+            ps.setLong(2, einheit.getId());
+            ps.setObject(3, r.getZeit());
+            ps.setBigDecimal(4, r.getZaehlerstandBezug());
+            ps.setBigDecimal(5, r.getZaehlerstandEinspeisung());
+            ps.setString(6, r.getSeriennummer());
+            ps.setObject(7, jetzt);
+        });
+        return zeilen;
+    }
+
+    /** Register-Projektion (FR-2.4): RUECKLIEFERUNG zählt keinen Bezug. */
+    private BigDecimal bezugFuer(Einheit einheit, ZaehlerMesswertPayloadDTO p) {
+        return einheit.getTyp() == EinheitTyp.RUECKLIEFERUNG ? BigDecimal.ZERO : p.getZaehlerstandBezug();
+    }
+
+    /** Register-Projektion (FR-2.4): BEZUG zählt keine Einspeisung. */
+    private BigDecimal einspeisungFuer(Einheit einheit, ZaehlerMesswertPayloadDTO p) {
+        return einheit.getTyp() == EinheitTyp.BEZUG ? BigDecimal.ZERO : p.getZaehlerstandEinspeisung();
     }
 
     /**
@@ -3,10 +3,14 @@ package ch.nacht.service;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -21,10 +25,17 @@ public class MqttMetrics {
     private final Counter messagesReceived;
     private final Counter messagesProcessed;
     private final Counter messagesFailed;
+    private final Counter messagesDuplicate;
     private final Counter aggregationRuns;
+    private final Counter aggregationEinheitenVerschoben;
+    // Dauer je Einheit und Lauf; bewusst ohne einheit_id-Tag (Kardinalität bei tausenden Zählern)
+    private final Timer aggregationEinheitOk;
+    private final Timer aggregationEinheitFehler;
 
     private final AtomicReference<Instant> lastMessage = new AtomicReference<>(null);
     private final AtomicReference<Instant> lastAggregationRun = new AtomicReference<>(null);
+    /** Catch-up: offene Intervalle je aufholender Einheit (Gauge = Summe). */
+    private final Map<Long, Long> rueckstand = new ConcurrentHashMap<>();
 
     public MqttMetrics(MeterRegistry registry) {
         this.messagesReceived = Counter.builder("zev_mqtt_messages_received_total")
@@ -33,8 +44,19 @@ public class MqttMetrics {
                 .description("Anzahl erfolgreich verarbeiteter MQTT-Nachrichten").register(registry);
         this.messagesFailed = Counter.builder("zev_mqtt_messages_failed_total")
                 .description("Anzahl verworfener/fehlgeschlagener MQTT-Nachrichten").register(registry);
+        this.messagesDuplicate = Counter.builder("zev_mqtt_messages_duplicate_total")
+                .description("Anzahl als Duplikat verworfener MQTT-Nachrichten (vor DB-Zugriff)").register(registry);
         this.aggregationRuns = Counter.builder("zev_aggregation_runs_total")
                 .description("Anzahl der Aggregations-Job-Läufe").register(registry);
+        this.aggregationEinheitenVerschoben = Counter.builder("zev_aggregation_einheiten_verschoben_total")
+                .description("Anzahl Einheiten, die wegen Laufzeit-Frist auf den nächsten Lauf verschoben wurden")
+                .register(registry);
+        this.aggregationEinheitOk = Timer.builder("zev_aggregation_einheit_duration")
+                .description("Dauer der Aggregation einer Einheit (eigene Transaktion)")
+                .tag("ergebnis", "ok").register(registry);
+        this.aggregationEinheitFehler = Timer.builder("zev_aggregation_einheit_duration")
+                .description("Dauer der Aggregation einer Einheit (eigene Transaktion)")
+                .tag("ergebnis", "fehler").register(registry);
 
         Gauge.builder("zev_mqtt_last_message_timestamp", lastMessage,
                         ref -> ref.get() != null ? ref.get().getEpochSecond() : 0)
@@ -42,6 +64,9 @@ public class MqttMetrics {
         Gauge.builder("zev_aggregation_last_run_timestamp", lastAggregationRun,
                         ref -> ref.get() != null ? ref.get().getEpochSecond() : 0)
                 .description("Unix-Timestamp des letzten Aggregations-Laufs").register(registry);
+        Gauge.builder("zev_aggregation_rueckstand_intervalle", rueckstand,
+                        m -> m.values().stream().mapToLong(Long::longValue).sum())
+                .description("Noch aufzuholende Intervalle aller Einheiten im Catch-up").register(registry);
     }
 
     public void recordReceived() {
@@ -57,8 +82,29 @@ public class MqttMetrics {
         messagesFailed.increment();
     }
 
+    public void recordDuplicate() {
+        messagesDuplicate.increment();
+    }
+
     public void recordAggregationRun() {
         aggregationRuns.increment();
         lastAggregationRun.set(Instant.now());
     }
+
+    public void recordEinheitAggregiert(Duration dauer, boolean erfolgreich) {
+        (erfolgreich ? aggregationEinheitOk : aggregationEinheitFehler).record(dauer);
+    }
+
+    /** Setzt den Catch-up-Rückstand einer Einheit; {@code 0} entfernt sie aus dem Gauge. */
+    public void setRueckstand(Long einheitId, long intervalle) {
+        if (intervalle <= 0) {
+            rueckstand.remove(einheitId);
+        } else {
+            rueckstand.put(einheitId, intervalle);
+        }
+    }
+
+    public void recordEinheitVerschoben() {
+        aggregationEinheitenVerschoben.increment();
+    }
 }
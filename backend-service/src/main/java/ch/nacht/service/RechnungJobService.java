@@ -0,0 +1,459 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.RechnungDTO;
+import ch.nacht.dto.RechnungJobArtefaktDTO;
+import ch.nacht.dto.RechnungJobDTO;
+import ch.nacht.entity.RechnungJob;
+import ch.nacht.entity.RechnungJobArtefakt;
+import ch.nacht.entity.RechnungJobStatus;
+import ch.nacht.repository.RechnungJobArtefaktRepository;
+import ch.nacht.repository.RechnungJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Rechnungsläufe als Hintergrund-Jobs – für grosse ZEV, bei denen ein synchroner Aufruf von
+ * {@code POST /api/rechnungen/generate} in Proxy-Timeouts läuft.
+ *
+ * <p>Beim Einreichen wird im Request berechnet ({@link RechnungService#berechneRechnungen}, wenige
+ * Abfragen; Tariflücken werden sofort als 400 gemeldet). Die berechneten Rechnungen werden als
+ * Eingabe im {@link RechnungJob} gespeichert; Darstellung, Debitor-Upsert und Ablage laufen danach
+ * auf einem eigenen Worker ohne Request-Kontext (alles org-explizit).
+ *
+ * <p>Je Rechnung werden Debitor-Eintrag, {@link RechnungJobArtefakt} und High-Water-Mark in einer
+ * Transaktion geschrieben, danach das PDF abgelegt und ein SSE-Ereignis {@code rechnung} gesendet –
+ * abgeschlossene Rechnungen sind sofort herunterladbar. Abbrechen setzt den Status; der Worker
+ * bemerkt es beim nächsten Fortschreiben. Ein Job ohne Lebenszeichen ({@code rechnung.job.lebenszeichen})
+ * wird wieder aufgenommen, ab der ersten offenen Rechnung; abgeschlossene Rechnungen, deren PDF
+ * nicht mehr in der Ablage liegt, werden nur neu dargestellt.
+ *
+ * <p>Die Download-Keys eines Jobs tragen dessen Lauf-Kennung ({@link #lauf}): parallele Läufe
+ * desselben Mandanten (weitere Jobs, {@code POST /generate}) überschreiben seine PDFs nicht, und
+ * die Wiederaufnahme zählt nur eigene PDFs als vorhanden.
+ */
+@Service
+public class RechnungJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(RechnungJobService.class);
+
+    private static final TypeReference<List<RechnungDTO>> RECHNUNGEN = new TypeReference<>() {};
+    private static final long SSE_TIMEOUT_MS = Duration.ofMinutes(30).toMillis();
+
+    private final RechnungService rechnungService;
+    private final RechnungPdfService rechnungPdfService;
+    private final RechnungStorageService rechnungStorageService;
+    private final DebitorService debitorService;
+    private final RechnungJobRepository jobRepository;
+    private final RechnungJobArtefaktRepository artefaktRepository;
+    private final OrganizationContextService organizationContextService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaktion;
+    private final Duration lebenszeichen;
+    private final ExecutorService worker;
+
+    /** Jobs, die in dieser Instanz laufen oder warten (Lebenszeichen, keine Doppelausführung). */
+    private final Set<Long> aktiv = ConcurrentHashMap.newKeySet();
+    private final Map<Long, List<SseEmitter>> abonnenten = new ConcurrentHashMap<>();
+    private volatile boolean herunterfahren;
+
+    public RechnungJobService(RechnungService rechnungService,
+                              RechnungPdfService rechnungPdfService,
+                              RechnungStorageService rechnungStorageService,
+                              DebitorService debitorService,
+                              RechnungJobRepository jobRepository,
+                              RechnungJobArtefaktRepository artefaktRepository,
+                              OrganizationContextService organizationContextService,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${rechnung.job.threads:2}") int threads,
+                              @Value("${rechnung.job.lebenszeichen:PT2M}") Duration lebenszeichen) {
+        this.rechnungService = rechnungService;
+        this.rechnungPdfService = rechnungPdfService;
+        this.rechnungStorageService = rechnungStorageService;
+        this.debitorService = debitorService;
+        this.jobRepository = jobRepository;
+        this.artefaktRepository = artefaktRepository;
+        this.organizationContextService = organizationContextService;
+        this.objectMapper = objectMapper;
+        this.transaktion = new TransactionTemplate(transactionManager);
+        this.lebenszeichen = lebenszeichen;
+        this.worker = Executors.newFixedThreadPool(Math.max(1, threads),
+                Thread.ofPlatform().name("rechnung-job-", 1).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void beendeWorker() {
+        // Laufende Jobs bleiben LAUFEND und werden nach dem Neustart wieder aufgenommen
+        herunterfahren = true;
+        worker.shutdownNow();
+    }
+
+    /**
+     * Berechnet die Rechnungen und reicht Darstellung, Debitor-Upsert und Ablage als Job ein.
+     * Tariflücken werfen wie bei {@link RechnungService#berechneRechnungen} (kein Job).
+     */
+    public RechnungJobDTO starte(List<Long> einheitIds, LocalDate von, LocalDate bis, String sprache) {
+        Long orgId = organizationContextService.getCurrentOrgId();
+        List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(einheitIds, von, bis);
+
+        RechnungJob job = jobRepository.save(new RechnungJob(orgId, von, bis, sprache, rechnungen.size(),
+                json(rechnungen), LocalDateTime.now()));
+        log.info("Rechnungs-Job {} eingereicht: {} Rechnungen ({} – {}, org={})",
+                job.getId(), rechnungen.size(), von, bis, orgId);
+
+        reiheEin(job.getId());
+        return toDTO(job, List.of());
+    }
+
+    /** Lauf-Kennung eines Jobs – Präfix seiner Download-Keys. */
+    public static String lauf(Long jobId) {
+        return "J" + jobId;
+    }
+
+    /** Zustand und bisherige Artefakte eines Jobs des aktuellen Mandanten. */
+    public Optional<RechnungJobDTO> getJob(Long jobId) {
+        return jobRepository.findByIdAndOrgId(jobId, organizationContextService.getCurrentOrgId())
+                .map(job -> toDTO(job, artefakte(job.getId())));
+    }
+
+    /**
+     * Bricht einen laufenden Job des aktuellen Mandanten ab. Bereits abgeschlossene Rechnungen
+     * bleiben erhalten. Ein beendeter Job bleibt unverändert.
+     *
+     * @return Zustand nach dem Abbruch, leer wenn der Job nicht existiert
+     */
+    public Optional<RechnungJobDTO> abbrechen(Long jobId) {
+        Long orgId = organizationContextService.getCurrentOrgId();
+        if (jobRepository.findByIdAndOrgId(jobId, orgId).isEmpty()) {
+            return Optional.empty();
+        }
+        Integer beendet = transaktion.execute(status ->
+                jobRepository.beende(jobId, RechnungJobStatus.ABGEBROCHEN, null, LocalDateTime.now()));
+        if (beendet != null && beendet > 0) {
+            log.info("Rechnungs-Job {} abgebrochen", jobId);
+            jobRepository.findById(jobId).ifPresent(job -> schliesse(job.getId(), toDTO(job, List.of())));
+        }
+        return getJob(jobId);
+    }
+
+    /**
+     * SSE-Abonnement eines Jobs: zuerst {@code status} und je abgeschlossene Rechnung ein Ereignis
+     * {@code rechnung}, danach live; zum Schluss {@code status} mit dem Endzustand. Ereignisse tragen
+     * die Position – eine beim Anmelden doppelt gesendete Rechnung ist am Client idempotent.
+     *
+     * @return Emitter, leer wenn der Job nicht existiert
+     */
+    public Optional<SseEmitter> abonniere(Long jobId) {
+        Optional<RechnungJob> gefunden = jobRepository.findByIdAndOrgId(jobId,
+                organizationContextService.getCurrentOrgId());
+        if (gefunden.isEmpty()) {
+            return Optional.empty();
+        }
+        RechnungJob job = gefunden.get();
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+
+        // Erst anmelden, dann den Stand senden: so geht kein Ereignis dazwischen verloren
+        boolean laufend = job.getStatus() == RechnungJobStatus.LAUFEND;
+        if (laufend) {
+            melde(jobId, emitter);
+            emitter.onCompletion(() -> abmelden(jobId, emitter));
+            emitter.onTimeout(() -> abmelden(jobId, emitter));
+            emitter.onError(e -> abmelden(jobId, emitter));
+        }
+        try {
+            emitter.send(ereignis("status", toDTO(job, List.of())));
+            for (RechnungJobArtefaktDTO artefakt : artefakte(jobId)) {
+                emitter.send(ereignis("rechnung", artefakt));
+            }
+            // Inzwischen beendet? Dann kam das abschliessende status-Ereignis evtl. vor der Anmeldung
+            if (!laufend || jobRepository.findById(jobId)
+                    .map(j -> j.getStatus() != RechnungJobStatus.LAUFEND).orElse(true)) {
+                // Liste sofort freigeben – schliesse() ist für diesen Job schon gelaufen
+                abmelden(jobId, emitter);
+                emitter.complete();
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Nimmt laufende Jobs ohne Lebenszeichen wieder auf (Absturz, Redeploy) und meldet für die
+     * Jobs dieser Instanz ein Lebenszeichen – auch für solche, die noch in der Warteschlange stehen.
+     */
+    @Scheduled(fixedDelayString = "${rechnung.job.pruefintervall:PT1M}")
+    public void nimmVerwaisteJobsWiederAuf() {
+        LocalDateTime jetzt = LocalDateTime.now();
+        if (!aktiv.isEmpty()) {
+            transaktion.executeWithoutResult(status -> jobRepository.meldeLebenszeichen(Set.copyOf(aktiv), jetzt));
+        }
+        LocalDateTime grenze = jetzt.minus(lebenszeichen);
+        for (Long jobId : jobRepository.findVerwaisteIds(grenze)) {
+            if (aktiv.contains(jobId)) {
+                continue;
+            }
+            Integer uebernommen = transaktion.execute(status -> jobRepository.uebernimm(jobId, grenze, jetzt));
+            if (uebernommen != null && uebernommen > 0) {
+                log.info("Rechnungs-Job {} ohne Lebenszeichen seit {} – wird wieder aufgenommen", jobId, grenze);
+                reiheEin(jobId);
+            }
+        }
+    }
+
+    private void reiheEin(Long jobId) {
+        if (aktiv.add(jobId)) {
+            worker.submit(() -> {
+                try {
+                    fuehreAus(jobId);
+                } finally {
+                    aktiv.remove(jobId);
+                }
+            });
+        }
+    }
+
+    /** Darstellung, Debitor-Upsert und Ablage ab der ersten offenen Rechnung. */
+    void fuehreAus(Long jobId) {
+        RechnungJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != RechnungJobStatus.LAUFEND) {
+            return;
+        }
+        try {
+            List<RechnungDTO> rechnungen = objectMapper.readValue(job.getRechnungen(), RECHNUNGEN);
+            stelleFehlendePdfsWiederHer(job, rechnungen);
+
+            int[] position = {job.getErledigt()};
+            int[] abgeschlossen = {job.getErledigt()};
+            boolean vollstaendig = rechnungPdfService.generatePdfs(
+                    rechnungen.subList(job.getErledigt(), rechnungen.size()), job.getSprache(),
+                    fingerabdruck -> rechnungStorageService.findMemo(job.getOrgId(), fingerabdruck),
+                    ergebnis -> {
+                        boolean weiter = schliesseAb(job, position[0]++, ergebnis);
+                        if (weiter) {
+                            abgeschlossen[0]++;
+                        }
+                        return weiter;
+                    });
+
+            if (vollstaendig) {
+                transaktion.execute(status -> jobRepository.beende(jobId, RechnungJobStatus.ABGESCHLOSSEN,
+                        null, LocalDateTime.now()));
+                log.info("Rechnungs-Job {} abgeschlossen: {} Rechnungen", jobId, rechnungen.size());
+            } else {
+                log.info("Rechnungs-Job {} nach {} von {} Rechnungen beendet (abgebrochen)",
+                        jobId, abgeschlossen[0], rechnungen.size());
+            }
+        } catch (Exception e) {
+            if (herunterfahren) {
+                log.info("Rechnungs-Job {} beim Herunterfahren unterbrochen – wird wieder aufgenommen", jobId);
+                return;
+            }
+            log.error("Rechnungs-Job {} fehlgeschlagen: {}", jobId, e.getMessage(), e);
+            transaktion.execute(status -> jobRepository.beende(jobId, RechnungJobStatus.FEHLGESCHLAGEN,
+                    e.getMessage(), LocalDateTime.now()));
+        }
+        jobRepository.findById(jobId).ifPresent(beendet -> schliesse(jobId, toDTO(beendet, List.of())));
+    }
+
+    /**
+     * Schliesst eine Rechnung ab: Debitor-Eintrag, Artefakt und High-Water-Mark in einer
+     * Transaktion, danach das PDF in die Ablage. {@code false}, wenn der Job nicht mehr läuft.
+     */
+    private boolean schliesseAb(RechnungJob job, int position, RechnungPdfService.PdfErgebnis ergebnis) {
+        RechnungDTO rechnung = ergebnis.rechnung();
+        RechnungJobArtefakt artefakt = new RechnungJobArtefakt();
+        artefakt.setJobId(job.getId());
+        artefakt.setOrgId(job.getOrgId());
+        artefakt.setPosition(position);
+        artefakt.setEinheitId(rechnung.getEinheitId());
+        artefakt.setEinheitName(rechnung.getEinheitName());
+        artefakt.setMieterName(rechnung.getMieterName());
+        artefakt.setEndBetrag(rechnung.getEndBetrag());
+        if (ergebnis.erfolgreich()) {
+            artefakt.setDownloadKey(downloadKey(job, rechnung));
+        } else {
+            log.error("Failed to generate invoice for unit {}: {}",
+                    rechnung.getEinheitName(), ergebnis.fehler().getMessage(), ergebnis.fehler());
+            artefakt.setFehler(ergebnis.fehler().getMessage());
+        }
+
+        Boolean weiter;
+        try {
+            weiter = schreibe(job, position, artefakt, ergebnis.erfolgreich() ? rechnung : null);
+        } catch (RuntimeException e) {
+            // Wie POST /generate: ohne Debitor-Eintrag wird kein PDF abgelegt
+            log.error("Failed to store invoice for unit {}: {}", rechnung.getEinheitName(), e.getMessage(), e);
+            artefakt.setDownloadKey(null);
+            artefakt.setFehler(e.getMessage());
+            weiter = schreibe(job, position, artefakt, null);
+        }
+        if (!Boolean.TRUE.equals(weiter)) {
+            return false;
+        }
+        if (artefakt.getDownloadKey() != null) {
+            rechnungStorageService.store(job.getOrgId(), artefakt.getDownloadKey(), ergebnis.pdf(),
+                    ergebnis.fingerabdruck());
+        }
+        sende(job.getId(), "rechnung", toDTO(artefakt));
+        return true;
+    }
+
+    private Boolean schreibe(RechnungJob job, int position, RechnungJobArtefakt artefakt, RechnungDTO debitor) {
+        return transaktion.execute(status -> {
+            if (jobRepository.schreibeFort(job.getId(), position + 1, LocalDateTime.now()) == 0) {
+                return false;
+            }
+            if (debitor != null) {
+                upsertDebitor(job.getOrgId(), debitor);
+            }
+            artefaktRepository.save(artefakt);
+            return true;
+        });
+    }
+
+    /**
+     * Abgeschlossene Rechnungen, deren PDF nicht (mehr) in der Ablage liegt – z.B. nach einem
+     * Neustart –, neu darstellen und ablegen; Debitor und Artefakt sind bereits geschrieben.
+     */
+    private void stelleFehlendePdfsWiederHer(RechnungJob job, List<RechnungDTO> rechnungen) {
+        List<RechnungJobArtefakt> fehlend = artefaktRepository.findByJobIdOrderByPosition(job.getId()).stream()
+                .filter(a -> a.getDownloadKey() != null)
+                .filter(a -> !rechnungStorageService.exists(job.getOrgId(), a.getDownloadKey()))
+                .toList();
+        if (fehlend.isEmpty()) {
+            return;
+        }
+        log.info("Rechnungs-Job {}: {} abgeschlossene PDFs fehlen in der Ablage – werden neu dargestellt",
+                job.getId(), fehlend.size());
+        List<RechnungDTO> neu = new ArrayList<>(fehlend.size());
+        fehlend.forEach(a -> neu.add(rechnungen.get(a.getPosition())));
+        int[] index = {0};
+        rechnungPdfService.generatePdfs(neu, job.getSprache(),
+                fingerabdruck -> rechnungStorageService.findMemo(job.getOrgId(), fingerabdruck),
+                ergebnis -> {
+                    RechnungJobArtefakt artefakt = fehlend.get(index[0]++);
+                    if (ergebnis.erfolgreich()) {
+                        rechnungStorageService.store(job.getOrgId(), artefakt.getDownloadKey(), ergebnis.pdf(),
+                                ergebnis.fingerabdruck());
+                    }
+                    return true;
+                });
+    }
+
+    /** Wie POST /generate: 0-Rechnungen und Rechnungen ohne Mieter ergeben keinen Debitor-Eintrag. */
+    private void upsertDebitor(Long orgId, RechnungDTO rechnung) {
+        BigDecimal betrag = BigDecimal.valueOf(rechnung.getEndBetrag()).setScale(2, RoundingMode.HALF_UP);
+        if (rechnung.getMieterId() != null && betrag.compareTo(BigDecimal.ZERO) > 0) {
+            debitorService.upsertFromRechnungForOrg(orgId, rechnung.getMieterId(), betrag,
+                    rechnung.getVon(), rechnung.getBis());
+        }
+    }
+
+    /**
+     * Wie POST /generate: mieterId im Schlüssel unterscheidet mehrere Mieter einer Einheit; die
+     * Lauf-Kennung des Jobs trennt ihn von anderen Läufen des Mandanten.
+     */
+    private String downloadKey(RechnungJob job, RechnungDTO rechnung) {
+        String keyBase = rechnung.getMieterId() != null
+                ? rechnung.getEinheitName() + "_" + rechnung.getMieterId()
+                : rechnung.getEinheitName();
+        return rechnungStorageService.sanitizeKey(lauf(job.getId()) + "_" + keyBase);
+    }
+
+    private void melde(Long jobId, SseEmitter emitter) {
+        abonnenten.compute(jobId, (id, liste) -> {
+            List<SseEmitter> neu = liste != null ? liste : new CopyOnWriteArrayList<>();
+            neu.add(emitter);
+            return neu;
+        });
+    }
+
+    /** Meldet einen Emitter ab; die Liste des Jobs verschwindet mit dem letzten Abonnenten. */
+    private void abmelden(Long jobId, SseEmitter emitter) {
+        abonnenten.computeIfPresent(jobId, (id, liste) -> {
+            liste.remove(emitter);
+            return liste.isEmpty() ? null : liste;
+        });
+    }
+
+    private void sende(Long jobId, String name, Object daten) {
+        List<SseEmitter> liste = abonnenten.get(jobId);
+        if (liste == null) {
+            return;
+        }
+        for (SseEmitter emitter : liste) {
+            try {
+                emitter.send(ereignis(name, daten));
+            } catch (IOException | IllegalStateException e) {
+                // Client hat die Verbindung geschlossen
+                abmelden(jobId, emitter);
+            }
+        }
+    }
+
+    private void schliesse(Long jobId, RechnungJobDTO endzustand) {
+        sende(jobId, "status", endzustand);
+        List<SseEmitter> liste = abonnenten.remove(jobId);
+        if (liste != null) {
+            liste.forEach(SseEmitter::complete);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder ereignis(String name, Object daten) {
+        return SseEmitter.event().name(name).data(daten, MediaType.APPLICATION_JSON);
+    }
+
+    private List<RechnungJobArtefaktDTO> artefakte(Long jobId) {
+        return artefaktRepository.findByJobIdOrderByPosition(jobId).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+    private RechnungJobArtefaktDTO toDTO(RechnungJobArtefakt a) {
+        return new RechnungJobArtefaktDTO(a.getPosition(), a.getEinheitId(), a.getEinheitName(),
+                a.getMieterName(), a.getEndBetrag(),
+                a.getDownloadKey() != null ? rechnungStorageService.getFilename(a.getDownloadKey()) : null,
+                a.getDownloadKey(), a.getFehler());
+    }
+
+    private static RechnungJobDTO toDTO(RechnungJob job, List<RechnungJobArtefaktDTO> artefakte) {
+        return new RechnungJobDTO(job.getId(), job.getStatus(), job.getVon(), job.getBis(),
+                job.getAnzahl(), job.getErledigt(), job.getFehler(), artefakte);
+    }
+
+    private String json(List<RechnungDTO> rechnungen) {
+        try {
+            return objectMapper.writeValueAsString(rechnungen);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Rechnungen konnten nicht serialisiert werden", e);
+        }
+    }
+}
@@ -1,39 +1,136 @@
 package ch.nacht.service;
 
 import ch.nacht.dto.RechnungDTO;
-import ch.nacht.entity.Translation;
-import ch.nacht.repository.TranslationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import net.codecrete.qrbill.generator.*;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
 import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.pdf.JRPdfExporter;
+import net.sf.jasperreports.pdf.SimplePdfExporterConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Service for generating invoice PDFs with Swiss QR payment slips using JasperReports.
+ *
+ * <p>An invoice run renders its PDFs in parallel on a bounded worker pool
+ * ({@code rechnung.pdf.threads}, default: number of CPU cores). Rendering is pure CPU work on
+ * the already calculated {@link RechnungDTO}s — the workers neither touch the database nor
+ * need a transaction. The fixed Jasper parameters (translation bundle) are built once per
+ * language and reused across fills until the translations change.
+ *
+ * <p>Each invoice has a fingerprint ({@link #fingerabdruck}) over everything that ends up in its
+ * PDF: the calculated invoice (measurement sums, tenant period, tariffs, tariff positions and
+ * settings are all reflected in it), the language, the translations and the template. A run can
+ * pass already archived PDFs by fingerprint — unchanged invoices are then not rendered again.
  */
 @Service
 public class RechnungPdfService {
 
     private static final Logger log = LoggerFactory.getLogger(RechnungPdfService.class);
 
-    private final TranslationRepository translationRepository;
+    /** Stabile Serialisierung der Rechnung für den Fingerabdruck. */
+    private static final ObjectMapper FINGERABDRUCK_MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .build();
+
+    /**
+     * Fixed Jasper parameters of a language and the fingerprint of its translations.
+     *
+     * @param bundle Translation bundle the parameters were built from
+     * @param parameter Fixed Jasper parameters
+     * @param fingerabdruck SHA-256 of the bundle
+     */
+    private record Basis(Map<String, String> bundle, Map<String, Object> parameter, byte[] fingerabdruck) {
+    }
+
+    private final TranslationService translationService;
+    private final int threads;
+    private final ConcurrentMap<String, Basis> basisJeSprache = new ConcurrentHashMap<>();
+    private final ExecutorService worker;
 
     private JasperReport compiledReport;
+    /** SHA-256 of the compiled template — part of every fingerprint. */
+    private byte[] vorlageVersion = new byte[0];
 
-    public RechnungPdfService(TranslationRepository translationRepository) {
-        this.translationRepository = translationRepository;
+    /**
+     * Result of rendering one invoice of a run: either the PDF or the error that prevented it.
+     * {@code fingerabdruck} is set in runs with reuse ({@link #generatePdfs(List, String, Function, Predicate)}).
+     */
+    public record PdfErgebnis(RechnungDTO rechnung, byte[] pdf, Exception fehler, String fingerabdruck) {
+
+        public static PdfErgebnis erzeugt(RechnungDTO rechnung, byte[] pdf) {
+            return erzeugt(rechnung, pdf, null);
+        }
+
+        public static PdfErgebnis erzeugt(RechnungDTO rechnung, byte[] pdf, String fingerabdruck) {
+            return new PdfErgebnis(rechnung, pdf, null, fingerabdruck);
+        }
+
+        public static PdfErgebnis fehlgeschlagen(RechnungDTO rechnung, Exception fehler) {
+            return new PdfErgebnis(rechnung, null, fehler, null);
+        }
+
+        public boolean erfolgreich() {
+            return fehler == null;
+        }
+    }
+
+    public RechnungPdfService(TranslationService translationService,
+                              @Value("${rechnung.pdf.threads:0}") int threads) {
+        this.translationService = translationService;
+        // JasperReports fuellt und exportiert rein CPU-gebunden: mehr Threads als Kerne bringen nichts
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.worker = this.threads > 1
+                ? Executors.newFixedThreadPool(this.threads,
+                        Thread.ofPlatform().name("rechnung-pdf-", 1).daemon(true).factory())
+                : null;
+    }
+
+    @PreDestroy
+    void beendeWorker() {
+        if (worker != null) {
+            worker.shutdownNow();
+        }
     }
 
     @PostConstruct
@@ -44,9 +141,14 @@ public class RechnungPdfService {
             if (reportStream == null) {
                 throw new RuntimeException("Could not find rechnung.jasper template");
             }
-            compiledReport = (JasperReport) JRLoader.loadObject(reportStream);
+            byte[] vorlage;
+            try (reportStream) {
+                vorlage = reportStream.readAllBytes();
+            }
+            compiledReport = (JasperReport) JRLoader.loadObject(new ByteArrayInputStream(vorlage));
+            vorlageVersion = sha256().digest(vorlage);
             log.info("Loaded rechnung.jasper template successfully");
-        } catch (JRException e) {
+        } catch (JRException | IOException e) {
             log.error("Failed to load JasperReports templates: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to load JasperReports templates", e);
         }
@@ -60,15 +162,168 @@ public class RechnungPdfService {
      * @return PDF as byte array
      */
     public byte[] generatePdf(RechnungDTO rechnung, String sprache) {
+        return render(rechnung, basis(sprache).parameter());
+    }
+
+    /**
+     * Fingerprint of an invoice's PDF: equal fingerprints yield an equal PDF (up to the creation
+     * timestamp in the PDF metadata). The creation date printed on the invoice is part of the
+     * invoice, so a rerun on another day renders again.
+     *
+     * @param rechnung Calculated invoice
+     * @param sprache Language code (de or en)
+     * @return SHA-256 (hex)
+     */
+    public String fingerabdruck(RechnungDTO rechnung, String sprache) {
+        return fingerabdruck(rechnung, sprache, basis(sprache));
+    }
+
+    private String fingerabdruck(RechnungDTO rechnung, String sprache, Basis basis) {
+        MessageDigest digest = sha256();
+        digest.update(vorlageVersion);
+        digest.update(sprachSchluessel(sprache).getBytes(StandardCharsets.US_ASCII));
+        digest.update(basis.fingerabdruck());
+        try {
+            digest.update(FINGERABDRUCK_MAPPER.writeValueAsBytes(rechnung));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invoice not serializable for fingerprint", e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Generate the PDFs of an invoice run in parallel on the worker pool.
+     * The results are in the order of {@code rechnungen}; a failing invoice yields a
+     * {@link PdfErgebnis} with its error and does not affect the others.
+     *
+     * @param rechnungen Calculated invoices
+     * @param sprache Language code (de or en)
+     * @return One result per invoice, same order
+     */
+    public List<PdfErgebnis> generatePdfs(List<RechnungDTO> rechnungen, String sprache) {
+        List<PdfErgebnis> ergebnisse = new ArrayList<>(rechnungen.size());
+        generatePdfs(rechnungen, sprache, ergebnisse::add);
+        return ergebnisse;
+    }
+
+    /**
+     * Like {@link #generatePdfs(List, String)}, but hands each result to {@code jeErgebnis} in the
+     * calling thread as soon as it and all earlier ones are rendered — the caller can store and
+     * report invoice by invoice while later ones are still rendering. If {@code jeErgebnis}
+     * returns {@code false}, the remaining invoices are cancelled.
+     *
+     * @param rechnungen Calculated invoices
+     * @param sprache Language code (de or en)
+     * @param jeErgebnis Called once per invoice, in order; {@code false} stops the run
+     * @return {@code true} if all invoices were handed over, {@code false} if stopped early
+     */
+    public boolean generatePdfs(List<RechnungDTO> rechnungen, String sprache, Predicate<PdfErgebnis> jeErgebnis) {
+        return generatePdfs(rechnungen, sprache, null, jeErgebnis);
+    }
+
+    /**
+     * Like {@link #generatePdfs(List, String, Predicate)}, but reuses already rendered PDFs: for
+     * each invoice, {@code vorhanden} is asked for a PDF with its {@link #fingerabdruck}; only
+     * invoices without one are rendered. Each result carries its fingerprint, so the caller can
+     * archive it for the next run.
+     *
+     * @param rechnungen Calculated invoices
+     * @param sprache Language code (de or en)
+     * @param vorhanden Fingerprint → previously rendered PDF (called in the calling thread);
+     *                  {@code null} = always render
+     * @param jeErgebnis Called once per invoice, in order; {@code false} stops the run
+     * @return {@code true} if all invoices were handed over, {@code false} if stopped early
+     */
+    public boolean generatePdfs(List<RechnungDTO> rechnungen, String sprache,
+                                Function<String, Optional<byte[]>> vorhanden, Predicate<PdfErgebnis> jeErgebnis) {
+        Basis basis = basis(sprache);
+
+        if (rechnungen.size() <= 1 || worker == null) {
+            for (RechnungDTO rechnung : rechnungen) {
+                if (!jeErgebnis.test(ergebnis(rechnung, sprache, basis, vorhanden, null).resultNow())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long start = System.nanoTime();
+        List<Future<PdfErgebnis>> laeufe = new ArrayList<>(rechnungen.size());
+        for (RechnungDTO rechnung : rechnungen) {
+            laeufe.add(ergebnis(rechnung, sprache, basis, vorhanden, worker));
+        }
+        try {
+            for (int i = 0; i < laeufe.size(); i++) {
+                PdfErgebnis ergebnis;
+                try {
+                    ergebnis = laeufe.get(i).get();
+                } catch (ExecutionException e) {
+                    // renderIsoliert faengt Exceptions - hier landen nur Errors (z.B. OutOfMemoryError)
+                    ergebnis = PdfErgebnis.fehlgeschlagen(rechnungen.get(i),
+                            new IllegalStateException("PDF generation failed", e.getCause()));
+                }
+                if (!jeErgebnis.test(ergebnis)) {
+                    laeufe.forEach(lauf -> lauf.cancel(true));
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            laeufe.forEach(lauf -> lauf.cancel(true));
+            throw new IllegalStateException("PDF generation interrupted", e);
+        } catch (RuntimeException e) {
+            laeufe.forEach(lauf -> lauf.cancel(true));
+            throw e;
+        }
+        log.info("Rendered {} invoice PDFs on {} threads in {} ms", rechnungen.size(), threads,
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Result of one invoice: the previously rendered PDF if {@code vorhanden} has one for its
+     * fingerprint, otherwise rendered — on {@code ausfuehrung}, or right here if {@code null}.
+     */
+    private Future<PdfErgebnis> ergebnis(RechnungDTO rechnung, String sprache, Basis basis,
+                                         Function<String, Optional<byte[]>> vorhanden,
+                                         ExecutorService ausfuehrung) {
+        String fingerabdruck = null;
+        if (vorhanden != null) {
+            try {
+                fingerabdruck = fingerabdruck(rechnung, sprache, basis);
+                Optional<byte[]> pdf = vorhanden.apply(fingerabdruck);
+                if (pdf.isPresent()) {
+                    log.debug("Invoice PDF for unit {} unchanged, reused", rechnung.getEinheitName());
+                    return CompletableFuture.completedFuture(PdfErgebnis.erzeugt(rechnung, pdf.get(), fingerabdruck));
+                }
+            } catch (RuntimeException e) {
+                // Ohne Wiederverwendung geht es immer: dann eben neu darstellen
+                log.warn("Reuse lookup failed for unit {}: {}", rechnung.getEinheitName(), e.getMessage());
+            }
+        }
+        String schluessel = fingerabdruck;
+        return ausfuehrung != null
+                ? ausfuehrung.submit(() -> renderIsoliert(rechnung, basis, schluessel))
+                : CompletableFuture.completedFuture(renderIsoliert(rechnung, basis, schluessel));
+    }
+
+    private PdfErgebnis renderIsoliert(RechnungDTO rechnung, Basis basis, String fingerabdruck) {
+        try {
+            return PdfErgebnis.erzeugt(rechnung, render(rechnung, basis.parameter()), fingerabdruck);
+        } catch (Exception e) {
+            return PdfErgebnis.fehlgeschlagen(rechnung, e);
+        }
+    }
+
+    private byte[] render(RechnungDTO rechnung, Map<String, Object> basis) {
         log.info("Generating invoice PDF for unit: {}", rechnung.getEinheitName());
 
-        Map<String, String> translations = loadTranslations(sprache);
         byte[] qrCodeBytes = generateQrCodePng(rechnung);
         InputStream qrCodeStream = qrCodeBytes != null ? new ByteArrayInputStream(qrCodeBytes) : null;
 
-        Map<String, Object> parameters = new HashMap<>();
+        // Jasper legt eigene Eintraege in der Parameter-Map ab: je Fill eine Kopie der festen Parameter
+        Map<String, Object> parameters = new HashMap<>(basis);
         parameters.put("RECHNUNG", rechnung);
-        parameters.put("TRANSLATIONS", translations);
         parameters.put("QR_CODE_IMAGE", qrCodeStream);
 
         // TarifZeilen als DataSource für das Detail-Band
@@ -77,7 +332,7 @@ public class RechnungPdfService {
         try {
             ByteArrayOutputStream os = new ByteArrayOutputStream();
             JasperPrint jasperPrint = JasperFillManager.fillReport(compiledReport, parameters, tarifDataSource);
-            JasperExportManager.exportReportToPdfStream(jasperPrint, os);
+            exportCompressed(jasperPrint, os);
 
             log.info("Invoice PDF generated successfully for unit: {}, size: {} bytes",
                     rechnung.getEinheitName(), os.size());
@@ -89,13 +344,53 @@ public class RechnungPdfService {
         }
     }
 
-    private Map<String, String> loadTranslations(String sprache) {
-        Map<String, String> translations = new HashMap<>();
-        for (Translation t : translationRepository.findAll()) {
-            String value = "en".equalsIgnoreCase(sprache) ? t.getEnglisch() : t.getDeutsch();
-            translations.put(t.getKey(), value != null ? value : t.getKey());
+    /**
+     * Export with compressed content streams — the PDFs are archived
+     * ({@link RechnungStorageService}). Embedded fonts are subset by the PDF library anyway.
+     */
+    private static void exportCompressed(JasperPrint jasperPrint, OutputStream os) throws JRException {
+        SimplePdfExporterConfiguration configuration = new SimplePdfExporterConfiguration();
+        configuration.setCompressed(true);
+        JRPdfExporter exporter = new JRPdfExporter();
+        exporter.setExporterInput(new SimpleExporterInput(jasperPrint));
+        exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(os));
+        exporter.setConfiguration(configuration);
+        exporter.exportReport();
+    }
+
+    /**
+     * Fixed Jasper parameters of a language; rebuilt as soon as
+     * {@link TranslationService#getBundle} returns a new bundle.
+     */
+    private Basis basis(String sprache) {
+        Map<String, String> bundle = translationService.getBundle(sprache);
+        return basisJeSprache.compute(sprachSchluessel(sprache),
+                (key, basis) -> basis != null && basis.bundle() == bundle
+                        ? basis
+                        : new Basis(bundle, Map.of("TRANSLATIONS", bundle), fingerabdruck(bundle)));
+    }
+
+    private static String sprachSchluessel(String sprache) {
+        return "en".equalsIgnoreCase(sprache) ? "en" : "de";
+    }
+
+    private static byte[] fingerabdruck(Map<String, String> bundle) {
+        MessageDigest digest = sha256();
+        new TreeMap<>(bundle).forEach((key, text) -> {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(text).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        });
+        return digest.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        return translations;
     }
 
     /**
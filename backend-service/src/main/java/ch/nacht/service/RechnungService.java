@@ -18,11 +18,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.Year;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -57,11 +62,67 @@ public class RechnungService {
         this.hibernateFilterService = hibernateFilterService;
     }
 
+    /**
+     * Datenzugriff der Berechnung: {@link #einzeln} fragt je Aufruf ab (einzelne Rechnung), der
+     * {@link RechnungVorlauf} eines Laufs liest aus vorab geladenen Daten.
+     */
+    interface Datenquelle {
+
+        /** Tarife des Typs, die {@code von} bis {@code bis} überschneiden, nach Gültigkeitsbeginn. */
+        List<Tarif> tarife(TarifTyp typ, LocalDate von, LocalDate bis);
+
+        /** Summe {@code total} der Einheit von {@code von} 00:00 bis {@code bis} 24:00. */
+        double summeTotal(Einheit einheit, LocalDate von, LocalDate bis);
+
+        /** Summe {@code zevCalculated} der Einheit von {@code von} 00:00 bis {@code bis} 24:00. */
+        double summeZevCalculated(Einheit einheit, LocalDate von, LocalDate bis);
+
+        /** Tarifpositionen aller Einheiten des Mieters, deren Quartal den Zeitraum überschneidet. */
+        List<Tarifposition> positionen(Mieter mieter, LocalDate von, LocalDate bis);
+
+        EinstellungenDTO einstellungen();
+    }
+
+    private final Datenquelle einzeln = new Datenquelle() {
+        @Override
+        public List<Tarif> tarife(TarifTyp typ, LocalDate von, LocalDate bis) {
+            return tarifService.getTarifeForZeitraum(typ, von, bis);
+        }
+
+        @Override
+        public double summeTotal(Einheit einheit, LocalDate von, LocalDate bis) {
+            Double sum = messwerteRepository.sumTotalByEinheitAndZeitBetween(
+                    einheit, von.atStartOfDay(), bis.plusDays(1).atStartOfDay());
+            return sum != null ? sum : 0.0;
+        }
+
+        @Override
+        public double summeZevCalculated(Einheit einheit, LocalDate von, LocalDate bis) {
+            Double sum = messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(
+                    einheit, von.atStartOfDay(), bis.plusDays(1).atStartOfDay());
+            return sum != null ? sum : 0.0;
+        }
+
+        @Override
+        public List<Tarifposition> positionen(Mieter mieter, LocalDate von, LocalDate bis) {
+            return tarifpositionService.getFuerRechnung(mieterService.getEinheitIds(mieter.getId()), von, bis);
+        }
+
+        @Override
+        public EinstellungenDTO einstellungen() {
+            return einstellungenService.getEinstellungenOrThrow();
+        }
+    };
+
     /**
      * Calculate invoices for the given unit IDs and time period.
      * Creates separate invoices for each tenant within the period.
      * Producers receive invoices with GRUNDGEBUEHR lines only.
      *
+     * <p>Alle Daten des Laufs werden vorab mit wenigen Abfragen geladen ({@link RechnungVorlauf}),
+     * die Rechnungen danach im Speicher berechnet - die Anzahl Abfragen hängt nicht von der
+     * Anzahl Einheiten, Mieter und Tarifperioden ab.
+     *
      * @param einheitIds List of unit IDs to generate invoices for
      * @param von Start date (inclusive)
      * @param bis End date (inclusive)
@@ -73,16 +134,19 @@ public class RechnungService {
         hibernateFilterService.enableOrgFilter();
         log.info("Calculating invoices for {} units from {} to {}", einheitIds.size(), von, bis);
 
+        Map<Long, Einheit> ausgewaehlt = new LinkedHashMap<>();
+        einheitRepository.findAllById(einheitIds).forEach(e -> ausgewaehlt.put(e.getId(), e));
+
         // Validate ZEV/VNB tariff coverage only if consumer units are selected
-        boolean hasConsumers = einheitIds.stream()
-                .anyMatch(id -> einheitRepository.findById(id)
-                        .map(e -> e.getTyp() == EinheitTyp.CONSUMER)
-                        .orElse(false));
+        boolean hasConsumers = ausgewaehlt.values().stream()
+                .anyMatch(e -> e.getTyp() == EinheitTyp.CONSUMER);
 
         if (hasConsumers) {
             tarifService.validateTarifAbdeckung(von, bis);
         }
 
+        RechnungVorlauf vorlauf = ladeVorlauf(ausgewaehlt, von, bis);
+
         List<RechnungDTO> rechnungen = new ArrayList<>();
         // Mieter, die bereits eine Ladestations-Rechnung erhalten haben. Ein Nutzer ohne Wohnung
         // kann mehrere Ladestationen haben; ohne diese Merkliste entstuende je gewaehlter
@@ -92,14 +156,14 @@ public class RechnungService {
         Set<Long> ladestationsRechnungErstellt = new HashSet<>();
 
         for (Long einheitId : einheitIds) {
-            einheitRepository.findById(einheitId).ifPresent(einheit -> {
+            Optional.ofNullable(ausgewaehlt.get(einheitId)).ifPresent(einheit -> {
                 if (einheit.getTyp() == EinheitTyp.CONSUMER) {
                     // Get all tenants for this unit within the period
-                    List<Mieter> mieter = mieterService.getMieterForQuartal(einheitId, von, bis);
+                    List<Mieter> mieter = vorlauf.mieter(einheitId);
 
                     if (mieter.isEmpty()) {
                         // No tenant: create invoice without tenant data
-                        RechnungDTO rechnung = berechneRechnung(einheit, null, von, bis);
+                        RechnungDTO rechnung = berechneRechnung(vorlauf, einheit, null, von, bis);
                         rechnungen.add(rechnung);
                         log.debug("Calculated invoice for unit {} (no tenant): {} CHF",
                                 einheit.getName(), rechnung.getEndBetrag());
@@ -111,7 +175,7 @@ public class RechnungService {
                             LocalDate effektivBis = (m.getMietende() == null || m.getMietende().isAfter(bis))
                                     ? bis : m.getMietende();
 
-                            RechnungDTO rechnung = berechneRechnung(einheit, m, effektivVon, effektivBis);
+                            RechnungDTO rechnung = berechneRechnung(vorlauf, einheit, m, effektivVon, effektivBis);
                             rechnungen.add(rechnung);
                             log.debug("Calculated invoice for unit {}, tenant {} ({} to {}): {} CHF",
                                     einheit.getName(), m.getName(), effektivVon, effektivBis, rechnung.getEndBetrag());
@@ -119,7 +183,7 @@ public class RechnungService {
                     }
                 } else if (einheit.getTyp() == EinheitTyp.PRODUCER) {
                     // Producers receive GRUNDGEBUEHR lines only
-                    RechnungDTO rechnung = berechneProduzentenRechnung(einheit, von, bis);
+                    RechnungDTO rechnung = berechneProduzentenRechnung(vorlauf, einheit, von, bis);
                     if (!rechnung.getTarifZeilen().isEmpty()) {
                         rechnungen.add(rechnung);
                         log.debug("Calculated producer invoice for unit {}: {} CHF",
@@ -132,8 +196,8 @@ public class RechnungService {
                     // keine Wohnung hat (Specs/Ladestationen.md FR-1.5). Hat er eine, erscheinen
                     // seine Ladestrom-Positionen auf deren Rechnung - sonst bekaeme er zwei
                     // Rechnungen mit derselben Zeile.
-                    for (Mieter m : mieterService.getMieterForQuartal(einheitId, von, bis)) {
-                        if (hatWohnung(m)) {
+                    for (Mieter m : vorlauf.mieter(einheitId)) {
+                        if (vorlauf.hatWohnung(m)) {
                             log.debug("Skipping charging unit {} for tenant {} - positions appear "
                                             + "on the invoice of their consumer unit",
                                     einheit.getName(), m.getName());
@@ -152,7 +216,8 @@ public class RechnungService {
                         LocalDate effektivVon = m.getMietbeginn().isBefore(von) ? von : m.getMietbeginn();
                         LocalDate effektivBis = (m.getMietende() == null || m.getMietende().isAfter(bis))
                                 ? bis : m.getMietende();
-                        RechnungDTO rechnung = berechneLadestationRechnung(einheit, m, effektivVon, effektivBis);
+                        RechnungDTO rechnung = berechneLadestationRechnung(vorlauf, einheit, m,
+                                effektivVon, effektivBis);
                         if (!rechnung.getTarifZeilen().isEmpty()) {
                             rechnungen.add(rechnung);
                             log.debug("Calculated charging invoice for unit {}, tenant {}: {} CHF",
@@ -175,6 +240,74 @@ public class RechnungService {
         return rechnungen;
     }
 
+    /**
+     * Lädt alles, was die Rechnungen des Laufs brauchen, mit je einer Abfrage: Mieter der
+     * Wohnungen und Ladestationen (samt Einheiten-Zuordnung), fehlende Einheiten dieser Mieter,
+     * ZEV-/VNB-/Grundgebühr-Tarife, Tarifpositionen der abzurechnenden Mieter und die
+     * Tagessummen der Messwerte aller Wohnungen. Was der Lauf nicht braucht, wird nicht abgefragt.
+     *
+     * @param ausgewaehlt Ausgewählte Einheiten nach ID
+     * @param von Start date (inclusive)
+     * @param bis End date (inclusive)
+     * @return Vorab geladene Daten
+     */
+    private RechnungVorlauf ladeVorlauf(Map<Long, Einheit> ausgewaehlt, LocalDate von, LocalDate bis) {
+        List<Long> verbraucher = idsVomTyp(ausgewaehlt, EinheitTyp.CONSUMER);
+        List<Long> ladestationen = idsVomTyp(ausgewaehlt, EinheitTyp.LADESTATION);
+        List<Long> mitMietern = new ArrayList<>(verbraucher);
+        mitMietern.addAll(ladestationen);
+
+        Map<Long, List<Mieter>> mieter = mitMietern.isEmpty()
+                ? Map.of()
+                : mieterService.getMieterForEinheitenAndQuartal(mitMietern, von, bis);
+
+        // Einheiten der Mieter, die nicht ausgewählt sind (Wohnung einer Ladestation?)
+        Map<Long, Einheit> einheiten = new HashMap<>(ausgewaehlt);
+        List<Long> fehlend = mieter.values().stream()
+                .flatMap(List::stream)
+                .flatMap(m -> m.getEinheitIds().stream())
+                .filter(id -> !einheiten.containsKey(id))
+                .distinct()
+                .toList();
+        if (!fehlend.isEmpty()) {
+            einheitRepository.findAllById(fehlend).forEach(e -> einheiten.put(e.getId(), e));
+        }
+
+        boolean mitTarifen = !verbraucher.isEmpty() || ausgewaehlt.values().stream()
+                .anyMatch(e -> e.getTyp() == EinheitTyp.PRODUCER);
+        List<Tarif> tarife = mitTarifen
+                ? tarifService.getTarifeByTypenForZeitraum(
+                        EnumSet.of(TarifTyp.ZEV, TarifTyp.VNB, TarifTyp.GRUNDGEBUEHR), von, bis)
+                : List.of();
+
+        List<Object[]> messwerte = verbraucher.isEmpty()
+                ? List.of()
+                : messwerteRepository.sumTotalAndZevCalculatedByEinheitAndTag(
+                        verbraucher, von.atStartOfDay(), bis.plusDays(1).atStartOfDay());
+
+        // Positionen nur fuer Mieter, die eine Rechnung erhalten: die der Wohnungen und die der
+        // Ladestationen ohne Wohnung
+        Set<Long> positionsEinheiten = new LinkedHashSet<>();
+        verbraucher.forEach(id -> mieter.getOrDefault(id, List.of())
+                .forEach(m -> positionsEinheiten.addAll(m.getEinheitIds())));
+        ladestationen.forEach(id -> mieter.getOrDefault(id, List.of()).stream()
+                .filter(m -> !RechnungVorlauf.hatWohnung(m, einheiten))
+                .forEach(m -> positionsEinheiten.addAll(m.getEinheitIds())));
+        List<Tarifposition> positionen = positionsEinheiten.isEmpty()
+                ? List.of()
+                : tarifpositionService.getFuerRechnung(new ArrayList<>(positionsEinheiten), von, bis);
+
+        return new RechnungVorlauf(von, bis, einheiten, mieter, tarife, positionen, messwerte,
+                einstellungenService::getEinstellungenOrThrow);
+    }
+
+    private static List<Long> idsVomTyp(Map<Long, Einheit> einheiten, EinheitTyp typ) {
+        return einheiten.values().stream()
+                .filter(e -> e.getTyp() == typ)
+                .map(Einheit::getId)
+                .toList();
+    }
+
     /**
      * Calculate a single invoice for a consumer unit, optional tenant, and time period.
      *
@@ -185,6 +318,11 @@ public class RechnungService {
      * @return Calculated invoice DTO
      */
     public RechnungDTO berechneRechnung(Einheit einheit, Mieter mieter, LocalDate von, LocalDate bis) {
+        return berechneRechnung(einzeln, einheit, mieter, von, bis);
+    }
+
+    private RechnungDTO berechneRechnung(Datenquelle daten, Einheit einheit, Mieter mieter,
+                                         LocalDate von, LocalDate bis) {
         RechnungDTO rechnung = new RechnungDTO();
 
         // Unit information
@@ -208,22 +346,22 @@ public class RechnungService {
         rechnung.setErstellungsdatum(LocalDate.now());
 
         // Get tariffs for the period
-        List<Tarif> zevTarife = tarifService.getTarifeForZeitraum(TarifTyp.ZEV, von, bis);
-        List<Tarif> vnbTarife = tarifService.getTarifeForZeitraum(TarifTyp.VNB, von, bis);
+        List<Tarif> zevTarife = daten.tarife(TarifTyp.ZEV, von, bis);
+        List<Tarif> vnbTarife = daten.tarife(TarifTyp.VNB, von, bis);
 
         double totalBetrag = 0.0;
 
         // Calculate ZEV tariff lines (based on zevCalculated measurements)
-        totalBetrag += berechneTarifZeilen(rechnung, einheit, von, bis, zevTarife, TarifTyp.ZEV);
+        totalBetrag += berechneTarifZeilen(daten, rechnung, einheit, von, bis, zevTarife, TarifTyp.ZEV);
 
         // Calculate VNB tariff lines (based on total - zevCalculated measurements)
-        totalBetrag += berechneTarifZeilen(rechnung, einheit, von, bis, vnbTarife, TarifTyp.VNB);
+        totalBetrag += berechneTarifZeilen(daten, rechnung, einheit, von, bis, vnbTarife, TarifTyp.VNB);
 
         // Manually captured positions (Ladestrom etc.) - after ZEV/VNB, before GRUNDGEBUEHR
-        totalBetrag += berechneTarifpositionsZeilen(rechnung, mieter, von, bis);
+        totalBetrag += berechneTarifpositionsZeilen(daten, rechnung, mieter, von, bis);
 
         // Calculate GRUNDGEBUEHR lines (optional - no error if no tariff found)
-        List<Tarif> grundgebuehrTarife = tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis);
+        List<Tarif> grundgebuehrTarife = daten.tarife(TarifTyp.GRUNDGEBUEHR, von, bis);
         if (!grundgebuehrTarife.isEmpty()) {
             totalBetrag += berechneGrundgebuehrZeilen(rechnung, von, bis, grundgebuehrTarife);
         }
@@ -237,7 +375,7 @@ public class RechnungService {
         rechnung.setEndBetrag(endBetrag);
 
         // Configuration values from database settings
-        EinstellungenDTO einstellungen = einstellungenService.getEinstellungenOrThrow();
+        EinstellungenDTO einstellungen = daten.einstellungen();
         RechnungKonfigurationDTO config = einstellungen.getRechnung();
         RechnungKonfigurationDTO.StellerDTO steller = config.getSteller();
 
@@ -253,12 +391,13 @@ public class RechnungService {
     /**
      * Calculate an invoice for a producer unit containing only GRUNDGEBUEHR lines.
      *
+     * @param daten Data access (single query or prefetched run)
      * @param einheit The producer unit
      * @param von Start date (inclusive)
      * @param bis End date (inclusive)
      * @return Calculated invoice DTO (may have empty tarifZeilen if no GRUNDGEBUEHR tariffs exist)
      */
-    private RechnungDTO berechneProduzentenRechnung(Einheit einheit, LocalDate von, LocalDate bis) {
+    private RechnungDTO berechneProduzentenRechnung(Datenquelle daten, Einheit einheit, LocalDate von, LocalDate bis) {
         RechnungDTO rechnung = new RechnungDTO();
         rechnung.setEinheitId(einheit.getId());
         rechnung.setEinheitName(einheit.getName());
@@ -268,7 +407,7 @@ public class RechnungService {
         rechnung.setErstellungsdatum(LocalDate.now());
 
         // Producers are only charged GRUNDGEBUEHR tariffs explicitly flagged for producers
-        List<Tarif> tarife = tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis).stream()
+        List<Tarif> tarife = daten.tarife(TarifTyp.GRUNDGEBUEHR, von, bis).stream()
                 .filter(Tarif::isProduzentVerrechnen)
                 .toList();
         double total = berechneGrundgebuehrZeilen(rechnung, von, bis, tarife);
@@ -278,7 +417,7 @@ public class RechnungService {
         rechnung.setRundung(endBetrag - total);
         rechnung.setEndBetrag(endBetrag);
 
-        EinstellungenDTO einstellungen = einstellungenService.getEinstellungenOrThrow();
+        EinstellungenDTO einstellungen = daten.einstellungen();
         RechnungKonfigurationDTO config = einstellungen.getRechnung();
         RechnungKonfigurationDTO.StellerDTO steller = config.getSteller();
 
@@ -291,19 +430,6 @@ public class RechnungService {
         return rechnung;
     }
 
-    /**
-     * Hat der Mieter eine Wohnung? Nur dann erscheinen seine Ladestrom-Positionen dort und die
-     * Ladestation braucht keine eigene Rechnung.
-     *
-     * @param mieter Tenant
-     * @return true if a CONSUMER unit is assigned to the tenant
-     */
-    private boolean hatWohnung(Mieter mieter) {
-        return mieterService.getEinheitIds(mieter.getId()).stream()
-                .map(einheitRepository::findById)
-                .anyMatch(e -> e.map(x -> x.getTyp() == EinheitTyp.CONSUMER).orElse(false));
-    }
-
     /**
      * Calculate an invoice for a charging unit whose tenant has no consumer unit.
      *
@@ -311,13 +437,14 @@ public class RechnungService {
      * keine Messwerte (also keine ZEV-/VNB-Zeilen) und traegt keine Grundgebuehr - die gilt je
      * Wohnungszaehler.
      *
+     * @param daten Data access (single query or prefetched run)
      * @param einheit The charging unit
      * @param mieter The tenant
      * @param von Start date (inclusive)
      * @param bis End date (inclusive)
      * @return Calculated invoice DTO (may have empty tarifZeilen if no positions exist)
      */
-    private RechnungDTO berechneLadestationRechnung(Einheit einheit, Mieter mieter,
+    private RechnungDTO berechneLadestationRechnung(Datenquelle daten, Einheit einheit, Mieter mieter,
                                                     LocalDate von, LocalDate bis) {
         RechnungDTO rechnung = new RechnungDTO();
         rechnung.setEinheitId(einheit.getId());
@@ -333,14 +460,14 @@ public class RechnungService {
         rechnung.setBis(bis);
         rechnung.setErstellungsdatum(LocalDate.now());
 
-        double total = berechneTarifpositionsZeilen(rechnung, mieter, von, bis);
+        double total = berechneTarifpositionsZeilen(daten, rechnung, mieter, von, bis);
         double endBetrag = roundTo5Rappen(total);
 
         rechnung.setTotalBetrag(total);
         rechnung.setRundung(endBetrag - total);
         rechnung.setEndBetrag(endBetrag);
 
-        EinstellungenDTO einstellungen = einstellungenService.getEinstellungenOrThrow();
+        EinstellungenDTO einstellungen = daten.einstellungen();
         RechnungKonfigurationDTO config = einstellungen.getRechnung();
         RechnungKonfigurationDTO.StellerDTO steller = config.getSteller();
 
@@ -371,13 +498,14 @@ public class RechnungService {
      * for a partial period only, and with the stricter rule their position would never appear.
      * Double billing cannot arise because each position belongs to exactly one tenant.
      *
+     * @param daten Data access (single query or prefetched run)
      * @param rechnung Invoice to add the lines to
      * @param mieter Tenant (may be null for vacant units - then there are no positions)
      * @param von Period start (inclusive)
      * @param bis Period end (inclusive)
      * @return Sum of the added line amounts
      */
-    private double berechneTarifpositionsZeilen(RechnungDTO rechnung, Mieter mieter,
+    private double berechneTarifpositionsZeilen(Datenquelle daten, RechnungDTO rechnung, Mieter mieter,
                                                 LocalDate von, LocalDate bis) {
         if (mieter == null) {
             return 0.0;
@@ -386,8 +514,7 @@ public class RechnungService {
         // Positionen ALLER Einheiten des Mieters - Wohnung und Ladestation(en) landen damit auf
         // derselben Rechnung (Specs/Ladestationen.md FR-1.5).
         double total = 0.0;
-        for (Tarifposition position : tarifpositionService.getFuerRechnung(
-                mieterService.getEinheitIds(mieter.getId()), von, bis)) {
+        for (Tarifposition position : daten.positionen(mieter, von, bis)) {
             // Same rounding as the ZEV/VNB lines, so an invoice does not mix conventions.
             double menge = Math.round(position.getMenge().doubleValue());
             double preis = position.getTarif().getPreis().doubleValue();
@@ -529,8 +656,9 @@ public class RechnungService {
 
     /**
      * Calculate tariff lines for a specific tariff type (ZEV or VNB).
-     * For each tariff, queries the actual measurements for that tariff's validity period.
+     * For each tariff, sums the actual measurements for that tariff's validity period.
      *
+     * @param daten Data access (single query or prefetched run)
      * @param rechnung The invoice DTO to add lines to
      * @param einheit The unit
      * @param von Invoice start date
@@ -539,8 +667,8 @@ public class RechnungService {
      * @param typ Tariff type (ZEV or VNB)
      * @return Total amount for all lines of this type
      */
-    private double berechneTarifZeilen(RechnungDTO rechnung, Einheit einheit, LocalDate von, LocalDate bis,
-                                       List<Tarif> tarife, TarifTyp typ) {
+    private double berechneTarifZeilen(Datenquelle daten, RechnungDTO rechnung, Einheit einheit,
+                                       LocalDate von, LocalDate bis, List<Tarif> tarife, TarifTyp typ) {
         double totalBetrag = 0.0;
 
         if (tarife.isEmpty()) {
@@ -553,21 +681,15 @@ public class RechnungService {
             LocalDate effectiveVon = tarif.getGueltigVon().isBefore(von) ? von : tarif.getGueltigVon();
             LocalDate effectiveBis = tarif.getGueltigBis().isAfter(bis) ? bis : tarif.getGueltigBis();
 
-            // Query actual measurements for this specific period
-            LocalDateTime periodStart = effectiveVon.atStartOfDay();
-            LocalDateTime periodEnd = effectiveBis.plusDays(1).atStartOfDay(); // exclusive end
-
+            // Actual measurements for this specific period
             double mengeRaw;
             if (typ == TarifTyp.ZEV) {
                 // ZEV: use zevCalculated values
-                Double sum = messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(einheit, periodStart, periodEnd);
-                mengeRaw = sum != null ? sum : 0.0;
+                mengeRaw = daten.summeZevCalculated(einheit, effectiveVon, effectiveBis);
             } else {
                 // VNB: use (total - zevCalculated) values
-                Double sumTotal = messwerteRepository.sumTotalByEinheitAndZeitBetween(einheit, periodStart, periodEnd);
-                Double sumZev = messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(einheit, periodStart, periodEnd);
-                double total = sumTotal != null ? sumTotal : 0.0;
-                double zev = sumZev != null ? sumZev : 0.0;
+                double total = daten.summeTotal(einheit, effectiveVon, effectiveBis);
+                double zev = daten.summeZevCalculated(einheit, effectiveVon, effectiveBis);
                 mengeRaw = Math.max(0, total - zev);
             }
 
@@ -1,40 +1,140 @@
 package ch.nacht.service;
 
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
- * Service for temporary in-memory storage of generated invoice PDFs.
- * PDFs are automatically cleaned up after 30 minutes.
+ * Archive of generated invoice PDFs on the file system ({@code rechnung.archiv.verzeichnis}).
+ *
+ * <p>Content-addressed: every PDF is stored once under its SHA-256 ({@code inhalt/ab/abcd….pdf});
+ * the download key of an organisation is a small reference file ({@code org/<orgId>/<key>})
+ * containing that hash. Both are written to a temporary file and moved into place, so readers
+ * never see a half-written PDF. References expire after {@code rechnung.archiv.aufbewahrung};
+ * PDFs no longer referenced are removed by {@link #cleanupExpired()}.
+ *
+ * <p>Download keys start with the id of the run that produced them ({@code <lauf>_<unit>}, see
+ * {@link #keys(String)}), so concurrent runs of one organisation never overwrite each other.
+ *
+ * <p>Next to the download key, a PDF can be stored under the fingerprint of its inputs
+ * ({@link RechnungPdfService#fingerabdruck}, {@code memo/<orgId>/<fingerabdruck>}). The next
+ * run finds unchanged invoices there ({@link #findMemo}) and does not render them again; these
+ * entries are independent of the run and expire like references.
+ *
+ * <p>Recently stored or read PDFs are kept in a cache bounded by size ({@value #CACHE_NAME},
+ * see {@code CacheConfig}) — heap usage does not grow with the size of an invoice run.
+ * Downloads are copied from the file channel ({@link #uebertrage}) without loading the PDF;
+ * a whole run can be streamed as ZIP ({@link #schreibeZip}) or merged PDF ({@link #schreibeSammelPdf}).
  */
 @Service
 public class RechnungStorageService {
 
     private static final Logger log = LoggerFactory.getLogger(RechnungStorageService.class);
-    private static final long EXPIRY_MINUTES = 30;
 
-    private final Map<String, StoredPdf> storage = new ConcurrentHashMap<>();
+    public static final String CACHE_NAME = "rechnungPdf";
+
+    /** Unreferenced PDFs younger than this may be about to get their reference — keep them. */
+    private static final Duration KARENZ = Duration.ofHours(1);
+
+    /**
+     * A PDF in the archive.
+     *
+     * @param hash SHA-256 of the content (hex)
+     * @param pfad File of the content
+     * @param groesse Size in bytes
+     */
+    public record Archivdatei(String hash, Path pfad, long groesse) {
+    }
 
     private final OrganizationContextService organizationContextService;
+    private final CacheManager cacheManager;
+    private final Path inhalte;
+    private final Path referenzen;
+    private final Path memos;
+    private final Duration aufbewahrung;
 
-    public RechnungStorageService(OrganizationContextService organizationContextService) {
+    public RechnungStorageService(OrganizationContextService organizationContextService,
+                                  CacheManager cacheManager,
+                                  @Value("${rechnung.archiv.verzeichnis:${java.io.tmpdir}/zev-rechnungen}") Path verzeichnis,
+                                  @Value("${rechnung.archiv.aufbewahrung:P30D}") Duration aufbewahrung) {
         this.organizationContextService = organizationContextService;
+        this.cacheManager = cacheManager;
+        this.inhalte = verzeichnis.resolve("inhalt");
+        this.referenzen = verzeichnis.resolve("org");
+        this.memos = verzeichnis.resolve("memo");
+        this.aufbewahrung = aufbewahrung;
+        try {
+            Files.createDirectories(inhalte);
+            Files.createDirectories(referenzen);
+            Files.createDirectories(memos);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invoice archive not accessible: " + verzeichnis, e);
+        }
+        log.info("Invoice archive at {} (retention {})", verzeichnis, aufbewahrung);
     }
 
     /**
-     * Build the tenant-scoped internal storage key.
-     * The PDFs are isolated per organisation, so a {@code zev_admin} of one tenant
-     * can never retrieve another tenant's invoice via a guessed unit-name key.
+     * Reference file of a key. The PDFs are isolated per organisation, so a {@code zev_admin}
+     * of one tenant can never retrieve another tenant's invoice via a guessed unit-name key.
      */
-    private String orgScopedKey(String key) {
-        return organizationContextService.getCurrentOrgId() + ":" + sanitizeKey(key);
+    private Path referenz(Long orgId, String key) {
+        String sanitized = sanitizeKey(key);
+        if (sanitized.isEmpty()) {
+            throw new IllegalArgumentException("Invalid invoice key: " + key);
+        }
+        return referenzen.resolve(String.valueOf(orgId)).resolve(sanitized);
+    }
+
+    /** Memo file of a fingerprint; {@code null} if it is not a SHA-256 in hex. */
+    private Path memo(Long orgId, String fingerabdruck) {
+        if (fingerabdruck == null || !fingerabdruck.matches("[0-9a-f]{64}")) {
+            return null;
+        }
+        return memos.resolve(String.valueOf(orgId)).resolve(fingerabdruck);
+    }
+
+    private Path inhalt(String hash) {
+        return inhalte.resolve(hash.substring(0, 2)).resolve(hash + ".pdf");
     }
 
     /**
@@ -44,8 +144,143 @@ public class RechnungStorageService {
      * @param pdf The PDF bytes
      */
     public void store(String key, byte[] pdf) {
-        storage.put(orgScopedKey(key), new StoredPdf(pdf, Instant.now()));
-        log.debug("Stored PDF with key: {}, size: {} bytes", sanitizeKey(key), pdf.length);
+        store(organizationContextService.getCurrentOrgId(), key, pdf);
+    }
+
+    /**
+     * Store a PDF with the given key and the fingerprint of its inputs, scoped to the current
+     * organisation.
+     *
+     * @param key The storage key (sanitized unit name)
+     * @param pdf The PDF bytes
+     * @param fingerabdruck Fingerprint of the invoice, {@code null} = none
+     */
+    public void store(String key, byte[] pdf, String fingerabdruck) {
+        store(organizationContextService.getCurrentOrgId(), key, pdf, fingerabdruck);
+    }
+
+    /**
+     * Store a PDF for an explicitly given organisation — for background invoice jobs without
+     * request context. An identical PDF already in the archive is only referenced.
+     *
+     * @param orgId The organisation
+     * @param key The storage key (sanitized unit name)
+     * @param pdf The PDF bytes
+     * @return SHA-256 of the content (hex)
+     */
+    public String store(Long orgId, String key, byte[] pdf) {
+        return store(orgId, key, pdf, null);
+    }
+
+    /**
+     * Store a PDF for an explicitly given organisation, additionally under the fingerprint of its
+     * inputs, so the next run can reuse it ({@link #findMemo(Long, String)}).
+     *
+     * @param orgId The organisation
+     * @param key The storage key (sanitized unit name)
+     * @param pdf The PDF bytes
+     * @param fingerabdruck Fingerprint of the invoice, {@code null} = none
+     * @return SHA-256 of the content (hex)
+     */
+    public String store(Long orgId, String key, byte[] pdf, String fingerabdruck) {
+        String hash = sha256(pdf);
+        Path ziel = inhalt(hash);
+        try {
+            if (Files.exists(ziel)) {
+                // Frisch halten, damit die Bereinigung den Inhalt nicht vor der neuen Referenz entfernt
+                Files.setLastModifiedTime(ziel, FileTime.from(Instant.now()));
+            } else {
+                schreibeAtomar(ziel, pdf);
+            }
+            schreibeAtomar(referenz(orgId, key), hash.getBytes(StandardCharsets.US_ASCII));
+            Path memo = memo(orgId, fingerabdruck);
+            if (memo != null) {
+                schreibeAtomar(memo, hash.getBytes(StandardCharsets.US_ASCII));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive invoice " + sanitizeKey(key), e);
+        }
+        Cache cache = cache();
+        if (cache != null) {
+            cache.put(hash, pdf);
+        }
+        log.debug("Stored PDF with key: {}, size: {} bytes, hash: {}", sanitizeKey(key), pdf.length, hash);
+        return hash;
+    }
+
+    /**
+     * Look up a PDF by key within the current organisation.
+     *
+     * @param key The storage key
+     * @return The archived PDF if found and not expired
+     */
+    public Optional<Archivdatei> find(String key) {
+        return find(organizationContextService.getCurrentOrgId(), key);
+    }
+
+    /**
+     * Look up a PDF by key within an explicitly given organisation.
+     *
+     * @param orgId The organisation
+     * @param key The storage key
+     * @return The archived PDF if found and not expired
+     */
+    public Optional<Archivdatei> find(Long orgId, String key) {
+        if (sanitizeKey(key).isEmpty()) {
+            return Optional.empty();
+        }
+        Path referenz = referenz(orgId, key);
+        try {
+            if (abgelaufen(Files.getLastModifiedTime(referenz))) {
+                return Optional.empty();
+            }
+            String hash = Files.readString(referenz, StandardCharsets.US_ASCII).trim();
+            Path pfad = inhalt(hash);
+            return Optional.of(new Archivdatei(hash, pfad, Files.size(pfad)));
+        } catch (NoSuchFileException e) {
+            log.debug("PDF not found for key: {}", sanitizeKey(key));
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read invoice archive for " + sanitizeKey(key), e);
+        }
+    }
+
+    /**
+     * Previously rendered PDF with the given fingerprint, within the current organisation.
+     *
+     * @param fingerabdruck Fingerprint of the invoice
+     * @return The PDF bytes if found and not expired
+     */
+    public Optional<byte[]> findMemo(String fingerabdruck) {
+        return findMemo(organizationContextService.getCurrentOrgId(), fingerabdruck);
+    }
+
+    /**
+     * Previously rendered PDF with the given fingerprint, within an explicitly given organisation.
+     *
+     * @param orgId The organisation
+     * @param fingerabdruck Fingerprint of the invoice
+     * @return The PDF bytes if found and not expired
+     */
+    public Optional<byte[]> findMemo(Long orgId, String fingerabdruck) {
+        Path memo = memo(orgId, fingerabdruck);
+        if (memo == null) {
+            return Optional.empty();
+        }
+        try {
+            if (abgelaufen(Files.getLastModifiedTime(memo))) {
+                return Optional.empty();
+            }
+            String hash = Files.readString(memo, StandardCharsets.US_ASCII).trim();
+            Path pfad = inhalt(hash);
+            return Optional.of(lade(new Archivdatei(hash, pfad, Files.size(pfad))));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | UncheckedIOException e) {
+            // Ohne Memo wird die Rechnung eben neu dargestellt
+            log.warn("Failed to read invoice memo {}: {}", fingerabdruck, e.getMessage());
+            return Optional.empty();
+        }
     }
 
     /**
@@ -55,13 +290,143 @@ public class RechnungStorageService {
      * @return The PDF bytes if found and not expired
      */
     public Optional<byte[]> get(String key) {
-        StoredPdf stored = storage.get(orgScopedKey(key));
-        if (stored != null && !isExpired(stored)) {
-            log.debug("Retrieved PDF with key: {}", sanitizeKey(key));
-            return Optional.of(stored.pdf);
+        return find(key).map(this::lade);
+    }
+
+    /**
+     * Content of an archived PDF, from the cache if present.
+     */
+    public byte[] lade(Archivdatei datei) {
+        Cache cache = cache();
+        byte[] pdf = cache != null ? cache.get(datei.hash(), byte[].class) : null;
+        if (pdf == null) {
+            try {
+                pdf = Files.readAllBytes(datei.pfad());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read archived invoice " + datei.hash(), e);
+            }
+            if (cache != null) {
+                cache.put(datei.hash(), pdf);
+            }
+        }
+        return pdf;
+    }
+
+    /**
+     * Copy a byte range of an archived PDF to {@code out}: from the cache if present, otherwise
+     * via {@link FileChannel#transferTo} without loading the PDF onto the heap.
+     *
+     * @param datei The archived PDF
+     * @param start First byte
+     * @param laenge Number of bytes
+     * @param out Target (e.g. the response body)
+     */
+    public void uebertrage(Archivdatei datei, long start, long laenge, OutputStream out) throws IOException {
+        Cache cache = cache();
+        byte[] pdf = cache != null ? cache.get(datei.hash(), byte[].class) : null;
+        if (pdf != null) {
+            out.write(pdf, (int) start, (int) laenge);
+            return;
+        }
+        try (FileChannel kanal = FileChannel.open(datei.pfad(), StandardOpenOption.READ)) {
+            WritableByteChannel ziel = Channels.newChannel(out);
+            long position = start;
+            long ende = start + laenge;
+            while (position < ende) {
+                long uebertragen = kanal.transferTo(position, ende - position, ziel);
+                if (uebertragen <= 0) {
+                    throw new IOException("Unexpected end of archived invoice " + datei.hash());
+                }
+                position += uebertragen;
+            }
+        }
+    }
+
+    /**
+     * Keys of the PDFs of one run of the current organisation, sorted.
+     *
+     * @param lauf Run id (the part of the key before the first {@code _}, without {@code _})
+     */
+    public List<String> keys(String lauf) {
+        String praefix = sanitizeKey(lauf) + "_";
+        Path verzeichnis = referenzen.resolve(String.valueOf(organizationContextService.getCurrentOrgId()));
+        List<String> keys = new ArrayList<>();
+        try (DirectoryStream<Path> dateien = Files.newDirectoryStream(verzeichnis)) {
+            for (Path referenz : dateien) {
+                String name = referenz.getFileName().toString();
+                if (!name.startsWith(".") && name.startsWith(praefix)
+                        && !abgelaufen(Files.getLastModifiedTime(referenz))) {
+                    keys.add(name);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list invoice archive", e);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Write the given PDFs as a ZIP to {@code out}, one entry per PDF, each copied straight from
+     * the archive ({@link #uebertrage}) — only one PDF is in flight at a time. {@code out} is
+     * not closed.
+     *
+     * @param dateien File name in the ZIP → archived PDF, in the desired order
+     * @param out Target (e.g. the response body)
+     */
+    public void schreibeZip(Map<String, Archivdatei> dateien, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // PDF-Inhalte sind bereits komprimiert: schnellste Stufe reicht
+        zip.setLevel(Deflater.BEST_SPEED);
+        for (Map.Entry<String, Archivdatei> eintrag : dateien.entrySet()) {
+            zip.putNextEntry(new ZipEntry(eintrag.getKey()));
+            uebertrage(eintrag.getValue(), 0, eintrag.getValue().groesse(), zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Write the given PDFs merged into one printable PDF to {@code out}. The pages are copied
+     * invoice by invoice; each source is released before the next one is read, so memory does
+     * not grow with the number of invoices. {@code out} is not closed.
+     *
+     * @param dateien Archived PDFs in the desired order
+     * @param out Target (e.g. the response body)
+     */
+    public void schreibeSammelPdf(List<Archivdatei> dateien, OutputStream out) throws IOException {
+        Document dokument = new Document();
+        try {
+            PdfCopy kopie = new PdfCopy(dokument, out);
+            kopie.setCloseStream(false);
+            dokument.open();
+            for (Archivdatei datei : dateien) {
+                PdfReader reader = new PdfReader(lese(datei));
+                try {
+                    for (int seite = 1; seite <= reader.getNumberOfPages(); seite++) {
+                        kopie.addPage(kopie.getImportedPage(reader, seite));
+                    }
+                    kopie.freeReader(reader);
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (DocumentException e) {
+            throw new IOException("Failed to merge invoice PDFs", e);
+        } finally {
+            if (dokument.isOpen()) {
+                dokument.close();
+            }
         }
-        log.debug("PDF not found or expired for key: {}", sanitizeKey(key));
-        return Optional.empty();
+    }
+
+    /** Content from the cache if present, otherwise from the file — without filling the cache. */
+    private byte[] lese(Archivdatei datei) throws IOException {
+        Cache cache = cache();
+        byte[] pdf = cache != null ? cache.get(datei.hash(), byte[].class) : null;
+        return pdf != null ? pdf : Files.readAllBytes(datei.pfad());
     }
 
     /**
@@ -71,20 +436,18 @@ public class RechnungStorageService {
      * @return true if PDF exists and is not expired
      */
     public boolean exists(String key) {
-        StoredPdf stored = storage.get(orgScopedKey(key));
-        return stored != null && !isExpired(stored);
+        return exists(organizationContextService.getCurrentOrgId(), key);
     }
 
     /**
-     * Clear the stored PDFs of the current organisation (e.g., when generating a new batch).
-     * Other tenants' PDFs are not affected.
+     * Check if a PDF exists for the given key within an explicitly given organisation.
+     *
+     * @param orgId The organisation
+     * @param key The storage key
+     * @return true if PDF exists and is not expired
      */
-    public void clearAll() {
-        String prefix = organizationContextService.getCurrentOrgId() + ":";
-        int before = storage.size();
-        storage.keySet().removeIf(k -> k.startsWith(prefix));
-        log.info("Cleared {} stored PDFs for org {}", before - storage.size(),
-                organizationContextService.getCurrentOrgId());
+    public boolean exists(Long orgId, String key) {
+        return find(orgId, key).isPresent();
     }
 
     /**
@@ -112,33 +475,91 @@ public class RechnungStorageService {
     }
 
     /**
-     * Scheduled task to clean up expired PDFs.
-     * Runs every 5 minutes.
+     * Scheduled task to remove expired references and memos and contents no longer referenced
+     * by either. Runs every hour.
      */
-    @Scheduled(fixedRate = 300000) // 5 minutes
+    @Scheduled(fixedRate = 3600000) // 1 hour
     public void cleanupExpired() {
-        int beforeCount = storage.size();
-        storage.entrySet().removeIf(entry -> isExpired(entry.getValue()));
-        int removedCount = beforeCount - storage.size();
-        if (removedCount > 0) {
-            log.info("Cleaned up {} expired PDFs", removedCount);
+        Set<String> referenziert = new HashSet<>();
+        int abgelaufen;
+        int entfernt = 0;
+        try {
+            abgelaufen = bereinigeReferenzen(referenzen, referenziert) + bereinigeReferenzen(memos, referenziert);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Invoice archive cleanup aborted: {}", e.getMessage(), e);
+            return;
+        }
+        Instant grenze = Instant.now().minus(KARENZ);
+        try (Stream<Path> dateien = Files.walk(inhalte)) {
+            for (Path inhalt : (Iterable<Path>) dateien.filter(Files::isRegularFile)::iterator) {
+                String name = inhalt.getFileName().toString();
+                String hash = name.endsWith(".pdf") ? name.substring(0, name.length() - 4) : name;
+                if (!referenziert.contains(hash)
+                        && Files.getLastModifiedTime(inhalt).toInstant().isBefore(grenze)) {
+                    Files.deleteIfExists(inhalt);
+                    entfernt++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Invoice archive cleanup aborted: {}", e.getMessage(), e);
+            return;
+        }
+        if (abgelaufen > 0 || entfernt > 0) {
+            log.info("Cleaned up {} expired invoice references and {} unreferenced PDFs", abgelaufen, entfernt);
         }
-    }
-
-    private boolean isExpired(StoredPdf stored) {
-        return stored.createdAt.plusSeconds(EXPIRY_MINUTES * 60).isBefore(Instant.now());
     }
 
     /**
-     * Internal class to store PDF with timestamp.
+     * Delete the expired reference files below {@code verzeichnis} and collect the hashes the
+     * others point to.
+     *
+     * @return Number of deleted references
      */
-    private static class StoredPdf {
-        final byte[] pdf;
-        final Instant createdAt;
+    private int bereinigeReferenzen(Path verzeichnis, Set<String> referenziert) throws IOException {
+        int abgelaufen = 0;
+        try (Stream<Path> dateien = Files.walk(verzeichnis)) {
+            // Temporäre Dateien (".…tmp") werden gerade geschrieben und sind noch keine Referenz
+            for (Path referenz : (Iterable<Path>) dateien.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().startsWith("."))::iterator) {
+                if (abgelaufen(Files.getLastModifiedTime(referenz))) {
+                    Files.deleteIfExists(referenz);
+                    abgelaufen++;
+                } else {
+                    referenziert.add(Files.readString(referenz, StandardCharsets.US_ASCII).trim());
+                }
+            }
+        }
+        return abgelaufen;
+    }
 
-        StoredPdf(byte[] pdf, Instant createdAt) {
-            this.pdf = pdf;
-            this.createdAt = createdAt;
+    private boolean abgelaufen(FileTime geaendert) {
+        return geaendert.toInstant().plus(aufbewahrung).isBefore(Instant.now());
+    }
+
+    private static void schreibeAtomar(Path ziel, byte[] inhalt) throws IOException {
+        Files.createDirectories(ziel.getParent());
+        Path temp = Files.createTempFile(ziel.getParent(), ".", ".tmp");
+        try {
+            Files.write(temp, inhalt);
+            try {
+                Files.move(temp, ziel, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, ziel, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
+
+    private static String sha256(byte[] inhalt) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(inhalt));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
 }
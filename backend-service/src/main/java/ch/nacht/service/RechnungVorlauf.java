@@ -0,0 +1,146 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.EinstellungenDTO;
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.entity.Mieter;
+import ch.nacht.entity.Tarif;
+import ch.nacht.entity.TarifTyp;
+import ch.nacht.entity.Tarifposition;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Vorab geladene Daten eines Rechnungslaufs ({@link RechnungService#berechneRechnungen}): Einheiten,
+ * Mieter, Tarife, Tarifpositionen, Einstellungen und Tagessummen der Messwerte für den ganzen
+ * Zeitraum. Die einzelnen Rechnungen lesen daraus im Speicher statt je Einheit, Mieter und
+ * Tarifperiode eine eigene Abfrage abzusetzen.
+ *
+ * <p>Die Filter entsprechen den Abfragen der Einzelberechnung: Tarife überschneiden den Zeitraum,
+ * Positionen gehören zu einer Einheit des Mieters und ihr Quartal überschneidet den Zeitraum,
+ * Messwerte liegen in {@code [von 00:00, bis + 1 Tag 00:00)}.
+ */
+final class RechnungVorlauf implements RechnungService.Datenquelle {
+
+    private final LocalDate von;
+    private final Map<Long, Einheit> einheiten;
+    private final Map<Long, List<Mieter>> mieterJeEinheit;
+    private final List<Tarif> tarife;
+    private final List<Tarifposition> positionen;
+    /** Je Einheit {@code [total[], zevCalculated[]]}, Index = Tage seit {@link #von}. */
+    private final Map<Long, double[][]> tagessummen = new HashMap<>();
+    private final int tage;
+    private final Supplier<EinstellungenDTO> einstellungenLaden;
+    private EinstellungenDTO einstellungen;
+
+    /**
+     * @param messwerte Zeilen {@code [einheitId, tag, total, zevCalculated]} im Zeitraum
+     * @param einstellungenLaden wird erst bei der ersten Rechnung aufgerufen (wirft, wenn nicht konfiguriert)
+     */
+    RechnungVorlauf(LocalDate von, LocalDate bis, Map<Long, Einheit> einheiten,
+                    Map<Long, List<Mieter>> mieterJeEinheit, List<Tarif> tarife,
+                    List<Tarifposition> positionen, List<Object[]> messwerte,
+                    Supplier<EinstellungenDTO> einstellungenLaden) {
+        this.von = von;
+        this.einheiten = einheiten;
+        this.mieterJeEinheit = mieterJeEinheit;
+        this.tarife = tarife;
+        this.positionen = positionen;
+        this.tage = (int) ChronoUnit.DAYS.between(von, bis) + 1;
+        this.einstellungenLaden = einstellungenLaden;
+        for (Object[] zeile : messwerte) {
+            int tag = (int) ChronoUnit.DAYS.between(von, (LocalDate) zeile[1]);
+            if (tag < 0 || tag >= tage) {
+                continue;
+            }
+            double[][] summen = tagessummen.computeIfAbsent((Long) zeile[0], id -> new double[2][tage]);
+            summen[0][tag] += wert(zeile[2]);
+            summen[1][tag] += wert(zeile[3]);
+        }
+    }
+
+    private static double wert(Object summe) {
+        return summe != null ? ((Number) summe).doubleValue() : 0.0;
+    }
+
+    /** Mieter der Einheit im Zeitraum, nach Mietbeginn. */
+    List<Mieter> mieter(Long einheitId) {
+        return mieterJeEinheit.getOrDefault(einheitId, List.of());
+    }
+
+    /**
+     * Hat der Mieter eine Wohnung? Nur dann erscheinen seine Ladestrom-Positionen dort und die
+     * Ladestation braucht keine eigene Rechnung.
+     */
+    boolean hatWohnung(Mieter mieter) {
+        return hatWohnung(mieter, einheiten);
+    }
+
+    static boolean hatWohnung(Mieter mieter, Map<Long, Einheit> einheiten) {
+        return mieter.getEinheitIds().stream()
+                .map(einheiten::get)
+                .anyMatch(e -> e != null && e.getTyp() == EinheitTyp.CONSUMER);
+    }
+
+    @Override
+    public List<Tarif> tarife(TarifTyp typ, LocalDate von, LocalDate bis) {
+        return tarife.stream()
+                .filter(t -> t.getTariftyp() == typ)
+                .filter(t -> !t.getGueltigVon().isAfter(bis) && !t.getGueltigBis().isBefore(von))
+                .toList();
+    }
+
+    @Override
+    public double summeTotal(Einheit einheit, LocalDate von, LocalDate bis) {
+        return summe(einheit, 0, von, bis);
+    }
+
+    @Override
+    public double summeZevCalculated(Einheit einheit, LocalDate von, LocalDate bis) {
+        return summe(einheit, 1, von, bis);
+    }
+
+    private double summe(Einheit einheit, int spalte, LocalDate von, LocalDate bis) {
+        double[][] summen = tagessummen.get(einheit.getId());
+        if (summen == null) {
+            return 0.0;
+        }
+        int ab = Math.max(0, (int) ChronoUnit.DAYS.between(this.von, von));
+        int bisEinschliesslich = Math.min(tage - 1, (int) ChronoUnit.DAYS.between(this.von, bis));
+        double summe = 0.0;
+        for (int tag = ab; tag <= bisEinschliesslich; tag++) {
+            summe += summen[spalte][tag];
+        }
+        return summe;
+    }
+
+    @Override
+    public List<Tarifposition> positionen(Mieter mieter, LocalDate von, LocalDate bis) {
+        int vonQuartal = quartalIndex(von.getYear(), TarifpositionService.quartalVon(von));
+        int bisQuartal = quartalIndex(bis.getYear(), TarifpositionService.quartalVon(bis));
+        return positionen.stream()
+                .filter(p -> mieter.getEinheitIds().contains(p.getEinheit().getId()))
+                .filter(p -> {
+                    int quartal = quartalIndex(p.getJahr(), p.getQuartal());
+                    return quartal >= vonQuartal && quartal <= bisQuartal;
+                })
+                .toList();
+    }
+
+    private static int quartalIndex(int jahr, int quartal) {
+        return jahr * 4 + quartal;
+    }
+
+    @Override
+    public EinstellungenDTO einstellungen() {
+        if (einstellungen == null) {
+            einstellungen = einstellungenLaden.get();
+        }
+        return einstellungen;
+    }
+}
@@ -0,0 +1,117 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.MonatsStatistikDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Statistik-Cache je Mandant und Kalendermonat ({@code statistik}, siehe {@code CacheConfig}).
+ * {@link StatistikService#getStatistik} setzt beliebige Zeiträume aus den Monats-Einträgen
+ * zusammen; nur Monate, die der Zeitraum vollständig abdeckt, werden gecacht (angeschnittene
+ * Randmonate werden jeweils neu berechnet).
+ *
+ * <p>Schreibende Vorgänge ({@link MesswerteService}: CSV-Upload, Solarverteilung) verwerfen
+ * gezielt die betroffenen Monate des betroffenen Mandanten – andere Mandanten und Monate
+ * bleiben warm. Innerhalb einer Transaktion erst <b>nach dem Commit</b>, damit ein paralleler
+ * Leser den alten Stand nicht erneut cacht.
+ *
+ * <p>Einträge sind nach dem Einfügen unveränderlich: {@link MonatsStatistikDTO} wird nur noch
+ * gelesen (JSON/PDF), nie verändert.
+ */
+@Component
+public class StatistikCache {
+
+    private static final Logger log = LoggerFactory.getLogger(StatistikCache.class);
+
+    public static final String CACHE_NAME = "statistik";
+
+    /** Cache-Schlüssel: Mandant und Kalendermonat. */
+    record Schluessel(Long orgId, YearMonth monat) {
+    }
+
+    /**
+     * Gecachter Monat: die fertige Monatsstatistik und die Einheiten mit Daten im Monat (für die
+     * Vollständigkeit über den Gesamtzeitraum).
+     */
+    public record MonatsEintrag(MonatsStatistikDTO statistik, Set<Long> einheitenMitDaten) {
+
+        /** Gewicht für die Cache-Grösse: ungefähr die Anzahl enthaltener Zeilen. */
+        public int gewicht() {
+            return 1 + einheitenMitDaten.size()
+                    + groesse(statistik.getEinheitSummen())
+                    + groesse(statistik.getTageAbweichungen())
+                    + groesse(statistik.getFehlendeTage())
+                    + groesse(statistik.getFehlendeEinheiten());
+        }
+
+        private static int groesse(Collection<?> c) {
+            return c != null ? c.size() : 0;
+        }
+    }
+
+    private final CacheManager cacheManager;
+
+    public StatistikCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /** Gecachter Monat des Mandanten oder {@code null}. */
+    public MonatsEintrag get(Long orgId, YearMonth monat) {
+        Cache cache = cache();
+        return cache != null ? cache.get(new Schluessel(orgId, monat), MonatsEintrag.class) : null;
+    }
+
+    public void put(Long orgId, YearMonth monat, MonatsEintrag eintrag) {
+        Cache cache = cache();
+        if (cache != null) {
+            cache.put(new Schluessel(orgId, monat), eintrag);
+        }
+    }
+
+    /**
+     * Verwirft die Monate von {@code von} bis {@code bis} (inklusive) des Mandanten. Innerhalb
+     * einer Transaktion erst nach deren Commit, sonst sofort.
+     */
+    public void verwerfe(Long orgId, LocalDateTime von, LocalDateTime bis) {
+        if (orgId == null || von == null || bis == null) {
+            return;
+        }
+        YearMonth erster = YearMonth.from(von);
+        YearMonth letzter = YearMonth.from(bis);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    verwerfeMonate(orgId, erster, letzter);
+                }
+            });
+        } else {
+            verwerfeMonate(orgId, erster, letzter);
+        }
+    }
+
+    private void verwerfeMonate(Long orgId, YearMonth erster, YearMonth letzter) {
+        Cache cache = cache();
+        if (cache == null) {
+            return;
+        }
+        for (YearMonth monat = erster; !monat.isAfter(letzter); monat = monat.plusMonths(1)) {
+            cache.evict(new Schluessel(orgId, monat));
+        }
+        log.debug("Statistik-Cache verworfen (org={}, {} – {})", orgId, erster, letzter);
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+}
@@ -2,8 +2,6 @@ package ch.nacht.service;
 
 import ch.nacht.dto.MonatsStatistikDTO;
 import ch.nacht.dto.StatistikDTO;
-import ch.nacht.entity.Translation;
-import ch.nacht.repository.TranslationRepository;
 import net.sf.jasperreports.engine.*;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
 import net.sf.jasperreports.engine.util.JRLoader;
@@ -18,24 +16,29 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Service for generating statistics PDFs using JasperReports.
+ * The fixed Jasper parameters (translation bundle, subreport) are built once per language and
+ * reused across fills until the translations change.
  */
 @Service
 public class StatistikPdfService {
 
     private static final Logger log = LoggerFactory.getLogger(StatistikPdfService.class);
 
-    private final TranslationRepository translationRepository;
+    private final TranslationService translationService;
     private final OrganizationContextService organizationContextService;
+    private final ConcurrentMap<String, Map<String, Object>> parameterJeSprache = new ConcurrentHashMap<>();
 
     private JasperReport compiledReport;
     private JasperReport compiledEinheitSummenReport;
 
-    public StatistikPdfService(TranslationRepository translationRepository,
+    public StatistikPdfService(TranslationService translationService,
                                OrganizationContextService organizationContextService) {
-        this.translationRepository = translationRepository;
+        this.translationService = translationService;
         this.organizationContextService = organizationContextService;
     }
 
@@ -64,8 +67,6 @@ public class StatistikPdfService {
     public byte[] generatePdf(StatistikDTO statistik, String sprache) {
         log.info("Generating PDF for statistik, language: {}", sprache);
 
-        Map<String, String> translations = loadTranslations(sprache);
-
         // Build time range string
         String zeitraum = "";
         if (!statistik.getMonate().isEmpty()) {
@@ -77,13 +78,12 @@ public class StatistikPdfService {
 
         String generiertAm = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"));
 
-        Map<String, Object> parameters = new HashMap<>();
+        // Jasper legt eigene Eintraege in der Parameter-Map ab: je Fill eine Kopie der festen Parameter
+        Map<String, Object> parameters = new HashMap<>(parameter(sprache));
         parameters.put("STATISTIK", statistik);
-        parameters.put("TRANSLATIONS", translations);
         parameters.put("SPRACHE", sprache);
         parameters.put("ZEITRAUM", zeitraum);
         parameters.put("GENERIERT_AM", generiertAm);
-        parameters.put("EINHEIT_SUMMEN_SUBREPORT", compiledEinheitSummenReport);
         // Anzeigename der Organisation (JWT-Claim displayName, Fallback Alias) für den Titel
         parameters.put("ORG_NAME", organizationContextService.getCurrentOrgName());
         // Verteilmodus BILANZ → Summen-Vergleich wird durch das Kennzahlen-Panel ersetzt (ausgeblendet).
@@ -107,12 +107,16 @@ public class StatistikPdfService {
         }
     }
 
-    private Map<String, String> loadTranslations(String sprache) {
-        Map<String, String> translations = new HashMap<>();
-        for (Translation t : translationRepository.findAll()) {
-            String value = "en".equalsIgnoreCase(sprache) ? t.getEnglisch() : t.getDeutsch();
-            translations.put(t.getKey(), value != null ? value : t.getKey());
-        }
-        return translations;
+    /**
+     * Fixed Jasper parameters of a language; rebuilt as soon as
+     * {@link TranslationService#getBundle} returns a new bundle.
+     */
+    private Map<String, Object> parameter(String sprache) {
+        Map<String, String> bundle = translationService.getBundle(sprache);
+        return parameterJeSprache.compute("en".equalsIgnoreCase(sprache) ? "en" : "de",
+                (key, basis) -> basis != null && basis.get("TRANSLATIONS") == bundle
+                        ? basis
+                        : Map.of("TRANSLATIONS", bundle,
+                                "EINHEIT_SUMMEN_SUBREPORT", compiledEinheitSummenReport));
     }
 }
@@ -6,23 +6,19 @@ import ch.nacht.dto.StatistikDTO;
 import ch.nacht.dto.TagMitAbweichungDTO;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
-import ch.nacht.entity.Messwerte;
 import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.MesswerteRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,49 +37,118 @@ public class StatistikService {
     private final OrganizationContextService organizationContextService;
     private final EinstellungenService einstellungenService;
     private final TranslationService translationService;
+    private final StatistikCache statistikCache;
+    private final StatistikSnapshotAusfuehrer statistikSnapshotAusfuehrer;
+    private final MesswerteCsvSchreiber messwerteCsvSchreiber;
 
     public StatistikService(MesswerteRepository messwerteRepository,
                             EinheitRepository einheitRepository,
                             HibernateFilterService hibernateFilterService,
                             OrganizationContextService organizationContextService,
                             EinstellungenService einstellungenService,
-                            TranslationService translationService) {
+                            TranslationService translationService,
+                            StatistikCache statistikCache,
+                            StatistikSnapshotAusfuehrer statistikSnapshotAusfuehrer,
+                            MesswerteCsvSchreiber messwerteCsvSchreiber) {
         this.messwerteRepository = messwerteRepository;
         this.einheitRepository = einheitRepository;
         this.hibernateFilterService = hibernateFilterService;
         this.organizationContextService = organizationContextService;
         this.einstellungenService = einstellungenService;
         this.translationService = translationService;
+        this.statistikCache = statistikCache;
+        this.statistikSnapshotAusfuehrer = statistikSnapshotAusfuehrer;
+        this.messwerteCsvSchreiber = messwerteCsvSchreiber;
     }
 
-    @Transactional(readOnly = true)
-    @Cacheable(value = "statistik", key = "#von.toString() + '-' + #bis.toString() + '-' + @organizationContextService.getCurrentOrgId()")
+    /**
+     * Tagessummen einer Einheit (eine Zeile der Single-Pass-Abfrage
+     * {@link MesswerteRepository#sumTageJeEinheitBetween}); Summen ohne Betragsbildung.
+     */
+    private record Tageswert(LocalDate tag, Long einheitId, EinheitTyp typ,
+                             double total, double zev, double zevCalculated) {
+    }
+
+    /** Summen (total, zev, zev_calculated) über einen Teilbereich der Tageswerte. */
+    private static final class Summen {
+        private double total;
+        private double zev;
+        private double zevCalculated;
+
+        private void add(Tageswert w) {
+            total += w.total();
+            zev += w.zev();
+            zevCalculated += w.zevCalculated();
+        }
+    }
+
+    private static final Summen KEINE_SUMMEN = new Summen();
+
+    /** Einheiten und Tage mit Messwerten eines Monats laut Abdeckungs-Bitmap. */
+    private record Abdeckung(Set<Long> einheiten, Set<LocalDate> tage) {
+        private static final Abdeckung KEINE = new Abdeckung(Set.of(), Set.of());
+    }
+
+    /**
+     * Statistik für einen beliebigen Zeitraum, zusammengesetzt aus Monaten. Vollständig
+     * abgedeckte Monate kommen aus dem {@link StatistikCache} (je Mandant und Monat); alle
+     * übrigen werden gemeinsam berechnet (parallel auf einem gemeinsamen DB-Snapshot, siehe
+     * {@link StatistikSnapshotAusfuehrer}) und – sofern vollständig – gecacht.
+     * {@code REPEATABLE READ}: eigene Abfragen und die der Worker sehen denselben Datenstand.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     public StatistikDTO getStatistik(LocalDate von, LocalDate bis) {
         hibernateFilterService.enableOrgFilter();
+        Long orgId = organizationContextService.getCurrentOrgId();
         logger.info("Berechne Statistik für Zeitraum {} bis {}", von, bis);
 
         StatistikDTO statistik = new StatistikDTO();
         statistik.setToleranz(TOLERANZ);
-        statistik.setVerteilmodus(einstellungenService.getVerteilmodus(organizationContextService.getCurrentOrgId()));
+        statistik.setVerteilmodus(einstellungenService.getVerteilmodus(orgId));
 
         // Letztes Datum mit Messwerten ermitteln
         LocalDate letztesMessdatum = ermittleLetztesMessdatum();
         statistik.setMesswerteBisDate(letztesMessdatum);
 
-        // Datenvollständigkeit prüfen
-        pruefeDatenVollstaendigkeit(statistik, von, bis);
+        List<Einheit> alleEinheiten = einheitRepository.findAll();
 
-        // Monatsstatistiken berechnen
-        List<MonatsStatistikDTO> monatsStatistiken = berechneMonatsStatistiken(von, bis);
+        // Monate aus dem Cache; angeschnittene Randmonate und Cache-Fehlgriffe neu berechnen
+        Map<YearMonth, StatistikCache.MonatsEintrag> monate = new TreeMap<>();
+        List<YearMonth> zuBerechnen = new ArrayList<>();
+        for (YearMonth monat = YearMonth.from(von); !monat.isAfter(YearMonth.from(bis)); monat = monat.plusMonths(1)) {
+            StatistikCache.MonatsEintrag eintrag = istGanzerMonat(monat, von, bis)
+                    ? statistikCache.get(orgId, monat) : null;
+            if (eintrag != null) {
+                monate.put(monat, eintrag);
+            } else {
+                zuBerechnen.add(monat);
+            }
+        }
+        if (!zuBerechnen.isEmpty()) {
+            berechneMonate(orgId, zuBerechnen, von, bis, alleEinheiten).forEach((monat, eintrag) -> {
+                if (istGanzerMonat(monat, von, bis)) {
+                    statistikCache.put(orgId, monat, eintrag);
+                }
+                monate.put(monat, eintrag);
+            });
+        }
+
+        List<MonatsStatistikDTO> monatsStatistiken = monate.values().stream()
+                .map(StatistikCache.MonatsEintrag::statistik)
+                .collect(Collectors.toList());
         statistik.setMonate(monatsStatistiken);
 
+        // Datenvollständigkeit über den Gesamtzeitraum aus den Monaten
+        pruefeDatenVollstaendigkeit(statistik, alleEinheiten, monate.values());
+
         // Gesamtvollständigkeit basierend auf Monaten
         boolean alleMonateVollstaendig = monatsStatistiken.stream()
                 .allMatch(MonatsStatistikDTO::isDatenVollstaendig);
         statistik.setDatenVollstaendig(alleMonateVollstaendig && statistik.getFehlendeEinheiten().isEmpty());
 
-        logger.info("Statistik berechnet: {} Monate, Daten vollständig: {}",
-                monatsStatistiken.size(), statistik.isDatenVollstaendig());
+        logger.info("Statistik berechnet: {} Monate ({} aus dem Cache), Daten vollständig: {}",
+                monatsStatistiken.size(), monatsStatistiken.size() - zuBerechnen.size(),
+                statistik.isDatenVollstaendig());
 
         return statistik;
     }
@@ -96,20 +161,136 @@ public class StatistikService {
                 .orElse(null);
     }
 
-    private void pruefeDatenVollstaendigkeit(StatistikDTO statistik, LocalDate von, LocalDate bis) {
-        LocalDateTime vonDateTime = von.atStartOfDay();
-        LocalDateTime bisDateTime = bis.plusDays(1).atStartOfDay();
+    private static boolean istGanzerMonat(YearMonth monat, LocalDate von, LocalDate bis) {
+        return !monat.atDay(1).isBefore(von) && !monat.atEndOfMonth().isAfter(bis);
+    }
 
-        // Alle Einheiten holen
-        List<Einheit> alleEinheiten = einheitRepository.findAll();
+    /**
+     * Berechnet die angegebenen Monate (aufsteigend). Sie werden in höchstens
+     * {@link StatistikSnapshotAusfuehrer#parallelitaet()} zusammenhängende Abschnitte geteilt,
+     * die parallel auf demselben DB-Snapshot laufen; jeder Abschnitt liest in einem Durchgang
+     * (Tagessummen und Abdeckung über seine Spanne, eine Pro-Intervall-Abfrage für die
+     * Batterie-Kennzahlen).
+     */
+    private Map<YearMonth, StatistikCache.MonatsEintrag> berechneMonate(Long orgId, List<YearMonth> monate,
+                                                                       LocalDate von, LocalDate bis,
+                                                                       List<Einheit> alleEinheiten) {
+        // Namen der Bilanz-Einheiten (max. eine je Typ und Mandant, orgFilter aktiv);
+        // null = keine Einheit → Bilanz-Zeile und -Vergleich werden nicht angezeigt (FR-4.6/FR-5.7).
+        String bilanzBezugName = ersteEinheitName(alleEinheiten, EinheitTyp.BEZUG);
+        String bilanzRuecklieferungName = ersteEinheitName(alleEinheiten, EinheitTyp.RUECKLIEFERUNG);
+
+        int anzahlAbschnitte = Math.max(1, Math.min(statistikSnapshotAusfuehrer.parallelitaet(), monate.size()));
+        List<Supplier<Map<YearMonth, StatistikCache.MonatsEintrag>>> abschnitte = new ArrayList<>();
+        for (int i = 0; i < anzahlAbschnitte; i++) {
+            List<YearMonth> abschnitt = monate.subList(i * monate.size() / anzahlAbschnitte,
+                    (i + 1) * monate.size() / anzahlAbschnitte);
+            abschnitte.add(() -> berechneAbschnitt(orgId, abschnitt, von, bis, alleEinheiten,
+                    bilanzBezugName, bilanzRuecklieferungName));
+        }
 
-        // Einheiten mit Daten im Zeitraum
-        List<Einheit> einheitenMitDaten = messwerteRepository.findDistinctEinheitenInRange(vonDateTime, bisDateTime);
+        Map<YearMonth, StatistikCache.MonatsEintrag> ergebnis = new LinkedHashMap<>();
+        statistikSnapshotAusfuehrer.fuehreAus(orgId, abschnitte).forEach(ergebnis::putAll);
+        return ergebnis;
+    }
 
-        // Fehlende Einheiten ermitteln
-        Set<Long> einheitenMitDatenIds = einheitenMitDaten.stream()
-                .map(Einheit::getId)
-                .collect(Collectors.toSet());
+    /**
+     * Berechnet zusammenhängende Monate (aufsteigend) eines Abschnitts in einem Durchgang. Summen
+     * kommen aus den Tageswerten, die Vollständigkeit aus der Abdeckungs-Bitmap.
+     */
+    private Map<YearMonth, StatistikCache.MonatsEintrag> berechneAbschnitt(Long orgId, List<YearMonth> monate,
+                                                                          LocalDate von, LocalDate bis,
+                                                                          List<Einheit> alleEinheiten,
+                                                                          String bilanzBezugName,
+                                                                          String bilanzRuecklieferungName) {
+        LocalDate spanneVon = max(monate.getFirst().atDay(1), von);
+        LocalDate spanneBis = min(monate.getLast().atEndOfMonth(), bis);
+        List<Tageswert> tageswerte = ladeTageswerte(spanneVon, spanneBis);
+        Map<YearMonth, List<Tageswert>> proMonat = tageswerte.stream()
+                .collect(Collectors.groupingBy(w -> YearMonth.from(w.tag())));
+        Map<YearMonth, Abdeckung> abdeckung = ladeAbdeckung(orgId, spanneVon, spanneBis);
+
+        Map<YearMonth, StatistikCache.MonatsEintrag> ergebnis = new LinkedHashMap<>();
+        List<MonatsStatistikDTO> monatsStatistiken = new ArrayList<>();
+        for (YearMonth monat : monate) {
+            List<Tageswert> tageswerteMonat = proMonat.getOrDefault(monat, List.of());
+            Abdeckung abdeckungMonat = abdeckung.getOrDefault(monat, Abdeckung.KEINE);
+            MonatsStatistikDTO monatsStatistik = berechneMonatsStatistik(monat, von, bis, alleEinheiten,
+                    tageswerteMonat, abdeckungMonat);
+            monatsStatistik.setBilanzBezugName(bilanzBezugName);
+            monatsStatistik.setBilanzRuecklieferungName(bilanzRuecklieferungName);
+            // Statistik-Kennzahlen (Stufe 1: aus den Summen)
+            berechneKennzahlen(monatsStatistik);
+            monatsStatistiken.add(monatsStatistik);
+
+            ergebnis.put(monat, new StatistikCache.MonatsEintrag(monatsStatistik,
+                    Set.copyOf(abdeckungMonat.einheiten())));
+        }
+
+        // Batterie-Kennzahlen aller Monate des Abschnitts aus einer Pro-Intervall-Abfrage
+        berechneBatterieKennzahlen(monatsStatistiken);
+
+        logger.debug("{} Monate berechnet ({} – {}, {} Tageswerte)", monate.size(), spanneVon, spanneBis,
+                tageswerte.size());
+        return ergebnis;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private List<Tageswert> ladeTageswerte(LocalDate von, LocalDate bis) {
+        List<Object[]> zeilen = messwerteRepository.sumTageJeEinheitBetween(
+                von.atStartOfDay(), bis.plusDays(1).atStartOfDay());
+        List<Tageswert> tageswerte = new ArrayList<>(zeilen.size());
+        for (Object[] zeile : zeilen) {
+            tageswerte.add(new Tageswert((LocalDate) zeile[0], ((Number) zeile[1]).longValue(),
+                    (EinheitTyp) zeile[2], wert(zeile[3]), wert(zeile[4]), wert(zeile[5])));
+        }
+        return tageswerte;
+    }
+
+    /**
+     * Einheiten und Tage mit Messwerten je Monat aus {@code zev.messwerte_abdeckung} (eine Zeile
+     * je Einheit und Tag statt eines Scans über die Messwerte).
+     */
+    private Map<YearMonth, Abdeckung> ladeAbdeckung(Long orgId, LocalDate von, LocalDate bis) {
+        Map<YearMonth, Abdeckung> proMonat = new HashMap<>();
+        for (Object[] zeile : messwerteRepository.findAbgedeckteTageBetween(orgId, von, bis)) {
+            LocalDate tag = alsDatum(zeile[1]);
+            Abdeckung abdeckung = proMonat.computeIfAbsent(YearMonth.from(tag),
+                    m -> new Abdeckung(new HashSet<>(), new HashSet<>()));
+            abdeckung.einheiten().add(((Number) zeile[0]).longValue());
+            abdeckung.tage().add(tag);
+        }
+        return proMonat;
+    }
+
+    private static LocalDate alsDatum(Object wert) {
+        return wert instanceof java.sql.Date datum ? datum.toLocalDate() : (LocalDate) wert;
+    }
+
+    /** SUM ohne Zeilen bzw. nur über {@code null}-Werte → 0.0 (wie {@code COALESCE(SUM(..), 0)}). */
+    private static double wert(Object summe) {
+        return summe != null ? ((Number) summe).doubleValue() : 0.0;
+    }
+
+    /**
+     * Vollständigkeit über den Gesamtzeitraum: fehlend sind Einheiten ohne Daten in allen
+     * Monaten und die fehlenden Tage aller Monate.
+     */
+    private void pruefeDatenVollstaendigkeit(StatistikDTO statistik, List<Einheit> alleEinheiten,
+                                             Collection<StatistikCache.MonatsEintrag> monate) {
+        Set<Long> einheitenMitDatenIds = new HashSet<>();
+        List<LocalDate> fehlendeTage = new ArrayList<>();
+        for (StatistikCache.MonatsEintrag monat : monate) {
+            einheitenMitDatenIds.addAll(monat.einheitenMitDaten());
+            fehlendeTage.addAll(monat.statistik().getFehlendeTage());
+        }
 
         List<String> fehlendeEinheiten = alleEinheiten.stream()
                 .filter(e -> !einheitenMitDatenIds.contains(e.getId()))
@@ -117,15 +298,6 @@ public class StatistikService {
                 .collect(Collectors.toList());
 
         statistik.setFehlendeEinheiten(fehlendeEinheiten);
-
-        // Fehlende Tage ermitteln
-        List<LocalDate> tageImBereich = von.datesUntil(bis.plusDays(1)).collect(Collectors.toList());
-        List<LocalDate> tageMitDaten = messwerteRepository.findDistinctDatesInRange(vonDateTime, bisDateTime);
-
-        List<LocalDate> fehlendeTage = tageImBereich.stream()
-                .filter(tag -> !tageMitDaten.contains(tag))
-                .collect(Collectors.toList());
-
         statistik.setFehlendeTage(fehlendeTage);
 
         if (!fehlendeEinheiten.isEmpty()) {
@@ -136,23 +308,32 @@ public class StatistikService {
         }
     }
 
-    private List<MonatsStatistikDTO> berechneMonatsStatistiken(LocalDate von, LocalDate bis) {
-        List<MonatsStatistikDTO> monatsStatistiken = new ArrayList<>();
-
-        YearMonth startMonat = YearMonth.from(von);
-        YearMonth endMonat = YearMonth.from(bis);
+    /** Einheiten ohne Messwerte laut Abdeckung (Anzeige-Namen, Reihenfolge wie {@code findAll}). */
+    private List<String> ermittleFehlendeEinheiten(List<Einheit> alleEinheiten, Set<Long> einheitenMitDaten) {
+        return alleEinheiten.stream()
+                .filter(e -> !einheitenMitDaten.contains(e.getId()))
+                .map(Einheit::getName)
+                .collect(Collectors.toList());
+    }
 
-        YearMonth aktuellerMonat = startMonat;
-        while (!aktuellerMonat.isAfter(endMonat)) {
-            MonatsStatistikDTO monatsStatistik = berechneMonatsStatistik(aktuellerMonat, von, bis);
-            monatsStatistiken.add(monatsStatistik);
-            aktuellerMonat = aktuellerMonat.plusMonths(1);
-        }
+    /** Tage zwischen {@code von} und {@code bis} (inklusive) ohne Messwerte laut Abdeckung. */
+    private List<LocalDate> ermittleFehlendeTage(LocalDate von, LocalDate bis, Set<LocalDate> tageMitDaten) {
+        return von.datesUntil(bis.plusDays(1))
+                .filter(tag -> !tageMitDaten.contains(tag))
+                .collect(Collectors.toList());
+    }
 
-        return monatsStatistiken;
+    private static String ersteEinheitName(List<Einheit> alleEinheiten, EinheitTyp typ) {
+        return alleEinheiten.stream()
+                .filter(e -> e.getTyp() == typ)
+                .map(Einheit::getName)
+                .findFirst()
+                .orElse(null);
     }
 
-    private MonatsStatistikDTO berechneMonatsStatistik(YearMonth yearMonth, LocalDate gesamtVon, LocalDate gesamtBis) {
+    private MonatsStatistikDTO berechneMonatsStatistik(YearMonth yearMonth, LocalDate gesamtVon, LocalDate gesamtBis,
+                                                       List<Einheit> alleEinheiten, List<Tageswert> tageswerte,
+                                                       Abdeckung abdeckung) {
         MonatsStatistikDTO dto = new MonatsStatistikDTO();
         dto.setJahr(yearMonth.getYear());
         dto.setMonat(yearMonth.getMonthValue());
@@ -167,45 +348,29 @@ public class StatistikService {
         dto.setVon(effektivVon);
         dto.setBis(effektivBis);
 
-        LocalDateTime vonDateTime = effektivVon.atStartOfDay();
-        LocalDateTime bisDateTime = effektivBis.plusDays(1).atStartOfDay();
-
-        // Summen berechnen
-        Double summeProducerTotal = messwerteRepository.sumTotalByEinheitTypAndZeitBetween(
-                EinheitTyp.PRODUCER, vonDateTime, bisDateTime);
-        Double summeConsumerTotal = messwerteRepository.sumTotalByEinheitTypAndZeitBetween(
-                EinheitTyp.CONSUMER, vonDateTime, bisDateTime);
-        Double summeProducerZev = messwerteRepository.sumZevByEinheitTypAndZeitBetween(
-                EinheitTyp.PRODUCER, vonDateTime, bisDateTime);
-        Double summeConsumerZev = messwerteRepository.sumZevByEinheitTypAndZeitBetween(
-                EinheitTyp.CONSUMER, vonDateTime, bisDateTime);
-        Double summeConsumerZevCalculated = messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(
-                EinheitTyp.CONSUMER, vonDateTime, bisDateTime);
-        Double summeBilanzBezug = messwerteRepository.sumTotalByEinheitTypAndZeitBetween(
-                EinheitTyp.BEZUG, vonDateTime, bisDateTime);
-        Double summeBilanzRuecklieferung = messwerteRepository.sumTotalByEinheitTypAndZeitBetween(
-                EinheitTyp.RUECKLIEFERUNG, vonDateTime, bisDateTime);
+        // Summen je Typ in einem Durchgang über die Tageswerte des Monats
+        Map<EinheitTyp, Summen> proTyp = new EnumMap<>(EinheitTyp.class);
+        for (Tageswert w : tageswerte) {
+            proTyp.computeIfAbsent(w.typ(), t -> new Summen()).add(w);
+        }
+        Summen producer = proTyp.getOrDefault(EinheitTyp.PRODUCER, KEINE_SUMMEN);
+        Summen consumer = proTyp.getOrDefault(EinheitTyp.CONSUMER, KEINE_SUMMEN);
 
         // Producer values are negative, use absolute values for display
-        dto.setSummeProducerTotal(summeProducerTotal != null ? Math.abs(summeProducerTotal) : 0.0);
-        dto.setSummeConsumerTotal(summeConsumerTotal != null ? summeConsumerTotal : 0.0);
-        dto.setSummeProducerZev(summeProducerZev != null ? Math.abs(summeProducerZev) : 0.0);
-        dto.setSummeConsumerZev(summeConsumerZev != null ? summeConsumerZev : 0.0);
-        dto.setSummeConsumerZevCalculated(summeConsumerZevCalculated != null ? summeConsumerZevCalculated : 0.0);
+        dto.setSummeProducerTotal(Math.abs(producer.total));
+        dto.setSummeConsumerTotal(consumer.total);
+        dto.setSummeProducerZev(Math.abs(producer.zev));
+        dto.setSummeConsumerZev(consumer.zev);
+        dto.setSummeConsumerZevCalculated(consumer.zevCalculated);
         // Bilanzmesspunkte: Bezug positiv, Rücklieferung negativ → Vergleich über Beträge.
         // Fehlende Daten → 0.0.
-        dto.setBilanzBezug(summeBilanzBezug != null ? summeBilanzBezug : 0.0);
-        dto.setBilanzRuecklieferung(summeBilanzRuecklieferung != null ? Math.abs(summeBilanzRuecklieferung) : 0.0);
-        // Namen der Bilanz-Einheiten (max. eine je Typ und Mandant, orgFilter aktiv);
-        // null = keine Einheit → Bilanz-Zeile und -Vergleich werden nicht angezeigt (FR-4.6/FR-5.7).
-        dto.setBilanzBezugName(einheitRepository.findFirstByTyp(EinheitTyp.BEZUG)
-                .map(Einheit::getName).orElse(null));
-        dto.setBilanzRuecklieferungName(einheitRepository.findFirstByTyp(EinheitTyp.RUECKLIEFERUNG)
-                .map(Einheit::getName).orElse(null));
+        dto.setBilanzBezug(proTyp.getOrDefault(EinheitTyp.BEZUG, KEINE_SUMMEN).total);
+        dto.setBilanzRuecklieferung(Math.abs(proTyp.getOrDefault(EinheitTyp.RUECKLIEFERUNG, KEINE_SUMMEN).total));
 
         logger.debug("Monat {}/{}: ProducerTotal={}, ConsumerTotal={}, ProducerZev={}, ConsumerZev={}, ConsumerZevCalc={}",
-                yearMonth.getYear(), yearMonth.getMonthValue(),
-                summeProducerTotal, summeConsumerTotal, summeProducerZev, summeConsumerZev, summeConsumerZevCalculated);
+                yearMonth.getYear(), yearMonth.getMonthValue(), dto.getSummeProducerTotal(),
+                dto.getSummeConsumerTotal(), dto.getSummeProducerZev(), dto.getSummeConsumerZev(),
+                dto.getSummeConsumerZevCalculated());
 
         // Berechnete Werte (nur fuer den Summen-Vergleich gegen die Bilanz-Einheiten):
         // Bezug von VNB  = Verbrauch (Consumer Total) − zev der Consumer (B, gemessen –
@@ -221,18 +386,17 @@ public class StatistikService {
         vergleicheSummen(dto);
 
         // Datenvollständigkeit für diesen Monat prüfen
-        pruefeDatenVollstaendigkeitMonat(dto, effektivVon, effektivBis);
+        List<String> fehlendeEinheiten = ermittleFehlendeEinheiten(alleEinheiten, abdeckung.einheiten());
+        List<LocalDate> fehlendeTage = ermittleFehlendeTage(effektivVon, effektivBis, abdeckung.tage());
+        dto.setFehlendeEinheiten(fehlendeEinheiten);
+        dto.setFehlendeTage(fehlendeTage);
+        dto.setDatenVollstaendig(fehlendeEinheiten.isEmpty() && fehlendeTage.isEmpty());
 
         // Tage mit Abweichungen ermitteln
-        ermittleTageAbweichungen(dto, effektivVon, effektivBis);
+        ermittleTageAbweichungen(dto, effektivVon, effektivBis, tageswerte);
 
         // Summen pro Einheit berechnen
-        berechneEinheitSummen(dto, vonDateTime, bisDateTime);
-
-        // Statistik-Kennzahlen (Stufe 1: aus den Summen)
-        berechneKennzahlen(dto);
-        // Batterie geladen/entladen/Wirkungsgrad (Stufe 2: Pro-Intervall-Aggregation)
-        berechneBatterieKennzahlen(dto, vonDateTime, bisDateTime);
+        berechneEinheitSummen(dto, alleEinheiten, tageswerte);
 
         return dto;
     }
@@ -275,29 +439,52 @@ public class StatistikService {
      * Batterie-Kennzahlen (Spec Statistik-Kennzahlen.md, Stufe 2): geladen/entladen/Wirkungsgrad
      * aus der Pro-Intervall-Aggregation. Je Intervall {@code Netto_i = P_i − C_i + B_i − R_i};
      * geladen = Σ max(0, Netto_i), entladen = Σ max(0, −Netto_i), Wirkungsgrad = entladen/geladen
-     * (nur wenn geladen > 0). Nur wenn Producer + Bilanz-Bezug + Rücklieferung vorhanden.
+     * (nur wenn geladen > 0). Nur für Monate mit Producer + Bilanz-Bezug + Rücklieferung; eine
+     * Abfrage über die Spanne dieser Monate, die Intervalle werden ihrem Monat zugeordnet.
      */
-    private void berechneBatterieKennzahlen(MonatsStatistikDTO dto, LocalDateTime vonDateTime, LocalDateTime bisDateTime) {
-        if (!dto.isBatterieKennzahlenVerfuegbar()) {
+    private void berechneBatterieKennzahlen(List<MonatsStatistikDTO> monatsStatistiken) {
+        Map<YearMonth, MonatsStatistikDTO> verfuegbar = new HashMap<>();
+        LocalDate von = null;
+        LocalDate bis = null;
+        for (MonatsStatistikDTO dto : monatsStatistiken) {
+            if (dto.isBatterieKennzahlenVerfuegbar()) {
+                verfuegbar.put(YearMonth.of(dto.getJahr(), dto.getMonat()), dto);
+                von = von == null ? dto.getVon() : von;
+                bis = dto.getBis();
+            }
+        }
+        if (verfuegbar.isEmpty()) {
             return;
         }
-        double geladen = 0.0;
-        double entladen = 0.0;
-        for (Object[] row : messwerteRepository.sumBilanzKomponentenPerZeitBetween(vonDateTime, bisDateTime)) {
+
+        Map<YearMonth, double[]> geladenEntladen = new HashMap<>();
+        for (Object[] row : messwerteRepository.sumBilanzKomponentenPerZeitBetween(
+                von.atStartOfDay(), bis.plusDays(1).atStartOfDay())) {
+            YearMonth monat = YearMonth.from((LocalDateTime) row[0]);
+            if (!verfuegbar.containsKey(monat)) {
+                continue;
+            }
             double pI = ((Number) row[1]).doubleValue();
             double cI = ((Number) row[2]).doubleValue();
             double bI = ((Number) row[3]).doubleValue();
             double rI = ((Number) row[4]).doubleValue();
             double netto = pI - cI + bI - rI;
+            double[] summe = geladenEntladen.computeIfAbsent(monat, m -> new double[2]);
             if (netto > 0) {
-                geladen += netto;
+                summe[0] += netto;
             } else {
-                entladen += -netto;
+                summe[1] += -netto;
             }
         }
-        dto.setBatterieGeladen(geladen);
-        dto.setBatterieEntladen(entladen);
-        dto.setBatterieWirkungsgrad(geladen > 0 ? entladen / geladen : null);
+
+        verfuegbar.forEach((monat, dto) -> {
+            double[] summe = geladenEntladen.getOrDefault(monat, new double[2]);
+            double geladen = summe[0];
+            double entladen = summe[1];
+            dto.setBatterieGeladen(geladen);
+            dto.setBatterieEntladen(entladen);
+            dto.setBatterieWirkungsgrad(geladen > 0 ? entladen / geladen : null);
+        });
     }
 
     private void vergleicheSummen(MonatsStatistikDTO dto) {
@@ -331,60 +518,31 @@ public class StatistikService {
         dto.setRuecklieferungBilanzDifferenz(ruecklieferungBilanzDifferenz);
     }
 
-    private void pruefeDatenVollstaendigkeitMonat(MonatsStatistikDTO dto, LocalDate von, LocalDate bis) {
-        LocalDateTime vonDateTime = von.atStartOfDay();
-        LocalDateTime bisDateTime = bis.plusDays(1).atStartOfDay();
-
-        // Alle Einheiten
-        List<Einheit> alleEinheiten = einheitRepository.findAll();
-
-        // Einheiten mit Daten in diesem Monat
-        List<Einheit> einheitenMitDaten = messwerteRepository.findDistinctEinheitenInRange(vonDateTime, bisDateTime);
-
-        Set<Long> einheitenMitDatenIds = einheitenMitDaten.stream()
-                .map(Einheit::getId)
-                .collect(Collectors.toSet());
-
-        List<String> fehlendeEinheiten = alleEinheiten.stream()
-                .filter(e -> !einheitenMitDatenIds.contains(e.getId()))
-                .map(Einheit::getName)
-                .collect(Collectors.toList());
-
-        dto.setFehlendeEinheiten(fehlendeEinheiten);
-
-        // Fehlende Tage
-        List<LocalDate> tageImMonat = von.datesUntil(bis.plusDays(1)).collect(Collectors.toList());
-        List<LocalDate> tageMitDaten = messwerteRepository.findDistinctDatesInRange(vonDateTime, bisDateTime);
-
-        List<LocalDate> fehlendeTage = tageImMonat.stream()
-                .filter(tag -> !tageMitDaten.contains(tag))
-                .collect(Collectors.toList());
-
-        dto.setFehlendeTage(fehlendeTage);
-
-        dto.setDatenVollstaendig(fehlendeEinheiten.isEmpty() && fehlendeTage.isEmpty());
-    }
-
-    private void ermittleTageAbweichungen(MonatsStatistikDTO dto, LocalDate von, LocalDate bis) {
+    private void ermittleTageAbweichungen(MonatsStatistikDTO dto, LocalDate von, LocalDate bis,
+                                          List<Tageswert> tageswerte) {
         List<TagMitAbweichungDTO> abweichungen = new ArrayList<>();
 
+        // Tagessummen C (Producer zev), D (Consumer zev) und E (Consumer zev_calculated)
+        Map<LocalDate, double[]> proTag = new HashMap<>();
+        for (Tageswert w : tageswerte) {
+            if (w.typ() == EinheitTyp.PRODUCER) {
+                proTag.computeIfAbsent(w.tag(), t -> new double[3])[0] += w.zev();
+            } else if (w.typ() == EinheitTyp.CONSUMER) {
+                double[] summen = proTag.computeIfAbsent(w.tag(), t -> new double[3]);
+                summen[1] += w.zev();
+                summen[2] += w.zevCalculated();
+            }
+        }
+
         List<LocalDate> tageImBereich = von.datesUntil(bis.plusDays(1)).collect(Collectors.toList());
 
         for (LocalDate tag : tageImBereich) {
-            LocalDateTime tagStart = tag.atStartOfDay();
-            LocalDateTime tagEnde = tag.plusDays(1).atStartOfDay();
-
-            Double tagesSummeProducer = messwerteRepository.sumZevByEinheitTypAndZeitBetween(
-                    EinheitTyp.PRODUCER, tagStart, tagEnde);
-            Double tagesSummeD = messwerteRepository.sumZevByEinheitTypAndZeitBetween(
-                    EinheitTyp.CONSUMER, tagStart, tagEnde);
-            Double tagesSummeE = messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(
-                    EinheitTyp.CONSUMER, tagStart, tagEnde);
+            double[] summen = proTag.getOrDefault(tag, new double[3]);
 
             // Producer values are negative, use absolute value for comparison
-            double tagesSummeC = tagesSummeProducer != null ? Math.abs(tagesSummeProducer) : 0.0;
-            double summeD = tagesSummeD != null ? tagesSummeD : 0.0;
-            double summeE = tagesSummeE != null ? tagesSummeE : 0.0;
+            double tagesSummeC = Math.abs(summen[0]);
+            double summeD = summen[1];
+            double summeE = summen[2];
 
             // Prüfen ob Abweichungen vorliegen
             List<String> abweichungsTypen = new ArrayList<>();
@@ -416,24 +574,21 @@ public class StatistikService {
         dto.setTageAbweichungen(abweichungen);
     }
 
-    private void berechneEinheitSummen(MonatsStatistikDTO dto, LocalDateTime vonDateTime, LocalDateTime bisDateTime) {
-        List<Einheit> alleEinheiten = einheitRepository.findAll();
+    private void berechneEinheitSummen(MonatsStatistikDTO dto, List<Einheit> alleEinheiten,
+                                       List<Tageswert> tageswerte) {
+        Map<Long, Summen> proEinheit = new HashMap<>();
+        for (Tageswert w : tageswerte) {
+            proEinheit.computeIfAbsent(w.einheitId(), id -> new Summen()).add(w);
+        }
         List<EinheitSummenDTO> einheitSummen = new ArrayList<>();
 
         for (Einheit einheit : alleEinheiten) {
-            Double summeTotal = messwerteRepository.sumTotalByEinheitAndZeitBetween(einheit, vonDateTime, bisDateTime);
-            Double summeZev = messwerteRepository.sumZevByEinheitAndZeitBetween(einheit, vonDateTime, bisDateTime);
-            Double summeZevCalculated = messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(einheit, vonDateTime, bisDateTime);
+            Summen summen = proEinheit.getOrDefault(einheit.getId(), KEINE_SUMMEN);
 
             // Producer-/Bilanz-Werte können negativ gespeichert sein → Absolutwerte für die Anzeige
-            if (einheit.getTyp() != EinheitTyp.CONSUMER) {
-                summeTotal = summeTotal != null ? Math.abs(summeTotal) : 0.0;
-                summeZev = summeZev != null ? Math.abs(summeZev) : 0.0;
-            } else {
-                summeTotal = summeTotal != null ? summeTotal : 0.0;
-                summeZev = summeZev != null ? summeZev : 0.0;
-            }
-            summeZevCalculated = summeZevCalculated != null ? summeZevCalculated : 0.0;
+            double summeTotal = einheit.getTyp() != EinheitTyp.CONSUMER ? Math.abs(summen.total) : summen.total;
+            double summeZev = einheit.getTyp() != EinheitTyp.CONSUMER ? Math.abs(summen.zev) : summen.zev;
+            double summeZevCalculated = summen.zevCalculated;
 
             EinheitSummenDTO einheitSummenDTO = new EinheitSummenDTO(
                     einheit.getId(),
@@ -460,62 +615,40 @@ public class StatistikService {
     // ==================== CSV-Export der 15-Min-Werte je Consumer (Spec Export-Messdaten) ====================
 
     /**
-     * Erzeugt eine CSV der 15-Minuten-Messwerte einer <b>Consumer</b>-Einheit für den Zeitraum
-     * (Spalten: Datum+Zeit, Energiebezug Total, Anteil Bezug aus ZEV). Die Spaltentitel werden je
+     * CSV der 15-Minuten-Messwerte einer <b>Consumer</b>-Einheit für den Zeitraum (Spalten:
+     * Datum+Zeit, Energiebezug Total, Anteil Bezug aus ZEV). Die Spaltentitel werden je
      * {@code sprache} übersetzt; das Monatstotal im Titel wird aus derselben Rundungsbasis (Summe der
      * auf 3 NKS gerundeten Intervallwerte) gebildet, sodass Header == Summe der Zeilen.
      *
+     * <p>Einheit und Mandant werden <b>sofort</b> geprüft ({@link IllegalArgumentException});
+     * die Datei selbst streamt der {@link MesswerteCsvSchreiber} erst beim Schreiben der Antwort,
+     * mit konstantem Speicherbedarf unabhängig vom Zeitraum.
+     *
      * <p>Sicherheit: Da {@code findById} den {@code orgFilter} nicht anwendet, wird die {@code org_id}
      * der Einheit <b>explizit</b> geprüft (keine Cross-Tenant-Exporte).
      */
     @Transactional(readOnly = true)
-    public byte[] exportMesswerteCsv(Long einheitId, LocalDate von, LocalDate bis, String sprache) {
+    public ExportAusgabe exportMesswerteCsv(Long einheitId, LocalDate von, LocalDate bis,
+                                            String sprache) {
         hibernateFilterService.enableOrgFilter();
+        Long orgId = organizationContextService.getCurrentOrgId();
 
         Einheit einheit = einheitRepository.findById(einheitId)
                 .orElseThrow(() -> new IllegalArgumentException("EINHEIT_NICHT_GEFUNDEN"));
         // Org-Check (findById umgeht den orgFilter)
-        if (!Objects.equals(einheit.getOrgId(), organizationContextService.getCurrentOrgId())) {
+        if (!Objects.equals(einheit.getOrgId(), orgId)) {
             throw new IllegalArgumentException("EINHEIT_NICHT_GEFUNDEN");
         }
         if (einheit.getTyp() != EinheitTyp.CONSUMER) {
             throw new IllegalArgumentException("EXPORT_NUR_CONSUMER");
         }
 
-        List<Messwerte> werte = messwerteRepository.findByEinheitAndZeitBetween(
-                einheit, von.atStartOfDay(), bis.atTime(23, 59, 59));
-        werte.sort(Comparator.comparing(Messwerte::getZeit));
-
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
-        // Skala 3 fixieren, damit auch das leere Ergebnis konsistent "0.000" ausgibt (3 NKS).
-        BigDecimal totalSum = BigDecimal.ZERO.setScale(3, RoundingMode.HALF_UP);
-        BigDecimal zevSum = BigDecimal.ZERO.setScale(3, RoundingMode.HALF_UP);
-        List<String> zeilen = new ArrayList<>();
-        for (Messwerte m : werte) {
-            BigDecimal total = round3(m.getTotal());
-            BigDecimal zev = round3(m.getZev());
-            totalSum = totalSum.add(total);
-            zevSum = zevSum.add(zev);
-            zeilen.add(csv(m.getZeit().format(fmt)) + "," + total.toPlainString() + "," + zev.toPlainString());
-        }
-
-        String titelZeit = translate("EXPORT_SPALTE_DATUM_ZEIT", sprache);
-        String titelTotal = translate("EXPORT_SPALTE_ENERGIEBEZUG_TOTAL", sprache);
-        String titelZev = translate("EXPORT_SPALTE_ANTEIL_ZEV", sprache);
-
-        StringBuilder sb = new StringBuilder();
-        sb.append(csv(titelZeit)).append(',')
-                .append(csv(titelTotal + " (" + totalSum.toPlainString() + ")")).append(',')
-                .append(csv(titelZev + " (" + zevSum.toPlainString() + ")")).append('\n');
-        for (String zeile : zeilen) {
-            sb.append(zeile).append('\n');
-        }
-
-        logger.info("CSV-Export für Einheit {} ({} – {}): {} Zeilen", einheitId, von, bis, zeilen.size());
-        return sb.toString().getBytes(StandardCharsets.UTF_8);
+        return messwerteCsvSchreiber.export(orgId, einheitId, von, bis,
+                translate("EXPORT_SPALTE_DATUM_ZEIT", sprache),
+                translate("EXPORT_SPALTE_ENERGIEBEZUG_TOTAL", sprache),
+                translate("EXPORT_SPALTE_ANTEIL_ZEV", sprache));
     }
 
-    /** Übersetzt einen Key je Sprache (analog {@code StatistikPdfService}); Fallback = Key. */
     private String translate(String key, String sprache) {
         return translationService.getTranslationByKey(key)
                 .map(t -> "en".equalsIgnoreCase(sprache) ? t.getEnglisch() : t.getDeutsch())
@@ -523,18 +656,4 @@ public class StatistikService {
                 .orElse(key);
     }
 
-    private static BigDecimal round3(Double v) {
-        return BigDecimal.valueOf(v != null ? v : 0.0).setScale(3, RoundingMode.HALF_UP);
-    }
-
-    /** CSV-Feld escapen (nur nötig bei Komma/Quote/Zeilenumbruch, z.B. in übersetzten Titeln). */
-    private static String csv(String value) {
-        if (value == null) {
-            return "";
-        }
-        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
-            return "\"" + value.replace("\"", "\"\"") + "\"";
-        }
-        return value;
-    }
 }
@@ -0,0 +1,157 @@
+package ch.nacht.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Führt unabhängige Lese-Aufgaben der Statistik (Monatsabschnitte) parallel auf einem
+ * begrenzten Worker-Pool aus ({@code statistik.parallel.threads}) – alle auf <b>demselben
+ * Datenbank-Snapshot</b> wie die aufrufende Transaktion.
+ *
+ * <p>Der Aufrufer exportiert seinen Snapshot ({@code pg_export_snapshot()}); jeder Worker
+ * öffnet eine eigene read-only {@code REPEATABLE READ}-Transaktion (eigene Verbindung) und
+ * übernimmt ihn mit {@code SET TRANSACTION SNAPSHOT} als erste Anweisung. So sehen alle Monate
+ * exakt denselben Datenstand, auch wenn parallel Messwerte geschrieben werden. Der exportierte
+ * Snapshot bleibt gültig, solange die aufrufende Transaktion offen ist – sie wartet auf alle
+ * Worker.
+ *
+ * <p>Verbindungsbedarf: Jeder parallele Aufrufer hält seine eigene Verbindung, während die
+ * Worker weitere aus demselben Hikari-Pool brauchen. Damit wartende Aufrufer den Pool nicht
+ * leerräumen und ihre eigenen Worker aussperren, dürfen höchstens
+ * {@code (poolgroesse - 1) / threads} Aufrufer gleichzeitig parallelisieren
+ * ({@code spring.datasource.hikari.maximum-pool-size}); weitere rechnen ihre Abschnitte
+ * sequenziell in der eigenen Transaktion, ohne zusätzliche Verbindung.
+ *
+ * <p>Eine einzelne Aufgabe (oder {@code threads <= 1}) läuft ohne Export direkt in der
+ * aufrufenden Transaktion. Der orgFilter wird je Worker explizit für den Mandanten gesetzt
+ * (kein Request-Kontext im Worker-Thread).
+ */
+@Component
+public class StatistikSnapshotAusfuehrer {
+
+    private static final Logger log = LoggerFactory.getLogger(StatistikSnapshotAusfuehrer.class);
+
+    /** Format der von PostgreSQL exportierten Snapshot-ID (z.B. {@code 00000003-0000001B-1}). */
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-Fa-f-]+");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HibernateFilterService hibernateFilterService;
+    private final TransactionTemplate workerTransaktion;
+    private final int threads;
+    private final ExecutorService worker;
+    private final Semaphore parallelAufrufer;
+
+    public StatistikSnapshotAusfuehrer(JdbcTemplate jdbcTemplate,
+                                       HibernateFilterService hibernateFilterService,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${statistik.parallel.threads:4}") int threads,
+                                       @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolgroesse) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hibernateFilterService = hibernateFilterService;
+        this.workerTransaktion = new TransactionTemplate(transactionManager);
+        this.workerTransaktion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.workerTransaktion.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.workerTransaktion.setReadOnly(true);
+        this.threads = Math.max(1, threads);
+        this.worker = this.threads > 1
+                ? Executors.newFixedThreadPool(this.threads,
+                        Thread.ofPlatform().name("statistik-", 1).daemon(true).factory())
+                : null;
+        // Eine Verbindung bleibt für alle übrigen Zugriffe frei
+        this.parallelAufrufer = new Semaphore(Math.max(1, (poolgroesse - 1) / this.threads));
+    }
+
+    @PreDestroy
+    void beendeWorker() {
+        if (worker != null) {
+            worker.shutdownNow();
+        }
+    }
+
+    /** Anzahl gleichzeitiger Worker; Obergrenze für die Aufteilung in Abschnitte. */
+    public int parallelitaet() {
+        return threads;
+    }
+
+    /**
+     * Führt die Aufgaben aus und liefert die Ergebnisse in Aufgaben-Reihenfolge. Muss innerhalb
+     * einer (read-only) Transaktion aufgerufen werden, deren Snapshot geteilt wird. Schlägt eine
+     * Aufgabe fehl, werden die übrigen abgebrochen und der Fehler weitergeworfen.
+     */
+    public <T> List<T> fuehreAus(Long orgId, List<Supplier<T>> aufgaben) {
+        if (aufgaben.size() <= 1 || worker == null) {
+            return sequenziell(aufgaben);
+        }
+        if (!parallelAufrufer.tryAcquire()) {
+            log.debug("Statistik: Connection-Pool ausgelastet, {} Abschnitte sequenziell (org={})",
+                    aufgaben.size(), orgId);
+            return sequenziell(aufgaben);
+        }
+        try {
+            return parallel(orgId, aufgaben);
+        } finally {
+            parallelAufrufer.release();
+        }
+    }
+
+    private <T> List<T> sequenziell(List<Supplier<T>> aufgaben) {
+        List<T> ergebnisse = new ArrayList<>(aufgaben.size());
+        for (Supplier<T> aufgabe : aufgaben) {
+            ergebnisse.add(aufgabe.get());
+        }
+        return ergebnisse;
+    }
+
+    private <T> List<T> parallel(Long orgId, List<Supplier<T>> aufgaben) {
+        String snapshot = jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class);
+        if (snapshot == null || !SNAPSHOT_ID.matcher(snapshot).matches()) {
+            throw new IllegalStateException("Ungültige Snapshot-ID: " + snapshot);
+        }
+        log.debug("Statistik: {} Abschnitte parallel auf Snapshot {} (org={})", aufgaben.size(), snapshot, orgId);
+
+        List<Future<T>> laeufe = new ArrayList<>(aufgaben.size());
+        for (Supplier<T> aufgabe : aufgaben) {
+            laeufe.add(worker.submit(() -> workerTransaktion.execute(status -> {
+                // Muss die erste Anweisung der Worker-Transaktion sein
+                jdbcTemplate.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+                hibernateFilterService.enableOrgFilter(orgId);
+                return aufgabe.get();
+            })));
+        }
+
+        List<T> ergebnisse = new ArrayList<>(laeufe.size());
+        try {
+            for (Future<T> lauf : laeufe) {
+                ergebnisse.add(lauf.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            laeufe.forEach(lauf -> lauf.cancel(true));
+            throw new IllegalStateException("Statistik-Berechnung unterbrochen", e);
+        } catch (ExecutionException e) {
+            laeufe.forEach(lauf -> lauf.cancel(true));
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("Statistik-Berechnung fehlgeschlagen", e.getCause());
+        }
+        return ergebnisse;
+    }
+}
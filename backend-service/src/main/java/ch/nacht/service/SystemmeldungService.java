@@ -49,6 +49,10 @@ public class SystemmeldungService {
     public static final String KEY_ZAEHLER_AUSFALL = "MQTT_ZAEHLER_AUSFALL";
     /** Meldungs-Key (INFO, Audit): Zählerwechsel über die Seriennummer erkannt. */
     public static final String KEY_ZAEHLERTAUSCH = "MQTT_ZAEHLERTAUSCH";
+    /** Meldungs-Key (ERROR): Aggregation einer Einheit fehlgeschlagen – zurückgerollt, wird wiederholt. */
+    public static final String KEY_AGGREGATION_FEHLER = "MQTT_AGGREGATION_FEHLER";
+    /** Meldungs-Key (INFO): Catch-up eines grossen Rückstands läuft – Fortschritt im Parameter. */
+    public static final String KEY_AGGREGATION_AUFHOLEN = "MQTT_AGGREGATION_AUFHOLEN";
 
     /** Kategorie-Übersetzungs-Key für Meldungen zur Solar-Verteilung. */
     public static final String KATEGORIE_VERTEILUNG = "SYSTEMMELDUNG_KATEGORIE_VERTEILUNG";
@@ -0,0 +1,184 @@
+package ch.nacht.service;
+
+import ch.nacht.entity.Tarif;
+import ch.nacht.entity.TarifTyp;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Index über die Gültigkeitszeiträume aller Tarife eines Mandanten, je {@link TarifTyp}
+ * ({@link TarifService}). Überschneidungs-, Lücken- und Abdeckungsfragen werden im Speicher
+ * beantwortet statt mit einer Abfrage je Zeitraum – die Validierung über mehrere Jahre und der
+ * Rechnungslauf kommen mit der einen Abfrage beim Aufbau aus.
+ *
+ * <p>Je Typ ein {@link Intervallbaum}: die Tarife nach {@code gueltigVon} sortiert als implizit
+ * balancierter Suchbaum mit dem spätesten {@code gueltigBis} je Teilbaum (Überschneidungen in
+ * O(log n + k), auch für gleichzeitig gültige Tarife wie ZUSATZ), dazu die Vereinigung der
+ * Zeiträume als disjunkte Abschnitte, in denen Lücken per Binärsuche gefunden werden.
+ *
+ * <p>Unveränderlich nach dem Aufbau; die enthaltenen Tarife werden nur gelesen.
+ */
+final class TarifIndex {
+
+    private static final Comparator<Tarif> NACH_BEGINN = Comparator.comparing(Tarif::getGueltigVon);
+
+    private final List<Tarif> alle;
+    private final Map<TarifTyp, Intervallbaum> baeume = new EnumMap<>(TarifTyp.class);
+
+    TarifIndex(List<Tarif> tarife) {
+        this.alle = List.copyOf(tarife);
+        tarife.stream()
+                .collect(Collectors.groupingBy(Tarif::getTariftyp))
+                .forEach((typ, liste) -> baeume.put(typ, new Intervallbaum(liste)));
+    }
+
+    /** Alle Tarife des Mandanten in der Reihenfolge der Abfrage. */
+    List<Tarif> alle() {
+        return alle;
+    }
+
+    /** Tarife des Typs, die {@code [von, bis]} überschneiden, nach Gültigkeitsbeginn. */
+    List<Tarif> tarife(TarifTyp typ, LocalDate von, LocalDate bis) {
+        Intervallbaum baum = baeume.get(typ);
+        return baum != null ? baum.ueberschneidend(von, bis) : List.of();
+    }
+
+    /** Wie {@link #tarife(TarifTyp, LocalDate, LocalDate)}, für mehrere Typen gemeinsam sortiert. */
+    List<Tarif> tarife(Collection<TarifTyp> typen, LocalDate von, LocalDate bis) {
+        List<Tarif> treffer = new ArrayList<>();
+        typen.forEach(typ -> treffer.addAll(tarife(typ, von, bis)));
+        treffer.sort(NACH_BEGINN);
+        return treffer;
+    }
+
+    /**
+     * Lücken der Abdeckung des Typs in {@code [von, bis]}.
+     *
+     * @return erster Tag jeder Lücke (leer = vollständig abgedeckt)
+     */
+    List<LocalDate> luecken(TarifTyp typ, LocalDate von, LocalDate bis) {
+        Intervallbaum baum = baeume.get(typ);
+        return baum != null ? baum.luecken(von, bis) : List.of(von);
+    }
+
+    /** Jahre, in denen ein Tarif beginnt oder endet. */
+    SortedSet<Integer> jahre() {
+        SortedSet<Integer> jahre = new TreeSet<>();
+        for (Tarif tarif : alle) {
+            jahre.add(tarif.getGueltigVon().getYear());
+            jahre.add(tarif.getGueltigBis().getYear());
+        }
+        return jahre;
+    }
+
+    /** Statischer Intervallbaum über die Tarife eines Typs. */
+    private static final class Intervallbaum {
+
+        /** Nach {@code gueltigVon} sortiert; Wurzel eines Bereichs {@code [lo, hi]} ist dessen Mitte. */
+        private final Tarif[] tarife;
+        /** Spätestes {@code gueltigBis} im Teilbaum mit Wurzel {@code i}. */
+        private final LocalDate[] maxBis;
+        /** Vereinigung der Zeiträume: disjunkt, nicht aneinanderstossend, aufsteigend. */
+        private final List<LocalDate> abschnittVon = new ArrayList<>();
+        private final List<LocalDate> abschnittBis = new ArrayList<>();
+
+        Intervallbaum(List<Tarif> liste) {
+            tarife = liste.stream().sorted(NACH_BEGINN).toArray(Tarif[]::new);
+            maxBis = new LocalDate[tarife.length];
+            baue(0, tarife.length - 1);
+
+            for (Tarif tarif : tarife) {
+                int letzter = abschnittBis.size() - 1;
+                // Lückenlos ist auch "endet am 31.3., nächster beginnt am 1.4."
+                if (letzter >= 0 && !tarif.getGueltigVon().isAfter(abschnittBis.get(letzter).plusDays(1))) {
+                    if (tarif.getGueltigBis().isAfter(abschnittBis.get(letzter))) {
+                        abschnittBis.set(letzter, tarif.getGueltigBis());
+                    }
+                } else {
+                    abschnittVon.add(tarif.getGueltigVon());
+                    abschnittBis.add(tarif.getGueltigBis());
+                }
+            }
+        }
+
+        private LocalDate baue(int lo, int hi) {
+            if (lo > hi) {
+                return null;
+            }
+            int mitte = (lo + hi) >>> 1;
+            LocalDate max = tarife[mitte].getGueltigBis();
+            for (LocalDate kind : new LocalDate[]{baue(lo, mitte - 1), baue(mitte + 1, hi)}) {
+                if (kind != null && kind.isAfter(max)) {
+                    max = kind;
+                }
+            }
+            maxBis[mitte] = max;
+            return max;
+        }
+
+        List<Tarif> ueberschneidend(LocalDate von, LocalDate bis) {
+            List<Tarif> treffer = new ArrayList<>();
+            sammle(0, tarife.length - 1, von, bis, treffer);
+            return treffer;
+        }
+
+        /** In-order, damit die Treffer nach Gültigkeitsbeginn sortiert bleiben. */
+        private void sammle(int lo, int hi, LocalDate von, LocalDate bis, List<Tarif> treffer) {
+            if (lo > hi) {
+                return;
+            }
+            int mitte = (lo + hi) >>> 1;
+            if (maxBis[mitte].isBefore(von)) {
+                return; // Alles in diesem Teilbaum endet vor dem Zeitraum
+            }
+            sammle(lo, mitte - 1, von, bis, treffer);
+            Tarif tarif = tarife[mitte];
+            if (tarif.getGueltigVon().isAfter(bis)) {
+                return; // Die Wurzel und alles rechts davon beginnt erst nach dem Zeitraum
+            }
+            if (!tarif.getGueltigBis().isBefore(von)) {
+                treffer.add(tarif);
+            }
+            sammle(mitte + 1, hi, von, bis, treffer);
+        }
+
+        List<LocalDate> luecken(LocalDate von, LocalDate bis) {
+            List<LocalDate> luecken = new ArrayList<>();
+            LocalDate aktuell = von;
+            for (int i = ersterAbschnittAb(von); i < abschnittVon.size() && !abschnittVon.get(i).isAfter(bis); i++) {
+                if (aktuell.isBefore(abschnittVon.get(i))) {
+                    luecken.add(aktuell);
+                }
+                aktuell = abschnittBis.get(i).plusDays(1);
+            }
+            if (!aktuell.isAfter(bis)) {
+                luecken.add(aktuell);
+            }
+            return luecken;
+        }
+
+        /** Index des ersten Abschnitts, der nicht vor {@code datum} endet (Binärsuche). */
+        private int ersterAbschnittAb(LocalDate datum) {
+            int lo = 0;
+            int hi = abschnittBis.size();
+            while (lo < hi) {
+                int mitte = (lo + hi) >>> 1;
+                if (abschnittBis.get(mitte).isBefore(datum)) {
+                    lo = mitte + 1;
+                } else {
+                    hi = mitte;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -11,17 +11,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service for managing tariffs.
+ *
+ * <p>Zeitraum-Abfragen und Abdeckungsprüfungen lesen aus einem {@link TarifIndex} je Mandant,
+ * der mit einer Abfrage aufgebaut und bei Tarifänderungen nach dem Commit verworfen wird (wie
+ * {@link DatenVersionService#erhoehe}) – Rechnungslauf und Validierung setzen keine Abfrage je
+ * Quartal oder Jahr mehr ab.
  */
 @Service
 public class TarifService {
@@ -32,15 +43,29 @@ public class TarifService {
     private final TarifpositionRepository tarifpositionRepository;
     private final OrganizationContextService organizationContextService;
     private final HibernateFilterService hibernateFilterService;
+    private final DatenVersionService datenVersionService;
+
+    /** Index je Mandant mit dem Stand, auf dem er aufgebaut wurde. */
+    private record IndexEintrag(long stand, TarifIndex index) {
+    }
+
+    private final ConcurrentMap<Long, IndexEintrag> indizes = new ConcurrentHashMap<>();
+    /**
+     * Änderungsstand je Mandant. Ein Leser, der vor dem Commit einer Änderung zu laden begann,
+     * legt seinen Index unter dem alten Stand ab – der nächste Zugriff baut dann neu auf.
+     */
+    private final ConcurrentMap<Long, AtomicLong> staende = new ConcurrentHashMap<>();
 
     public TarifService(TarifRepository tarifRepository,
                         TarifpositionRepository tarifpositionRepository,
                         OrganizationContextService organizationContextService,
-                        HibernateFilterService hibernateFilterService) {
+                        HibernateFilterService hibernateFilterService,
+                        DatenVersionService datenVersionService) {
         this.tarifRepository = tarifRepository;
         this.tarifpositionRepository = tarifpositionRepository;
         this.organizationContextService = organizationContextService;
         this.hibernateFilterService = hibernateFilterService;
+        this.datenVersionService = datenVersionService;
     }
 
     /**
@@ -108,6 +133,8 @@ public class TarifService {
 
         Tarif saved = tarifRepository.save(tarif);
         log.info("Tariff saved with ID: {}", saved.getId());
+        verwerfeIndex(saved.getOrgId());
+        datenVersionService.erhoehe(saved.getOrgId());
         return saved;
     }
 
@@ -150,6 +177,9 @@ public class TarifService {
             }
             tarifRepository.deleteById(id);
             log.info("Deleted tariff with ID: {}", id);
+            Long orgId = organizationContextService.getCurrentOrgId();
+            verwerfeIndex(orgId);
+            datenVersionService.erhoehe(orgId);
             return true;
         }
         log.warn("Tariff not found for deletion: {}", id);
@@ -168,7 +198,66 @@ public class TarifService {
     @Transactional(readOnly = true)
     public List<Tarif> getTarifeForZeitraum(TarifTyp typ, LocalDate von, LocalDate bis) {
         hibernateFilterService.enableOrgFilter();
-        return tarifRepository.findByTariftypAndZeitraumOverlapping(typ, von, bis);
+        return index().tarife(typ, von, bis);
+    }
+
+    /**
+     * Get all tariffs of the given types that are valid for the given date range.
+     * Used by the invoice run, which filters per invoice period in memory.
+     *
+     * @param typen Tariff types
+     * @param von Start date
+     * @param bis End date
+     * @return List of valid tariffs ordered by validity start date
+     */
+    @Transactional(readOnly = true)
+    public List<Tarif> getTarifeByTypenForZeitraum(Collection<TarifTyp> typen, LocalDate von, LocalDate bis) {
+        hibernateFilterService.enableOrgFilter();
+        return index().tarife(typen, von, bis);
+    }
+
+    /**
+     * Tarif-Index des aktuellen Mandanten, bei Bedarf mit einer Abfrage neu aufgebaut.
+     * Der orgFilter muss aktiv sein.
+     */
+    private TarifIndex index() {
+        Long orgId = organizationContextService.getCurrentOrgId();
+        long stand = stand(orgId);
+        IndexEintrag eintrag = indizes.get(orgId);
+        if (eintrag != null && eintrag.stand() == stand) {
+            return eintrag.index();
+        }
+        TarifIndex index = new TarifIndex(tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc());
+        indizes.put(orgId, new IndexEintrag(stand, index));
+        log.debug("Tarif-Index org={} aufgebaut ({} Tarife)", orgId, index.alle().size());
+        return index;
+    }
+
+    private long stand(Long orgId) {
+        AtomicLong stand = staende.get(orgId);
+        return stand != null ? stand.get() : 0L;
+    }
+
+    /** Verwirft den Tarif-Index des Mandanten – nach dem Commit, sonst sofort. */
+    private void verwerfeIndex(Long orgId) {
+        if (orgId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    verwerfeIndexSofort(orgId);
+                }
+            });
+        } else {
+            verwerfeIndexSofort(orgId);
+        }
+    }
+
+    private void verwerfeIndexSofort(Long orgId) {
+        staende.computeIfAbsent(orgId, id -> new AtomicLong()).incrementAndGet();
+        indizes.remove(orgId);
     }
 
     /**
@@ -181,8 +270,9 @@ public class TarifService {
      */
     public void validateTarifAbdeckung(LocalDate von, LocalDate bis) {
         log.debug("Validating tariff coverage from {} to {}", von, bis);
+        hibernateFilterService.enableOrgFilter();
 
-        List<TarifLuecke> luecken = findTarifLuecken(von, bis);
+        List<TarifLuecke> luecken = findTarifLuecken(index(), von, bis);
         if (!luecken.isEmpty()) {
             log.warn("Tariff coverage gaps from {} to {}: {}", von, bis, luecken);
             throw new TarifLueckenException(luecken);
@@ -195,19 +285,20 @@ public class TarifService {
      * Find tariff coverage gaps (ZEV and VNB) for the given period in a
      * language-neutral form.
      *
+     * @param index Tariff index of the current organisation
      * @param von Start date
      * @param bis End date
      * @return List of gaps (empty if fully covered)
      */
-    private List<TarifLuecke> findTarifLuecken(LocalDate von, LocalDate bis) {
+    private List<TarifLuecke> findTarifLuecken(TarifIndex index, LocalDate von, LocalDate bis) {
         List<TarifLuecke> luecken = new ArrayList<>();
 
-        List<LocalDate> zevGaps = findCoverageGaps(TarifTyp.ZEV, von, bis);
+        List<LocalDate> zevGaps = index.luecken(TarifTyp.ZEV, von, bis);
         if (!zevGaps.isEmpty()) {
             luecken.add(new TarifLuecke("ZEV", zevGaps.get(0).format(DATE_FORMATTER), zevGaps.size() > 1));
         }
 
-        List<LocalDate> vnbGaps = findCoverageGaps(TarifTyp.VNB, von, bis);
+        List<LocalDate> vnbGaps = index.luecken(TarifTyp.VNB, von, bis);
         if (!vnbGaps.isEmpty()) {
             luecken.add(new TarifLuecke("VNB", vnbGaps.get(0).format(DATE_FORMATTER), vnbGaps.size() > 1));
         }
@@ -215,49 +306,6 @@ public class TarifService {
         return luecken;
     }
 
-    /**
-     * Find gaps in tariff coverage for a specific type and date range.
-     *
-     * @param typ Tariff type
-     * @param von Start date
-     * @param bis End date
-     * @return List of dates without coverage (first date of each gap)
-     */
-    private List<LocalDate> findCoverageGaps(TarifTyp typ, LocalDate von, LocalDate bis) {
-        List<Tarif> tarife = getTarifeForZeitraum(typ, von, bis);
-        List<LocalDate> gaps = new ArrayList<>();
-
-        if (tarife.isEmpty()) {
-            gaps.add(von);
-            return gaps;
-        }
-
-        LocalDate currentDate = von;
-        for (Tarif tarif : tarife) {
-            LocalDate tarifStart = tarif.getGueltigVon().isBefore(von) ? von : tarif.getGueltigVon();
-            LocalDate tarifEnd = tarif.getGueltigBis().isAfter(bis) ? bis : tarif.getGueltigBis();
-
-            // Check for gap before this tariff
-            if (currentDate.isBefore(tarifStart)) {
-                gaps.add(currentDate);
-            }
-
-            // Move current date to day after this tariff ends
-            if (tarifEnd.plusDays(1).isAfter(currentDate)) {
-                currentDate = tarifEnd.plusDays(1);
-            }
-        }
-
-        // Check for gap after all tariffs
-        if (currentDate.isBefore(bis) || currentDate.equals(bis)) {
-            if (!bis.isBefore(currentDate)) {
-                gaps.add(currentDate);
-            }
-        }
-
-        return gaps;
-    }
-
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
     /**
@@ -270,7 +318,8 @@ public class TarifService {
         hibernateFilterService.enableOrgFilter();
         log.info("Validating tariff coverage for all quarters");
 
-        List<Tarif> alleTarife = tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc();
+        TarifIndex index = index();
+        List<Tarif> alleTarife = index.alle();
         if (alleTarife.isEmpty()) {
             return new ValidationResult(true, List.of());
         }
@@ -286,7 +335,7 @@ public class TarifService {
             int q = Integer.parseInt(parts[0].substring(1));
             int year = Integer.parseInt(parts[1]);
 
-            List<TarifLuecke> periodLuecken = findTarifLuecken(getQuartalStart(q, year), getQuartalEnd(q, year));
+            List<TarifLuecke> periodLuecken = findTarifLuecken(index, getQuartalStart(q, year), getQuartalEnd(q, year));
             if (!periodLuecken.isEmpty()) {
                 luecken.add(new TarifLueckePeriode(quartal, periodLuecken));
             }
@@ -306,7 +355,8 @@ public class TarifService {
         hibernateFilterService.enableOrgFilter();
         log.info("Validating tariff coverage for all years");
 
-        List<Integer> years = tarifRepository.findDistinctYears();
+        TarifIndex index = index();
+        Set<Integer> years = index.jahre();
         if (years.isEmpty()) {
             return new ValidationResult(true, List.of());
         }
@@ -314,7 +364,7 @@ public class TarifService {
         List<TarifLueckePeriode> luecken = new ArrayList<>();
         for (Integer year : years) {
             List<TarifLuecke> periodLuecken = findTarifLuecken(
-                    LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+                    index, LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
             if (!periodLuecken.isEmpty()) {
                 luecken.add(new TarifLueckePeriode(String.valueOf(year), periodLuecken));
             }
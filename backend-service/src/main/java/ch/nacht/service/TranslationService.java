@@ -6,18 +6,40 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+/**
+ * Übersetzungen (Tabelle {@code translation}, mandantenübergreifend).
+ *
+ * <p>Die PDF-Erzeugung liest die Übersetzungen als unveränderliches Bundle je Sprache
+ * ({@link #getBundle}), einmal aus der Tabelle aufgebaut und im Speicher gehalten. Anlegen,
+ * Ändern, Löschen und Import über diesen Service verwerfen die Bundles – innerhalb einer
+ * Transaktion erst <b>nach dem Commit</b> (wie {@link StatistikCache#verwerfe}), damit ein
+ * paralleler Leser den alten Stand nicht erneut cacht.
+ */
 @Service
 public class TranslationService {
 
     private static final Logger log = LoggerFactory.getLogger(TranslationService.class);
     private final TranslationRepository translationRepository;
 
+    /** Bundles beider Sprachen aus demselben Tabellenstand. */
+    private record Bundles(Map<String, String> deutsch, Map<String, String> englisch) {
+    }
+
+    /** Erhöht bei jedem Verwerfen; ein währenddessen geladener Stand wird nicht gecacht. */
+    private final AtomicLong bundleStand = new AtomicLong();
+    private volatile Bundles bundles;
+
     public TranslationService(TranslationRepository translationRepository) {
         this.translationRepository = translationRepository;
         log.info("TranslationService initialized");
@@ -28,7 +50,9 @@ public class TranslationService {
     }
 
     public Translation saveTranslation(Translation translation) {
-        return translationRepository.save(translation);
+        Translation saved = translationRepository.save(translation);
+        verwerfeBundles();
+        return saved;
     }
 
     public Optional<Translation> getTranslationByKey(String key) {
@@ -60,7 +84,8 @@ public class TranslationService {
 
         List<Translation> toSave = translations;
         if (!ueberschreiben) {
-            Set<String> existing = translationRepository.findAll().stream()
+            Set<String> existing = translationRepository.findAllById(
+                            translations.stream().map(Translation::getKey).toList()).stream()
                     .map(Translation::getKey)
                     .collect(Collectors.toSet());
             toSave = translations.stream()
@@ -69,6 +94,9 @@ public class TranslationService {
         }
 
         List<Translation> saved = translationRepository.saveAll(toSave);
+        if (!saved.isEmpty()) {
+            verwerfeBundles();
+        }
         log.info("Imported {} translations (ueberschreiben={}, eingereicht={})",
                 saved.size(), ueberschreiben, translations.size());
         return saved.size();
@@ -79,6 +107,7 @@ public class TranslationService {
         Optional<Translation> translation = translationRepository.findById(key);
         if (translation.isPresent()) {
             translationRepository.deleteById(key);
+            verwerfeBundles();
             log.info("Successfully deleted translation with key: {}", key);
             return true;
         } else {
@@ -86,4 +115,58 @@ public class TranslationService {
             return false;
         }
     }
+
+    /**
+     * Unveränderliches Bundle {@code Key → Text} einer Sprache für Jasper-Reports. Fehlt der
+     * Text in der Sprache, steht der Key selbst im Bundle.
+     *
+     * @param sprache {@code en} für Englisch, sonst Deutsch
+     */
+    public Map<String, String> getBundle(String sprache) {
+        Bundles aktuell = bundles;
+        if (aktuell == null) {
+            aktuell = ladeBundles();
+        }
+        return "en".equalsIgnoreCase(sprache) ? aktuell.englisch() : aktuell.deutsch();
+    }
+
+    private synchronized Bundles ladeBundles() {
+        if (bundles != null) {
+            return bundles;
+        }
+        long stand = bundleStand.get();
+        List<Translation> alle = translationRepository.findAll();
+        Map<String, String> deutsch = new HashMap<>(alle.size());
+        Map<String, String> englisch = new HashMap<>(alle.size());
+        for (Translation t : alle) {
+            deutsch.put(t.getKey(), t.getDeutsch() != null ? t.getDeutsch() : t.getKey());
+            englisch.put(t.getKey(), t.getEnglisch() != null ? t.getEnglisch() : t.getKey());
+        }
+        Bundles geladen = new Bundles(Map.copyOf(deutsch), Map.copyOf(englisch));
+        // Während des Ladens verworfen? Dann diesen (evtl. alten) Stand nur einmal verwenden
+        if (bundleStand.get() == stand) {
+            bundles = geladen;
+            log.info("Translation bundles loaded: {} keys", alle.size());
+        }
+        return geladen;
+    }
+
+    /** Verwirft die Bundles – nach dem Commit, sonst sofort. */
+    private void verwerfeBundles() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    verwerfeBundlesSofort();
+                }
+            });
+        } else {
+            verwerfeBundlesSofort();
+        }
+    }
+
+    private void verwerfeBundlesSofort() {
+        bundleStand.incrementAndGet();
+        bundles = null;
+    }
 }
@@ -1,29 +1,50 @@
 package ch.nacht.service;
 
+import ch.nacht.entity.AggregationCheckpoint;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.MeldungLevel;
 import ch.nacht.entity.Messwerte;
 import ch.nacht.entity.Quelle;
 import ch.nacht.entity.ZaehlerRohdaten;
+import ch.nacht.repository.AggregationCheckpointRepository;
 import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.MesswerteRepository;
 import ch.nacht.repository.ZaehlerRohdatenRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
  * Scheduled-Aggregations-Job der MQTT-Integration (FR-6). Bildet je Einheit und
@@ -35,6 +56,21 @@ import java.util.Optional;
  * bei Consumern {@code zev = zev_calculated} und bei Producern {@code zev} auf den im ZEV
  * konsumierten Anteil der Produktion.
  *
+ * <p>Zwei gleichwertige Modi je Einheit ({@code mqtt.aggregation.mengenbasiert}, Default
+ * {@code true}): <b>mengenbasiert</b> bildet alle Intervalle eines Rückstands in einer
+ * SQL-Abfrage (Fensterfunktionen) und schreibt sie als Batch; <b>intervallweise</b> geht
+ * Intervall für Intervall vor (Referenzimplementierung, mehrere Abfragen je 15 Minuten).
+ *
+ * <p>Jede Einheit wird in einer <b>eigenen Transaktion</b> auf einem begrenzten Worker-Pool
+ * aggregiert ({@code mqtt.aggregation.threads}); Fehler einer Einheit werden als
+ * Systemmeldung erfasst und betreffen die übrigen nicht. Die Solarverteilung je Mandant läuft
+ * danach in ihrer eigenen Transaktion.
+ *
+ * <p>Grosse Rückstände (mehr als {@value #MAX_INTERVALLE} Intervalle) laufen im
+ * <b>Catch-up-Modus</b>: abschnittweise mit persistentem Checkpoint je Einheit
+ * ({@link AggregationCheckpoint}), fortsetzbar nach einem Neustart; die Verteilung des
+ * Mandanten wird bis zum Abschluss zurückgestellt.
+ *
  * <p>NUR aktiv mit Spring-Profil {@code mqtt}. Kein Request-Scope: {@code org_id} wird
  * explizit aus den Rohdaten/der Einheit übernommen (kein {@code orgFilter}).
  */
@@ -51,32 +87,104 @@ public class ZaehlerAggregationService {
     private static final DateTimeFormatter ZEIT_FORMAT =
             DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
+    /** Update bestehender Messwerte der mengenbasierten Aggregation (Felder wie {@code upsertMesswert}). */
+    private static final String UPDATE_MESSWERT_SQL = """
+            UPDATE zev.messwerte SET total = ?, zev = ?, quelle = 'MQTT'
+            WHERE einheit_id = ? AND zeit = ?
+            """;
+
+    /** Insert neuer Messwerte der mengenbasierten Aggregation; {@code zev_calculated} bleibt NULL. */
+    private static final String INSERT_MESSWERT_SQL = """
+            INSERT INTO zev.messwerte (org_id, einheit_id, zeit, total, zev, quelle)
+            VALUES (?, ?, ?, ?, ?, 'MQTT')
+            """;
+
+    /**
+     * Verarbeitungsergebnis einer Einheit: Mandant, Anzahl Messwerte und zu verteilende Spanne
+     * (null = keine). {@code aufholen != null}: Catch-up noch nicht abgeschlossen.
+     */
+    private record EinheitErgebnis(Long orgId, int erzeugt, LocalDateTime von, LocalDateTime bis,
+                                   Fortschritt aufholen) {
+        static final EinheitErgebnis LEER = new EinheitErgebnis(null, 0, null, null, null);
+
+        EinheitErgebnis(Long orgId, int erzeugt, LocalDateTime von, LocalDateTime bis) {
+            this(orgId, erzeugt, von, bis, null);
+        }
+    }
+
+    /** Catch-up-Fortschritt einer Einheit (Intervalle) mit geschätztem Abschluss. */
+    private record Fortschritt(String einheit, long erledigt, long gesamt, LocalDateTime fertigUm) {
+    }
+
     private final ZaehlerRohdatenRepository rohdatenRepository;
     private final MesswerteRepository messwerteRepository;
     private final EinheitRepository einheitRepository;
     private final MesswerteService messwerteService;
     private final MqttMetrics metrics;
     private final SystemmeldungService systemmeldungService;
+    private final DatenVersionService datenVersionService;
+    private final AggregationCheckpointRepository checkpointRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Streaming-Aggregation läuft im afterCommit der Ingest-Transaktion: deren Ressourcen sind
+    // dort noch an den Thread gebunden – REQUIRED würde einer Transaktion beitreten, die nie
+    // mehr committet. Deshalb immer eine neue Transaktion.
+    private final TransactionTemplate neueTransaktion;
+    private final boolean mengenbasiert;
+    private final Duration maxLaufzeit;
+    private final int aufholAbschnitt;
+    private final ExecutorService worker;
+    // Sperre je Einheit: Cron-Worker und Streaming-Aggregation dürfen dasselbe Intervall nicht
+    // gleichzeitig schreiben (messwerte hat keinen Unique-Key – doppelter Insert wäre möglich).
+    private final ConcurrentHashMap<Long, Object> sperren = new ConcurrentHashMap<>();
 
     public ZaehlerAggregationService(ZaehlerRohdatenRepository rohdatenRepository,
                                      MesswerteRepository messwerteRepository,
                                      EinheitRepository einheitRepository,
                                      MesswerteService messwerteService,
                                      MqttMetrics metrics,
-                                     SystemmeldungService systemmeldungService) {
+                                     SystemmeldungService systemmeldungService,
+                                     DatenVersionService datenVersionService,
+                                     AggregationCheckpointRepository checkpointRepository,
+                                     JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${mqtt.aggregation.mengenbasiert:true}") boolean mengenbasiert,
+                                     @Value("${mqtt.aggregation.threads:4}") int threads,
+                                     @Value("${mqtt.aggregation.max-laufzeit:PT12M}") Duration maxLaufzeit,
+                                     @Value("${mqtt.aggregation.aufholen.abschnitt:2880}") int aufholAbschnitt) {
         this.rohdatenRepository = rohdatenRepository;
         this.messwerteRepository = messwerteRepository;
         this.einheitRepository = einheitRepository;
         this.messwerteService = messwerteService;
         this.metrics = metrics;
         this.systemmeldungService = systemmeldungService;
+        this.datenVersionService = datenVersionService;
+        this.checkpointRepository = checkpointRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.neueTransaktion = new TransactionTemplate(transactionManager);
+        this.neueTransaktion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.mengenbasiert = mengenbasiert;
+        this.maxLaufzeit = maxLaufzeit;
+        this.aufholAbschnitt = Math.min(aufholAbschnitt, MAX_INTERVALLE);
+        this.worker = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("aggregation-", 1).daemon(true).factory());
+    }
+
+    @PreDestroy
+    void beendeWorker() {
+        worker.shutdownNow();
     }
 
     // Läuft 5 Minuten nach jeder Viertelstunde (:05/:20/:35/:50), damit spät eintreffende
     // MQTT-Nachrichten des gerade abgeschlossenen Quartals noch enthalten sind. Die verarbeiteten
     // Intervallgrenzen bleiben quartalsgenau (:00/:15/:30/:45) – dafür sorgt floorAufQuartal().
+    //
+    // Bewusst OHNE umschliessende Transaktion: jede Einheit läuft in einer eigenen Transaktion
+    // auf dem Worker-Pool (mqtt.aggregation.threads). Ein defekter Zähler oder ein Lock-Timeout
+    // rollt nur die eigene Einheit zurück; deren Rohdaten bleiben unverarbeitet und werden im
+    // nächsten Lauf erneut versucht.
     @Scheduled(cron = "0 5,20,35,50 * * * *")
-    @Transactional
     public void aggregiere() {
         metrics.recordAggregationRun();
         // Lokale Zeit – konsistent mit den lokal gespeicherten Rohdaten-Zeitstempeln
@@ -85,42 +193,56 @@ public class ZaehlerAggregationService {
         LocalDateTime jetzt = LocalDateTime.now();
         log.info("Aggregation start}");
         LocalDateTime letzteGrenze = floorAufQuartal(jetzt); // letztes abgeschlossenes Intervallende
+        // Einheiten, die bis zur Frist nicht gestartet sind, werden auf den nächsten Lauf
+        // verschoben – damit der Job vor dem nächsten Cron-Tick fertig wird.
+        Instant frist = Instant.now().plus(maxLaufzeit);
+        // Mandanten mit aufholenden Einheiten (Catch-up, persistente Checkpoints) – eine Abfrage je Lauf
+        Set<Long> orgsMitRueckstandVorher = new HashSet<>(checkpointRepository.findOrgIdsMitRueckstand());
+        Set<Long> mitCheckpoint = orgsMitRueckstandVorher.isEmpty() ? Set.of()
+                : checkpointRepository.findAll().stream()
+                        .map(AggregationCheckpoint::getEinheitId)
+                        .collect(Collectors.toSet());
+
+        // Einheiten mit Checkpoint auch ohne offene Rohdaten – sonst bliebe die Verteilung zurückgestellt
+        Set<Long> einheitIds = new LinkedHashSet<>(rohdatenRepository.findEinheitIdsWithUnverarbeitet());
+        einheitIds.addAll(mitCheckpoint);
+
+        List<Future<EinheitErgebnis>> laeufe = new ArrayList<>();
+        for (Long einheitId : einheitIds) {
+            boolean hatCheckpoint = mitCheckpoint.contains(einheitId);
+            laeufe.add(worker.submit(() -> aggregiereEinheit(einheitId, hatCheckpoint, letzteGrenze, jetzt, frist)));
+        }
+
         int erzeugt = 0;
         // Behandelter Zeitraum je Mandant für die anschliessende Verteilung:
         // von = frühester Intervall-Start, bis = spätestes Intervall-Ende (echte Spanne, auch bei
         // nur einem verarbeiteten Intervall).
         Map<Long, LocalDateTime> orgVon = new HashMap<>();
         Map<Long, LocalDateTime> orgBis = new HashMap<>();
-
-        for (Long einheitId : rohdatenRepository.findEinheitIdsWithUnverarbeitet()) {
-            Einheit einheit = einheitRepository.findById(einheitId).orElse(null);
-            if (einheit == null) {
-                log.warn("Aggregation: Einheit {} nicht gefunden – übersprungen", einheitId);
+        for (Future<EinheitErgebnis> lauf : laeufe) {
+            EinheitErgebnis ergebnis;
+            try {
+                ergebnis = lauf.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Aggregation unterbrochen – Verteilung entfällt, Rest folgt im nächsten Lauf");
+                return;
+            } catch (ExecutionException e) {
+                // aggregiereEinheit fängt alle Fehler selbst ab – nur zur Sicherheit
+                log.error("Aggregation einer Einheit unerwartet fehlgeschlagen", e.getCause());
                 continue;
             }
-
-            Optional<ZaehlerRohdaten> earliestOpt =
-                    rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(einheitId);
-            if (earliestOpt.isEmpty()) {
-                continue;
+            erzeugt += ergebnis.erzeugt();
+            if (ergebnis.erzeugt() > 0) {
+                // Auch bei zurückgestellter Verteilung (Catch-up) sind die Messwerte sichtbar
+                datenVersionService.erhoehe(ergebnis.orgId());
             }
-
-            LocalDateTime intervallEnde = ceilAufQuartal(earliestOpt.get().getZeit());
-            int schutz = 0;
-            while (!intervallEnde.isAfter(letzteGrenze) && schutz++ < MAX_INTERVALLE) {
-                LocalDateTime intervallStart = intervallEnde.minusMinutes(INTERVALL_MINUTEN);
-                log.info("Aggregation. Einheit: {}, Intervall: {} - {}", einheitId, intervallStart, intervallEnde);
-                if (rohdatenRepository.existsByEinheitIdAndZeitGreaterThanAndZeitLessThanEqual(
-                        einheitId, intervallStart, intervallEnde)) {
-                    if (verarbeiteIntervall(einheit, intervallStart, intervallEnde)) {
-                        erzeugt++;
-                        Long org = einheit.getOrgId();
-                        orgVon.merge(org, intervallStart, (a, b) -> a.isBefore(b) ? a : b);
-                        orgBis.merge(org, intervallEnde, (a, b) -> a.isAfter(b) ? a : b);
-                    }
-                    rohdatenRepository.markVerarbeitet(einheitId, intervallEnde, jetzt);
-                }
-                intervallEnde = intervallEnde.plusMinutes(INTERVALL_MINUTEN);
+            if (ergebnis.aufholen() != null) {
+                meldeFortschritt(ergebnis.orgId(), ergebnis.aufholen());
+            }
+            if (ergebnis.von() != null) {
+                orgVon.merge(ergebnis.orgId(), ergebnis.von(), (a, b) -> a.isBefore(b) ? a : b);
+                orgBis.merge(ergebnis.orgId(), ergebnis.bis(), (a, b) -> a.isAfter(b) ? a : b);
             }
         }
 
@@ -128,6 +250,25 @@ public class ZaehlerAggregationService {
             log.info("Aggregation: {} Messwerte erzeugt (bis {})", erzeugt, letzteGrenze);
         }
 
+        // Catch-up: solange eine Einheit des Mandanten aufholt, wird dessen Verteilung
+        // zurückgestellt (die Spanne wird in den Checkpoints vorgemerkt) – sonst liefe bei jedem
+        // Abschnitt eine Verteilung über die bis dahin unvollständigen Daten.
+        Set<Long> orgsMitRueckstand = new HashSet<>(checkpointRepository.findOrgIdsMitRueckstand());
+        for (Long org : orgsMitRueckstandVorher) {
+            if (!orgsMitRueckstand.contains(org)) {
+                systemmeldungService.autoResolve(org, SystemmeldungService.KEY_AGGREGATION_AUFHOLEN);
+            }
+        }
+        orgVon.keySet().removeIf(org -> {
+            if (!orgsMitRueckstand.contains(org)) {
+                return false;
+            }
+            LocalDateTime von = orgVon.get(org);
+            transactionTemplate.executeWithoutResult(status -> checkpointRepository.merkeVerteilungVor(org, von));
+            log.info("Solarverteilung zurückgestellt bis zum Abschluss des Catch-up (org={}, ab {})", org, von);
+            return true;
+        });
+
         // FR-6.7: Unmittelbar nach der Aggregation die Solarverteilung je Mandant für den
         // behandelten Zeitraum ausführen (setzt zev_calculated und – wo zev == 0 – zev). Fehler
         // pro Mandant werden geloggt, brechen die übrigen Mandanten aber nicht ab.
@@ -153,6 +294,350 @@ public class ZaehlerAggregationService {
         }
     }
 
+    /**
+     * Aggregiert eine Einheit in einer <b>eigenen Transaktion</b> (Worker-Thread). Fehler werden
+     * nicht weitergereicht, sondern als ERROR-Systemmeldung des Mandanten erfasst
+     * ({@link SystemmeldungService#KEY_AGGREGATION_FEHLER}); die übrigen Einheiten laufen weiter.
+     * Die Dauer wird je Einheit als Timer erfasst (Ergebnis {@code ok}/{@code fehler}).
+     */
+    private EinheitErgebnis aggregiereEinheit(Long einheitId, boolean hatCheckpoint, LocalDateTime letzteGrenze,
+                                              LocalDateTime jetzt, Instant frist) {
+        if (Instant.now().isAfter(frist)) {
+            log.warn("Aggregation: Laufzeit überschritten – Einheit {} folgt im nächsten Lauf", einheitId);
+            metrics.recordEinheitVerschoben();
+            return EinheitErgebnis.LEER;
+        }
+        long start = System.nanoTime();
+        try {
+            EinheitErgebnis ergebnis;
+            synchronized (sperreFuer(einheitId)) {
+                ergebnis = transactionTemplate.execute(
+                        status -> aggregiereEinheitInTransaktion(einheitId, hatCheckpoint, letzteGrenze, jetzt));
+                // Catch-up: weitere Abschnitte (je eine Transaktion = ein Checkpoint) bis aufgeholt
+                // oder bis zur Frist; der Rest folgt im nächsten Lauf bzw. nach einem Neustart.
+                int erzeugt = ergebnis != null ? ergebnis.erzeugt() : 0;
+                while (ergebnis != null && ergebnis.aufholen() != null && !Instant.now().isAfter(frist)) {
+                    ergebnis = transactionTemplate.execute(
+                            status -> aggregiereEinheitInTransaktion(einheitId, true, letzteGrenze, jetzt));
+                    erzeugt += ergebnis != null ? ergebnis.erzeugt() : 0;
+                }
+                if (ergebnis != null) {
+                    ergebnis = new EinheitErgebnis(ergebnis.orgId(), erzeugt, ergebnis.von(), ergebnis.bis(),
+                            ergebnis.aufholen());
+                }
+            }
+            metrics.recordEinheitAggregiert(Duration.ofNanos(System.nanoTime() - start), true);
+            return ergebnis != null ? ergebnis : EinheitErgebnis.LEER;
+        } catch (RuntimeException e) {
+            metrics.recordEinheitAggregiert(Duration.ofNanos(System.nanoTime() - start), false);
+            log.error("Aggregation der Einheit {} fehlgeschlagen – zurückgerollt, Wiederholung im nächsten Lauf",
+                    einheitId, e);
+            meldeAggregationsfehler(einheitId, e);
+            return EinheitErgebnis.LEER;
+        }
+    }
+
+    private EinheitErgebnis aggregiereEinheitInTransaktion(Long einheitId, boolean hatCheckpoint,
+                                                           LocalDateTime letzteGrenze, LocalDateTime jetzt) {
+        Einheit einheit = einheitRepository.findById(einheitId).orElse(null);
+        if (einheit == null) {
+            log.warn("Aggregation: Einheit {} nicht gefunden – übersprungen", einheitId);
+            return EinheitErgebnis.LEER;
+        }
+
+        Optional<ZaehlerRohdaten> earliestOpt =
+                rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(einheitId);
+        if (earliestOpt.isEmpty()) {
+            return hatCheckpoint ? beendeAufholen(einheit, letzteGrenze) : EinheitErgebnis.LEER;
+        }
+
+        LocalDateTime erstesEnde = ceilAufQuartal(earliestOpt.get().getZeit());
+        long anstehend = Duration.between(erstesEnde, letzteGrenze).toMinutes() / INTERVALL_MINUTEN + 1;
+        if (!hatCheckpoint && anstehend <= MAX_INTERVALLE) {
+            return aggregiereBis(einheit, erstesEnde, letzteGrenze, jetzt);
+        }
+        return aggregiereAbschnitt(einheit, erstesEnde, letzteGrenze, jetzt);
+    }
+
+    private EinheitErgebnis aggregiereBis(Einheit einheit, LocalDateTime erstesEnde, LocalDateTime grenze,
+                                          LocalDateTime jetzt) {
+        return mengenbasiert
+                ? aggregiereEinheitMengenbasiert(einheit, erstesEnde, grenze, jetzt)
+                : aggregiereEinheitIntervallweise(einheit, erstesEnde, grenze, jetzt);
+    }
+
+    /**
+     * Catch-up-Modus für grosse Rückstände (mehr als {@value #MAX_INTERVALLE} anstehende
+     * Intervalle, z.B. nach Import historischer Rohdaten oder langem Ausfall): verarbeitet einen
+     * Abschnitt von {@code mqtt.aggregation.aufholen.abschnitt} Intervallen und schreibt in
+     * <b>derselben Transaktion</b> den Checkpoint fort (High-Water-Mark, vorgemerkte
+     * Verteilungsspanne). Ein Neustart setzt so nach dem letzten abgeschlossenen Abschnitt fort:
+     * ein bestehender Checkpoint beginnt hinter {@code verarbeitetBis}, nicht beim frühesten
+     * offenen Rohdatum. Später eingetroffene Stände vor der High-Water-Mark bleiben offen und
+     * folgen nach dem Aufholen im normalen Lauf. Die Verteilung wird erst nach dem letzten Abschnitt freigegeben: dann trägt das Ergebnis die
+     * gesamte vorgemerkte Spanne.
+     */
+    private EinheitErgebnis aggregiereAbschnitt(Einheit einheit, LocalDateTime erstesEnde,
+                                                LocalDateTime letzteGrenze, LocalDateTime jetzt) {
+        AggregationCheckpoint checkpoint = checkpointRepository.findByEinheitId(einheit.getId())
+                .orElseGet(() -> {
+                    log.info("Catch-up gestartet (einheit={}, ab {} bis {})", einheit.getId(),
+                            erstesEnde.minusMinutes(INTERVALL_MINUTEN), letzteGrenze);
+                    return new AggregationCheckpoint(einheit.getOrgId(), einheit.getId(),
+                            erstesEnde.minusMinutes(INTERVALL_MINUTEN), LocalDateTime.now());
+                });
+        LocalDateTime nachCheckpoint = checkpoint.getVerarbeitetBis().plusMinutes(INTERVALL_MINUTEN);
+        LocalDateTime abschnittStart = nachCheckpoint.isAfter(erstesEnde) ? nachCheckpoint : erstesEnde;
+        LocalDateTime abschnittEnde = abschnittStart.plusMinutes((long) INTERVALL_MINUTEN * (aufholAbschnitt - 1));
+        if (abschnittEnde.isAfter(letzteGrenze)) {
+            abschnittEnde = letzteGrenze;
+        }
+
+        long start = System.nanoTime();
+        EinheitErgebnis abschnitt = aggregiereBis(einheit, abschnittStart, abschnittEnde, jetzt);
+        checkpoint.setAktivMillis(checkpoint.getAktivMillis() + (System.nanoTime() - start) / 1_000_000);
+        if (abschnitt.von() != null
+                && (checkpoint.getVerteilungAb() == null || abschnitt.von().isBefore(checkpoint.getVerteilungAb()))) {
+            checkpoint.setVerteilungAb(abschnitt.von());
+        }
+        checkpoint.setVerarbeitetBis(abschnittEnde);
+        checkpoint.setZiel(letzteGrenze);
+        checkpoint.setAktualisiertAm(LocalDateTime.now());
+
+        Fortschritt fortschritt = fortschritt(einheit, checkpoint);
+        metrics.setRueckstand(einheit.getId(), fortschritt.gesamt() - fortschritt.erledigt());
+        if (!abschnittEnde.isBefore(letzteGrenze)) {
+            // Aufgeholt: Checkpoint entfernen, vorgemerkte Spanne zur Verteilung freigeben
+            if (checkpoint.getId() != null) {
+                checkpointRepository.delete(checkpoint);
+            }
+            log.info("Catch-up abgeschlossen (einheit={}, {} Intervalle)", einheit.getId(), fortschritt.gesamt());
+            return new EinheitErgebnis(einheit.getOrgId(), abschnitt.erzeugt(),
+                    checkpoint.getVerteilungAb(), checkpoint.getVerteilungAb() != null ? abschnittEnde : null);
+        }
+        checkpointRepository.save(checkpoint);
+        log.info("Catch-up (einheit={}): {} / {} Intervalle, voraussichtlich fertig {}",
+                einheit.getId(), fortschritt.erledigt(), fortschritt.gesamt(), fortschritt.fertigUm());
+        return new EinheitErgebnis(einheit.getOrgId(), abschnitt.erzeugt(), null, null, fortschritt);
+    }
+
+    /**
+     * Checkpoint ohne offene Rohdaten (z.B. Rest bereits von der Streaming-Aggregation
+     * verarbeitet): Checkpoint entfernen und die vorgemerkte Spanne zur Verteilung freigeben.
+     */
+    private EinheitErgebnis beendeAufholen(Einheit einheit, LocalDateTime letzteGrenze) {
+        return checkpointRepository.findByEinheitId(einheit.getId())
+                .map(checkpoint -> {
+                    checkpointRepository.delete(checkpoint);
+                    metrics.setRueckstand(einheit.getId(), 0);
+                    log.info("Catch-up abgeschlossen (einheit={}, keine offenen Rohdaten)", einheit.getId());
+                    LocalDateTime von = checkpoint.getVerteilungAb();
+                    return new EinheitErgebnis(einheit.getOrgId(), 0, von, von != null ? letzteGrenze : null);
+                })
+                .orElse(EinheitErgebnis.LEER);
+    }
+
+    /**
+     * Fortschritt und lineare Hochrechnung des Abschlusses aus dem bisherigen Durchsatz:
+     * verarbeitete Intervalle je aktiver Verarbeitungszeit ({@code aktivMillis}). Pausen zwischen
+     * den Läufen und Ausfallzeiten (Neustart) verfälschen die Rate so nicht.
+     */
+    private Fortschritt fortschritt(Einheit einheit, AggregationCheckpoint checkpoint) {
+        long erledigt = Duration.between(checkpoint.getStartBei(), checkpoint.getVerarbeitetBis()).toMinutes()
+                / INTERVALL_MINUTEN;
+        long gesamt = Duration.between(checkpoint.getStartBei(), checkpoint.getZiel()).toMinutes()
+                / INTERVALL_MINUTEN;
+        LocalDateTime jetzt = LocalDateTime.now();
+        LocalDateTime fertigUm = erledigt > 0
+                ? jetzt.plus(Duration.ofMillis(checkpoint.getAktivMillis() * (gesamt - erledigt) / erledigt))
+                : null;
+        return new Fortschritt(einheit.getName(), erledigt, gesamt, fertigUm);
+    }
+
+    /**
+     * Meldet den Catch-up-Fortschritt als INFO-Systemmeldung (dedupliziert je Mandant: der
+     * Parameter zeigt den letzten Stand). Wird nach dem Aufholen automatisch erledigt.
+     */
+    private void meldeFortschritt(Long orgId, Fortschritt f) {
+        try {
+            long prozent = f.gesamt() > 0 ? f.erledigt() * 100 / f.gesamt() : 0;
+            String parameter = String.format("%s: %d / %d Intervalle (%d %%)%s", f.einheit(), f.erledigt(),
+                    f.gesamt(), prozent,
+                    f.fertigUm() != null ? ", voraussichtlich fertig " + ZEIT_FORMAT.format(f.fertigUm()) : "");
+            systemmeldungService.erfasse(orgId, MeldungLevel.INFO, SystemmeldungService.KATEGORIE_MQTT,
+                    SystemmeldungService.KEY_AGGREGATION_AUFHOLEN, parameter);
+        } catch (Exception e) {
+            log.warn("Systemmeldung zum Catch-up-Fortschritt konnte nicht erfasst werden (org={}): {}",
+                    orgId, e.getMessage());
+        }
+    }
+
+    /**
+     * Erfasst den Abbruch einer Einheit als ERROR-Systemmeldung. Die Einheit wird ausserhalb
+     * der zurückgerollten Transaktion neu gelesen; Fehler beim Erfassen werden nur geloggt.
+     */
+    private void meldeAggregationsfehler(Long einheitId, Exception fehler) {
+        try {
+            Einheit einheit = einheitRepository.findById(einheitId).orElse(null);
+            if (einheit == null) {
+                return;
+            }
+            String parameter = String.format("%s: %s", einheit.getName(), fehler.getMessage());
+            systemmeldungService.erfasse(einheit.getOrgId(), MeldungLevel.ERROR,
+                    SystemmeldungService.KATEGORIE_MQTT, SystemmeldungService.KEY_AGGREGATION_FEHLER,
+                    parameter);
+        } catch (Exception e) {
+            log.warn("Systemmeldung zum Aggregationsfehler konnte nicht erfasst werden (einheit={}): {}",
+                    einheitId, e.getMessage());
+        }
+    }
+
+    /**
+     * Intervallweise Aggregation einer Einheit: je 15-Minuten-Intervall Existenzprüfung,
+     * Referenz-/Endstand-Lookup, Messwert-Upsert und Markierung (rund sechs Abfragen je Intervall).
+     * Referenzimplementierung für {@link #aggregiereEinheitMengenbasiert}.
+     */
+    private EinheitErgebnis aggregiereEinheitIntervallweise(Einheit einheit, LocalDateTime erstesEnde,
+                                                            LocalDateTime letzteGrenze, LocalDateTime jetzt) {
+        Long einheitId = einheit.getId();
+        int erzeugt = 0;
+        LocalDateTime von = null;
+        LocalDateTime bis = null;
+
+        LocalDateTime intervallEnde = erstesEnde;
+        int schutz = 0;
+        while (!intervallEnde.isAfter(letzteGrenze) && schutz++ < MAX_INTERVALLE) {
+            LocalDateTime intervallStart = intervallEnde.minusMinutes(INTERVALL_MINUTEN);
+            log.info("Aggregation. Einheit: {}, Intervall: {} - {}", einheitId, intervallStart, intervallEnde);
+            if (rohdatenRepository.existsByEinheitIdAndZeitGreaterThanAndZeitLessThanEqual(
+                    einheitId, intervallStart, intervallEnde)) {
+                if (verarbeiteIntervall(einheit, intervallStart, intervallEnde)) {
+                    erzeugt++;
+                    if (von == null) {
+                        von = intervallStart;
+                    }
+                    bis = intervallEnde;
+                }
+                rohdatenRepository.markVerarbeitet(einheitId, intervallEnde, jetzt);
+            }
+            intervallEnde = intervallEnde.plusMinutes(INTERVALL_MINUTEN);
+        }
+        return new EinheitErgebnis(einheit.getOrgId(), erzeugt, von, bis);
+    }
+
+    /**
+     * Mengenbasierte Aggregation einer Einheit: <b>eine</b> Abfrage liefert alle belegten
+     * Intervalle samt Register-Deltas ({@code DISTINCT ON} je Intervallende + {@code LAG()} über
+     * die Intervall-Endstände), die Messwerte werden als JDBC-Batch geschrieben und die Rohdaten
+     * mit einem Update markiert – unabhängig von der Länge des Rückstands.
+     *
+     * <p>Die fachlichen Regeln bleiben dieselben wie intervallweise und werden hier in Java
+     * angewendet, weil sie Systemmeldungen auslösen: fehlender Referenzstand (nur Baseline),
+     * Datenlücken-Meldung, Zählertausch über die Seriennummer, Reset-Guard pro Register,
+     * Warnung beim Überschreiben von CSV-Messwerten. Dieselbe Obergrenze von
+     * {@value #MAX_INTERVALLE} Intervallen je Lauf.
+     */
+    private EinheitErgebnis aggregiereEinheitMengenbasiert(Einheit einheit, LocalDateTime erstesEnde,
+                                                           LocalDateTime letzteGrenze, LocalDateTime jetzt) {
+        Long einheitId = einheit.getId();
+        LocalDateTime schutzGrenze = erstesEnde.plusMinutes((long) INTERVALL_MINUTEN * (MAX_INTERVALLE - 1));
+        LocalDateTime bisGrenze = letzteGrenze.isBefore(schutzGrenze) ? letzteGrenze : schutzGrenze;
+        if (erstesEnde.isAfter(bisGrenze)) {
+            return EinheitErgebnis.LEER;
+        }
+        LocalDateTime vonGrenze = erstesEnde.minusMinutes(INTERVALL_MINUTEN);
+
+        List<Object[]> zeilen = rohdatenRepository.findIntervallDeltas(einheitId, vonGrenze, bisGrenze);
+        if (zeilen.isEmpty()) {
+            return EinheitErgebnis.LEER;
+        }
+        log.info("Aggregation (mengenbasiert). Einheit: {}, {} belegte Intervalle in {} - {}",
+                einheitId, zeilen.size(), vonGrenze, bisGrenze);
+
+        Map<LocalDateTime, Double> totals = new LinkedHashMap<>();
+        LocalDateTime letztesEnde = null;
+        for (Object[] zeile : zeilen) {
+            LocalDateTime ende = alsZeit(zeile[0]);
+            LocalDateTime start = ende.minusMinutes(INTERVALL_MINUTEN);
+            letztesEnde = ende;
+
+            LocalDateTime referenzZeit = alsZeit(zeile[1]);
+            if (referenzZeit == null) {
+                // Kein Referenz-/Basiswert (erste Messung) – nur Baseline, kein Messwert
+                continue;
+            }
+            meldeDatenluecke(einheit, referenzZeit, start);
+            if (istZaehlerwechsel(einheit, (String) zeile[4], (String) zeile[5], start, ende)) {
+                continue;
+            }
+            BigDecimal deltaBezug = nichtNegativ((BigDecimal) zeile[2], einheitId, "Bezug", ende);
+            BigDecimal deltaEinspeisung = nichtNegativ((BigDecimal) zeile[3], einheitId, "Einspeisung", ende);
+            totals.put(ende, deltaBezug.subtract(deltaEinspeisung).doubleValue());
+        }
+
+        schreibeMesswerte(einheit, totals, vonGrenze, bisGrenze);
+        rohdatenRepository.markVerarbeitet(einheitId, letztesEnde, jetzt);
+
+        if (totals.isEmpty()) {
+            return EinheitErgebnis.LEER;
+        }
+        LocalDateTime von = totals.keySet().iterator().next().minusMinutes(INTERVALL_MINUTEN);
+        LocalDateTime bis = null;
+        for (LocalDateTime ende : totals.keySet()) {
+            bis = ende;
+        }
+        return new EinheitErgebnis(einheit.getOrgId(), totals.size(), von, bis);
+    }
+
+    /**
+     * Schreibt die Messwerte einer Einheit als Batch: zuerst ein Update bestehender Zeilen
+     * (gleiche Felder wie {@link #upsertMesswert}), dann ein Insert für die Zeitpunkte ohne
+     * Treffer. {@code messwerte} hat keinen Unique-Key auf {@code (einheit_id, zeit)}, daher
+     * kein {@code ON CONFLICT}.
+     */
+    private void schreibeMesswerte(Einheit einheit, Map<LocalDateTime, Double> totals,
+                                   LocalDateTime vonGrenze, LocalDateTime bisGrenze) {
+        if (totals.isEmpty()) {
+            return;
+        }
+        for (LocalDateTime zeit : messwerteRepository.findZeitenByEinheitIdAndQuelleAndZeitBetween(
+                einheit.getId(), Quelle.CSV, vonGrenze, bisGrenze)) {
+            if (totals.containsKey(zeit)) {
+                log.warn("Aggregation: MQTT überschreibt bestehenden CSV-Messwert (einheit={}, zeit={})",
+                        einheit.getId(), zeit);
+            }
+        }
+
+        boolean producer = einheit.getTyp() == EinheitTyp.PRODUCER;
+        List<Map.Entry<LocalDateTime, Double>> zeilen = new ArrayList<>(totals.entrySet());
+        int[][] aktualisiert = jdbcTemplate.batchUpdate(UPDATE_MESSWERT_SQL, zeilen, zeilen.size(), (ps, e) -> {
+            ps.setDouble(1, e.getValue());
+            ps.setDouble(2, producer ? e.getValue() : 0.0);
+            ps.setLong(3, einheit.getId());
+            ps.setObject(4, e.getKey());
+        });
+
+        List<Map.Entry<LocalDateTime, Double>> neu = new ArrayList<>();
+        int i = 0;
+        for (int[] batch : aktualisiert) {
+            for (int anzahl : batch) {
+                if (anzahl == 0) {
+                    neu.add(zeilen.get(i));
+                }
+                i++;
+            }
+        }
+        if (!neu.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_MESSWERT_SQL, neu, neu.size(), (ps, e) -> {
+                ps.setLong(1, einheit.getOrgId());
+                ps.setLong(2, einheit.getId());
+                ps.setObject(3, e.getKey());
+                ps.setDouble(4, e.getValue());
+                ps.setDouble(5, producer ? e.getValue() : 0.0);
+            });
+        }
+    }
+
     /**
      * Bildet die Register-Deltas über die Intervallgrenze und schreibt (Upsert) den Messwert.
      * Reset-Guard pro Register (Δ < 0 → 0). {@code total} ist vorzeichenbehaftet.
@@ -166,31 +651,60 @@ public class ZaehlerAggregationService {
         ZaehlerRohdaten letzter = rohdatenRepository
                 .findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(einheitId, ende).orElse(null);
 
+        return bildeMesswert(einheit, referenz, letzter, start, ende);
+    }
+
+    /**
+     * Streaming-Aggregation ({@link ZaehlerStromAggregator}): bildet den Messwert eines soeben
+     * abgeschlossenen Intervalls aus den im Speicher gehaltenen Ständen – ohne Lookup in
+     * {@code zaehler_rohdaten} – in einer eigenen, neuen Transaktion ({@code REQUIRES_NEW}, auch
+     * im {@code afterCommit} einer Ingest-Transaktion) und markiert die Rohdaten
+     * <b>dieses</b> Intervalls als verarbeitet. Gleiche Regeln wie der Cron-Job; gegenüber
+     * diesem per Einheit gesperrt.
+     *
+     * @param referenz letzter Stand {@code <=} Intervallstart (null = nur Baseline)
+     * @param letzter  letzter Stand im Intervall {@code (ende - 15 min, ende]}
+     * @return true, wenn ein Messwert erzeugt/aktualisiert wurde
+     */
+    public boolean aggregiereIntervall(Einheit einheit, ZaehlerRohdaten referenz, ZaehlerRohdaten letzter,
+                                       LocalDateTime ende) {
+        LocalDateTime start = ende.minusMinutes(INTERVALL_MINUTEN);
+        synchronized (sperreFuer(einheit.getId())) {
+            Boolean erzeugt = neueTransaktion.execute(status -> {
+                boolean ok = bildeMesswert(einheit, referenz, letzter, start, ende);
+                rohdatenRepository.markVerarbeitetImIntervall(einheit.getId(), start, ende, LocalDateTime.now());
+                if (ok) {
+                    // Wie im Cron-Pfad: Messwert sofort sichtbar (ETag), nicht erst nach der Verteilung.
+                    // Innerhalb der neuen Transaktion registriert → greift nach deren Commit.
+                    datenVersionService.erhoehe(einheit.getOrgId());
+                }
+                return ok;
+            });
+            return Boolean.TRUE.equals(erzeugt);
+        }
+    }
+
+    private Object sperreFuer(Long einheitId) {
+        return sperren.computeIfAbsent(einheitId, id -> new Object());
+    }
+
+    /**
+     * Regeln eines Intervalls auf Referenz- und End-Stand anwenden (Baseline, Datenlücke,
+     * Zählertausch, Reset-Guard) und den Messwert schreiben.
+     */
+    private boolean bildeMesswert(Einheit einheit, ZaehlerRohdaten referenz, ZaehlerRohdaten letzter,
+                                  LocalDateTime start, LocalDateTime ende) {
+        Long einheitId = einheit.getId();
         if (referenz == null || letzter == null) {
             // Kein Referenz-/Basiswert (erste Messung) – nur Baseline, kein Messwert
             return false;
         }
 
-        meldeDatenluecke(einheit, referenz, start);
+        meldeDatenluecke(einheit, referenz.getZeit(), start);
 
-        // Zählertausch-Erkennung (Spec Zaehlertausch-Erkennung.md, FR-3): Wechselt die
-        // Seriennummer zwischen Referenz- und End-Stand, ist das Delta über die Tausch-Grenze
-        // bedeutungslos – unabhängig vom Vorzeichen. Dann kein Messwert (neue Baseline);
-        // ein bereits vorhandener messwerte-Satz bleibt unangetastet.
-        String serieReferenz = referenz.getSeriennummer();
-        String serieLetzter = letzter.getSeriennummer();
-        if (serieReferenz != null && serieLetzter != null && !serieReferenz.equals(serieLetzter)) {
-            log.warn("Zählerwechsel erkannt (einheit={}, intervall={} - {}): Seriennummer {} -> {}"
-                    + " – kein Messwert für das Übergangsintervall",
-                    einheitId, start, ende, serieReferenz, serieLetzter);
-            meldeZaehlerwechsel(einheit, serieReferenz, serieLetzter, ende);
+        if (istZaehlerwechsel(einheit, referenz.getSeriennummer(), letzter.getSeriennummer(), start, ende)) {
             return false;
         }
-        if (serieReferenz == null && serieLetzter != null) {
-            // Rollout-Marker (FR-4.2): ab hier trägt die Einheit eine Seriennummer.
-            log.info("Seriennummer erstmals vorhanden (einheit={}, intervall={} - {}, seriennummer={})"
-                    + " – Zählertausch-Erkennung ab jetzt aktiv", einheitId, start, ende, serieLetzter);
-        }
 
         BigDecimal deltaBezug = nichtNegativ(
                 letzter.getZaehlerstandBezug().subtract(referenz.getZaehlerstandBezug()),
@@ -204,6 +718,32 @@ public class ZaehlerAggregationService {
         return true;
     }
 
+    /**
+     * Zählertausch-Erkennung (Spec Zaehlertausch-Erkennung.md, FR-3): Wechselt die
+     * Seriennummer zwischen Referenz- und End-Stand, ist das Delta über die Tausch-Grenze
+     * bedeutungslos – unabhängig vom Vorzeichen. Dann kein Messwert (neue Baseline);
+     * ein bereits vorhandener messwerte-Satz bleibt unangetastet.
+     *
+     * @return true, wenn für das Intervall kein Messwert gebildet werden darf
+     */
+    private boolean istZaehlerwechsel(Einheit einheit, String serieReferenz, String serieLetzter,
+                                      LocalDateTime start, LocalDateTime ende) {
+        Long einheitId = einheit.getId();
+        if (serieReferenz != null && serieLetzter != null && !serieReferenz.equals(serieLetzter)) {
+            log.warn("Zählerwechsel erkannt (einheit={}, intervall={} - {}): Seriennummer {} -> {}"
+                    + " – kein Messwert für das Übergangsintervall",
+                    einheitId, start, ende, serieReferenz, serieLetzter);
+            meldeZaehlerwechsel(einheit, serieReferenz, serieLetzter, ende);
+            return true;
+        }
+        if (serieReferenz == null && serieLetzter != null) {
+            // Rollout-Marker (FR-4.2): ab hier trägt die Einheit eine Seriennummer.
+            log.info("Seriennummer erstmals vorhanden (einheit={}, intervall={} - {}, seriennummer={})"
+                    + " – Zählertausch-Erkennung ab jetzt aktiv", einheitId, start, ende, serieLetzter);
+        }
+        return false;
+    }
+
     private void upsertMesswert(Einheit einheit, LocalDateTime zeit, double total) {
         Messwerte messwert = messwerteRepository.findByEinheitAndZeit(einheit, zeit).orElse(null);
         if (messwert == null) {
@@ -243,15 +783,15 @@ public class ZaehlerAggregationService {
      *       verzerrt damit die intervallweise Solarverteilung.</li>
      * </ul>
      */
-    private void meldeDatenluecke(Einheit einheit, ZaehlerRohdaten referenz, LocalDateTime start) {
+    private void meldeDatenluecke(Einheit einheit, LocalDateTime referenzZeit, LocalDateTime start) {
         long fehlendeIntervalle =
-                Duration.between(referenz.getZeit(), start).toMinutes() / INTERVALL_MINUTEN;
+                Duration.between(referenzZeit, start).toMinutes() / INTERVALL_MINUTEN;
         if (fehlendeIntervalle < 1) {
             return;
         }
 
         String parameter = String.format("%s: %s – %s (%d Intervalle)",
-                einheit.getName(), ZEIT_FORMAT.format(referenz.getZeit()),
+                einheit.getName(), ZEIT_FORMAT.format(referenzZeit),
                 ZEIT_FORMAT.format(start), fehlendeIntervalle);
         if (fehlendeIntervalle == 1) {
             log.info("Datenlücke: {} – ein Intervall ohne Zählerdaten (einheit={})",
@@ -303,6 +843,17 @@ public class ZaehlerAggregationService {
         return delta;
     }
 
+    /** Zeitspalte einer nativen Abfrage (je nach Treiber/Hibernate {@code Timestamp} oder {@code LocalDateTime}). */
+    private static LocalDateTime alsZeit(Object wert) {
+        if (wert == null) {
+            return null;
+        }
+        if (wert instanceof Timestamp ts) {
+            return ts.toLocalDateTime();
+        }
+        return (LocalDateTime) wert;
+    }
+
     /** Grösstes Quartals-Ende {@code <= t} (abgeschlossenes Intervall). */
     private LocalDateTime floorAufQuartal(LocalDateTime t) {
         LocalDateTime m = t.truncatedTo(ChronoUnit.MINUTES);
@@ -0,0 +1,240 @@
+package ch.nacht.service;
+
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.Quelle;
+import ch.nacht.entity.ZaehlerRohdaten;
+import ch.nacht.repository.MesswerteRepository;
+import ch.nacht.repository.ZaehlerRohdatenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Streaming-Aggregation beim MQTT-Ingest (Event-Zeit): hält je Einheit den Referenzstand
+ * (letzter Stand {@code <=} Start des offenen Intervalls) und den jüngsten Stand des offenen
+ * Intervalls im Speicher. Sobald eine Messung die Intervallgrenze überschreitet (Watermark =
+ * Event-Zeit der Einheit), ist das Intervall abgeschlossen und sein Messwert wird sofort über
+ * {@link ZaehlerAggregationService#aggregiereIntervall} geschrieben – ohne die Stände erneut
+ * aus {@code zaehler_rohdaten} zu lesen und ohne auf den nächsten Cron-Tick zu warten.
+ *
+ * <p>Der Cron-Job ({@link ZaehlerAggregationService#aggregiere}) bleibt das Sicherheitsnetz:
+ * <ul>
+ *   <li><b>Kaltstart</b> (nach Neustart, neue Einheit): der Referenzstand wird einmalig aus der
+ *       DB gelesen, danach ist die Einheit im Speicher.</li>
+ *   <li><b>Verspätete Messungen</b> früherer Intervalle: nur die Rohdaten des abgeschlossenen
+ *       Intervalls werden markiert – verspätete bleiben unverarbeitet und werden vom Cron-Job
+ *       neu gerechnet. Fällt die verspätete Messung in das letzte abgeschlossene Intervall und
+ *       ist jünger als der Referenzstand, wird sie neuer Referenzstand.</li>
+ *   <li><b>Fehlende Daten</b>: ohne Folgemessung wird ein Intervall nicht abgeschlossen; der
+ *       Cron-Job schliesst es 5 Minuten nach der Viertelstunde.</li>
+ * </ul>
+ *
+ * <p>Die Solarverteilung braucht alle Einheiten eines Intervalls; sie wird daher nicht je
+ * Messwert, sondern gesammelt je Mandant ausgeführt, sobald das Intervall älter als
+ * {@code mqtt.stream.verteilung-verzoegerung} ist (Default wie der Cron-Versatz, 5 Minuten).
+ * Vorgemerkte Intervalle werden erst nach erfolgreicher Verteilung entfernt. Da die Vormerkung
+ * nur im Speicher liegt, wird sie beim Start aus den Daten abgeleitet: gestreamte Consumer-Messwerte
+ * ohne {@code zev_calculated} der letzten {@code mqtt.stream.verteilung-nachholen} (Default 1 Tag).
+ *
+ * <p>Zustandswechsel laufen erst <b>nach dem Commit</b> der Rohdaten (wie beim
+ * {@link MqttDuplikatFilter}); der MQTT-Adapter liefert Nachrichten sequenziell.
+ */
+@Component
+@Profile("mqtt")
+public class ZaehlerStromAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(ZaehlerStromAggregator.class);
+    private static final int INTERVALL_MINUTEN = 15;
+    private static final String ALGORITHMUS = "PROPORTIONAL";
+
+    /** Stream-Zustand einer Einheit; Zugriffe synchronisiert auf die Instanz. */
+    private static final class Zustand {
+        private Einheit einheit;
+        private ZaehlerRohdaten referenz;   // letzter Stand <= offenesEnde - 15 min (null = Baseline)
+        private ZaehlerRohdaten letzter;    // jüngster Stand im offenen Intervall
+        private LocalDateTime offenesEnde;
+    }
+
+    private final ZaehlerAggregationService aggregationService;
+    private final ZaehlerRohdatenRepository rohdatenRepository;
+    private final MesswerteRepository messwerteRepository;
+    private final MesswerteService messwerteService;
+    private final boolean aktiv;
+    private final Duration verteilungVerzoegerung;
+    private final Duration verteilungNachholen;
+
+    private final Map<Long, Zustand> zustaende = new ConcurrentHashMap<>();
+    /** Je Mandant die gestreamten, noch nicht verteilten Intervallenden. */
+    private final Map<Long, NavigableSet<LocalDateTime>> offeneVerteilung = new ConcurrentHashMap<>();
+
+    public ZaehlerStromAggregator(ZaehlerAggregationService aggregationService,
+                                  ZaehlerRohdatenRepository rohdatenRepository,
+                                  MesswerteRepository messwerteRepository,
+                                  MesswerteService messwerteService,
+                                  @Value("${mqtt.stream.aktiv:true}") boolean aktiv,
+                                  @Value("${mqtt.stream.verteilung-verzoegerung:PT5M}") Duration verteilungVerzoegerung,
+                                  @Value("${mqtt.stream.verteilung-nachholen:P1D}") Duration verteilungNachholen) {
+        this.aggregationService = aggregationService;
+        this.rohdatenRepository = rohdatenRepository;
+        this.messwerteRepository = messwerteRepository;
+        this.messwerteService = messwerteService;
+        this.aktiv = aktiv;
+        this.verteilungVerzoegerung = verteilungVerzoegerung;
+        this.verteilungNachholen = verteilungNachholen;
+    }
+
+    /**
+     * Stellt nach einem Neustart die Vormerkung der Solarverteilung wieder her: Je Mandant werden
+     * Anfang und Ende der gestreamten Consumer-Messwerte ohne {@code zev_calculated} vorgemerkt,
+     * der nächste {@link #verteileAbgeschlossene}-Lauf verteilt den ganzen Bereich.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void stelleOffeneVerteilungWiederHer() {
+        if (!aktiv) {
+            return;
+        }
+        LocalDateTime ab = LocalDateTime.now().minus(verteilungNachholen);
+        for (Object[] zeile : messwerteRepository.findUnverteilteConsumerZeitraeume(Quelle.MQTT, ab)) {
+            Long org = (Long) zeile[0];
+            LocalDateTime erstes = (LocalDateTime) zeile[1];
+            LocalDateTime letztes = (LocalDateTime) zeile[2];
+            NavigableSet<LocalDateTime> offen = offeneVerteilung.computeIfAbsent(org,
+                    o -> new ConcurrentSkipListSet<>());
+            offen.add(erstes);
+            offen.add(letztes);
+            log.info("Solarverteilung nach Neustart vorgemerkt (org={}, {} – {})", org, erstes, letztes);
+        }
+    }
+
+    /**
+     * Übernimmt die frisch gespeicherten Stände einer Einheit (bereits registerprojiziert).
+     * Innerhalb einer Transaktion erst nach deren Commit, sonst sofort. Fehler werden geloggt –
+     * der Cron-Job holt das Intervall nach.
+     */
+    public void uebernimm(Einheit einheit, List<ZaehlerRohdaten> staende) {
+        if (!aktiv || staende.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    verarbeite(einheit, staende);
+                }
+            });
+        } else {
+            verarbeite(einheit, staende);
+        }
+    }
+
+    void verarbeite(Einheit einheit, List<ZaehlerRohdaten> staende) {
+        List<ZaehlerRohdaten> sortiert = new ArrayList<>(staende);
+        sortiert.sort(Comparator.comparing(ZaehlerRohdaten::getZeit));
+        Zustand zustand = zustaende.computeIfAbsent(einheit.getId(), id -> new Zustand());
+        synchronized (zustand) {
+            zustand.einheit = einheit;
+            try {
+                for (ZaehlerRohdaten stand : sortiert) {
+                    schreite(zustand, stand);
+                }
+            } catch (RuntimeException e) {
+                // Zustand verwerfen: der nächste Stand startet kalt, der Cron-Job holt nach
+                zustaende.remove(einheit.getId());
+                log.warn("Streaming-Aggregation (einheit={}) fehlgeschlagen – Cron-Job übernimmt: {}",
+                        einheit.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void schreite(Zustand z, ZaehlerRohdaten stand) {
+        LocalDateTime ende = ceilAufQuartal(stand.getZeit());
+        if (z.offenesEnde == null) {
+            // Kaltstart: Referenzstand einmalig aus der DB
+            z.referenz = rohdatenRepository.findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(
+                    z.einheit.getId(), ende.minusMinutes(INTERVALL_MINUTEN)).orElse(null);
+            z.letzter = stand;
+            z.offenesEnde = ende;
+            return;
+        }
+
+        if (ende.isAfter(z.offenesEnde)) {
+            // Watermark überschreitet die Grenze: offenes Intervall abschliessen
+            schliesseIntervall(z);
+            z.referenz = z.letzter;
+            z.letzter = stand;
+            z.offenesEnde = ende;
+        } else if (ende.equals(z.offenesEnde)) {
+            if (!stand.getZeit().isBefore(z.letzter.getZeit())) {
+                z.letzter = stand;
+            }
+        } else if (z.referenz == null || stand.getZeit().isAfter(z.referenz.getZeit())) {
+            // Verspätet für ein abgeschlossenes Intervall (Cron rechnet es neu); ist es jünger
+            // als der Referenzstand, gilt es ab jetzt als Referenz des offenen Intervalls.
+            z.referenz = stand;
+        }
+    }
+
+    private void schliesseIntervall(Zustand z) {
+        boolean erzeugt = aggregationService.aggregiereIntervall(z.einheit, z.referenz, z.letzter, z.offenesEnde);
+        if (erzeugt) {
+            offeneVerteilung.computeIfAbsent(z.einheit.getOrgId(), org -> new ConcurrentSkipListSet<>())
+                    .add(z.offenesEnde);
+            log.debug("Streaming-Aggregation: Messwert gebildet (einheit={}, ende={})",
+                    z.einheit.getId(), z.offenesEnde);
+        }
+    }
+
+    /**
+     * Führt die Solarverteilung je Mandant für gestreamte Intervalle aus, die älter als die
+     * Verzögerung sind (bis dahin sind auch die übrigen Einheiten des Intervalls eingetroffen
+     * bzw. vom Cron-Job nachgeholt). Fehler je Mandant brechen die übrigen nicht ab; die
+     * Intervalle bleiben vorgemerkt und werden im nächsten Lauf erneut verteilt.
+     */
+    @Scheduled(fixedDelayString = "${mqtt.stream.verteilung-takt:PT1M}")
+    public void verteileAbgeschlossene() {
+        LocalDateTime grenze = LocalDateTime.now().minus(verteilungVerzoegerung);
+        for (Map.Entry<Long, NavigableSet<LocalDateTime>> e : offeneVerteilung.entrySet()) {
+            // Kopie: während der Verteilung gestreamte Intervalle bleiben für den nächsten Lauf stehen
+            List<LocalDateTime> faellig = List.copyOf(e.getValue().headSet(grenze, true));
+            if (faellig.isEmpty()) {
+                continue;
+            }
+            LocalDateTime von = faellig.getFirst().minusMinutes(INTERVALL_MINUTEN);
+            LocalDateTime bis = faellig.getLast();
+            Long org = e.getKey();
+            try {
+                messwerteService.calculateSolarDistributionForOrg(org, von, bis, ALGORITHMUS, false);
+                e.getValue().removeAll(faellig);
+                log.info("Solarverteilung nach Streaming-Aggregation ausgeführt (org={}, {} – {})", org, von, bis);
+            } catch (Exception ex) {
+                log.warn("Solarverteilung nach Streaming-Aggregation fehlgeschlagen (org={}, {} – {}), "
+                        + "nächster Lauf versucht erneut: {}", org, von, bis, ex.getMessage());
+            }
+        }
+    }
+
+    /** Kleinstes Quartals-Ende {@code >= t} (Intervall, das die Messung abschliesst). */
+    private static LocalDateTime ceilAufQuartal(LocalDateTime t) {
+        LocalDateTime m = t.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime unten = m.minusMinutes(m.getMinute() % INTERVALL_MINUTEN);
+        return unten.equals(t) ? unten : unten.plusMinutes(INTERVALL_MINUTEN);
+    }
+}
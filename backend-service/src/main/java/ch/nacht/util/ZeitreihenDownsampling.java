@@ -0,0 +1,105 @@
+package ch.nacht.util;
+
+import java.util.Arrays;
+
+/**
+ * Downsampling von Zeitreihen für Diagramme mit Largest-Triangle-Three-Buckets (LTTB,
+ * Steinarsson 2013): aus {@code n} Punkten werden {@code maxPunkte} ausgewählt, die den
+ * Kurvenverlauf inklusive Spitzen erhalten. Erster und letzter Punkt bleiben immer erhalten;
+ * aus jedem Bucket dazwischen wird der Punkt gewählt, der mit dem zuvor gewählten Punkt und dem
+ * Mittelwert des nächsten Buckets das grösste Dreieck bildet.
+ *
+ * <p>Arbeitet auf primitiven Arrays in einem Durchlauf (O(n)) und liefert nur Indizes, damit der
+ * Aufrufer die Ausgabe für mehrere Reihen mit denselben Zeitpunkten aufbauen kann.
+ */
+public final class ZeitreihenDownsampling {
+
+    /** Kleinste sinnvolle Zielgrösse (erster, ein mittlerer, letzter Punkt). */
+    public static final int MIN_PUNKTE = 3;
+
+    private ZeitreihenDownsampling() {
+    }
+
+    /**
+     * Aufsteigende Indizes der mit LTTB gewählten Punkte aus den ersten {@code n} Werten von
+     * {@code x} (aufsteigend, z.B. Epoch-Sekunden) und {@code y}. Bei {@code n <= maxPunkte}
+     * werden alle Indizes geliefert.
+     *
+     * @throws IllegalArgumentException wenn {@code maxPunkte < MIN_PUNKTE}
+     */
+    public static int[] lttb(double[] x, double[] y, int n, int maxPunkte) {
+        if (maxPunkte < MIN_PUNKTE) {
+            throw new IllegalArgumentException("maxPunkte muss mindestens " + MIN_PUNKTE + " sein");
+        }
+        if (n <= maxPunkte) {
+            return alle(n);
+        }
+
+        int[] auswahl = new int[maxPunkte];
+        double bucketGroesse = (double) (n - 2) / (maxPunkte - 2);
+        int a = 0;
+        auswahl[0] = 0;
+
+        for (int bucket = 0; bucket < maxPunkte - 2; bucket++) {
+            // Mittelwert des nächsten Buckets (für den letzten Bucket: der letzte Punkt)
+            int mittelVon = (int) ((bucket + 1) * bucketGroesse) + 1;
+            int mittelBis = Math.min((int) ((bucket + 2) * bucketGroesse) + 1, n);
+            double mittelX = 0;
+            double mittelY = 0;
+            for (int i = mittelVon; i < mittelBis; i++) {
+                mittelX += x[i];
+                mittelY += y[i];
+            }
+            int anzahl = mittelBis - mittelVon;
+            mittelX /= anzahl;
+            mittelY /= anzahl;
+
+            // Punkt des aktuellen Buckets mit der grössten Dreiecksfläche
+            int von = (int) (bucket * bucketGroesse) + 1;
+            int bis = (int) ((bucket + 1) * bucketGroesse) + 1;
+            double groessteFlaeche = -1;
+            int gewaehlt = von;
+            for (int i = von; i < bis; i++) {
+                double flaeche = Math.abs((x[a] - mittelX) * (y[i] - y[a]) - (x[a] - x[i]) * (mittelY - y[a]));
+                if (flaeche > groessteFlaeche) {
+                    groessteFlaeche = flaeche;
+                    gewaehlt = i;
+                }
+            }
+            auswahl[bucket + 1] = gewaehlt;
+            a = gewaehlt;
+        }
+
+        auswahl[maxPunkte - 1] = n - 1;
+        return auswahl;
+    }
+
+    /** Alle Indizes {@code 0 .. n-1} (keine Reduktion). */
+    public static int[] alle(int n) {
+        int[] indizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            indizes[i] = i;
+        }
+        return indizes;
+    }
+
+    /** Vereinigung zweier aufsteigender Index-Listen (aufsteigend, ohne Duplikate). */
+    public static int[] vereinige(int[] a, int[] b) {
+        int[] ergebnis = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            int naechster;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                naechster = a[i++];
+            } else {
+                naechster = b[j++];
+            }
+            if (k == 0 || ergebnis[k - 1] != naechster) {
+                ergebnis[k++] = naechster;
+            }
+        }
+        return Arrays.copyOf(ergebnis, k);
+    }
+}
@@ -0,0 +1,5 @@
+-- Fehler-Isolation der MQTT-Aggregation (Specs/MQTT-Integration.md FR-6): jede Einheit läuft
+-- in einer eigenen Transaktion; ein Abbruch wird als ERROR-Systemmeldung des Mandanten erfasst.
+INSERT INTO zev.translation (key, deutsch, englisch) VALUES
+('MQTT_AGGREGATION_FEHLER', 'Aggregation eines Zählers fehlgeschlagen – die Rohdaten bleiben unverarbeitet und werden im nächsten Lauf erneut verarbeitet. Die übrigen Zähler sind nicht betroffen.', 'Aggregation of a meter failed – the raw readings remain unprocessed and will be retried in the next run. Other meters are not affected.')
+ON CONFLICT (key) DO NOTHING;
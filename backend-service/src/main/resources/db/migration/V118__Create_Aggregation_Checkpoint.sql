@@ -0,0 +1,29 @@
+-- Catch-up-Modus der MQTT-Aggregation (Specs/MQTT-Integration.md FR-6): je Einheit mit
+-- grossem Rückstand ein Checkpoint (High-Water-Mark), fortgeschrieben in derselben
+-- Transaktion wie die Messwerte eines Abschnitts. Gelöscht, sobald der Rückstand aufgeholt ist.
+CREATE SEQUENCE zev.aggregation_checkpoint_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE zev.aggregation_checkpoint (
+    id               BIGINT PRIMARY KEY DEFAULT nextval('zev.aggregation_checkpoint_seq'),
+    org_id           BIGINT NOT NULL,
+    einheit_id       BIGINT NOT NULL REFERENCES zev.einheit(id) ON DELETE CASCADE,
+    start_bei        TIMESTAMP NOT NULL,
+    verarbeitet_bis  TIMESTAMP NOT NULL,
+    ziel             TIMESTAMP NOT NULL,
+    verteilung_ab    TIMESTAMP,
+    gestartet_am     TIMESTAMP NOT NULL,
+    aktualisiert_am  TIMESTAMP NOT NULL,
+    CONSTRAINT uk_aggregation_checkpoint_einheit UNIQUE (einheit_id)
+);
+
+CREATE INDEX idx_aggregation_checkpoint_org ON zev.aggregation_checkpoint(org_id);
+
+COMMENT ON TABLE zev.aggregation_checkpoint IS 'Catch-up-Fortschritt der MQTT-Aggregation je Einheit; existiert nur während des Aufholens';
+COMMENT ON COLUMN zev.aggregation_checkpoint.start_bei IS 'Intervallstart des ersten aufzuholenden Intervalls';
+COMMENT ON COLUMN zev.aggregation_checkpoint.verarbeitet_bis IS 'High-Water-Mark: Intervalle mit Ende <= diesem Zeitpunkt sind verarbeitet';
+COMMENT ON COLUMN zev.aggregation_checkpoint.ziel IS 'Letztes abgeschlossenes Intervallende des laufenden Durchgangs';
+COMMENT ON COLUMN zev.aggregation_checkpoint.verteilung_ab IS 'Frühester noch nicht verteilter Intervallstart (Solarverteilung nach dem Aufholen)';
+
+INSERT INTO zev.translation (key, deutsch, englisch) VALUES
+('MQTT_AGGREGATION_AUFHOLEN', 'Grosser Rückstand an Zählerdaten wird abschnittweise aufgeholt – die Solarverteilung des Mandanten folgt, sobald alle Zähler aufgeholt sind.', 'A large backlog of meter data is being processed in chunks – the solar distribution for this organisation follows once all meters have caught up.')
+ON CONFLICT (key) DO NOTHING;
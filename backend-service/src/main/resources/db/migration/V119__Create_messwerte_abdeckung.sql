@@ -0,0 +1,63 @@
+-- Abdeckungs-Bitmap der Messwerte: je Einheit und Tag ein Bit je 15-Minuten-Intervall
+-- (Bit i = Messwert mit zeit = tag 00:00 + i * 15 min, Bit 0 links). Gepflegt durch einen
+-- Trigger auf zev.messwerte – damit bleiben MQTT-Aggregation (JDBC-Batch), Streaming,
+-- CSV-Upload (JPA) und Löschungen ohne Anpassung der Schreibpfade konsistent, in derselben
+-- Transaktion. Vollständigkeit und Lückenberichte werden zu Bit-Operationen über wenige
+-- Zeilen je Einheit und Tag statt Scans über zev.messwerte.
+CREATE TABLE zev.messwerte_abdeckung (
+    einheit_id  BIGINT NOT NULL REFERENCES zev.einheit(id) ON DELETE CASCADE,
+    tag         DATE NOT NULL,
+    org_id      BIGINT NOT NULL,
+    slots       BIT(96) NOT NULL,
+    CONSTRAINT pk_messwerte_abdeckung PRIMARY KEY (einheit_id, tag)
+);
+
+CREATE INDEX idx_messwerte_abdeckung_org_tag ON zev.messwerte_abdeckung(org_id, tag);
+
+COMMENT ON TABLE zev.messwerte_abdeckung IS 'Abdeckungs-Bitmap der Messwerte je Einheit und Tag (Trigger-gepflegt)';
+COMMENT ON COLUMN zev.messwerte_abdeckung.slots IS 'Bit i (0 = links) gesetzt = Messwert um tag 00:00 + i * 15 min vorhanden';
+
+-- Existenzprüfung beim Löschen (Trigger) und Zeitbereich je Einheit (Export, Aggregation)
+CREATE INDEX IF NOT EXISTS idx_messwerte_einheit_zeit ON zev.messwerte(einheit_id, zeit);
+
+-- Bit-Position eines Zeitpunkts innerhalb seines Tages (0..95)
+CREATE FUNCTION zev.messwerte_slot(zeit TIMESTAMP) RETURNS INTEGER
+    LANGUAGE sql IMMUTABLE AS
+$$ SELECT (EXTRACT(HOUR FROM zeit) * 4 + FLOOR(EXTRACT(MINUTE FROM zeit) / 15))::INTEGER $$;
+
+CREATE FUNCTION zev.messwerte_abdeckung_pflegen() RETURNS TRIGGER
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        -- Bit nur löschen, wenn kein weiterer Messwert derselben Einheit und Zeit existiert
+        -- (messwerte hat keinen Unique-Key auf einheit_id, zeit)
+        UPDATE zev.messwerte_abdeckung a
+        SET slots = set_bit(a.slots, zev.messwerte_slot(OLD.zeit), 0)
+        WHERE a.einheit_id = OLD.einheit_id
+          AND a.tag = OLD.zeit::DATE
+          AND NOT EXISTS (SELECT 1 FROM zev.messwerte m
+                          WHERE m.einheit_id = OLD.einheit_id AND m.zeit = OLD.zeit);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.einheit_id IS NOT NULL THEN
+        INSERT INTO zev.messwerte_abdeckung (einheit_id, tag, org_id, slots)
+        VALUES (NEW.einheit_id, NEW.zeit::DATE, NEW.org_id,
+                set_bit(B'0'::BIT(96), zev.messwerte_slot(NEW.zeit), 1))
+        ON CONFLICT (einheit_id, tag) DO UPDATE
+            SET slots = set_bit(zev.messwerte_abdeckung.slots, zev.messwerte_slot(NEW.zeit), 1);
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER trg_messwerte_abdeckung
+    AFTER INSERT OR DELETE OR UPDATE OF zeit, einheit_id ON zev.messwerte
+    FOR EACH ROW EXECUTE FUNCTION zev.messwerte_abdeckung_pflegen();
+
+-- Bestand übernehmen
+INSERT INTO zev.messwerte_abdeckung (einheit_id, tag, org_id, slots)
+SELECT einheit_id, zeit::DATE, MIN(org_id),
+       BIT_OR(B'1'::BIT(96) >> zev.messwerte_slot(zeit))  -- B'1'::BIT(96) = 1 gefolgt von 95 Nullen
+FROM zev.messwerte
+WHERE einheit_id IS NOT NULL
+GROUP BY einheit_id, zeit::DATE;
@@ -0,0 +1,48 @@
+-- Rechnungsläufe als Hintergrund-Jobs: die Berechnung läuft beim Einreichen, die berechneten
+-- Rechnungen sind die Eingabe des Jobs (rechnungen). Darstellung, Debitor-Upsert und Ablage
+-- laufen im Hintergrund; erledigt ist die High-Water-Mark – fortgeschrieben in derselben
+-- Transaktion wie Debitor-Eintrag und Artefakt einer Rechnung, damit ein Neustart bei der
+-- ersten nicht abgeschlossenen Rechnung weitermacht.
+CREATE SEQUENCE zev.rechnung_job_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE zev.rechnung_job (
+    id               BIGINT PRIMARY KEY DEFAULT nextval('zev.rechnung_job_seq'),
+    org_id           BIGINT NOT NULL,
+    von              DATE NOT NULL,
+    bis              DATE NOT NULL,
+    sprache          VARCHAR(5) NOT NULL,
+    status           VARCHAR(20) NOT NULL,
+    anzahl           INTEGER NOT NULL,
+    erledigt         INTEGER NOT NULL DEFAULT 0,
+    rechnungen       JSONB NOT NULL,
+    fehler           TEXT,
+    gestartet_am     TIMESTAMP NOT NULL,
+    aktualisiert_am  TIMESTAMP NOT NULL,
+    CONSTRAINT chk_rechnung_job_status CHECK (status IN ('LAUFEND', 'ABGESCHLOSSEN', 'ABGEBROCHEN', 'FEHLGESCHLAGEN'))
+);
+
+CREATE INDEX idx_rechnung_job_org ON zev.rechnung_job(org_id);
+CREATE INDEX idx_rechnung_job_laufend ON zev.rechnung_job(aktualisiert_am) WHERE status = 'LAUFEND';
+
+COMMENT ON TABLE zev.rechnung_job IS 'Rechnungslauf im Hintergrund (Darstellung, Debitor-Upsert, Ablage)';
+COMMENT ON COLUMN zev.rechnung_job.rechnungen IS 'Berechnete Rechnungen (RechnungDTO-Liste) – Eingabe des Jobs, unverändert bei Wiederaufnahme';
+COMMENT ON COLUMN zev.rechnung_job.erledigt IS 'High-Water-Mark: Rechnungen mit Position < erledigt sind abgeschlossen';
+COMMENT ON COLUMN zev.rechnung_job.aktualisiert_am IS 'Lebenszeichen des ausführenden Workers; veraltet = Job wird wieder aufgenommen';
+
+CREATE SEQUENCE zev.rechnung_job_artefakt_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE zev.rechnung_job_artefakt (
+    id            BIGINT PRIMARY KEY DEFAULT nextval('zev.rechnung_job_artefakt_seq'),
+    job_id        BIGINT NOT NULL REFERENCES zev.rechnung_job(id) ON DELETE CASCADE,
+    org_id        BIGINT NOT NULL,
+    position      INTEGER NOT NULL,
+    einheit_id    BIGINT,
+    einheit_name  VARCHAR(255),
+    mieter_name   VARCHAR(255),
+    end_betrag    DOUBLE PRECISION NOT NULL,
+    download_key  VARCHAR(255),
+    fehler        TEXT,
+    CONSTRAINT uk_rechnung_job_artefakt_position UNIQUE (job_id, position)
+);
+
+COMMENT ON TABLE zev.rechnung_job_artefakt IS 'Abgeschlossene Rechnung eines Jobs (download_key = PDF in der Ablage, fehler = PDF fehlgeschlagen)';
@@ -0,0 +1,5 @@
+-- Catch-up-Hochrechnung aus der aktiven Verarbeitungszeit statt der Wanduhr seit dem Start:
+-- Pausen zwischen den Läufen und Ausfallzeiten fliessen nicht in die Rate ein.
+ALTER TABLE zev.aggregation_checkpoint ADD COLUMN aktiv_millis BIGINT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN zev.aggregation_checkpoint.aktiv_millis IS 'Summe der Verarbeitungszeit aller Abschnitte in Millisekunden (Basis der Hochrechnung)';
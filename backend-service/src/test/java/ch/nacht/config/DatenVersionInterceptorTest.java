@@ -0,0 +1,103 @@
+package ch.nacht.config;
+
+import ch.nacht.service.DatenVersionService;
+import ch.nacht.service.OrganizationContextService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatenVersionInterceptorTest {
+
+    private static final long ORG_ID = 7L;
+    private static final long EPOCHE = 1_700_000_000_000L;
+
+    @Mock
+    private DatenVersionService datenVersionService;
+
+    @Mock
+    private OrganizationContextService organizationContextService;
+
+    private DatenVersionInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new DatenVersionInterceptor(datenVersionService, organizationContextService);
+    }
+
+    private void mandantMitVersion(long version) {
+        when(organizationContextService.hasOrganization()).thenReturn(true);
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        when(datenVersionService.epoche()).thenReturn(EPOCHE);
+        when(datenVersionService.version(ORG_ID)).thenReturn(version);
+    }
+
+    private MockHttpServletRequest get(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/statistik");
+        request.addHeader("Accept", "application/json");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return request;
+    }
+
+    @Test
+    void preHandle_OhneIfNoneMatch_SetztETagUndLaesstDurch() {
+        mandantMitVersion(3);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(get(null), response, new Object()));
+
+        assertEquals(DatenVersionInterceptor.etag(ORG_ID, EPOCHE, 3, "application/json"),
+                response.getHeader("ETag"));
+        assertEquals("private, no-cache", response.getHeader("Cache-Control"));
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void preHandle_PassenderETag_Antwortet304() {
+        mandantMitVersion(3);
+        String etag = DatenVersionInterceptor.etag(ORG_ID, EPOCHE, 3, "application/json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(get(etag), response, new Object()));
+
+        assertEquals(304, response.getStatus());
+    }
+
+    @Test
+    void preHandle_NeuereVersion_LaesstDurch() {
+        mandantMitVersion(4);
+        String alt = DatenVersionInterceptor.etag(ORG_ID, EPOCHE, 3, "application/json");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(get(alt), response, new Object()));
+
+        assertNotEquals(alt, response.getHeader("ETag"));
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void preHandle_KeinGet_OhneETag() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/tarife");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+
+        assertNull(response.getHeader("ETag"));
+        verifyNoInteractions(datenVersionService, organizationContextService);
+    }
+
+    @Test
+    void etag_AcceptUnterscheidetDarstellungen() {
+        assertNotEquals(DatenVersionInterceptor.etag(ORG_ID, EPOCHE, 1, "application/json"),
+                DatenVersionInterceptor.etag(ORG_ID, EPOCHE, 1, "application/vnd.zev.spalten.f32le"));
+    }
+}
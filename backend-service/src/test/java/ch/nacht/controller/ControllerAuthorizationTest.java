@@ -3,6 +3,7 @@ package ch.nacht.controller;
 import ch.nacht.config.SecurityConfig;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.EinheitMatchingService;
 import ch.nacht.service.EinheitService;
 import ch.nacht.service.EinstellungenService;
@@ -79,6 +80,9 @@ class ControllerAuthorizationTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     // Erforderlich, damit der oauth2ResourceServer-Filterchain-Bean gebaut werden kann.
     @MockitoBean
     private JwtDecoder jwtDecoder;
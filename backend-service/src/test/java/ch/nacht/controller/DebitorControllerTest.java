@@ -1,6 +1,7 @@
 package ch.nacht.controller;
 
 import ch.nacht.dto.DebitorDTO;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.DebitorService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
@@ -12,6 +13,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -45,6 +48,9 @@ public class DebitorControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
     private DebitorDTO testDebitor;
 
@@ -108,6 +114,42 @@ public class DebitorControllerTest {
             .andExpect(status().isBadRequest());
     }
 
+    // ==================== GET /api/debitoren/seite ====================
+
+    @Test
+    void getDebitorenSeite_ReturnsItemsAndHatMehr() throws Exception {
+        when(debitorService.getSeite(VON, BIS, true, "muster", 1, 20, "betrag", "DESC"))
+                .thenReturn(new SliceImpl<>(List.of(testDebitor), PageRequest.of(1, 20), true));
+
+        mockMvc.perform(get("/api/debitoren/seite")
+                .param("von", "2024-01-01")
+                .param("bis", "2024-03-31")
+                .param("offen", "true")
+                .param("suche", "muster")
+                .param("page", "1")
+                .param("size", "20")
+                .param("sortSpalte", "betrag")
+                .param("sortRichtung", "DESC"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items", hasSize(1)))
+            .andExpect(jsonPath("$.items[0].mieterName", is("Max Muster")))
+            .andExpect(jsonPath("$.hatMehr", is(true)))
+            .andExpect(jsonPath("$.page", is(1)));
+    }
+
+    @Test
+    void getDebitorenSeite_Defaults() throws Exception {
+        when(debitorService.getSeite(VON, BIS, null, null, 0, 50, "datumVon", "ASC"))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 50), false));
+
+        mockMvc.perform(get("/api/debitoren/seite")
+                .param("von", "2024-01-01")
+                .param("bis", "2024-03-31"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items", hasSize(0)))
+            .andExpect(jsonPath("$.hatMehr", is(false)));
+    }
+
     // ==================== POST /api/debitoren ====================
 
     @Test
@@ -4,6 +4,7 @@ import ch.nacht.dto.EinheitMatchRequestDTO;
 import ch.nacht.dto.EinheitMatchResponseDTO;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.EinheitMatchingService;
 import ch.nacht.service.EinheitService;
 import ch.nacht.service.OrganisationService;
@@ -51,6 +52,9 @@ public class EinheitControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
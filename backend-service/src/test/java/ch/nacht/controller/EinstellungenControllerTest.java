@@ -2,6 +2,7 @@ package ch.nacht.controller;
 
 import ch.nacht.dto.EinstellungenDTO;
 import ch.nacht.dto.RechnungKonfigurationDTO;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.EinstellungenService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
@@ -37,6 +38,9 @@ public class EinstellungenControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     private EinstellungenDTO testDTO;
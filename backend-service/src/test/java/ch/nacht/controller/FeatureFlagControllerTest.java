@@ -2,6 +2,7 @@ package ch.nacht.controller;
 
 import ch.nacht.dto.FeatureFlagDTO;
 import ch.nacht.entity.FeatureFlag;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.FeatureFlagService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
@@ -47,6 +48,9 @@ public class FeatureFlagControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     @BeforeEach
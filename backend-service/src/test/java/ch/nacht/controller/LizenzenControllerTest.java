@@ -2,6 +2,7 @@ package ch.nacht.controller;
 
 import ch.nacht.dto.LizenzenDTO;
 import ch.nacht.dto.LizenzenHashDTO;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.LizenzenService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
@@ -37,6 +38,9 @@ public class LizenzenControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     // ==================== GET /api/lizenzen ====================
 
     @Test
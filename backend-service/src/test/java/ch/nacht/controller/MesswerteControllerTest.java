@@ -1,13 +1,17 @@
 package ch.nacht.controller;
 
+import ch.nacht.dto.MesswerteAggregatDTO;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.FeatureFlag;
 import ch.nacht.entity.MeldungLevel;
 import ch.nacht.service.CalculationProgressService;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.EinheitService;
 import ch.nacht.service.FeatureFlagService;
+import ch.nacht.service.MesswerteAggregatService;
 import ch.nacht.service.MesswerteService;
+import ch.nacht.service.MesswerteSpaltenSchreiber;
 import ch.nacht.service.MetricsService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
@@ -18,6 +22,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -27,11 +32,15 @@ import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -58,6 +67,9 @@ public class MesswerteControllerTest {
     @MockitoBean
     private MesswerteService messwerteService;
 
+    @MockitoBean
+    private MesswerteAggregatService messwerteAggregatService;
+
     @MockitoBean
     private MetricsService metricsService;
 
@@ -73,6 +85,9 @@ public class MesswerteControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     @MockitoBean
     private FeatureFlagService featureFlagService;
 
@@ -451,7 +466,7 @@ public class MesswerteControllerTest {
         );
 
         when(messwerteService.getMesswerteByEinheit(
-            eq(1L), eq(LocalDate.of(2024, 1, 1)), eq(LocalDate.of(2024, 1, 31))))
+            eq(1L), eq(LocalDate.of(2024, 1, 1)), eq(LocalDate.of(2024, 1, 31)), isNull()))
             .thenReturn(serviceResult);
 
         mockMvc.perform(get("/api/messwerte/by-einheit")
@@ -467,7 +482,7 @@ public class MesswerteControllerTest {
 
     @Test
     void getMesswerteByEinheit_EmptyResult_ReturnsEmptyList() throws Exception {
-        when(messwerteService.getMesswerteByEinheit(eq(1L), any(), any()))
+        when(messwerteService.getMesswerteByEinheit(eq(1L), any(), any(), any()))
             .thenReturn(Collections.emptyList());
 
         mockMvc.perform(get("/api/messwerte/by-einheit")
@@ -480,7 +495,7 @@ public class MesswerteControllerTest {
 
     @Test
     void getMesswerteByEinheit_ServiceThrowsException_ReturnsBadRequest() throws Exception {
-        when(messwerteService.getMesswerteByEinheit(eq(999L), any(), any()))
+        when(messwerteService.getMesswerteByEinheit(eq(999L), any(), any(), any()))
             .thenThrow(new RuntimeException("Einheit not found"));
 
         mockMvc.perform(get("/api/messwerte/by-einheit")
@@ -498,4 +513,155 @@ public class MesswerteControllerTest {
                 .param("dateTo", "2024-01-31"))
             .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void getMesswerteByEinheit_MaxPoints_WirdAnServiceWeitergegeben() throws Exception {
+        when(messwerteService.getMesswerteByEinheit(eq(1L), any(), any(), eq(1000)))
+            .thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/messwerte/by-einheit")
+                .param("einheitId", "1")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-12-31")
+                .param("maxPoints", "1000"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void getMesswerteByEinheiten_MehrereEinheiten_ReturnsMapJeEinheit() throws Exception {
+        Map<Long, List<Map<String, Object>>> serviceResult = new LinkedHashMap<>();
+        serviceResult.put(1L, List.of(Map.of("zeit", "2024-01-15T00:00", "total", 5.0, "zev", 1.8)));
+        serviceResult.put(2L, List.of());
+        when(messwerteService.getMesswerteByEinheiten(
+            eq(List.of(1L, 2L)), eq(LocalDate.of(2024, 1, 1)), eq(LocalDate.of(2024, 1, 31)), eq(500)))
+            .thenReturn(serviceResult);
+
+        mockMvc.perform(get("/api/messwerte/by-einheiten")
+                .param("einheitIds", "1", "2")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-01-31")
+                .param("maxPoints", "500"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$['1']", hasSize(1)))
+            .andExpect(jsonPath("$['1'][0].total", is(5.0)))
+            .andExpect(jsonPath("$['2']", hasSize(0)));
+    }
+
+    @Test
+    void getMesswerteByEinheiten_ServiceThrowsException_ReturnsBadRequest() throws Exception {
+        when(messwerteService.getMesswerteByEinheiten(any(), any(), any(), any()))
+            .thenThrow(new IllegalArgumentException("maxPoints must be at least 6"));
+
+        mockMvc.perform(get("/api/messwerte/by-einheiten")
+                .param("einheitIds", "1")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-01-31")
+                .param("maxPoints", "2"))
+            .andExpect(status().isBadRequest());
+    }
+
+    // ==================== GET /api/messwerte/aggregate ====================
+
+    @Test
+    void getAggregat_ValidRequest_ReturnsSpalten() throws Exception {
+        MesswerteAggregatDTO aggregat = new MesswerteAggregatDTO("day", List.of(new MesswerteAggregatDTO.Reihe(1L,
+            List.of(OffsetDateTime.of(2024, 3, 31, 0, 0, 0, 0, ZoneOffset.ofHours(1))),
+            new double[]{23.5}, new double[]{10.0}, new double[]{9.5})));
+        when(messwerteAggregatService.aggregiere(eq(MesswerteAggregatService.Bucket.DAY), eq(List.of(1L)),
+            eq(LocalDate.of(2024, 3, 31)), eq(LocalDate.of(2024, 3, 31))))
+            .thenReturn(aggregat);
+
+        mockMvc.perform(get("/api/messwerte/aggregate")
+                .param("bucket", "day")
+                .param("einheiten", "1")
+                .param("dateFrom", "2024-03-31")
+                .param("dateTo", "2024-03-31"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.bucket", is("day")))
+            .andExpect(jsonPath("$.einheiten[0].einheitId", is(1)))
+            .andExpect(jsonPath("$.einheiten[0].total[0]", is(23.5)))
+            .andExpect(jsonPath("$.einheiten[0].zevCalculated[0]", is(9.5)));
+    }
+
+    @Test
+    void getAggregat_UnbekannterBucket_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/messwerte/aggregate")
+                .param("bucket", "year")
+                .param("einheiten", "1")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-12-31"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(messwerteAggregatService);
+    }
+
+    @Test
+    void getAggregat_DateFromAfterDateTo_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/messwerte/aggregate")
+                .param("bucket", "month")
+                .param("einheiten", "1", "2")
+                .param("dateFrom", "2024-12-31")
+                .param("dateTo", "2024-01-01"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(messwerteAggregatService);
+    }
+
+    // ==================== GET /api/messwerte/by-einheit (spaltenweise) ====================
+
+    @Test
+    void getMesswerteByEinheit_AcceptSpaltenJson_StreamtSpalten() throws Exception {
+        byte[] json = "{\"einheitId\":1,\"start\":\"2024-01-01T00:00\",\"schrittMinuten\":15}"
+            .getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        when(messwerteService.getMesswerteSpalten(eq(1L), eq(LocalDate.of(2024, 1, 1)),
+                eq(LocalDate.of(2024, 1, 31)), eq(MesswerteSpaltenSchreiber.Format.JSON)))
+            .thenReturn(out -> out.write(json));
+
+        MvcResult result = mockMvc.perform(get("/api/messwerte/by-einheit")
+                .accept(MesswerteSpaltenSchreiber.MEDIA_TYPE_JSON)
+                .param("einheitId", "1")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-01-31"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.valueOf(MesswerteSpaltenSchreiber.MEDIA_TYPE_JSON)))
+            .andExpect(content().bytes(json));
+
+        verify(messwerteService, never()).getMesswerteByEinheit(any(), any(), any(), any());
+    }
+
+    @Test
+    void getMesswerteByEinheit_AcceptF32le_StreamtBinaer() throws Exception {
+        byte[] binaer = {1, 2, 3, 4};
+        when(messwerteService.getMesswerteSpalten(eq(1L), any(), any(), eq(MesswerteSpaltenSchreiber.Format.F32LE)))
+            .thenReturn(out -> out.write(binaer));
+
+        MvcResult result = mockMvc.perform(get("/api/messwerte/by-einheit")
+                .accept(MesswerteSpaltenSchreiber.MEDIA_TYPE_F32LE)
+                .param("einheitId", "1")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-01-31"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(binaer));
+    }
+
+    @Test
+    void getMesswerteByEinheit_AcceptSpaltenJson_FremdeEinheit_ReturnsBadRequest() throws Exception {
+        when(messwerteService.getMesswerteSpalten(eq(999L), any(), any(), any()))
+            .thenThrow(new IllegalArgumentException("Einheit not found"));
+
+        mockMvc.perform(get("/api/messwerte/by-einheit")
+                .accept(MesswerteSpaltenSchreiber.MEDIA_TYPE_JSON)
+                .param("einheitId", "999")
+                .param("dateFrom", "2024-01-01")
+                .param("dateTo", "2024-01-31"))
+            .andExpect(status().isBadRequest());
+    }
 }
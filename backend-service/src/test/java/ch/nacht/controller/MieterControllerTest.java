@@ -1,6 +1,7 @@
 package ch.nacht.controller;
 
 import ch.nacht.entity.Mieter;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.MieterService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
@@ -48,6 +49,9 @@ public class MieterControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     private Mieter testMieter;
@@ -1,11 +1,15 @@
 package ch.nacht.controller;
 
 import ch.nacht.dto.RechnungDTO;
+import ch.nacht.dto.RechnungJobDTO;
+import ch.nacht.entity.RechnungJobStatus;
 import ch.nacht.exception.TarifLuecke;
 import ch.nacht.exception.TarifLueckenException;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.DebitorService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
+import ch.nacht.service.RechnungJobService;
 import ch.nacht.service.RechnungPdfService;
 import ch.nacht.service.RechnungService;
 import ch.nacht.service.RechnungStorageService;
@@ -19,17 +23,28 @@ import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -57,9 +72,15 @@ public class RechnungControllerTest {
     @MockitoBean
     private DebitorService debitorService;
 
+    @MockitoBean
+    private RechnungJobService rechnungJobService;
+
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     private RechnungDTO testRechnung;
@@ -81,12 +102,26 @@ public class RechnungControllerTest {
 
     // ==================== POST /api/rechnungen/generate ====================
 
+    /** Der PDF-Dienst reicht je Rechnung das Ergebnis weiter (Reihenfolge wie berechnet). */
+    private void pdfs(Function<RechnungDTO, RechnungPdfService.PdfErgebnis> ergebnis) {
+        when(rechnungPdfService.generatePdfs(anyList(), anyString(), any(), any())).thenAnswer(invocation -> {
+            List<RechnungDTO> rechnungen = invocation.getArgument(0);
+            Predicate<RechnungPdfService.PdfErgebnis> jeErgebnis = invocation.getArgument(3);
+            rechnungen.forEach(r -> jeErgebnis.test(ergebnis.apply(r)));
+            return true;
+        });
+    }
+
+    /** Jede Rechnung des Laufs ergibt ein PDF (Reihenfolge wie berechnet). */
+    private void pdfsErzeugt() {
+        pdfs(r -> RechnungPdfService.PdfErgebnis.erzeugt(r, new byte[]{1, 2, 3}, "f" + r.getEinheitId()));
+    }
+
     @Test
     void generateRechnungen_ValidRequest_ReturnsOkWithList() throws Exception {
         when(rechnungService.berechneRechnungen(anyList(), any(), any()))
             .thenReturn(List.of(testRechnung));
-        when(rechnungPdfService.generatePdf(any(RechnungDTO.class), anyString()))
-            .thenReturn(new byte[]{1, 2, 3});
+        pdfsErzeugt();
         when(rechnungStorageService.sanitizeKey(anyString())).thenReturn("Wohnung_1_10");
         when(rechnungStorageService.getFilename("Wohnung_1_10")).thenReturn("Wohnung_1_10.pdf");
 
@@ -106,16 +141,18 @@ public class RechnungControllerTest {
             .andExpect(jsonPath("$.count", is(1)))
             .andExpect(jsonPath("$.rechnungen", hasSize(1)))
             .andExpect(jsonPath("$.rechnungen[0].einheitName", is("Wohnung 1")))
-            .andExpect(jsonPath("$.rechnungen[0].mieterName", is("Max Muster")));
+            .andExpect(jsonPath("$.rechnungen[0].mieterName", is("Max Muster")))
+            .andExpect(jsonPath("$.lauf", startsWith("L")));
 
-        verify(rechnungStorageService).clearAll();
+        // Key mit Lauf-Kennung: parallele Läufe des Mandanten überschreiben sich nicht
+        verify(rechnungStorageService).sanitizeKey(matches("L[0-9a-f]{12}_Wohnung 1_10"));
         verify(rechnungService).berechneRechnungen(List.of(1L),
             LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
-        verify(debitorService).upsertFromRechnung(
-            eq(10L),
-            eq(BigDecimal.valueOf(125.50).setScale(2)),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 3, 31)));
+        verify(debitorService).upsertFromRechnungen(List.of(new DebitorService.RechnungsForderung(
+            10L,
+            BigDecimal.valueOf(125.50).setScale(2),
+            LocalDate.of(2024, 1, 1),
+            LocalDate.of(2024, 3, 31))));
     }
 
     @Test
@@ -125,8 +162,7 @@ public class RechnungControllerTest {
         testRechnung.setEndBetrag(0.0);
         when(rechnungService.berechneRechnungen(anyList(), any(), any()))
             .thenReturn(List.of(testRechnung));
-        when(rechnungPdfService.generatePdf(any(RechnungDTO.class), anyString()))
-            .thenReturn(new byte[]{1, 2, 3});
+        pdfsErzeugt();
         when(rechnungStorageService.sanitizeKey(anyString())).thenReturn("Wohnung_1_10");
         when(rechnungStorageService.getFilename("Wohnung_1_10")).thenReturn("Wohnung_1_10.pdf");
 
@@ -145,8 +181,8 @@ public class RechnungControllerTest {
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.count", is(1)));
 
-        verify(debitorService, never()).upsertFromRechnung(any(), any(), any(), any());
-        verify(rechnungStorageService).store(eq("Wohnung_1_10"), any());
+        verifyNoInteractions(debitorService);
+        verify(rechnungStorageService).store(eq("Wohnung_1_10"), any(), eq("f1"));
     }
 
     @Test
@@ -253,8 +289,7 @@ public class RechnungControllerTest {
     void generateRechnungen_DefaultSprache_UsesDe() throws Exception {
         when(rechnungService.berechneRechnungen(anyList(), any(), any()))
             .thenReturn(List.of(testRechnung));
-        when(rechnungPdfService.generatePdf(any(RechnungDTO.class), eq("de")))
-            .thenReturn(new byte[]{1, 2, 3});
+        pdfsErzeugt();
         when(rechnungStorageService.sanitizeKey(anyString())).thenReturn("Wohnung_1_10");
         when(rechnungStorageService.getFilename(anyString())).thenReturn("Wohnung_1_10.pdf");
 
@@ -271,7 +306,7 @@ public class RechnungControllerTest {
                 .content(request))
             .andExpect(status().isOk());
 
-        verify(rechnungPdfService).generatePdf(any(RechnungDTO.class), eq("de"));
+        verify(rechnungPdfService).generatePdfs(anyList(), eq("de"), any(), any());
     }
 
     @Test
@@ -284,9 +319,8 @@ public class RechnungControllerTest {
 
         when(rechnungService.berechneRechnungen(anyList(), any(), any()))
             .thenReturn(List.of(rechnungOhneMieter));
-        when(rechnungPdfService.generatePdf(any(RechnungDTO.class), anyString()))
-            .thenReturn(new byte[]{1, 2, 3});
-        when(rechnungStorageService.sanitizeKey("Gewerbe EG")).thenReturn("Gewerbe_EG");
+        pdfsErzeugt();
+        when(rechnungStorageService.sanitizeKey(endsWith("_Gewerbe EG"))).thenReturn("Gewerbe_EG");
         when(rechnungStorageService.getFilename("Gewerbe_EG")).thenReturn("Gewerbe_EG.pdf");
 
         String request = """
@@ -303,7 +337,7 @@ public class RechnungControllerTest {
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.count", is(1)));
 
-        verify(rechnungStorageService).sanitizeKey("Gewerbe EG");
+        verify(rechnungStorageService).sanitizeKey(endsWith("_Gewerbe EG"));
         verifyNoInteractions(debitorService);
     }
 
@@ -311,8 +345,7 @@ public class RechnungControllerTest {
     void generateRechnungen_WithMieter_CallsDebitorUpsert() throws Exception {
         when(rechnungService.berechneRechnungen(anyList(), any(), any()))
             .thenReturn(List.of(testRechnung));
-        when(rechnungPdfService.generatePdf(any(RechnungDTO.class), anyString()))
-            .thenReturn(new byte[]{1, 2, 3});
+        pdfsErzeugt();
         when(rechnungStorageService.sanitizeKey(anyString())).thenReturn("Wohnung_1_10");
         when(rechnungStorageService.getFilename(anyString())).thenReturn("Wohnung_1_10.pdf");
 
@@ -329,31 +362,304 @@ public class RechnungControllerTest {
                 .content(request))
             .andExpect(status().isOk());
 
-        verify(debitorService).upsertFromRechnung(
-            eq(10L),
-            eq(BigDecimal.valueOf(125.50).setScale(2)),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 3, 31)));
+        verify(debitorService).upsertFromRechnungen(List.of(new DebitorService.RechnungsForderung(
+            10L,
+            BigDecimal.valueOf(125.50).setScale(2),
+            LocalDate.of(2024, 1, 1),
+            LocalDate.of(2024, 3, 31))));
+    }
+
+    @Test
+    void generateRechnungen_PdfFehlgeschlagen_UebrigeRechnungenWerdenGespeichert() throws Exception {
+        RechnungDTO zweite = new RechnungDTO();
+        zweite.setEinheitId(2L);
+        zweite.setEinheitName("Wohnung 2");
+        zweite.setMieterId(20L);
+        zweite.setVon(LocalDate.of(2024, 1, 1));
+        zweite.setBis(LocalDate.of(2024, 3, 31));
+        zweite.setEndBetrag(80.0);
+        when(rechnungService.berechneRechnungen(anyList(), any(), any()))
+            .thenReturn(List.of(testRechnung, zweite));
+        pdfs(r -> r == testRechnung
+            ? RechnungPdfService.PdfErgebnis.fehlgeschlagen(r, new RuntimeException("PDF generation failed"))
+            : RechnungPdfService.PdfErgebnis.erzeugt(r, new byte[]{1, 2, 3}));
+        when(rechnungStorageService.sanitizeKey(anyString())).thenReturn("Wohnung_2_20");
+        when(rechnungStorageService.getFilename("Wohnung_2_20")).thenReturn("Wohnung_2_20.pdf");
+
+        String request = """
+            {
+                "von": "2024-01-01",
+                "bis": "2024-03-31",
+                "einheitIds": [1, 2]
+            }
+            """;
+
+        mockMvc.perform(post("/api/rechnungen/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.count", is(1)))
+            .andExpect(jsonPath("$.rechnungen[0].einheitName", is("Wohnung 2")));
+
+        // Ohne PDF kein Debitor-Eintrag fuer die gescheiterte Rechnung
+        verify(debitorService).upsertFromRechnungen(List.of(new DebitorService.RechnungsForderung(
+            20L, new BigDecimal("80.00"), LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31))));
+        verify(rechnungStorageService, times(1)).store(anyString(), any(), any());
+    }
+
+    @Test
+    void generateRechnungen_DebitorBatchFehlgeschlagen_EinzelnNurBetroffeneOhnePdf() throws Exception {
+        RechnungDTO zweite = new RechnungDTO();
+        zweite.setEinheitId(2L);
+        zweite.setEinheitName("Wohnung 2");
+        zweite.setMieterId(20L);
+        zweite.setVon(LocalDate.of(2024, 1, 1));
+        zweite.setBis(LocalDate.of(2024, 3, 31));
+        zweite.setEndBetrag(80.0);
+        when(rechnungService.berechneRechnungen(anyList(), any(), any()))
+            .thenReturn(List.of(testRechnung, zweite));
+        pdfsErzeugt();
+        doThrow(new RuntimeException("batch failed")).when(debitorService).upsertFromRechnungen(anyList());
+        doThrow(new RuntimeException("mieter gelöscht")).when(debitorService)
+            .upsertFromRechnung(eq(10L), any(), any(), any());
+        when(rechnungStorageService.sanitizeKey(anyString())).thenReturn("Wohnung_2_20");
+        when(rechnungStorageService.getFilename("Wohnung_2_20")).thenReturn("Wohnung_2_20.pdf");
+
+        String request = """
+            {
+                "von": "2024-01-01",
+                "bis": "2024-03-31",
+                "einheitIds": [1, 2]
+            }
+            """;
+
+        mockMvc.perform(post("/api/rechnungen/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.count", is(1)))
+            .andExpect(jsonPath("$.rechnungen[0].einheitName", is("Wohnung 2")));
+
+        verify(debitorService).upsertFromRechnung(eq(20L), eq(new BigDecimal("80.00")), any(), any());
+        verify(rechnungStorageService, times(1)).store(anyString(), any(), any());
+    }
+
+    // ==================== /api/rechnungen/jobs ====================
+
+    private RechnungJobDTO laufenderJob() {
+        return new RechnungJobDTO(5L, RechnungJobStatus.LAUFEND,
+            LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31), 2, 0, null, List.of());
+    }
+
+    @Test
+    void starteJob_ValidRequest_ReturnsAccepted() throws Exception {
+        when(rechnungJobService.starte(List.of(1L, 2L), LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31), "de"))
+            .thenReturn(laufenderJob());
+
+        String request = """
+            {
+                "von": "2024-01-01",
+                "bis": "2024-03-31",
+                "einheitIds": [1, 2]
+            }
+            """;
+
+        mockMvc.perform(post("/api/rechnungen/jobs")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.id", is(5)))
+            .andExpect(jsonPath("$.status", is("LAUFEND")))
+            .andExpect(jsonPath("$.anzahl", is(2)));
+
+        verifyNoInteractions(rechnungPdfService, debitorService);
+    }
+
+    @Test
+    void starteJob_VonAfterBis_ReturnsBadRequest() throws Exception {
+        String request = """
+            {
+                "von": "2024-04-01",
+                "bis": "2024-03-31",
+                "einheitIds": [1]
+            }
+            """;
+
+        mockMvc.perform(post("/api/rechnungen/jobs")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.error").exists());
+
+        verifyNoInteractions(rechnungJobService);
+    }
+
+    @Test
+    void getJob_NotFound_Returns404() throws Exception {
+        when(rechnungJobService.getJob(99L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/rechnungen/jobs/99"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void cancelJob_Found_ReturnsJob() throws Exception {
+        RechnungJobDTO abgebrochen = new RechnungJobDTO(5L, RechnungJobStatus.ABGEBROCHEN,
+            LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31), 2, 1, null, List.of());
+        when(rechnungJobService.abbrechen(5L)).thenReturn(Optional.of(abgebrochen));
+
+        mockMvc.perform(post("/api/rechnungen/jobs/5/cancel"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.status", is("ABGEBROCHEN")))
+            .andExpect(jsonPath("$.erledigt", is(1)));
     }
 
     // ==================== GET /api/rechnungen/download/{key} ====================
 
+    /** Archivierte Datei, deren Übertragung den angefragten Ausschnitt von {@code pdf} schreibt. */
+    private RechnungStorageService.Archivdatei archiviert(String key, byte[] pdf) throws Exception {
+        RechnungStorageService.Archivdatei datei =
+            new RechnungStorageService.Archivdatei(key, Path.of(key + ".pdf"), pdf.length);
+        when(rechnungStorageService.find(key)).thenReturn(Optional.of(datei));
+        when(rechnungStorageService.getFilename(key)).thenReturn(key + ".pdf");
+        doAnswer(invocation -> {
+            long start = invocation.getArgument(1);
+            long laenge = invocation.getArgument(2);
+            OutputStream out = invocation.getArgument(3);
+            out.write(pdf, (int) start, (int) laenge);
+            return null;
+        }).when(rechnungStorageService).uebertrage(eq(datei), anyLong(), anyLong(), any());
+        return datei;
+    }
+
     @Test
     void downloadRechnung_Found_ReturnsPdfAttachment() throws Exception {
         byte[] pdfBytes = new byte[]{37, 80, 68, 70}; // %PDF
-        when(rechnungStorageService.get("Wohnung_1")).thenReturn(Optional.of(pdfBytes));
-        when(rechnungStorageService.getFilename("Wohnung_1")).thenReturn("Wohnung_1.pdf");
+        archiviert("Wohnung_1", pdfBytes);
 
-        mockMvc.perform(get("/api/rechnungen/download/Wohnung_1"))
+        // Gestreamte Antwort: Header sofort, Inhalt nach dem asynchronen Dispatch
+        MvcResult result = mockMvc.perform(get("/api/rechnungen/download/Wohnung_1"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(header().string("Content-Disposition", "attachment; filename=\"Wohnung_1.pdf\""))
+            .andExpect(header().string("Accept-Ranges", "bytes"))
             .andExpect(content().contentType(MediaType.APPLICATION_PDF))
             .andExpect(content().bytes(pdfBytes));
     }
 
+    @Test
+    void downloadRechnung_Range_ReturnsPartialContent() throws Exception {
+        byte[] pdfBytes = new byte[]{37, 80, 68, 70, 45, 49, 46, 55}; // %PDF-1.7
+        RechnungStorageService.Archivdatei datei = archiviert("Wohnung_1", pdfBytes);
+
+        MvcResult result = mockMvc.perform(get("/api/rechnungen/download/Wohnung_1")
+                .header("Range", "bytes=4-"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string("Content-Range", "bytes 4-7/8"))
+            .andExpect(header().longValue("Content-Length", 4))
+            .andExpect(content().bytes(new byte[]{45, 49, 46, 55}));
+
+        verify(rechnungStorageService).uebertrage(eq(datei), eq(4L), eq(4L), any());
+    }
+
+    @Test
+    void downloadRechnung_RangeAusserhalb_Returns416() throws Exception {
+        RechnungStorageService.Archivdatei datei =
+            new RechnungStorageService.Archivdatei("abcd", Path.of("abcd.pdf"), 8);
+        when(rechnungStorageService.find("Wohnung_1")).thenReturn(Optional.of(datei));
+
+        mockMvc.perform(get("/api/rechnungen/download/Wohnung_1")
+                .header("Range", "bytes=100-200"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string("Content-Range", "bytes */8"));
+
+        verify(rechnungStorageService, never()).uebertrage(any(), anyLong(), anyLong(), any());
+    }
+
+    // ==================== GET /api/rechnungen/bundle/{zip,pdf} ====================
+
+    @Test
+    void downloadZip_Lauf_StreamtAlleRechnungenDesLaufs() throws Exception {
+        RechnungStorageService.Archivdatei eins = archiviert("Wohnung_1_10", new byte[]{1});
+        RechnungStorageService.Archivdatei zwei = archiviert("Wohnung_2_20", new byte[]{2});
+        when(rechnungStorageService.keys("Labc")).thenReturn(List.of("Wohnung_1_10", "Wohnung_2_20"));
+
+        MvcResult result = mockMvc.perform(get("/api/rechnungen/bundle/zip").param("lauf", "Labc"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"rechnungen.zip\""))
+            .andExpect(content().contentType("application/zip"));
+
+        Map<String, RechnungStorageService.Archivdatei> erwartet = new LinkedHashMap<>();
+        erwartet.put("Wohnung_1_10.pdf", eins);
+        erwartet.put("Wohnung_2_20.pdf", zwei);
+        verify(rechnungStorageService).schreibeZip(eq(erwartet), any());
+    }
+
+    @Test
+    void downloadSammelPdf_KeysInReihenfolge_UnbekannteUebersprungen() throws Exception {
+        RechnungStorageService.Archivdatei eins = archiviert("Wohnung_1_10", new byte[]{1});
+        RechnungStorageService.Archivdatei zwei = archiviert("Wohnung_2_20", new byte[]{2});
+        when(rechnungStorageService.find("abgelaufen")).thenReturn(Optional.empty());
+
+        MvcResult result = mockMvc.perform(get("/api/rechnungen/bundle/pdf")
+                .param("keys", "Wohnung_2_20", "abgelaufen", "Wohnung_1_10"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_PDF));
+
+        verify(rechnungStorageService).schreibeSammelPdf(eq(List.of(zwei, eins)), any());
+        verify(rechnungStorageService, never()).keys(anyString());
+    }
+
+    @Test
+    void downloadSammelPdf_Job_RechnungenDesJobs() throws Exception {
+        RechnungStorageService.Archivdatei eins = archiviert("J5_Wohnung_1_10", new byte[]{1});
+        when(rechnungStorageService.keys("J5")).thenReturn(List.of("J5_Wohnung_1_10"));
+
+        MvcResult result = mockMvc.perform(get("/api/rechnungen/bundle/pdf").param("jobId", "5"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk());
+
+        verify(rechnungStorageService).schreibeSammelPdf(eq(List.of(eins)), any());
+    }
+
+    @Test
+    void downloadZip_OhneLaufUndKeys_Returns400() throws Exception {
+        // Kein Rückgriff auf das ganze Archiv des Mandanten – es kann mehrere Läufe enthalten
+        mockMvc.perform(get("/api/rechnungen/bundle/zip"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(rechnungStorageService);
+    }
+
+    @Test
+    void downloadZip_KeineRechnungen_Returns404() throws Exception {
+        when(rechnungStorageService.keys("Labc")).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/rechnungen/bundle/zip").param("lauf", "Labc"))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     void downloadRechnung_NotFound_Returns404() throws Exception {
-        when(rechnungStorageService.get("unbekannt")).thenReturn(Optional.empty());
+        when(rechnungStorageService.find("unbekannt")).thenReturn(Optional.empty());
 
         mockMvc.perform(get("/api/rechnungen/download/unbekannt"))
             .andExpect(status().isNotFound());
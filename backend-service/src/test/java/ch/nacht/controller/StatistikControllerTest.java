@@ -1,7 +1,10 @@
 package ch.nacht.controller;
 
+import ch.nacht.dto.AbdeckungsLueckeDTO;
 import ch.nacht.dto.MonatsStatistikDTO;
 import ch.nacht.dto.StatistikDTO;
+import ch.nacht.service.AbdeckungService;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
 import ch.nacht.service.StatistikPdfService;
@@ -16,8 +19,10 @@ import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.hamcrest.Matchers.hasSize;
@@ -43,12 +48,18 @@ public class StatistikControllerTest {
     @MockitoBean
     private StatistikPdfService statistikPdfService;
 
+    @MockitoBean
+    private AbdeckungService abdeckungService;
+
     @MockitoBean
     private OrganizationContextService organizationContextService;
 
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     private StatistikDTO testStatistik;
@@ -174,6 +185,33 @@ public class StatistikControllerTest {
             .andExpect(status().isInternalServerError());
     }
 
+    // ==================== GET /api/statistik/luecken ====================
+
+    @Test
+    void getLuecken_ValidDateRange_ReturnsLuecken() throws Exception {
+        when(abdeckungService.ermittleLuecken(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)))
+            .thenReturn(List.of(new AbdeckungsLueckeDTO(3L, "Wohnung 1",
+                LocalDateTime.of(2024, 1, 5, 10, 0), LocalDateTime.of(2024, 1, 5, 10, 45), 4)));
+
+        mockMvc.perform(get("/api/statistik/luecken")
+                .param("von", "2024-01-01")
+                .param("bis", "2024-01-31"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0].einheitName", is("Wohnung 1")))
+            .andExpect(jsonPath("$[0].intervalle", is(4)));
+    }
+
+    @Test
+    void getLuecken_VonAfterBis_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/statistik/luecken")
+                .param("von", "2024-02-01")
+                .param("bis", "2024-01-01"))
+            .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(abdeckungService);
+    }
+
     // ==================== GET /api/statistik/export/pdf ====================
 
     @Test
@@ -254,13 +292,18 @@ public class StatistikControllerTest {
         byte[] csvBytes = "Datum+Zeit,Total (1.000),ZEV (0.500)\n".getBytes(java.nio.charset.StandardCharsets.UTF_8);
         when(statistikService.exportMesswerteCsv(eq(2L),
                 eq(LocalDate.of(2024, 1, 1)), eq(LocalDate.of(2024, 1, 31)), eq("de")))
-            .thenReturn(csvBytes);
+            .thenReturn(out -> out.write(csvBytes));
 
-        mockMvc.perform(get("/api/statistik/export/csv")
+        // Gestreamte Antwort: Header sofort, Inhalt nach dem asynchronen Dispatch
+        MvcResult result = mockMvc.perform(get("/api/statistik/export/csv")
                 .param("einheitId", "2")
                 .param("von", "2024-01-01")
                 .param("bis", "2024-01-31")
                 .param("sprache", "de"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
             .andExpect(status().isOk())
             .andExpect(header().string("Content-Disposition", "attachment; filename=verbrauch_2_2024-01.csv"))
             .andExpect(content().contentTypeCompatibleWith(MediaType.valueOf("text/csv")))
@@ -274,7 +317,7 @@ public class StatistikControllerTest {
     void exportCsv_DefaultSprache_UsesDe() throws Exception {
         byte[] csvBytes = "Header\n".getBytes(java.nio.charset.StandardCharsets.UTF_8);
         when(statistikService.exportMesswerteCsv(anyLong(), any(), any(), eq("de")))
-            .thenReturn(csvBytes);
+            .thenReturn(out -> out.write(csvBytes));
 
         mockMvc.perform(get("/api/statistik/export/csv")
                 .param("einheitId", "2")
@@ -4,6 +4,7 @@ import ch.nacht.entity.Tarif;
 import ch.nacht.entity.TarifTyp;
 import ch.nacht.exception.TarifLuecke;
 import ch.nacht.exception.TarifLueckePeriode;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
 import ch.nacht.service.TarifService;
@@ -49,6 +50,9 @@ public class TarifControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     private Tarif zevTarif;
@@ -7,6 +7,7 @@ import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.Tarif;
 import ch.nacht.entity.TarifTyp;
 import ch.nacht.entity.Tarifposition;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
 import ch.nacht.service.TarifpositionService;
@@ -60,6 +61,9 @@ public class TarifpositionControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     private ObjectMapper objectMapper;
 
     private Einheit testEinheit;
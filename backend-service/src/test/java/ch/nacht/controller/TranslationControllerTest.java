@@ -1,6 +1,7 @@
 package ch.nacht.controller;
 
 import ch.nacht.entity.Translation;
+import ch.nacht.service.DatenVersionService;
 import ch.nacht.service.OrganisationService;
 import ch.nacht.service.OrganizationContextService;
 import ch.nacht.service.TranslationService;
@@ -34,6 +35,9 @@ class TranslationControllerTest {
     @MockitoBean
     private OrganisationService organisationService;
 
+    @MockitoBean
+    private DatenVersionService datenVersionService;
+
     @Test
     void shouldDeleteTranslationWithDotsInKey() throws Exception {
         // Given
@@ -12,6 +12,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
 import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
@@ -230,6 +233,47 @@ class DebitorRepositoryIT extends AbstractIntegrationTest {
         assertThat(result.get(0).getZahldatum()).isEqualTo(LocalDate.of(2026, 4, 15));
     }
 
+    // ==================== findMitMieterNameByDatumVonBetween / findMitMieterNameByFilter ====================
+
+    @Test
+    void shouldJoinMieterNameInSameQuery() {
+        saveDebitor(mieterBId, "80.00", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31), null);
+        // Mieter existiert nicht mehr: Zeile bleibt, Name ist leer
+        saveDebitor(999_999L, "50.00", LocalDate.of(2026, 2, 1), LocalDate.of(2026, 3, 31), null);
+
+        List<Object[]> result = debitorRepository.findMitMieterNameByDatumVonBetween(
+                LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31));
+
+        assertThat(result).hasSize(2);
+        assertThat(((Debitor) result.get(0)[0]).getMieterId()).isEqualTo(mieterBId);
+        assertThat(result.get(0)[1]).isEqualTo("Mieter B");
+        assertThat(result.get(1)[1]).isNull();
+    }
+
+    @Test
+    void shouldFilterOffenAndSortByMieterNamePaged() {
+        saveDebitor(mieterAId, "100.00", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31), null);
+        saveDebitor(mieterBId, "80.00", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31), null);
+        saveDebitor(mieterBId, "90.00", LocalDate.of(2026, 2, 1), LocalDate.of(2026, 3, 31),
+                LocalDate.of(2026, 4, 10));
+
+        Slice<Object[]> ersteSeite = debitorRepository.findMitMieterNameByFilter(
+                LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31), true, null,
+                PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "m.name").and(Sort.by("d.id"))));
+
+        assertThat(ersteSeite.getContent()).hasSize(1);
+        assertThat(ersteSeite.getContent().get(0)[1]).isEqualTo("Mieter B");
+        assertThat(ersteSeite.hasNext()).isTrue();
+
+        Slice<Object[]> bezahlt = debitorRepository.findMitMieterNameByFilter(
+                LocalDate.of(2026, 1, 1), LocalDate.of(2026, 3, 31), false, "%mieter b%",
+                PageRequest.of(0, 10, Sort.by("d.datumVon")));
+
+        assertThat(bezahlt.getContent()).hasSize(1);
+        assertThat(((Debitor) bezahlt.getContent().get(0)[0]).getBetrag()).isEqualByComparingTo("90.00");
+        assertThat(bezahlt.hasNext()).isFalse();
+    }
+
     // ==================== upsert ====================
 
     @Test
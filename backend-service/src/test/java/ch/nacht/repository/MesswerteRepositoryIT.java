@@ -5,6 +5,7 @@ import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.Messwerte;
 import ch.nacht.entity.Organisation;
+import ch.nacht.entity.Quelle;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -90,33 +91,6 @@ class MesswerteRepositoryIT extends AbstractIntegrationTest {
         assertThat(maxZeit.get()).isEqualTo(time2);
     }
 
-    @Test
-    void shouldFindDistinctDatesInRange() {
-        // Given
-        LocalDateTime day1Morning = LocalDateTime.of(2024, 1, 15, 8, 0);
-        LocalDateTime day1Evening = LocalDateTime.of(2024, 1, 15, 18, 0);
-        LocalDateTime day2 = LocalDateTime.of(2024, 1, 16, 12, 0);
-        LocalDateTime day3 = LocalDateTime.of(2024, 1, 17, 10, 0);
-
-        messwerteRepository.save(createMesswerte(day1Morning, producer, -100.0, -80.0, null));
-        messwerteRepository.save(createMesswerte(day1Evening, producer, -50.0, -40.0, null));
-        messwerteRepository.save(createMesswerte(day2, consumer1, 60.0, 50.0, 50.0));
-        messwerteRepository.save(createMesswerte(day3, consumer1, 70.0, 55.0, 55.0));
-
-        // When
-        LocalDateTime from = LocalDateTime.of(2024, 1, 15, 0, 0);
-        LocalDateTime to = LocalDateTime.of(2024, 1, 18, 0, 0);
-        List<LocalDate> dates = messwerteRepository.findDistinctDatesInRange(from, to);
-
-        // Then
-        assertThat(dates).hasSize(3);
-        assertThat(dates).containsExactly(
-                LocalDate.of(2024, 1, 15),
-                LocalDate.of(2024, 1, 16),
-                LocalDate.of(2024, 1, 17)
-        );
-    }
-
     @Test
     void shouldSumTotalByEinheitTyp() {
         // Given
@@ -356,6 +330,59 @@ class MesswerteRepositoryIT extends AbstractIntegrationTest {
         assertThat(((Number) row2[4]).doubleValue()).isCloseTo(0.0, within(0.001));  // R
     }
 
+    @Test
+    void shouldSumTageJeEinheit() {
+        // Given: zwei Tage, Producer an beiden, Consumer 1 nur am ersten; ein Wert ausserhalb
+        messwerteRepository.save(createMesswerte(LocalDateTime.of(2024, 1, 15, 0, 0), producer, -100.0, -80.0, null));
+        messwerteRepository.save(createMesswerte(LocalDateTime.of(2024, 1, 15, 23, 45), producer, -50.0, -40.0, null));
+        messwerteRepository.save(createMesswerte(LocalDateTime.of(2024, 1, 16, 12, 0), producer, -30.0, -20.0, null));
+        messwerteRepository.save(createMesswerte(LocalDateTime.of(2024, 1, 15, 10, 0), consumer1, 60.0, 50.0, 45.0));
+        messwerteRepository.save(createMesswerte(LocalDateTime.of(2024, 1, 15, 10, 15), consumer1, 40.0, 30.0, 35.0));
+        messwerteRepository.save(createMesswerte(LocalDateTime.of(2024, 1, 17, 0, 0), consumer2, 99.0, 99.0, 99.0));
+
+        LocalDateTime from = LocalDateTime.of(2024, 1, 15, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 1, 17, 0, 0);
+
+        // When
+        List<Object[]> rows = messwerteRepository.sumTageJeEinheitBetween(from, to);
+
+        // Then: eine Zeile je (Tag, Einheit), Summen ohne Betragsbildung
+        assertThat(rows).hasSize(3);
+        Object[] producerTag1 = rows.stream()
+                .filter(r -> r[0].equals(LocalDate.of(2024, 1, 15)) && r[1].equals(producer.getId()))
+                .findFirst().orElseThrow();
+        assertThat(producerTag1[2]).isEqualTo(EinheitTyp.PRODUCER);
+        assertThat(((Number) producerTag1[3]).doubleValue()).isCloseTo(-150.0, within(0.001));
+        assertThat(((Number) producerTag1[4]).doubleValue()).isCloseTo(-120.0, within(0.001));
+        assertThat(producerTag1[5]).isNull(); // nur null-Werte
+
+        Object[] consumerTag1 = rows.stream()
+                .filter(r -> r[1].equals(consumer1.getId()))
+                .findFirst().orElseThrow();
+        assertThat(((Number) consumerTag1[3]).doubleValue()).isCloseTo(100.0, within(0.001));
+        assertThat(((Number) consumerTag1[4]).doubleValue()).isCloseTo(80.0, within(0.001));
+        assertThat(((Number) consumerTag1[5]).doubleValue()).isCloseTo(80.0, within(0.001));
+
+        assertThat(rows).noneMatch(r -> r[1].equals(consumer2.getId()));
+    }
+
+    @Test
+    void sumByEinheitAndBucket_ZeitumstellungHerbst_24StundenBuckets() {
+        // 27.10.2024 (03:00 → 02:00) im lokalen 15-Minuten-Raster: 96 Zeitpunkte, 02:xx nur einmal
+        LocalDate tag = LocalDate.of(2024, 10, 27);
+        for (int i = 0; i < 96; i++) {
+            messwerteRepository.save(createMesswerte(tag.atStartOfDay().plusMinutes(15L * i), consumer1,
+                    1.0, 0.5, null));
+        }
+
+        List<Object[]> rows = messwerteRepository.sumByEinheitAndBucket(TEST_ORG_ID, "hour",
+                List.of(consumer1.getId()), tag.atStartOfDay(), tag.plusDays(1).atStartOfDay());
+
+        // Gebuckt wird auf lokaler Uhrzeit: keine 25 Stunden, die doppelte Stunde ist ein Bucket
+        assertThat(rows).hasSize(24);
+        assertThat(rows).allSatisfy(r -> assertThat(((Number) r[2]).doubleValue()).isCloseTo(4.0, within(0.001)));
+    }
+
     @Test
     void shouldFindByDate() {
         // Given
@@ -376,6 +403,30 @@ class MesswerteRepositoryIT extends AbstractIntegrationTest {
         assertThat(day2Data).hasSize(1);
     }
 
+    @Test
+    void findUnverteilteConsumerZeitraeume_NurGestreamteConsumerOhneVerteilung() {
+        // Given: MQTT-Consumer ohne zev_calculated 10:00 und 10:30; verteilt, CSV, Producer und zu alt zählen nicht
+        LocalDateTime ab = LocalDateTime.of(2024, 1, 15, 0, 0);
+        Messwerte offen1 = createMesswerte(ab.plusHours(10), consumer1, 1.0, 0.0, null);
+        Messwerte offen2 = createMesswerte(ab.plusHours(10).plusMinutes(30), consumer2, 1.0, 0.0, null);
+        Messwerte verteilt = createMesswerte(ab.plusHours(11), consumer1, 1.0, 0.5, 0.5);
+        Messwerte csv = createMesswerte(ab.plusHours(12), consumer1, 1.0, 0.0, null);
+        Messwerte produzent = createMesswerte(ab.plusHours(13), producer, -1.0, 0.0, null);
+        Messwerte zuAlt = createMesswerte(ab.minusHours(1), consumer1, 1.0, 0.0, null);
+        for (Messwerte m : List.of(offen1, offen2, verteilt, produzent, zuAlt)) {
+            m.setQuelle(Quelle.MQTT);
+        }
+        csv.setQuelle(Quelle.CSV);
+        messwerteRepository.saveAll(List.of(offen1, offen2, verteilt, csv, produzent, zuAlt));
+
+        // When
+        List<Object[]> zeitraeume = messwerteRepository.findUnverteilteConsumerZeitraeume(Quelle.MQTT, ab);
+
+        // Then
+        assertThat(zeitraeume).hasSize(1);
+        assertThat(zeitraeume.get(0)).containsExactly(TEST_ORG_ID, ab.plusHours(10), ab.plusHours(10).plusMinutes(30));
+    }
+
     private Messwerte createMesswerte(LocalDateTime zeit, Einheit einheit, Double total, Double zev, Double zevCalculated) {
         Messwerte m = new Messwerte(zeit, total, zev, einheit);
         m.setOrgId(TEST_ORG_ID);
@@ -15,6 +15,7 @@ import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabas
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -234,6 +235,93 @@ class ZaehlerRohdatenRepositoryIT extends AbstractIntegrationTest {
         assertThat(result.get().getSeriennummer()).isEqualTo(genau64);
     }
 
+    // --- findIntervallDeltas (mengenbasierte Aggregation) --------------------
+
+    private List<Object[]> intervallDeltas(LocalDateTime von, LocalDateTime bis) {
+        entityManager.flush();
+        return rohdatenRepository.findIntervallDeltas(einheitId, von, bis);
+    }
+
+    private static LocalDateTime zeit(Object wert) {
+        return wert instanceof Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) wert;
+    }
+
+    @Test
+    void findIntervallDeltas_Intervallgrenzen_StandAufGrenzeGehoertZumEndendenIntervall() {
+        save(LocalDateTime.of(2026, 1, 1, 9, 55), "90.0", "1.0", true);
+        save(LocalDateTime.of(2026, 1, 1, 10, 0), "100.0", "2.0", true);   // Referenz (<= von)
+        save(LocalDateTime.of(2026, 1, 1, 10, 15), "110.0", "3.0", false); // Ende (10:00, 10:15]
+        save(LocalDateTime.of(2026, 1, 1, 10, 16), "115.0", "3.5", false); // (10:15, 10:30]
+        save(LocalDateTime.of(2026, 1, 1, 10, 29), "120.0", "4.0", false); // letzter Stand (10:15, 10:30]
+        save(LocalDateTime.of(2026, 1, 1, 10, 45), "130.0", "5.0", false); // Ende (10:30, 10:45]
+        save(LocalDateTime.of(2026, 1, 1, 10, 46), "140.0", "6.0", false); // nach bis
+
+        List<Object[]> zeilen = intervallDeltas(LocalDateTime.of(2026, 1, 1, 10, 0),
+                LocalDateTime.of(2026, 1, 1, 10, 45));
+
+        assertThat(zeilen).hasSize(3);
+        assertThat(zeit(zeilen.get(0)[0])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 15));
+        assertThat(zeit(zeilen.get(0)[1])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 0));
+        assertThat((BigDecimal) zeilen.get(0)[2]).isEqualByComparingTo("10.0");
+        assertThat((BigDecimal) zeilen.get(0)[3]).isEqualByComparingTo("1.0");
+        assertThat(zeit(zeilen.get(1)[0])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 30));
+        assertThat(zeit(zeilen.get(1)[1])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 15));
+        assertThat((BigDecimal) zeilen.get(1)[2]).isEqualByComparingTo("10.0");
+        assertThat(zeit(zeilen.get(2)[0])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 45));
+        assertThat(zeit(zeilen.get(2)[1])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 29));
+        assertThat((BigDecimal) zeilen.get(2)[2]).isEqualByComparingTo("10.0");
+    }
+
+    @Test
+    void findIntervallDeltas_Luecke_ReferenzIstLetztesBelegtesIntervall() {
+        save(LocalDateTime.of(2026, 1, 1, 10, 5), "100.0", "0.0", false);
+        save(LocalDateTime.of(2026, 1, 1, 10, 50), "130.0", "0.0", false);
+
+        List<Object[]> zeilen = intervallDeltas(LocalDateTime.of(2026, 1, 1, 10, 0),
+                LocalDateTime.of(2026, 1, 1, 11, 0));
+
+        // Leere Intervalle liefern keine Zeile; ohne Stand <= von keine Referenz
+        assertThat(zeilen).hasSize(2);
+        assertThat(zeit(zeilen.get(0)[0])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 15));
+        assertThat(zeilen.get(0)[1]).isNull();
+        assertThat(zeilen.get(0)[2]).isNull();
+        assertThat(zeit(zeilen.get(1)[0])).isEqualTo(LocalDateTime.of(2026, 1, 1, 11, 0));
+        assertThat(zeit(zeilen.get(1)[1])).isEqualTo(LocalDateTime.of(2026, 1, 1, 10, 5));
+        assertThat((BigDecimal) zeilen.get(1)[2]).isEqualByComparingTo("30.0");
+    }
+
+    @Test
+    void findIntervallDeltas_ZaehlerReset_DeltaRohNegativ() {
+        save(LocalDateTime.of(2026, 1, 1, 10, 0), "1000.0", "50.0", true);
+        save(LocalDateTime.of(2026, 1, 1, 10, 10), "5.0", "1.0", false);
+
+        List<Object[]> zeilen = intervallDeltas(LocalDateTime.of(2026, 1, 1, 10, 0),
+                LocalDateTime.of(2026, 1, 1, 10, 15));
+
+        // Reset-Guard macht der Aufrufer – die Abfrage liefert das rohe Delta
+        assertThat(zeilen).hasSize(1);
+        assertThat((BigDecimal) zeilen.get(0)[2]).isEqualByComparingTo("-995.0");
+        assertThat((BigDecimal) zeilen.get(0)[3]).isEqualByComparingTo("-49.0");
+    }
+
+    @Test
+    void findIntervallDeltas_Zaehlertausch_LiefertBeideSeriennummern() {
+        save(LocalDateTime.of(2026, 1, 1, 10, 0), "1000.0", "0.0", true, "WAGO-ALT");
+        save(LocalDateTime.of(2026, 1, 1, 10, 10), "2.0", "0.0", false, "WAGO-NEU");
+        save(LocalDateTime.of(2026, 1, 1, 10, 25), "7.0", "0.0", false, "WAGO-NEU");
+
+        List<Object[]> zeilen = intervallDeltas(LocalDateTime.of(2026, 1, 1, 10, 0),
+                LocalDateTime.of(2026, 1, 1, 10, 30));
+
+        assertThat(zeilen).hasSize(2);
+        assertThat(zeilen.get(0)[4]).isEqualTo("WAGO-ALT");
+        assertThat(zeilen.get(0)[5]).isEqualTo("WAGO-NEU");
+        // Nach dem Tausch stammen Referenz und Stand vom neuen Zähler
+        assertThat(zeilen.get(1)[4]).isEqualTo("WAGO-NEU");
+        assertThat(zeilen.get(1)[5]).isEqualTo("WAGO-NEU");
+        assertThat((BigDecimal) zeilen.get(1)[2]).isEqualByComparingTo("5.0");
+    }
+
     @Test
     void findAllByOrgIdAndMesspunkt_Found_ReturnsEinheit() {
         List<Einheit> result = einheitRepository.findAllByOrgIdAndMesspunkt(orgId, MESSPUNKT);
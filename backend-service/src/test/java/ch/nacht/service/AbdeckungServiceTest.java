@@ -0,0 +1,172 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.AbdeckungsLueckeDTO;
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.repository.EinheitRepository;
+import ch.nacht.repository.MesswerteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AbdeckungServiceTest {
+
+    private static final Long ORG_ID = 5L;
+    private static final LocalDate TAG_1 = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TAG_2 = LocalDate.of(2024, 1, 2);
+    /** Alle 96 Intervalle gesetzt. */
+    private static final long[] VOLL = {-1L, 0xFFFF_FFFF_0000_0000L};
+
+    @Mock
+    private MesswerteRepository messwerteRepository;
+
+    @Mock
+    private EinheitRepository einheitRepository;
+
+    @Mock
+    private HibernateFilterService hibernateFilterService;
+
+    @Mock
+    private OrganizationContextService organizationContextService;
+
+    private AbdeckungService abdeckungService;
+
+    private Einheit wohnung;
+    private Einheit solar;
+
+    @BeforeEach
+    void setUp() {
+        wohnung = new Einheit("Wohnung A", EinheitTyp.CONSUMER);
+        wohnung.setId(1L);
+        solar = new Einheit("Solaranlage", EinheitTyp.PRODUCER);
+        solar.setId(2L);
+        lenient().when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        lenient().when(einheitRepository.findAll()).thenReturn(List.of(wohnung, solar));
+        abdeckungService = new AbdeckungService(messwerteRepository, einheitRepository, hibernateFilterService,
+                organizationContextService, uhr(TAG_2.plusDays(1).atStartOfDay()));
+    }
+
+    private static Clock uhr(LocalDateTime jetzt) {
+        ZoneId zone = ZoneId.of("Europe/Zurich");
+        return Clock.fixed(jetzt.atZone(zone).toInstant(), zone);
+    }
+
+    /** Bitmap mit allen Intervallen ausser den angegebenen. */
+    private static long[] ohne(int... slots) {
+        long[] bitmap = VOLL.clone();
+        for (int slot : slots) {
+            bitmap[slot / 64] &= ~(1L << (63 - slot % 64));
+        }
+        return bitmap;
+    }
+
+    private static Object[] zeile(long einheitId, LocalDate tag, long[] bitmap) {
+        return new Object[]{einheitId, Date.valueOf(tag), bitmap[0], bitmap[1]};
+    }
+
+    @Test
+    void gesetzt_BitNullIstErstesIntervallDesTages() {
+        long[] nurErstes = {Long.MIN_VALUE, 0L};
+        long[] nurLetztes = {0L, 1L << 32};
+
+        assertTrue(AbdeckungService.gesetzt(nurErstes, 0));
+        assertFalse(AbdeckungService.gesetzt(nurErstes, 1));
+        assertTrue(AbdeckungService.gesetzt(nurLetztes, 95));
+        assertFalse(AbdeckungService.gesetzt(nurLetztes, 64));
+    }
+
+    @Test
+    void ermittleLuecken_LueckeUeberTagesgrenzeWirdZusammengefasst() {
+        // Wohnung: 23:30 und 23:45 am 1.1. sowie 00:00 am 2.1. fehlen; Solar: 2.1. fehlt ganz
+        when(messwerteRepository.findAbdeckungBetween(ORG_ID, TAG_1, TAG_2)).thenReturn(List.of(
+                zeile(1L, TAG_1, ohne(94, 95)),
+                zeile(1L, TAG_2, ohne(0)),
+                zeile(2L, TAG_1, VOLL)));
+
+        List<AbdeckungsLueckeDTO> luecken = abdeckungService.ermittleLuecken(TAG_1, TAG_2);
+
+        assertEquals(2, luecken.size());
+        assertEquals(new AbdeckungsLueckeDTO(1L, "Wohnung A", TAG_1.atTime(23, 30), TAG_2.atStartOfDay(), 3),
+                luecken.get(0));
+        assertEquals(new AbdeckungsLueckeDTO(2L, "Solaranlage", TAG_2.atStartOfDay(), TAG_2.atTime(23, 45), 96),
+                luecken.get(1));
+    }
+
+    @Test
+    void ermittleLuecken_JetztAusUhr_SpaetereIntervalleSindKeineLuecke() {
+        abdeckungService = new AbdeckungService(messwerteRepository, einheitRepository, hibernateFilterService,
+                organizationContextService, uhr(TAG_1.atTime(0, 30)));
+        when(messwerteRepository.findAbdeckungBetween(ORG_ID, TAG_1, TAG_1)).thenReturn(List.of(
+                zeile(1L, TAG_1, VOLL)));
+
+        List<AbdeckungsLueckeDTO> luecken = abdeckungService.ermittleLuecken(TAG_1, TAG_1);
+
+        // Solar ohne Bitmap: nur 00:00 bis 00:30 zählen, der Rest des Tages liegt nach "jetzt"
+        assertEquals(List.of(new AbdeckungsLueckeDTO(2L, "Solaranlage", TAG_1.atStartOfDay(), TAG_1.atTime(0, 30), 3)),
+                luecken);
+    }
+
+    @Test
+    void sammleLuecken_IntervalleNachJetztSindKeineLuecke() {
+        List<AbdeckungsLueckeDTO> luecken = new ArrayList<>();
+
+        AbdeckungService.sammleLuecken(wohnung, Map.of(TAG_1, ohne(10, 11, 12, 13, 14, 15)), TAG_1, TAG_1,
+                LocalDateTime.of(2024, 1, 1, 3, 0), luecken);
+
+        // 02:30 bis 03:00 abgefragt, 03:15 und 03:30 liegen nach "jetzt"
+        assertEquals(List.of(new AbdeckungsLueckeDTO(1L, "Wohnung A",
+                TAG_1.atTime(2, 30), TAG_1.atTime(3, 0), 3)), luecken);
+    }
+
+    @Test
+    void ermittleLuecken_LadestationOhneMesswerte_NichtImBericht() {
+        Einheit ladestation = new Einheit("Ladestation 1", EinheitTyp.LADESTATION);
+        ladestation.setId(3L);
+        when(einheitRepository.findAll()).thenReturn(List.of(wohnung, ladestation));
+        when(messwerteRepository.findAbdeckungBetween(ORG_ID, TAG_1, TAG_2)).thenReturn(List.of(
+                zeile(1L, TAG_1, VOLL),
+                zeile(1L, TAG_2, VOLL)));
+
+        assertEquals(List.of(), abdeckungService.ermittleLuecken(TAG_1, TAG_2));
+    }
+
+    @Test
+    void sammleLuecken_SommerzeitUmstellung_FehlendeStundeIstKeineLuecke() {
+        // 31.03.2024: 02:00 bis 02:45 (Intervalle 8–11) existieren in Europe/Zurich nicht
+        LocalDate umstellung = LocalDate.of(2024, 3, 31);
+        List<AbdeckungsLueckeDTO> luecken = new ArrayList<>();
+
+        AbdeckungService.sammleLuecken(wohnung, Map.of(umstellung, ohne(8, 9, 10, 11)), umstellung, umstellung,
+                umstellung.plusDays(1).atStartOfDay(), luecken);
+
+        assertEquals(List.of(), luecken);
+    }
+
+    @Test
+    void sammleLuecken_SommerzeitUmstellung_LueckeUeberFehlendeStunde() {
+        // 01:45 und 03:00 fehlen → eine Lücke aus zwei Intervallen, die Stunde 02:00 zählt nicht
+        LocalDate umstellung = LocalDate.of(2024, 3, 31);
+        List<AbdeckungsLueckeDTO> luecken = new ArrayList<>();
+
+        AbdeckungService.sammleLuecken(wohnung, Map.of(umstellung, ohne(7, 8, 9, 10, 11, 12)), umstellung,
+                umstellung, umstellung.plusDays(1).atStartOfDay(), luecken);
+
+        assertEquals(List.of(new AbdeckungsLueckeDTO(1L, "Wohnung A",
+                umstellung.atTime(1, 45), umstellung.atTime(3, 0), 2)), luecken);
+    }
+}
@@ -0,0 +1,52 @@
+package ch.nacht.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatenVersionServiceTest {
+
+    private final DatenVersionService service = new DatenVersionService();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void version_OhneAenderung_IstNull() {
+        assertEquals(0L, service.version(1L));
+    }
+
+    @Test
+    void erhoehe_OhneTransaktion_ErhoehtSofortNurFuerDenMandanten() {
+        service.erhoehe(1L);
+        service.erhoehe(1L);
+
+        assertEquals(2L, service.version(1L));
+        assertEquals(0L, service.version(2L));
+    }
+
+    @Test
+    void erhoehe_InTransaktion_ErstNachCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.erhoehe(1L);
+
+        assertEquals(0L, service.version(1L), "vor dem Commit unverändert");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1L, service.version(1L));
+    }
+
+    @Test
+    void erhoehe_OhneMandant_WirdIgnoriert() {
+        service.erhoehe(null);
+
+        assertEquals(0L, service.version(null));
+    }
+}
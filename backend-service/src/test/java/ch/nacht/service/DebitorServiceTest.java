@@ -2,19 +2,25 @@ package ch.nacht.service;
 
 import ch.nacht.dto.DebitorDTO;
 import ch.nacht.entity.Debitor;
-import ch.nacht.entity.Einheit;
 import ch.nacht.entity.Mieter;
 import ch.nacht.repository.DebitorRepository;
-import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.MieterEinheitRepository;
 import ch.nacht.repository.MieterRepository;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -24,6 +30,8 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,15 +46,15 @@ public class DebitorServiceTest {
     @Mock
     private MieterEinheitRepository mieterEinheitRepository;
 
-    @Mock
-    private EinheitRepository einheitRepository;
-
     @Mock
     private OrganizationContextService organizationContextService;
 
     @Mock
     private HibernateFilterService hibernateFilterService;
 
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
     @InjectMocks
     private DebitorService debitorService;
 
@@ -58,7 +66,6 @@ public class DebitorServiceTest {
     private Debitor testDebitor1;
     private Debitor testDebitor2;
     private Mieter testMieter;
-    private Einheit testEinheit;
 
     @BeforeEach
     void setUp() {
@@ -67,10 +74,6 @@ public class DebitorServiceTest {
         testMieter.setName("Max Muster");
         testMieter.setEinheitIds(java.util.List.of(5L));
 
-        testEinheit = new Einheit();
-        testEinheit.setId(5L);
-        testEinheit.setName("EG links");
-
         testDebitor1 = new Debitor();
         testDebitor1.setId(1L);
         testDebitor1.setOrgId(ORG_ID);
@@ -93,11 +96,10 @@ public class DebitorServiceTest {
 
     @Test
     void getDebitoren_ReturnsDTOList() {
-        when(debitorRepository.findByDatumVonBetween(VON, BIS))
-                .thenReturn(List.of(testDebitor1));
-        when(mieterRepository.findById(10L)).thenReturn(Optional.of(testMieter));
-        when(mieterEinheitRepository.findEinheitIdsByMieterId(10L)).thenReturn(List.of(5L));
-        when(einheitRepository.findById(5L)).thenReturn(Optional.of(testEinheit));
+        when(debitorRepository.findMitMieterNameByDatumVonBetween(VON, BIS))
+                .thenReturn(List.<Object[]>of(new Object[]{testDebitor1, "Max Muster"}));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L)))
+                .thenReturn(List.<Object[]>of(new Object[]{10L, "EG links"}));
 
         List<DebitorDTO> result = debitorService.getDebitoren(VON, BIS);
 
@@ -106,22 +108,51 @@ public class DebitorServiceTest {
         assertEquals("Max Muster", result.get(0).getMieterName());
         assertEquals("EG links", result.get(0).getEinheitName());
         verify(hibernateFilterService).enableOrgFilter();
+        verifyNoInteractions(mieterRepository);
+    }
+
+    @Test
+    void getDebitoren_MehrereDebitoren_EinheitenMitEinerAbfrage() {
+        Debitor andererMieter = new Debitor();
+        andererMieter.setId(3L);
+        andererMieter.setMieterId(20L);
+        andererMieter.setBetrag(new BigDecimal("50.00"));
+        andererMieter.setDatumVon(VON);
+        andererMieter.setDatumBis(BIS);
+        when(debitorRepository.findMitMieterNameByDatumVonBetween(VON, BIS)).thenReturn(List.of(
+                new Object[]{testDebitor1, "Max Muster"},
+                new Object[]{testDebitor2, "Max Muster"},
+                new Object[]{andererMieter, "Eva Beispiel"}));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L, 20L))).thenReturn(List.of(
+                new Object[]{10L, "EG links"},
+                new Object[]{20L, "OG rechts"},
+                new Object[]{10L, "Ladestation 1"}));
+
+        List<DebitorDTO> result = debitorService.getDebitoren(VON, BIS);
+
+        assertEquals(3, result.size());
+        assertEquals("EG links, Ladestation 1", result.get(0).getEinheitName());
+        assertEquals("EG links, Ladestation 1", result.get(1).getEinheitName());
+        assertEquals("OG rechts", result.get(2).getEinheitName());
+        verify(mieterEinheitRepository, times(1)).findEinheitNamenByMieterIdIn(any());
     }
 
     @Test
     void getDebitoren_EmptyRange_ReturnsEmptyList() {
-        when(debitorRepository.findByDatumVonBetween(any(), any())).thenReturn(List.of());
+        when(debitorRepository.findMitMieterNameByDatumVonBetween(any(), any())).thenReturn(List.of());
 
         List<DebitorDTO> result = debitorService.getDebitoren(VON, BIS);
 
         assertTrue(result.isEmpty());
         verify(hibernateFilterService).enableOrgFilter();
+        verifyNoInteractions(mieterEinheitRepository);
     }
 
     @Test
     void getDebitoren_MieterNotFound_EinheitNameIsNull() {
-        when(debitorRepository.findByDatumVonBetween(VON, BIS)).thenReturn(List.of(testDebitor1));
-        when(mieterRepository.findById(10L)).thenReturn(Optional.empty());
+        when(debitorRepository.findMitMieterNameByDatumVonBetween(VON, BIS))
+                .thenReturn(List.<Object[]>of(new Object[]{testDebitor1, null}));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L))).thenReturn(List.of());
 
         List<DebitorDTO> result = debitorService.getDebitoren(VON, BIS);
 
@@ -132,10 +163,9 @@ public class DebitorServiceTest {
 
     @Test
     void getDebitoren_EinheitNotFound_EinheitNameIsNull() {
-        when(debitorRepository.findByDatumVonBetween(VON, BIS)).thenReturn(List.of(testDebitor1));
-        when(mieterRepository.findById(10L)).thenReturn(Optional.of(testMieter));
-        when(mieterEinheitRepository.findEinheitIdsByMieterId(10L)).thenReturn(List.of(5L));
-        when(einheitRepository.findById(5L)).thenReturn(Optional.empty());
+        when(debitorRepository.findMitMieterNameByDatumVonBetween(VON, BIS))
+                .thenReturn(List.<Object[]>of(new Object[]{testDebitor1, "Max Muster"}));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L))).thenReturn(List.of());
 
         List<DebitorDTO> result = debitorService.getDebitoren(VON, BIS);
 
@@ -144,14 +174,51 @@ public class DebitorServiceTest {
         assertNull(result.get(0).getEinheitName());
     }
 
+    // ==================== getSeite ====================
+
+    @Test
+    void getSeite_SortierungUndSuchmuster() {
+        when(debitorRepository.findMitMieterNameByFilter(eq(VON), eq(BIS), eq(true), eq("%muster%"), any()))
+                .thenReturn(new SliceImpl<>(List.<Object[]>of(new Object[]{testDebitor1, "Max Muster"}),
+                        PageRequest.of(2, 10), true));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L)))
+                .thenReturn(List.<Object[]>of(new Object[]{10L, "EG links"}));
+
+        Slice<DebitorDTO> seite = debitorService.getSeite(VON, BIS, true, " Muster ", 2, 10, "mieterName", "desc");
+
+        assertEquals(1, seite.getContent().size());
+        assertEquals("EG links", seite.getContent().get(0).getEinheitName());
+        assertTrue(seite.hasNext());
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(debitorRepository).findMitMieterNameByFilter(any(), any(), any(), any(), pageable.capture());
+        assertEquals(2, pageable.getValue().getPageNumber());
+        assertEquals(10, pageable.getValue().getPageSize());
+        assertEquals(Sort.by(Sort.Direction.DESC, "m.name").and(Sort.by("d.id")), pageable.getValue().getSort());
+        verify(hibernateFilterService).enableOrgFilter();
+    }
+
+    @Test
+    void getSeite_UnbekannteSpalteOhneSuche_NachDatumVon() {
+        when(debitorRepository.findMitMieterNameByFilter(eq(VON), eq(BIS), isNull(), isNull(), any()))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 50), false));
+
+        Slice<DebitorDTO> seite = debitorService.getSeite(VON, BIS, null, "  ", 0, 50, "org_id; DROP", "ASC");
+
+        assertTrue(seite.getContent().isEmpty());
+        assertFalse(seite.hasNext());
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(debitorRepository).findMitMieterNameByFilter(any(), any(), any(), any(), pageable.capture());
+        assertEquals(Sort.by("d.datumVon").and(Sort.by("d.id")), pageable.getValue().getSort());
+    }
+
     // ==================== getDebitorById ====================
 
     @Test
     void getDebitorById_Found_ReturnsDTO() {
         when(debitorRepository.findById(1L)).thenReturn(Optional.of(testDebitor1));
         when(mieterRepository.findById(10L)).thenReturn(Optional.of(testMieter));
-        when(mieterEinheitRepository.findEinheitIdsByMieterId(10L)).thenReturn(List.of(5L));
-        when(einheitRepository.findById(5L)).thenReturn(Optional.of(testEinheit));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L)))
+                .thenReturn(List.<Object[]>of(new Object[]{10L, "EG links"}));
 
         Optional<DebitorDTO> result = debitorService.getDebitorById(1L);
 
@@ -179,8 +246,8 @@ public class DebitorServiceTest {
         when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
         when(debitorRepository.save(any())).thenReturn(testDebitor1);
         when(mieterRepository.findById(10L)).thenReturn(Optional.of(testMieter));
-        when(mieterEinheitRepository.findEinheitIdsByMieterId(10L)).thenReturn(List.of(5L));
-        when(einheitRepository.findById(5L)).thenReturn(Optional.of(testEinheit));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L)))
+                .thenReturn(List.<Object[]>of(new Object[]{10L, "EG links"}));
 
         DebitorDTO result = debitorService.create(dto);
 
@@ -298,8 +365,8 @@ public class DebitorServiceTest {
         when(debitorRepository.findById(1L)).thenReturn(Optional.of(testDebitor1));
         when(debitorRepository.save(testDebitor1)).thenReturn(testDebitor1);
         when(mieterRepository.findById(10L)).thenReturn(Optional.of(testMieter));
-        when(mieterEinheitRepository.findEinheitIdsByMieterId(10L)).thenReturn(List.of(5L));
-        when(einheitRepository.findById(5L)).thenReturn(Optional.of(testEinheit));
+        when(mieterEinheitRepository.findEinheitNamenByMieterIdIn(List.of(10L)))
+                .thenReturn(List.<Object[]>of(new Object[]{10L, "EG links"}));
 
         DebitorDTO result = debitorService.update(1L, dto);
 
@@ -399,6 +466,33 @@ public class DebitorServiceTest {
         verify(debitorRepository).upsert(10L, new BigDecimal("125.50"), VON, BIS, ORG_ID);
     }
 
+    // ==================== upsertFromRechnungen ====================
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upsertFromRechnungen_EinBatchSortiertNachSchluessel() {
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        DebitorService.RechnungsForderung mieter20 =
+                new DebitorService.RechnungsForderung(20L, new BigDecimal("80.00"), VON, BIS);
+        DebitorService.RechnungsForderung mieter10 =
+                new DebitorService.RechnungsForderung(10L, new BigDecimal("125.50"), VON, BIS);
+
+        debitorService.upsertFromRechnungen(List.of(mieter20, mieter10));
+
+        ArgumentCaptor<List<DebitorService.RechnungsForderung>> zeilen = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("ON CONFLICT (mieter_id, datum_von, org_id)"),
+                zeilen.capture(), eq(2), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(List.of(mieter10, mieter20), zeilen.getValue());
+        verify(debitorRepository, never()).upsert(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void upsertFromRechnungen_Leer_KeinBatch() {
+        debitorService.upsertFromRechnungen(List.of());
+
+        verifyNoInteractions(jdbcTemplate, organizationContextService);
+    }
+
     // ==================== Helpers ====================
 
     private DebitorDTO buildValidDTO() {
@@ -38,6 +38,9 @@ public class EinheitServiceTest {
     @Mock
     private HibernateFilterService hibernateFilterService;
 
+    @Mock
+    private DatenVersionService datenVersionService;
+
     @InjectMocks
     private EinheitService einheitService;
 
@@ -126,6 +129,7 @@ public class EinheitServiceTest {
         verify(hibernateFilterService).enableOrgFilter();
         verify(organizationContextService).getCurrentOrgId();
         verify(einheitRepository).save(newEinheit);
+        verify(datenVersionService).erhoehe(testOrgId);
     }
 
     @Test
@@ -234,6 +238,7 @@ public class EinheitServiceTest {
         assertFalse(result);
         verify(hibernateFilterService).enableOrgFilter();
         verify(einheitRepository, never()).deleteById(anyLong());
+        verifyNoInteractions(datenVersionService);
     }
 
     // ==================== RFID-Eindeutigkeit der Ladestationen ====================
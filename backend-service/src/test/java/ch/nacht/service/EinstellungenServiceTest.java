@@ -30,6 +30,9 @@ public class EinstellungenServiceTest {
     @Mock
     private OrganizationContextService organizationContextService;
 
+    @Mock
+    private DatenVersionService datenVersionService;
+
     @InjectMocks
     private EinstellungenService einstellungenService;
 
@@ -235,6 +238,7 @@ public class EinstellungenServiceTest {
 
         verify(organisationRepository).findById(orgId1);
         verify(organisationRepository, never()).findById(orgId2);
+        verify(datenVersionService).erhoehe(orgId1);
     }
 
     // ==================== getEinstellungenForOrg Tests (org-explizit) ====================
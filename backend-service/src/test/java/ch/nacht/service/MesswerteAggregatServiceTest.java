@@ -0,0 +1,147 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.MesswerteAggregatDTO;
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.repository.EinheitRepository;
+import ch.nacht.repository.MesswerteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MesswerteAggregatServiceTest {
+
+    private static final Long ORG_ID = 3L;
+
+    @Mock
+    private MesswerteRepository messwerteRepository;
+
+    @Mock
+    private EinheitRepository einheitRepository;
+
+    @Mock
+    private HibernateFilterService hibernateFilterService;
+
+    @Mock
+    private OrganizationContextService organizationContextService;
+
+    @InjectMocks
+    private MesswerteAggregatService messwerteAggregatService;
+
+    private Einheit wohnung;
+    private Einheit solar;
+
+    @BeforeEach
+    void setUp() {
+        wohnung = new Einheit("Wohnung A", EinheitTyp.CONSUMER);
+        wohnung.setId(1L);
+        solar = new Einheit("Solaranlage", EinheitTyp.PRODUCER);
+        solar.setId(2L);
+        lenient().when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+    }
+
+    private static Object[] zeile(long einheitId, LocalDateTime beginn, Double total, Double zev, Double zevCalc) {
+        return new Object[]{einheitId, Timestamp.valueOf(beginn), total, zev, zevCalc};
+    }
+
+    @Test
+    void aggregiere_StundenUeberZeitumstellung_OffsetJeBucket() {
+        // 31.03.2024: 02:00 fehlt lokal (Sommerzeit ab 02:00 → 03:00)
+        LocalDate tag = LocalDate.of(2024, 3, 31);
+        List<Object[]> zeilen = new ArrayList<>();
+        zeilen.add(zeile(1L, tag.atTime(1, 0), 1.0, 0.5, 0.4));
+        zeilen.add(zeile(1L, tag.atTime(3, 0), 2.0, 1.0, null));
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(wohnung));
+        when(messwerteRepository.sumByEinheitAndBucket(ORG_ID, "hour", List.of(1L),
+                tag.atStartOfDay(), tag.plusDays(1).atStartOfDay())).thenReturn(zeilen);
+
+        MesswerteAggregatDTO result = messwerteAggregatService.aggregiere(
+                MesswerteAggregatService.Bucket.HOUR, List.of(1L), tag, tag);
+
+        assertEquals("hour", result.bucket());
+        MesswerteAggregatDTO.Reihe reihe = result.einheiten().getFirst();
+        assertEquals(List.of(
+                OffsetDateTime.of(tag.atTime(1, 0), ZoneOffset.ofHours(1)),
+                OffsetDateTime.of(tag.atTime(3, 0), ZoneOffset.ofHours(2))), reihe.zeit());
+        assertArrayEquals(new double[]{1.0, 2.0}, reihe.total());
+        assertArrayEquals(new double[]{0.5, 1.0}, reihe.zev());
+        assertArrayEquals(new double[]{0.4, 0.0}, reihe.zevCalculated(), "SQL-NULL → 0");
+        verify(hibernateFilterService).enableOrgFilter();
+    }
+
+    @Test
+    void aggregiere_StundenUeberZeitumstellungHerbst_DoppelteStundeEinBucketMitSommerzeitOffset() {
+        // 27.10.2024: 03:00 → 02:00, die Stunde 02:00 gibt es lokal zweimal
+        LocalDate tag = LocalDate.of(2024, 10, 27);
+        List<Object[]> zeilen = new ArrayList<>();
+        zeilen.add(zeile(1L, tag.atTime(1, 0), 1.0, 0.0, 0.0));
+        zeilen.add(zeile(1L, tag.atTime(2, 0), 2.0, 0.0, 0.0));
+        zeilen.add(zeile(1L, tag.atTime(3, 0), 3.0, 0.0, 0.0));
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(wohnung));
+        when(messwerteRepository.sumByEinheitAndBucket(ORG_ID, "hour", List.of(1L),
+                tag.atStartOfDay(), tag.plusDays(1).atStartOfDay())).thenReturn(zeilen);
+
+        MesswerteAggregatDTO result = messwerteAggregatService.aggregiere(
+                MesswerteAggregatService.Bucket.HOUR, List.of(1L), tag, tag);
+
+        MesswerteAggregatDTO.Reihe reihe = result.einheiten().getFirst();
+        assertEquals(List.of(
+                OffsetDateTime.of(tag.atTime(1, 0), ZoneOffset.ofHours(2)),
+                OffsetDateTime.of(tag.atTime(2, 0), ZoneOffset.ofHours(2)),
+                OffsetDateTime.of(tag.atTime(3, 0), ZoneOffset.ofHours(1))), reihe.zeit());
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0}, reihe.total());
+    }
+
+    @Test
+    void aggregiere_EinheitOhneMesswerte_LeereSpaltenInAngefragterReihenfolge() {
+        LocalDate von = LocalDate.of(2024, 1, 1);
+        LocalDate bis = LocalDate.of(2024, 12, 31);
+        List<Object[]> zeilen = new ArrayList<>();
+        zeilen.add(zeile(1L, von.atStartOfDay(), 300.0, 120.0, 110.0));
+        when(einheitRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(solar, wohnung));
+        when(messwerteRepository.sumByEinheitAndBucket(eq(ORG_ID), eq("month"), any(), any(), any()))
+                .thenReturn(zeilen);
+
+        MesswerteAggregatDTO result = messwerteAggregatService.aggregiere(
+                MesswerteAggregatService.Bucket.MONTH, List.of(2L, 1L), von, bis);
+
+        assertEquals(2L, result.einheiten().get(0).einheitId());
+        assertEquals(0, result.einheiten().get(0).total().length);
+        assertEquals(1L, result.einheiten().get(1).einheitId());
+        assertArrayEquals(new double[]{300.0}, result.einheiten().get(1).total());
+    }
+
+    @Test
+    void aggregiere_FremdeEinheit_ThrowsIllegalArgument() {
+        when(einheitRepository.findAllById(List.of(1L, 99L))).thenReturn(List.of(wohnung));
+
+        assertThrows(IllegalArgumentException.class, () -> messwerteAggregatService.aggregiere(
+                MesswerteAggregatService.Bucket.DAY, List.of(1L, 99L), LocalDate.now(), LocalDate.now()));
+        verify(messwerteRepository, never()).sumByEinheitAndBucket(any(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void bucket_Von_IgnoriertGrossKleinschreibungUndLehntUnbekannteAb() {
+        assertEquals(MesswerteAggregatService.Bucket.WEEK, MesswerteAggregatService.Bucket.von("Week"));
+        assertThrows(IllegalArgumentException.class, () -> MesswerteAggregatService.Bucket.von("minute"));
+        assertThrows(IllegalArgumentException.class, () -> MesswerteAggregatService.Bucket.von(null));
+    }
+}
@@ -0,0 +1,175 @@
+package ch.nacht.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MesswerteCsvSchreiberTest {
+
+    private static final LocalDate VON = LocalDate.of(2024, 1, 1);
+    private static final LocalDate BIS = LocalDate.of(2024, 1, 31);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MesswerteCsvSchreiber schreiber;
+    private final List<ResultSet> zeilen = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schreiber = new MesswerteCsvSchreiber(jdbcTemplate, transactionManager);
+        // Cursor-Abfrage: jede Zeile an den RowCallbackHandler (je Durchlauf)
+        lenient().doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (ResultSet rs : zeilen) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    private void zeile(LocalDateTime zeit, double total, double zev) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject(1, LocalDateTime.class)).thenReturn(zeit);
+        when(rs.getDouble(2)).thenReturn(total);
+        when(rs.getDouble(3)).thenReturn(zev);
+        zeilen.add(rs);
+    }
+
+    private String[] schreibe(String titelZeit, String titelTotal, String titelZev) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schreiber.export(1L, 2L, VON, BIS, titelZeit, titelTotal, titelZev).schreibeNach(out);
+        return out.toString(StandardCharsets.UTF_8).split("\n");
+    }
+
+    private String[] schreibe() throws IOException {
+        return schreibe("Datum+Zeit", "Energiebezug Total kWh", "Anteil Bezug aus ZEV kWh");
+    }
+
+    @Test
+    void export_KopfzeileMitTotalsUndEineZeileJeIntervall() throws Exception {
+        zeile(LocalDateTime.of(2024, 1, 1, 0, 0), 1.5, 1.0);
+        zeile(LocalDateTime.of(2024, 1, 1, 0, 15), 2.25, 1.5);
+
+        String[] lines = schreibe();
+
+        assertEquals(3, lines.length, "Kopfzeile + 2 Datenzeilen");
+        // Header: übersetzte Titel + Monatstotal in Klammern (Summe der gerundeten Zeilen)
+        assertEquals("Datum+Zeit,Energiebezug Total kWh (3.750),Anteil Bezug aus ZEV kWh (2.500)", lines[0]);
+        // Datenzeilen: Zeit dd.MM.yyyy HH:mm, Punkt-Dezimal, 3 NKS
+        assertEquals("01.01.2024 00:00,1.500,1.000", lines[1]);
+        assertEquals("01.01.2024 00:15,2.250,1.500", lines[2]);
+        // Beide Durchläufe in einer Transaktion
+        verify(jdbcTemplate, times(2)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        verify(transactionManager).getTransaction(any());
+    }
+
+    @Test
+    void export_HeaderTotalEqualsSumOfRoundedRows() throws Exception {
+        // Drei Intervalle mit 0.0005 → je gerundet auf 0.001; Summe der GERUNDETEN Werte = 0.003
+        // (Summe der Rohwerte 0.0015 gerundet wäre 0.002 → beweist: Header aus Rundungsbasis der Zeilen).
+        zeile(LocalDateTime.of(2024, 1, 1, 0, 0), 0.0005, 0.0004);
+        zeile(LocalDateTime.of(2024, 1, 1, 0, 15), 0.0005, 0.0004);
+        zeile(LocalDateTime.of(2024, 1, 1, 0, 30), 0.0005, 0.0004);
+
+        String[] lines = schreibe();
+
+        assertEquals("Datum+Zeit,Energiebezug Total kWh (0.003),Anteil Bezug aus ZEV kWh (0.000)", lines[0]);
+        assertEquals("01.01.2024 00:00,0.001,0.000", lines[1]);
+        assertEquals("01.01.2024 00:15,0.001,0.000", lines[2]);
+        assertEquals("01.01.2024 00:30,0.001,0.000", lines[3]);
+    }
+
+    @Test
+    void export_RoundsToThreeDecimalsHalfUp() throws Exception {
+        // 1.2345 → 1.235 (HALF_UP), 0.1234 → 0.123
+        zeile(LocalDateTime.of(2024, 12, 31, 23, 45), 1.2345, 0.1234);
+
+        String[] lines = schreibe();
+
+        assertEquals("31.12.2024 23:45,1.235,0.123", lines[1]);
+    }
+
+    @Test
+    void export_EmptyMesswerte_ReturnsHeaderOnlyWithZeroTotals() throws Exception {
+        String[] lines = schreibe();
+
+        assertEquals(1, lines.length, "Nur Kopfzeile, keine Datenzeilen");
+        assertEquals("Datum+Zeit,Energiebezug Total kWh (0.000),Anteil Bezug aus ZEV kWh (0.000)", lines[0]);
+    }
+
+    @Test
+    void export_TitelMitKomma_WirdEscaped() throws Exception {
+        String[] lines = schreibe("Datum, Zeit", "Total", "ZEV");
+
+        assertEquals("\"Datum, Zeit\",Total (0.000),ZEV (0.000)", lines[0]);
+    }
+
+    @Test
+    void export_ClientBrichtAb_IOExceptionWirdWeitergegeben() throws Exception {
+        zeile(LocalDateTime.of(2024, 1, 1, 0, 0), 1.0, 0.5);
+        OutputStream abgebrochen = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        // Grosse Zeilenzahl erzwingt ein Leeren des Puffers während des Cursors
+        for (int i = 0; i < 5_000; i++) {
+            zeilen.add(zeilen.getFirst());
+        }
+
+        assertThrows(IOException.class,
+                () -> schreiber.export(1L, 2L, VON, BIS, "Zeit", "Total", "ZEV").schreibeNach(abgebrochen));
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.0, 1.0005, -1.0005, 1.2344999999999999, 2.2350000000000003, 0.0004999,
+            -0.0004, 123456.7895, 1e-12, 99999999.9995, 1e12 + 0.0005})
+    void tausendstel_IdentischZuBigDecimalHalfUp(double wert) {
+        long erwartet = BigDecimal.valueOf(wert).setScale(3, RoundingMode.HALF_UP).unscaledValue().longValue();
+
+        assertEquals(erwartet, MesswerteCsvSchreiber.tausendstel(wert));
+    }
+
+    @Test
+    void formatiere_DreiNachkommastellenMitVorzeichen() {
+        assertEquals("0.000", MesswerteCsvSchreiber.formatiere(0));
+        assertEquals("0.005", MesswerteCsvSchreiber.formatiere(5));
+        assertEquals("1.050", MesswerteCsvSchreiber.formatiere(1050));
+        assertEquals("-12.345", MesswerteCsvSchreiber.formatiere(-12345));
+    }
+}
@@ -20,11 +20,13 @@ import org.springframework.mock.web.MockMultipartFile;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -57,6 +59,15 @@ public class MesswerteServiceTest {
     @Mock
     private SystemmeldungService systemmeldungService;
 
+    @Mock
+    private StatistikCache statistikCache;
+
+    @Mock
+    private MesswerteSpaltenSchreiber spaltenSchreiber;
+
+    @Mock
+    private DatenVersionService datenVersionService;
+
     @InjectMocks
     private MesswerteService messwerteService;
 
@@ -233,6 +244,9 @@ public class MesswerteServiceTest {
             .findByEinheitAndZeitBetween(any(), vonCaptor.capture(), bisCaptor.capture());
         assertEquals(LocalDateTime.of(2026, 6, 1, 0, 0), vonCaptor.getAllValues().get(0));
         assertEquals(LocalDateTime.of(2026, 6, 30, 23, 59, 59), bisCaptor.getAllValues().get(0));
+        // Statistik-Cache: nur der überschriebene Monat des Mandanten
+        verify(statistikCache).verwerfe(testOrgId, LocalDateTime.of(2026, 6, 1, 0, 0),
+            LocalDateTime.of(2026, 6, 30, 23, 59, 59));
     }
 
     @Test
@@ -554,19 +568,22 @@ public class MesswerteServiceTest {
 
     // ==================== getMesswerteByEinheit Tests ====================
 
+    private static Object[] zeitreihenZeile(Long einheitId, LocalDateTime zeit, Double total, Double zev) {
+        return new Object[]{einheitId, zeit, total, zev};
+    }
+
     @Test
     void getMesswerteByEinheit_ReturnsFormattedData() {
         LocalDate dateFrom = LocalDate.of(2024, 1, 1);
         LocalDate dateTo = LocalDate.of(2024, 1, 31);
         LocalDateTime zeit = LocalDateTime.of(2024, 1, 15, 12, 0);
 
-        Messwerte messwert = new Messwerte(zeit, 5.0, 2.5, consumerEinheit);
-
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumerEinheit));
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumerEinheit), any(), any()))
-            .thenReturn(List.of(messwert));
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(consumerEinheit));
+        when(messwerteRepository.streamZeitreihen(eq(List.of(1L)), eq(dateFrom.atStartOfDay()),
+                eq(dateTo.atTime(23, 59, 59))))
+            .thenReturn(Stream.<Object[]>of(zeitreihenZeile(1L, zeit, 5.0, 2.5)));
 
-        List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(1L, dateFrom, dateTo);
+        List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(1L, dateFrom, dateTo, null);
 
         assertNotNull(result);
         assertEquals(1, result.size());
@@ -578,26 +595,23 @@ public class MesswerteServiceTest {
 
     @Test
     void getMesswerteByEinheit_EinheitNotFound_ThrowsException() {
-        when(einheitRepository.findById(999L)).thenReturn(Optional.empty());
+        when(einheitRepository.findAllById(List.of(999L))).thenReturn(Collections.emptyList());
 
         assertThrows(
             RuntimeException.class,
-            () -> messwerteService.getMesswerteByEinheit(999L, LocalDate.now(), LocalDate.now())
+            () -> messwerteService.getMesswerteByEinheit(999L, LocalDate.now(), LocalDate.now(), null)
         );
+        verify(messwerteRepository, never()).streamZeitreihen(any(), any(), any());
     }
 
     @Test
     void getMesswerteByEinheit_NullValues_DefaultsToZero() {
-        LocalDate dateFrom = LocalDate.of(2024, 1, 1);
-        LocalDate dateTo = LocalDate.of(2024, 1, 31);
-
-        Messwerte messwert = new Messwerte(LocalDateTime.of(2024, 1, 15, 12, 0), null, null, consumerEinheit);
-
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumerEinheit));
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumerEinheit), any(), any()))
-            .thenReturn(List.of(messwert));
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(consumerEinheit));
+        when(messwerteRepository.streamZeitreihen(any(), any(), any()))
+            .thenReturn(Stream.<Object[]>of(zeitreihenZeile(1L, LocalDateTime.of(2024, 1, 15, 12, 0), null, null)));
 
-        List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(1L, dateFrom, dateTo);
+        List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(
+            1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), null);
 
         assertEquals(0.0, result.get(0).get("total"));
         assertEquals(0.0, result.get(0).get("zev"));
@@ -605,17 +619,88 @@ public class MesswerteServiceTest {
 
     @Test
     void getMesswerteByEinheit_EmptyResult_ReturnsEmptyList() {
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumerEinheit));
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumerEinheit), any(), any()))
-            .thenReturn(Collections.emptyList());
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(consumerEinheit));
+        when(messwerteRepository.streamZeitreihen(any(), any(), any())).thenReturn(Stream.empty());
 
         List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(
-            1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+            1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), null);
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    void getMesswerteByEinheit_MaxPoints_ReduziertUndBehaeltSpitzen() {
+        // Ein Tag (96 Werte), flach mit einer total-Spitze um 12:00 und einer zev-Spitze um 18:00
+        LocalDateTime start = LocalDateTime.of(2024, 1, 15, 0, 0);
+        List<Object[]> zeilen = new ArrayList<>();
+        for (int i = 0; i < 96; i++) {
+            zeilen.add(zeitreihenZeile(1L, start.plusMinutes(15L * i), i == 48 ? 9.0 : 1.0, i == 72 ? 4.0 : 0.5));
+        }
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(consumerEinheit));
+        when(messwerteRepository.streamZeitreihen(any(), any(), any())).thenReturn(zeilen.stream());
+
+        List<Map<String, Object>> result = messwerteService.getMesswerteByEinheit(
+            1L, LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 15), 10);
+
+        assertTrue(result.size() <= 10, "höchstens maxPoints Punkte");
+        List<Object> zeiten = result.stream().map(p -> p.get("zeit")).toList();
+        assertEquals(start.toString(), zeiten.getFirst());
+        assertEquals(start.plusMinutes(15L * 95).toString(), zeiten.getLast());
+        assertTrue(zeiten.contains(start.plusHours(12).toString()), "total-Spitze bleibt erhalten");
+        assertTrue(zeiten.contains(start.plusHours(18).toString()), "zev-Spitze bleibt erhalten");
+    }
+
+    @Test
+    void getMesswerteByEinheit_MaxPointsZuKlein_ThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+            () -> messwerteService.getMesswerteByEinheit(1L, LocalDate.now(), LocalDate.now(), 2));
+        verifyNoInteractions(messwerteRepository);
+    }
+
+    @Test
+    void getMesswerteByEinheiten_MehrereEinheiten_EineAbfrageJeEinheitEigeneReihe() {
+        Einheit zweite = new Einheit("Wohnung B", EinheitTyp.CONSUMER);
+        zweite.setId(2L);
+        LocalDateTime zeit = LocalDateTime.of(2024, 1, 15, 12, 0);
+        when(einheitRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(consumerEinheit, zweite));
+        when(messwerteRepository.streamZeitreihen(eq(List.of(1L, 2L)), any(), any())).thenReturn(Stream.of(
+            zeitreihenZeile(1L, zeit, 1.0, 0.5),
+            zeitreihenZeile(1L, zeit.plusMinutes(15), 2.0, 1.0),
+            zeitreihenZeile(2L, zeit, 3.0, 1.5)));
+
+        Map<Long, List<Map<String, Object>>> result = messwerteService.getMesswerteByEinheiten(
+            List.of(1L, 2L, 1L), LocalDate.of(2024, 1, 15), LocalDate.of(2024, 1, 15), null);
+
+        assertEquals(List.of(1L, 2L), List.copyOf(result.keySet()));
+        assertEquals(2, result.get(1L).size());
+        assertEquals(1, result.get(2L).size());
+        assertEquals(3.0, result.get(2L).get(0).get("total"));
+        verify(messwerteRepository, times(1)).streamZeitreihen(any(), any(), any());
+    }
+
+    @Test
+    void getMesswerteSpalten_PrueftEinheitUndUebergibtMandant() {
+        ExportAusgabe ausgabe = out -> { };
+        when(einheitRepository.findAllById(List.of(1L))).thenReturn(List.of(consumerEinheit));
+        when(organizationContextService.getCurrentOrgId()).thenReturn(7L);
+        when(spaltenSchreiber.export(7L, 1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31),
+                MesswerteSpaltenSchreiber.Format.JSON)).thenReturn(ausgabe);
+
+        assertSame(ausgabe, messwerteService.getMesswerteSpalten(1L, LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 1, 31), MesswerteSpaltenSchreiber.Format.JSON));
+        verify(hibernateFilterService).enableOrgFilter();
+    }
+
+    @Test
+    void getMesswerteSpalten_FremdeEinheit_ThrowsIllegalArgument() {
+        when(einheitRepository.findAllById(List.of(999L))).thenReturn(Collections.emptyList());
+
+        assertThrows(IllegalArgumentException.class, () -> messwerteService.getMesswerteSpalten(999L,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), MesswerteSpaltenSchreiber.Format.F32LE));
+        verifyNoInteractions(spaltenSchreiber);
+    }
+
     // ==================== calculateSolarDistribution Tests ====================
 
     @Test
@@ -635,6 +720,19 @@ public class MesswerteServiceTest {
         assertEquals(0.0, result.getTotalDistributed());
     }
 
+    @Test
+    void calculateSolarDistributionForOrg_VerwirftStatistikDesZeitraums() {
+        LocalDateTime dateFrom = LocalDateTime.of(2024, 1, 31, 23, 0);
+        LocalDateTime dateTo = LocalDateTime.of(2024, 2, 1, 1, 0);
+
+        when(messwerteRepository.findDistinctZeitBetween(dateFrom, dateTo))
+            .thenReturn(Collections.emptyList());
+
+        messwerteService.calculateSolarDistributionForOrg(testOrgId, dateFrom, dateTo, "PROPORTIONAL", false);
+
+        verify(statistikCache).verwerfe(testOrgId, dateFrom, dateTo);
+    }
+
     @Test
     void calculateSolarDistribution_NoProducers_SkipsTimestamp() {
         LocalDateTime dateFrom = LocalDateTime.of(2024, 1, 1, 0, 0);
@@ -0,0 +1,114 @@
+package ch.nacht.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MesswerteSpaltenSchreiberTest {
+
+    private static final LocalDate TAG = LocalDate.of(2024, 1, 1);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MesswerteSpaltenSchreiber schreiber;
+    private final List<ResultSet> zeilen = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schreiber = new MesswerteSpaltenSchreiber(jdbcTemplate, transactionManager);
+        // Cursor-Abfrage: jede Zeile an den RowCallbackHandler (je Durchlauf)
+        lenient().doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (ResultSet rs : zeilen) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    private void zeile(LocalDateTime zeit, double total, double zev) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject(1, LocalDateTime.class)).thenReturn(zeit);
+        lenient().when(rs.getDouble(2)).thenReturn(total);
+        lenient().when(rs.getDouble(3)).thenReturn(zev);
+        zeilen.add(rs);
+    }
+
+    private byte[] schreibe(MesswerteSpaltenSchreiber.Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        schreiber.export(1L, 2L, TAG, TAG, format).schreibeNach(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void export_Json_RasterMitLueckenUndOhneDoppelteZeilen() throws Exception {
+        zeile(TAG.atTime(0, 0), 1.5, 1.0);
+        zeile(TAG.atTime(0, 0), 9.9, 9.9); // doppelte Zeile je Zeitpunkt
+        zeile(TAG.atTime(0, 30), 2.25, 0.5);
+
+        JsonNode json = new ObjectMapper().readTree(schreibe(MesswerteSpaltenSchreiber.Format.JSON));
+
+        assertEquals(2, json.get("einheitId").asInt());
+        assertEquals("2024-01-01T00:00", json.get("start").asText());
+        assertEquals(15, json.get("schrittMinuten").asInt());
+        assertEquals(96, json.get("anzahl").asInt());
+        JsonNode total = json.get("total");
+        assertEquals(96, total.size());
+        assertEquals(1.5, total.get(0).asDouble());
+        assertTrue(total.get(1).isNull(), "00:15 ohne Messwert");
+        assertEquals(2.25, total.get(2).asDouble());
+        assertTrue(total.get(95).isNull());
+        assertEquals(0.5, json.get("zev").get(2).asDouble());
+        // Eine Spalte je Cursor-Durchlauf, beide in einer Transaktion
+        verify(jdbcTemplate, times(2)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        verify(transactionManager).getTransaction(any());
+    }
+
+    @Test
+    void export_F32le_KopfUndLittleEndianSpalten() throws Exception {
+        zeile(TAG.atTime(0, 15), 1.5, 0.25);
+
+        ByteBuffer buffer = ByteBuffer.wrap(schreibe(MesswerteSpaltenSchreiber.Format.F32LE))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        assertEquals(16 + 2 * 96 * Float.BYTES, buffer.remaining());
+        assertEquals(TAG.atStartOfDay().toEpochSecond(ZoneOffset.UTC), buffer.getLong());
+        assertEquals(900, buffer.getInt());
+        assertEquals(96, buffer.getInt());
+        assertTrue(Float.isNaN(buffer.getFloat(16)), "00:00 ohne Messwert");
+        assertEquals(1.5f, buffer.getFloat(16 + Float.BYTES));
+        assertEquals(0.25f, buffer.getFloat(16 + (96 + 1) * Float.BYTES));
+    }
+
+    @Test
+    void anzahl_96IntervalleJeTag() {
+        assertEquals(96 * 366, MesswerteSpaltenSchreiber.anzahl(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)));
+    }
+}
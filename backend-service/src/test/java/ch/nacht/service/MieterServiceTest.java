@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -347,6 +348,37 @@ public class MieterServiceTest {
         assertTrue(result.isEmpty());
     }
 
+    @Test
+    void getMieterForEinheitenAndQuartal_GruppiertJeEinheitUndFuelltEinheitIds() {
+        LocalDate quartalBeginn = LocalDate.of(2024, 1, 1);
+        LocalDate quartalEnde = LocalDate.of(2024, 3, 31);
+        Mieter mieter2 = new Mieter("Anna Beispiel", LocalDate.of(2024, 2, 1), 2L);
+        mieter2.setId(2L);
+
+        // testMieter hat Wohnung 1 und Ladestation 900 - er erscheint bei beiden Einheiten
+        when(mieterRepository.findByEinheitIdsAndQuartal(List.of(1L, 2L, 900L), quartalBeginn, quartalEnde))
+                .thenReturn(List.of(
+                        new Object[]{1L, testMieter},
+                        new Object[]{900L, testMieter},
+                        new Object[]{2L, mieter2}));
+        when(mieterEinheitRepository.findByMieterIdIn(List.of(1L, 2L))).thenReturn(List.of(
+                new MieterEinheit(testOrgId, 1L, 1L),
+                new MieterEinheit(testOrgId, 1L, 900L),
+                new MieterEinheit(testOrgId, 2L, 2L)
+        ));
+
+        Map<Long, List<Mieter>> result = mieterService.getMieterForEinheitenAndQuartal(
+                List.of(1L, 2L, 900L), quartalBeginn, quartalEnde);
+
+        assertEquals(List.of(testMieter), result.get(1L));
+        assertEquals(List.of(testMieter), result.get(900L));
+        assertEquals(List.of(mieter2), result.get(2L));
+        assertEquals(List.of(1L, 900L), testMieter.getEinheitIds());
+        // Eine Abfrage fuer die Zuordnungen aller Mieter des Laufs
+        verify(mieterEinheitRepository).findByMieterIdIn(List.of(1L, 2L));
+        verify(hibernateFilterService).enableOrgFilter();
+    }
+
     // ==================== Zuordnung Mieter <-> Einheiten (Specs/Ladestationen.md) ====================
 
     /** Mieter mit Adresse und befristetem Mietzeitraum, dem die angegebenen Einheiten zugeordnet sind. */
@@ -15,15 +15,21 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -52,6 +58,12 @@ public class MqttIngestServiceTest {
     @Mock
     private MqttMetrics metrics;
 
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ZaehlerStromAggregator stromAggregator;
+
     private ObjectMapper objectMapper;
     private MqttIngestService service;
 
@@ -60,7 +72,8 @@ public class MqttIngestServiceTest {
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
-        service = new MqttIngestService(einheitRepository, rohdatenRepository, objectMapper, metrics);
+        service = new MqttIngestService(einheitRepository, rohdatenRepository, objectMapper, metrics,
+                new MqttDuplikatFilter(metrics, 1000, Duration.ofHours(6)), jdbcTemplate, stromAggregator);
 
         einheit = new Einheit("Wohnung 1", EinheitTyp.CONSUMER);
         einheit.setId(EINHEIT_ID);
@@ -546,7 +559,7 @@ public class MqttIngestServiceTest {
         MqttIngestService toleranterService = new MqttIngestService(einheitRepository, rohdatenRepository,
                 new ObjectMapper().registerModule(new JavaTimeModule())
                         .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES),
-                metrics);
+                metrics, new MqttDuplikatFilter(metrics, 1000, Duration.ofHours(6)), jdbcTemplate, stromAggregator);
         stubEinheitOhneBestand();
 
         // Act
@@ -601,4 +614,231 @@ public class MqttIngestServiceTest {
         verify(metrics).recordProcessed();
         verify(metrics, never()).recordFailed();
     }
+
+    // --- Duplikat-Unterdrückung (QoS-1-Redelivery, Gateway-Replay) -------------
+
+    @Test
+    void handle_ExakteWiederholung_VerworfenOhneDbZugriff() {
+        stubEinheitOhneBestand();
+        String nachricht = payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000");
+
+        service.handle(TOPIC, nachricht);
+        service.handle(TOPIC, nachricht);
+
+        // Nur die erste Nachricht erreicht die DB; die zweite wird als Duplikat gezählt
+        verify(einheitRepository, times(1)).findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT);
+        verify(rohdatenRepository, times(1)).save(any(ZaehlerRohdaten.class));
+        verify(metrics, times(2)).recordReceived();
+        verify(metrics, times(1)).recordProcessed();
+        verify(metrics, times(1)).recordDuplicate();
+        verify(metrics, never()).recordFailed();
+    }
+
+    @Test
+    void handle_WiederholungMitAndererSkala_GiltAlsDuplikat() {
+        stubEinheitOhneBestand();
+
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000"));
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.45", "10"));
+
+        verify(rohdatenRepository, times(1)).save(any(ZaehlerRohdaten.class));
+        verify(metrics).recordDuplicate();
+    }
+
+    @Test
+    void handle_WiederholungMitUngetrimmterSeriennummer_GiltAlsDuplikat() {
+        stubEinheitOhneBestand();
+
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000",
+                seriennummerJson("  ABC123  ")));
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000",
+                seriennummerJson("ABC123")));
+        // Leere Seriennummer wird wie eine fehlende gespeichert
+        service.handle(TOPIC, payload("2026-01-01T10:22:00+01:00", "124.0000", "10.0000",
+                seriennummerJson("   ")));
+        service.handle(TOPIC, payload("2026-01-01T10:22:00+01:00", "124.0000", "10.0000"));
+
+        verify(rohdatenRepository, times(2)).save(any(ZaehlerRohdaten.class));
+        verify(metrics, times(2)).recordDuplicate();
+    }
+
+    @Test
+    void handle_SeriennummerAndereSchreibweise_KeinDuplikat() {
+        stubEinheitOhneBestand();
+
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000",
+                seriennummerJson("abc123")));
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000",
+                seriennummerJson("ABC123")));
+
+        // Kein Case-Mapping – wie bei der gespeicherten Seriennummer (Zählertausch-Erkennung)
+        verify(rohdatenRepository, times(2)).save(any(ZaehlerRohdaten.class));
+        verify(metrics, never()).recordDuplicate();
+    }
+
+    @Test
+    void handle_GleicheZeitAndererZaehlerstand_WirdVerarbeitet() {
+        stubEinheitOhneBestand();
+
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000"));
+        service.handle(TOPIC, payload("2026-01-01T10:07:00+01:00", "123.5000", "10.0000"));
+
+        // Korrektur desselben Zeitpunkts ist kein Duplikat – der Upsert läuft erneut
+        verify(rohdatenRepository, times(2)).save(any(ZaehlerRohdaten.class));
+        verify(metrics, never()).recordDuplicate();
+    }
+
+    @Test
+    void handle_VerworfeneNachricht_WirdNichtAlsDuplikatGemerkt() {
+        // Arrange – erster Versuch scheitert am Messpunkt, danach ist die Einheit bekannt
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT))
+                .thenReturn(List.of())
+                .thenReturn(List.of(einheit));
+        when(rohdatenRepository.findByEinheitIdAndZeit(eq(EINHEIT_ID), any())).thenReturn(Optional.empty());
+        when(rohdatenRepository.save(any(ZaehlerRohdaten.class))).thenAnswer(inv -> inv.getArgument(0));
+        String nachricht = payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000");
+
+        service.handle(TOPIC, nachricht);
+        service.handle(TOPIC, nachricht);
+
+        // Die Redelivery wird verarbeitet, nicht unterdrückt
+        verify(rohdatenRepository, times(1)).save(any(ZaehlerRohdaten.class));
+        verify(metrics, never()).recordDuplicate();
+    }
+
+    // --- Batch-Payload (Gateway-Catch-up) ---------------------------------------
+
+    /** JSON-Array aus Einzel-Payloads. */
+    private String batch(String... eintraege) {
+        return "[" + String.join(",", eintraege) + "]";
+    }
+
+    /** Fängt die Zeilen des JDBC-Batch-Upserts ab (einmal je Einheit erwartet). */
+    @SuppressWarnings("unchecked")
+    private List<Collection<?>> captureBatchZeilen(int erwarteteAufrufe) {
+        ArgumentCaptor<Collection<?>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, times(erwarteteAufrufe)).batchUpdate(anyString(), captor.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        return captor.getAllValues();
+    }
+
+    @Test
+    void handle_BatchPayload_SchreibtAlleMeldungenAlsEinenBatch() {
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT)).thenReturn(List.of(einheit));
+
+        service.handle(TOPIC, batch(
+                payload("2026-01-01T10:00:00+01:00", "100.0000", "1.0000"),
+                payload("2026-01-01T10:05:00+01:00", "100.5000", "1.0000"),
+                payload("2026-01-01T10:10:00+01:00", "101.0000", "1.0000")));
+
+        // Eine Einheiten-Auflösung, ein Batch mit drei Zeilen, kein JPA-Upsert je Meldung
+        verify(einheitRepository, times(1)).findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT);
+        assertEquals(3, captureBatchZeilen(1).get(0).size());
+        verify(rohdatenRepository, never()).findByEinheitIdAndZeit(anyLong(), any());
+        verify(rohdatenRepository, never()).save(any());
+        verify(metrics).recordReceived();
+        verify(metrics).recordProcessed();
+        verify(metrics, never()).recordFailed();
+    }
+
+    @Test
+    void handle_BatchMitUngueltigemEintrag_UebernimmtNurGueltige() {
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT)).thenReturn(List.of(einheit));
+
+        service.handle(TOPIC, batch(
+                payload("2026-01-01T10:00:00+01:00", "100.0000", "1.0000"),
+                payload("2026-01-01T10:05:00+01:00", "-1.0000", "1.0000"),
+                payload(null, "101.0000", "1.0000")));
+
+        assertEquals(1, captureBatchZeilen(1).get(0).size());
+        verify(metrics, times(2)).recordFailed();
+        verify(metrics).recordProcessed();
+    }
+
+    @Test
+    void handle_BatchGeteilterBilanzMesspunkt_EinBatchJeEinheit() {
+        Einheit bezugEinheit = new Einheit("Bezug", EinheitTyp.BEZUG);
+        bezugEinheit.setId(20L);
+        bezugEinheit.setOrgId(ORG_ID);
+        Einheit ruecklieferungEinheit = new Einheit("Rücklieferung", EinheitTyp.RUECKLIEFERUNG);
+        ruecklieferungEinheit.setId(21L);
+        ruecklieferungEinheit.setOrgId(ORG_ID);
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT))
+                .thenReturn(List.of(bezugEinheit, ruecklieferungEinheit));
+
+        service.handle(TOPIC, batch(
+                payload("2026-01-01T10:00:00+01:00", "100.0000", "1.0000"),
+                payload("2026-01-01T10:05:00+01:00", "100.5000", "1.2000")));
+
+        List<Collection<?>> aufrufe = captureBatchZeilen(2);
+        assertEquals(2, aufrufe.get(0).size());
+        assertEquals(2, aufrufe.get(1).size());
+    }
+
+    @Test
+    void handle_BatchMitDoppeltemZeitpunkt_LetzteMeldungGewinnt() {
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT)).thenReturn(List.of(einheit));
+
+        service.handle(TOPIC, batch(
+                payload("2026-01-01T10:00:00+01:00", "100.0000", "1.0000"),
+                payload("2026-01-01T10:00:00+01:00", "100.2000", "1.0000")));
+
+        Collection<?> zeilen = captureBatchZeilen(1).get(0);
+        assertEquals(1, zeilen.size());
+        ZaehlerRohdaten zeile = (ZaehlerRohdaten) zeilen.iterator().next();
+        assertEquals(0, new BigDecimal("100.2000").compareTo(zeile.getZaehlerstandBezug()));
+    }
+
+    @Test
+    void handle_BatchWiederholt_ZweiterDurchlaufAlsDuplikatVerworfen() {
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT)).thenReturn(List.of(einheit));
+        String nachricht = batch(
+                payload("2026-01-01T10:00:00+01:00", "100.0000", "1.0000"),
+                payload("2026-01-01T10:05:00+01:00", "100.5000", "1.0000"));
+
+        service.handle(TOPIC, nachricht);
+        service.handle(TOPIC, nachricht);
+
+        captureBatchZeilen(1);
+        verify(metrics, times(2)).recordDuplicate();
+        verify(einheitRepository, times(1)).findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT);
+    }
+
+    @Test
+    void handle_LeererBatch_Discarded() {
+        service.handle(TOPIC, "[]");
+
+        verify(metrics).recordFailed();
+        verifyNoInteractions(einheitRepository, jdbcTemplate);
+    }
+
+    // --- Übergabe an die Streaming-Aggregation ---------------------------------
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void handle_GespeicherteStaende_AnStreamingAggregationUebergeben() {
+        when(einheitRepository.findAllByOrgIdAndMesspunkt(ORG_ID, MESSPUNKT)).thenReturn(List.of(einheit));
+
+        service.handle(TOPIC, batch(
+                payload("2026-01-01T10:00:00+01:00", "100.0000", "1.0000"),
+                payload("2026-01-01T10:05:00+01:00", "100.5000", "1.0000")));
+
+        ArgumentCaptor<List<ZaehlerRohdaten>> captor = ArgumentCaptor.forClass(List.class);
+        verify(stromAggregator).uebernimm(eq(einheit), captor.capture());
+        List<ZaehlerRohdaten> staende = captor.getValue();
+        assertEquals(2, staende.size());
+        assertEquals(LocalDateTime.of(2026, 1, 1, 10, 5), staende.get(1).getZeit());
+        assertEquals(0, new BigDecimal("100.5000").compareTo(staende.get(1).getZaehlerstandBezug()));
+    }
+
+    @Test
+    void handle_Duplikat_KeineUebergabeAnStreamingAggregation() {
+        stubEinheitOhneBestand();
+        String nachricht = payload("2026-01-01T10:07:00+01:00", "123.4500", "10.0000");
+
+        service.handle(TOPIC, nachricht);
+        service.handle(TOPIC, nachricht);
+
+        verify(stromAggregator, times(1)).uebernimm(eq(einheit), anyList());
+    }
 }
@@ -0,0 +1,194 @@
+package ch.nacht.service;
+
+import ch.nacht.dto.RechnungDTO;
+import ch.nacht.entity.RechnungJob;
+import ch.nacht.entity.RechnungJobArtefakt;
+import ch.nacht.entity.RechnungJobStatus;
+import ch.nacht.repository.RechnungJobArtefaktRepository;
+import ch.nacht.repository.RechnungJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RechnungJobServiceTest {
+
+    private static final long JOB_ID = 5L;
+    private static final long ORG_ID = 7L;
+    private static final LocalDate VON = LocalDate.of(2024, 1, 1);
+    private static final LocalDate BIS = LocalDate.of(2024, 3, 31);
+
+    @Mock
+    private RechnungService rechnungService;
+
+    @Mock
+    private RechnungPdfService rechnungPdfService;
+
+    @Mock
+    private RechnungStorageService rechnungStorageService;
+
+    @Mock
+    private DebitorService debitorService;
+
+    @Mock
+    private RechnungJobRepository jobRepository;
+
+    @Mock
+    private RechnungJobArtefaktRepository artefaktRepository;
+
+    @Mock
+    private OrganizationContextService organizationContextService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ObjectMapper objectMapper;
+
+    private RechnungJobService service;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        service = new RechnungJobService(rechnungService, rechnungPdfService, rechnungStorageService,
+                debitorService, jobRepository, artefaktRepository, organizationContextService,
+                objectMapper, transactionManager, 1, Duration.ofMinutes(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.beendeWorker();
+    }
+
+    private RechnungDTO rechnung(long einheitId, String einheitName, Long mieterId, double endBetrag) {
+        RechnungDTO rechnung = new RechnungDTO();
+        rechnung.setEinheitId(einheitId);
+        rechnung.setEinheitName(einheitName);
+        rechnung.setMieterId(mieterId);
+        rechnung.setVon(VON);
+        rechnung.setBis(BIS);
+        rechnung.setEndBetrag(endBetrag);
+        return rechnung;
+    }
+
+    private RechnungJob laufenderJob(List<RechnungDTO> rechnungen, int erledigt) throws Exception {
+        RechnungJob job = new RechnungJob(ORG_ID, VON, BIS, "de", rechnungen.size(),
+                objectMapper.writeValueAsString(rechnungen), LocalDateTime.now());
+        job.setId(JOB_ID);
+        job.setErledigt(erledigt);
+        when(jobRepository.findById(JOB_ID)).thenReturn(Optional.of(job));
+        return job;
+    }
+
+    /** Der PDF-Dienst reicht je Rechnung das Ergebnis weiter, bis das Prädikat {@code false} liefert. */
+    private void pdfs(Function<RechnungDTO, RechnungPdfService.PdfErgebnis> ergebnis) {
+        when(rechnungPdfService.generatePdfs(anyList(), anyString(), any(), any())).thenAnswer(invocation -> {
+            List<RechnungDTO> rechnungen = invocation.getArgument(0);
+            Predicate<RechnungPdfService.PdfErgebnis> jeErgebnis = invocation.getArgument(3);
+            for (RechnungDTO r : rechnungen) {
+                if (!jeErgebnis.test(ergebnis.apply(r))) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    @Test
+    void fuehreAus_TeilweiseErledigt_MachtBeiErsterOffenerRechnungWeiter() throws Exception {
+        RechnungDTO erste = rechnung(1L, "Wohnung 1", 10L, 100.0);
+        RechnungDTO zweite = rechnung(2L, "Wohnung 2", 20L, 80.0);
+        RechnungDTO dritte = rechnung(3L, "Wohnung 3", 30L, 60.0);
+        laufenderJob(List.of(erste, zweite, dritte), 1);
+        when(artefaktRepository.findByJobIdOrderByPosition(JOB_ID)).thenReturn(List.of());
+        pdfs(r -> RechnungPdfService.PdfErgebnis.erzeugt(r, new byte[]{1, 2, 3}));
+        when(jobRepository.schreibeFort(eq(JOB_ID), anyInt(), any())).thenReturn(1);
+        when(rechnungStorageService.sanitizeKey(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.fuehreAus(JOB_ID);
+
+        // Nur die offenen Rechnungen werden dargestellt, die High-Water-Mark läuft ab 1 weiter
+        verify(rechnungPdfService).generatePdfs(argThat(l -> l.size() == 2), eq("de"), any(), any());
+        verify(jobRepository).schreibeFort(eq(JOB_ID), eq(2), any());
+        verify(jobRepository).schreibeFort(eq(JOB_ID), eq(3), any());
+        verify(debitorService, never()).upsertFromRechnungForOrg(eq(ORG_ID), eq(10L), any(), any(), any());
+        verify(debitorService).upsertFromRechnungForOrg(ORG_ID, 20L, new BigDecimal("80.00"), VON, BIS);
+        verify(debitorService).upsertFromRechnungForOrg(ORG_ID, 30L, new BigDecimal("60.00"), VON, BIS);
+        verify(rechnungStorageService).store(eq(ORG_ID), eq("J5_Wohnung 2_20"), any(), any());
+        verify(rechnungStorageService).store(eq(ORG_ID), eq("J5_Wohnung 3_30"), any(), any());
+        verify(jobRepository).beende(eq(JOB_ID), eq(RechnungJobStatus.ABGESCHLOSSEN), isNull(), any());
+    }
+
+    @Test
+    void fuehreAus_Abgebrochen_HoertBeimNaechstenFortschreibenAuf() throws Exception {
+        laufenderJob(List.of(rechnung(1L, "Wohnung 1", 10L, 100.0), rechnung(2L, "Wohnung 2", 20L, 80.0)), 0);
+        when(artefaktRepository.findByJobIdOrderByPosition(JOB_ID)).thenReturn(List.of());
+        pdfs(r -> RechnungPdfService.PdfErgebnis.erzeugt(r, new byte[]{1, 2, 3}));
+        // Der Job wurde zwischenzeitlich abgebrochen: Fortschreiben trifft keine LAUFEND-Zeile mehr
+        when(jobRepository.schreibeFort(eq(JOB_ID), anyInt(), any())).thenReturn(0);
+        when(rechnungStorageService.sanitizeKey(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.fuehreAus(JOB_ID);
+
+        verify(jobRepository, times(1)).schreibeFort(eq(JOB_ID), anyInt(), any());
+        verifyNoInteractions(debitorService);
+        verify(artefaktRepository, never()).save(any());
+        verify(rechnungStorageService, never()).store(any(), any(), any(), any());
+        verify(jobRepository, never()).beende(any(), any(), any(), any());
+    }
+
+    @Test
+    void fuehreAus_PdfFehlgeschlagen_ArtefaktMitFehlerOhneDebitor() throws Exception {
+        laufenderJob(List.of(rechnung(1L, "Wohnung 1", 10L, 100.0)), 0);
+        when(artefaktRepository.findByJobIdOrderByPosition(JOB_ID)).thenReturn(List.of());
+        pdfs(r -> RechnungPdfService.PdfErgebnis.fehlgeschlagen(r, new RuntimeException("Vorlage fehlt")));
+        when(jobRepository.schreibeFort(eq(JOB_ID), anyInt(), any())).thenReturn(1);
+
+        service.fuehreAus(JOB_ID);
+
+        ArgumentCaptor<RechnungJobArtefakt> artefakt = ArgumentCaptor.forClass(RechnungJobArtefakt.class);
+        verify(artefaktRepository).save(artefakt.capture());
+        assertEquals(0, artefakt.getValue().getPosition());
+        assertEquals(ORG_ID, artefakt.getValue().getOrgId());
+        assertNull(artefakt.getValue().getDownloadKey());
+        assertEquals("Vorlage fehlt", artefakt.getValue().getFehler());
+        verifyNoInteractions(debitorService);
+        verify(rechnungStorageService, never()).store(any(), any(), any(), any());
+        verify(jobRepository).beende(eq(JOB_ID), eq(RechnungJobStatus.ABGESCHLOSSEN), isNull(), any());
+    }
+
+    @Test
+    void fuehreAus_JobNichtMehrLaufend_TutNichts() throws Exception {
+        RechnungJob job = laufenderJob(List.of(rechnung(1L, "Wohnung 1", 10L, 100.0)), 0);
+        job.setStatus(RechnungJobStatus.ABGEBROCHEN);
+
+        service.fuehreAus(JOB_ID);
+
+        verifyNoInteractions(rechnungPdfService, debitorService, artefaktRepository);
+    }
+}
@@ -1,12 +1,28 @@
 package ch.nacht.service;
 
+import ch.nacht.dto.RechnungDTO;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Unit-Tests für die Formatierer des Schweizer QR-Zahlteils in {@link RechnungPdfService}.
@@ -18,6 +34,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  * <p>Warum das zählt: Ein falsch formatierter Betrag oder eine falsch gruppierte IBAN im
  * QR-Zahlteil ergibt eine Rechnung, die der Zahlungsempfänger nicht einlesen kann — der Fehler
  * fällt erst beim Kunden auf.
+ *
+ * <p>Dazu der parallele Rechnungslauf ({@code generatePdfs}): Reihenfolge und Fehler-Isolation
+ * je Rechnung, ohne Template, sowie der Fingerabdruck, über den unveränderte Rechnungen nicht
+ * erneut dargestellt werden.
  */
 public class RechnungPdfServiceTest {
 
@@ -117,4 +137,92 @@ public class RechnungPdfServiceTest {
         // leeres Betragsfeld ergeben
         assertThat(RechnungPdfService.formatBetragQrBill(0.0), is("0.00"));
     }
+
+    // ==================== generatePdfs (Rechnungslauf) ====================
+
+    @Test
+    void generatePdfs_FehlerJeRechnungIsoliert_ReihenfolgeBleibt() {
+        // Ohne geladenes Template (init() nicht aufgerufen) scheitert jede Rechnung - der Lauf
+        // darf daran nicht abbrechen und liefert je Rechnung ein Ergebnis in Eingangsreihenfolge
+        TranslationService translationService = mock(TranslationService.class);
+        when(translationService.getBundle("de")).thenReturn(Map.of());
+        RechnungPdfService service = new RechnungPdfService(translationService, 2);
+        List<RechnungDTO> rechnungen = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            RechnungDTO rechnung = new RechnungDTO();
+            rechnung.setEinheitName("Wohnung " + i);
+            rechnungen.add(rechnung);
+        }
+
+        try {
+            List<RechnungPdfService.PdfErgebnis> ergebnisse = service.generatePdfs(rechnungen, "de");
+
+            assertEquals(5, ergebnisse.size());
+            for (int i = 0; i < 5; i++) {
+                assertSame(rechnungen.get(i), ergebnisse.get(i).rechnung());
+                assertFalse(ergebnisse.get(i).erfolgreich());
+                assertNull(ergebnisse.get(i).pdf());
+            }
+            // Uebersetzungen einmal je Lauf, nicht je Rechnung
+            verify(translationService, times(1)).getBundle("de");
+        } finally {
+            service.beendeWorker();
+        }
+    }
+
+    // ==================== Fingerabdruck / Wiederverwendung ====================
+
+    private static RechnungDTO rechnung(String einheitName, double endBetrag) {
+        RechnungDTO rechnung = new RechnungDTO();
+        rechnung.setEinheitName(einheitName);
+        rechnung.setEndBetrag(endBetrag);
+        return rechnung;
+    }
+
+    @Test
+    void fingerabdruck_AendertSichMitRechnungSpracheUndUebersetzung() {
+        TranslationService translationService = mock(TranslationService.class);
+        when(translationService.getBundle("de"))
+                .thenReturn(Map.of("RECHNUNG", "Rechnung"))
+                .thenReturn(Map.of("RECHNUNG", "Rechnung"))
+                .thenReturn(Map.of("RECHNUNG", "Faktura"));
+        when(translationService.getBundle("en")).thenReturn(Map.of("RECHNUNG", "Invoice"));
+        RechnungPdfService service = new RechnungPdfService(translationService, 1);
+
+        String basis = service.fingerabdruck(rechnung("Wohnung 1", 100.0), "de");
+
+        // Gleiche Eingaben (auch mit neu geladenem, gleichem Bundle): gleicher Fingerabdruck
+        assertEquals(basis, service.fingerabdruck(rechnung("Wohnung 1", 100.0), "de"));
+        assertEquals(64, basis.length());
+        assertNotEquals(basis, service.fingerabdruck(rechnung("Wohnung 1", 100.05), "en"));
+        assertNotEquals(basis, service.fingerabdruck(rechnung("Wohnung 1", 100.0), "de"));
+    }
+
+    @Test
+    void generatePdfs_MitVorhandenemPdf_StelltNurGeaenderteRechnungenDar() {
+        // Ohne Template scheitert jede Darstellung: erfolgreich ist nur, was wiederverwendet wird
+        TranslationService translationService = mock(TranslationService.class);
+        when(translationService.getBundle("de")).thenReturn(Map.of());
+        RechnungPdfService service = new RechnungPdfService(translationService, 2);
+        RechnungDTO unveraendert = rechnung("Wohnung 1", 100.0);
+        RechnungDTO geaendert = rechnung("Wohnung 2", 80.0);
+        String bekannt = service.fingerabdruck(unveraendert, "de");
+        byte[] pdf = {1, 2, 3};
+
+        try {
+            List<RechnungPdfService.PdfErgebnis> ergebnisse = new ArrayList<>();
+            service.generatePdfs(List.of(unveraendert, geaendert), "de",
+                    fingerabdruck -> fingerabdruck.equals(bekannt) ? Optional.of(pdf) : Optional.empty(),
+                    ergebnisse::add);
+
+            assertEquals(2, ergebnisse.size());
+            assertTrue(ergebnisse.get(0).erfolgreich());
+            assertArrayEquals(pdf, ergebnisse.get(0).pdf());
+            assertEquals(bekannt, ergebnisse.get(0).fingerabdruck());
+            assertFalse(ergebnisse.get(1).erfolgreich());
+            assertSame(geaendert, ergebnisse.get(1).rechnung());
+        } finally {
+            service.beendeWorker();
+        }
+    }
 }
@@ -24,10 +24,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -287,7 +289,7 @@ public class RechnungServiceTest {
         LocalDate von = LocalDate.of(2024, 1, 1);
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
+        einheiten(consumer);
         doThrow(new TarifLueckenException(List.of(new TarifLuecke("ZEV", "01.01.2024", false))))
             .when(tarifService).validateTarifAbdeckung(von, bis);
 
@@ -309,20 +311,10 @@ public class RechnungServiceTest {
         producer.setId(2L);
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any())).thenReturn(Collections.emptyList());
-
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.GRUNDGEBUEHR), any(), any()))
-            .thenReturn(Collections.emptyList());
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer, producer);
+        mieterDesLaufs(Map.of());
+        tarifeDesLaufs(zevTarif2024, vnbTarif2024);
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(
             List.of(1L, 2L), von, bis);
@@ -345,16 +337,10 @@ public class RechnungServiceTest {
         mieter2.setId(2L);
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any()))
-            .thenReturn(Arrays.asList(mieter1, mieter2));
-
-        when(tarifService.getTarifeForZeitraum(any(), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer);
+        mieterDesLaufs(Map.of(1L, Arrays.asList(mieter1, mieter2)));
+        tarifeDesLaufs(zevTarif2024);
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(1L), von, bis);
 
@@ -378,15 +364,10 @@ public class RechnungServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any())).thenReturn(Collections.emptyList());
-
-        when(tarifService.getTarifeForZeitraum(any(), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer);
+        mieterDesLaufs(Map.of());
+        tarifeDesLaufs(zevTarif2024);
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(1L), von, bis);
 
@@ -396,6 +377,112 @@ public class RechnungServiceTest {
         assertEquals(bis, rechnungen.get(0).getBis());
     }
 
+    // ─── Rechnungslauf: vorab geladene Daten (RechnungVorlauf) ──────────────────
+
+    /** findAllById liefert die bekannten unter den angefragten Einheiten (wie der orgFilter). */
+    private void einheiten(Einheit... einheiten) {
+        Map<Long, Einheit> bekannt = new HashMap<>();
+        for (Einheit einheit : einheiten) {
+            bekannt.put(einheit.getId(), einheit);
+        }
+        when(einheitRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Einheit> gefunden = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                if (bekannt.containsKey(id)) {
+                    gefunden.add(bekannt.get(id));
+                }
+            }
+            return gefunden;
+        });
+    }
+
+    private void mieterDesLaufs(Map<Long, List<Mieter>> mieterJeEinheit) {
+        when(mieterService.getMieterForEinheitenAndQuartal(anyCollection(), any(), any()))
+            .thenReturn(mieterJeEinheit);
+    }
+
+    private void tarifeDesLaufs(Tarif... tarife) {
+        when(tarifService.getTarifeByTypenForZeitraum(anyCollection(), any(), any()))
+            .thenReturn(List.of(tarife));
+    }
+
+    /** Eine Tagessumme {@code [einheitId, tag, total, zevCalculated]}. */
+    private static Object[] tag(Einheit einheit, LocalDate tag, double total, double zevCalculated) {
+        return new Object[]{einheit.getId(), tag, total, zevCalculated};
+    }
+
+    private void messwerteDesLaufs(Einheit einheit, LocalDate tag, double total, double zevCalculated) {
+        when(messwerteRepository.sumTotalAndZevCalculatedByEinheitAndTag(anyCollection(), any(), any()))
+            .thenReturn(List.<Object[]>of(tag(einheit, tag, total, zevCalculated)));
+    }
+
+    @Test
+    void berechneRechnungen_ZweiWohnungen_LaedtJedeDatenartEinmal() {
+        LocalDate von = LocalDate.of(2024, 1, 1);
+        LocalDate bis = LocalDate.of(2024, 3, 31);
+
+        Einheit zweite = new Einheit("Wohnung B", EinheitTyp.CONSUMER);
+        zweite.setId(2L);
+        Mieter mieterA = new Mieter("Mieter A", LocalDate.of(2023, 1, 1), 1L);
+        mieterA.setId(1L);
+        Mieter mieterB = new Mieter("Mieter B", LocalDate.of(2023, 1, 1), 2L);
+        mieterB.setId(2L);
+
+        einheiten(consumer, zweite);
+        mieterDesLaufs(Map.of(1L, List.of(mieterA), 2L, List.of(mieterB)));
+        tarifeDesLaufs(zevTarif2024, vnbTarif2024);
+        when(messwerteRepository.sumTotalAndZevCalculatedByEinheitAndTag(anyCollection(), any(), any()))
+            .thenReturn(List.of(
+                tag(consumer, LocalDate.of(2024, 2, 1), 150.0, 100.0),
+                tag(zweite, LocalDate.of(2024, 2, 1), 80.0, 30.0)));
+
+        List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(1L, 2L), von, bis);
+
+        assertEquals(2, rechnungen.size());
+        assertEquals(37.0, rechnungen.get(0).getTotalBetrag(), 0.001); // 100 * 0.20 + 50 * 0.34
+        assertEquals(23.0, rechnungen.get(1).getTotalBetrag(), 0.001); // 30 * 0.20 + 50 * 0.34
+        verify(einheitRepository).findAllById(any());
+        verify(mieterService).getMieterForEinheitenAndQuartal(anyCollection(), eq(von), eq(bis));
+        verify(tarifService).getTarifeByTypenForZeitraum(anyCollection(), eq(von), eq(bis));
+        verify(messwerteRepository).sumTotalAndZevCalculatedByEinheitAndTag(
+            anyCollection(), eq(von.atStartOfDay()), eq(bis.plusDays(1).atStartOfDay()));
+        verify(tarifpositionService).getFuerRechnung(eq(List.of(1L, 2L)), eq(von), eq(bis));
+        verify(einstellungenService).getEinstellungenOrThrow();
+        verify(tarifService, never()).getTarifeForZeitraum(any(), any(), any());
+        verify(messwerteRepository, never()).sumTotalByEinheitAndZeitBetween(any(), any(), any());
+        verify(messwerteRepository, never()).sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any());
+    }
+
+    @Test
+    void berechneRechnungen_TarifwechselImQuartal_SummiertTageJeTarifperiode() {
+        LocalDate von = LocalDate.of(2024, 1, 1);
+        LocalDate bis = LocalDate.of(2024, 3, 31);
+
+        Tarif zevJanFeb = new Tarif("ZEV alt", TarifTyp.ZEV, new BigDecimal("0.20"),
+            LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29));
+        Tarif zevMaerz = new Tarif("ZEV neu", TarifTyp.ZEV, new BigDecimal("0.30"),
+            LocalDate.of(2024, 3, 1), LocalDate.of(2024, 12, 31));
+
+        einheiten(consumer);
+        mieterDesLaufs(Map.of());
+        tarifeDesLaufs(zevJanFeb, zevMaerz, vnbTarif2024);
+        when(messwerteRepository.sumTotalAndZevCalculatedByEinheitAndTag(anyCollection(), any(), any()))
+            .thenReturn(List.of(
+                tag(consumer, LocalDate.of(2024, 2, 29), 100.0, 60.0),
+                tag(consumer, LocalDate.of(2024, 3, 1), 50.0, 20.0)));
+
+        RechnungDTO rechnung = rechnungService.berechneRechnungen(List.of(1L), von, bis).get(0);
+
+        List<TarifZeileDTO> zev = rechnung.getTarifZeilen().stream()
+            .filter(z -> z.getTyp() == TarifTyp.ZEV).toList();
+        assertEquals(2, zev.size());
+        assertEquals(60.0, zev.get(0).getMenge(), 0.001); // letzter Tag des alten Tarifs
+        assertEquals(20.0, zev.get(1).getMenge(), 0.001); // erster Tag des neuen Tarifs
+        TarifZeileDTO vnb = rechnung.getTarifZeilen().stream()
+            .filter(z -> z.getTyp() == TarifTyp.VNB).findFirst().orElseThrow();
+        assertEquals(70.0, vnb.getMenge(), 0.001); // (100 + 50) - (60 + 20)
+    }
+
     @Test
     void berechneRechnung_TarifZeileDatesMatchTarifPeriod() {
         LocalDate von = LocalDate.of(2024, 1, 1);
@@ -697,9 +784,8 @@ public class RechnungServiceTest {
         );
         grundgebuehr.setProduzentVerrechnen(true);
 
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.singletonList(grundgebuehr));
+        einheiten(producer);
+        tarifeDesLaufs(grundgebuehr);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(2L), von, bis);
 
@@ -723,9 +809,8 @@ public class RechnungServiceTest {
         Einheit producer = new Einheit("Solaranlage", EinheitTyp.PRODUCER);
         producer.setId(2L);
 
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.emptyList());
+        einheiten(producer);
+        tarifeDesLaufs();
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(2L), von, bis);
 
@@ -741,9 +826,8 @@ public class RechnungServiceTest {
         Einheit producer = new Einheit("Solaranlage", EinheitTyp.PRODUCER);
         producer.setId(2L);
 
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.emptyList());
+        einheiten(producer);
+        tarifeDesLaufs();
 
         rechnungService.berechneRechnungen(List.of(2L), von, bis);
 
@@ -765,9 +849,8 @@ public class RechnungServiceTest {
         );
         grundgebuehr.setProduzentVerrechnen(true);
 
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.singletonList(grundgebuehr));
+        einheiten(producer);
+        tarifeDesLaufs(grundgebuehr);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(2L), von, bis);
 
@@ -791,9 +874,8 @@ public class RechnungServiceTest {
         );
         // produzentVerrechnen defaults to false → producer must NOT be charged
 
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.singletonList(grundgebuehr));
+        einheiten(producer);
+        tarifeDesLaufs(grundgebuehr);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(2L), von, bis);
 
@@ -1143,24 +1225,19 @@ public class RechnungServiceTest {
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any()))
-            .thenReturn(Arrays.asList(mieterA, mieterB));
-        when(tarifService.getTarifeForZeitraum(any(), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer);
+        mieterDesLaufs(Map.of(1L, Arrays.asList(mieterA, mieterB)));
+        tarifeDesLaufs(zevTarif2024);
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
 
         // Jeder Mieter traegt seine eigene Q1-Position - obwohl beide Rechnungen nur einen
         // Teil von Q1 abdecken (Ueberschneidungsregel FR-1.5).
-        when(mieterService.getEinheitIds(mieterA.getId())).thenReturn(List.of(1L));
-        when(mieterService.getEinheitIds(mieterB.getId())).thenReturn(List.of(2L));
-        when(tarifpositionService.getFuerRechnung(eq(List.of(1L)), any(), any()))
-            .thenReturn(List.of(tarifposition(ladestrom, ladestation(), 2024, 1, "100.000")));
-        when(tarifpositionService.getFuerRechnung(eq(List.of(2L)), any(), any()))
-            .thenReturn(List.of(tarifposition(ladestrom, ladestation(), 2024, 1, "200.000")));
+        mieterA.setEinheitIds(List.of(1L, 900L));
+        mieterB.setEinheitIds(List.of(1L, 901L));
+        when(tarifpositionService.getFuerRechnung(eq(List.of(1L, 900L, 901L)), eq(von), eq(bis)))
+            .thenReturn(List.of(
+                tarifposition(ladestrom, ladestation(), 2024, 1, "100.000"),
+                tarifposition(ladestrom, ladestationZwei(), 2024, 1, "200.000")));
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(1L), von, bis);
 
@@ -1196,9 +1273,8 @@ public class RechnungServiceTest {
         );
         grundgebuehr.setProduzentVerrechnen(true);
 
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(producer));
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.singletonList(grundgebuehr));
+        einheiten(producer);
+        tarifeDesLaufs(grundgebuehr);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(2L), von, bis);
 
@@ -1214,25 +1290,16 @@ public class RechnungServiceTest {
         LocalDate bis = LocalDate.of(2024, 3, 31);
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any())).thenReturn(Collections.emptyList());
-
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer);
+        mieterDesLaufs(Map.of());
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
 
         Tarif grundgebuehr = new Tarif(
             "Grundgebühr 2024", TarifTyp.GRUNDGEBUEHR, new BigDecimal("5.00000"),
             LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)
         );
         // Flag is false, but consumers are always charged GRUNDGEBUEHR
-        when(tarifService.getTarifeForZeitraum(TarifTyp.GRUNDGEBUEHR, von, bis))
-            .thenReturn(Collections.singletonList(grundgebuehr));
+        tarifeDesLaufs(zevTarif2024, vnbTarif2024, grundgebuehr);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(1L), von, bis);
 
@@ -1279,12 +1346,10 @@ public class RechnungServiceTest {
         Mieter nutzer = mieter(52L, "Nutzer mit zwei Ladestationen");
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(erste));
-        when(einheitRepository.findById(901L)).thenReturn(Optional.of(zweite));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
-        when(mieterService.getMieterForQuartal(eq(901L), any(), any())).thenReturn(List.of(nutzer));
+        einheiten(erste, zweite);
         // Beide Ladestationen gehoeren demselben Mieter, eine Wohnung hat er nicht
-        when(mieterService.getEinheitIds(52L)).thenReturn(List.of(900L, 901L));
+        nutzer.setEinheitIds(List.of(900L, 901L));
+        mieterDesLaufs(Map.of(900L, List.of(nutzer), 901L, List.of(nutzer)));
         when(tarifpositionService.getFuerRechnung(eq(List.of(900L, 901L)), any(), any()))
             .thenReturn(List.of(
                 tarifposition(ladestrom, erste, 2024, 1, "100.000"),
@@ -1310,10 +1375,9 @@ public class RechnungServiceTest {
         Mieter nutzer = mieter(50L, "Nutzer ohne Wohnung");
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
+        einheiten(ladestation);
+        mieterDesLaufs(Map.of(900L, List.of(nutzer)));
         // Nur die Ladestation ist zugeordnet -> keine Wohnung
-        when(mieterService.getEinheitIds(50L)).thenReturn(List.of(900L));
         when(tarifpositionService.getFuerRechnung(eq(List.of(900L)), eq(von), eq(bis)))
             .thenReturn(List.of(tarifposition(ladestrom, ladestation, 2024, 1, "120.000")));
 
@@ -1349,9 +1413,8 @@ public class RechnungServiceTest {
         Mieter nutzer = mieter(50L, "Nutzer ohne Wohnung");
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
-        when(mieterService.getEinheitIds(50L)).thenReturn(List.of(900L));
+        einheiten(ladestation);
+        mieterDesLaufs(Map.of(900L, List.of(nutzer)));
         when(tarifpositionService.getFuerRechnung(anyCollection(), eq(von), eq(bis)))
             .thenReturn(List.of(tarifposition(ladestrom, ladestation, 2024, 1, "10.000")));
 
@@ -1361,8 +1424,8 @@ public class RechnungServiceTest {
         assertTrue(rechnungen.get(0).getTarifZeilen().stream()
             .allMatch(z -> z.getTyp() == TarifTyp.LADESTROM));
         verify(tarifService, never()).getTarifeForZeitraum(any(), any(), any());
-        verify(messwerteRepository, never()).sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any());
-        verify(messwerteRepository, never()).sumTotalByEinheitAndZeitBetween(any(), any(), any());
+        verify(tarifService, never()).getTarifeByTypenForZeitraum(any(), any(), any());
+        verify(messwerteRepository, never()).sumTotalAndZevCalculatedByEinheitAndTag(any(), any(), any());
         // Ohne CONSUMER-Einheit im Lauf entfaellt die Tarifabdeckungspruefung
         verify(tarifService, never()).validateTarifAbdeckung(any(), any());
     }
@@ -1375,11 +1438,10 @@ public class RechnungServiceTest {
         Einheit ladestation = ladestation();
         Mieter mitWohnung = mieter(51L, "Mieter mit Wohnung");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(mitWohnung));
+        einheiten(ladestation, consumer);
         // Wohnung + Ladestation -> die Positionen erscheinen auf der Wohnungsrechnung
-        when(mieterService.getEinheitIds(51L)).thenReturn(List.of(1L, 900L));
+        mitWohnung.setEinheitIds(List.of(1L, 900L));
+        mieterDesLaufs(Map.of(900L, List.of(mitWohnung)));
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(900L), von, bis);
 
@@ -1397,21 +1459,11 @@ public class RechnungServiceTest {
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any())).thenReturn(List.of(mitWohnung));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(mitWohnung));
-        when(mieterService.getEinheitIds(51L)).thenReturn(List.of(1L, 900L));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.GRUNDGEBUEHR), any(), any()))
-            .thenReturn(Collections.emptyList());
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer, ladestation);
+        mitWohnung.setEinheitIds(List.of(1L, 900L));
+        mieterDesLaufs(Map.of(1L, List.of(mitWohnung), 900L, List.of(mitWohnung)));
+        tarifeDesLaufs(zevTarif2024, vnbTarif2024);
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
         when(tarifpositionService.getFuerRechnung(anyCollection(), any(), any()))
             .thenReturn(List.of(tarifposition(ladestrom, ladestation, 2024, 1, "100.000")));
 
@@ -1431,9 +1483,8 @@ public class RechnungServiceTest {
 
         Mieter nutzer = mieter(50L, "Nutzer ohne Wohnung");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation()));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
-        when(mieterService.getEinheitIds(50L)).thenReturn(List.of(900L));
+        einheiten(ladestation());
+        mieterDesLaufs(Map.of(900L, List.of(nutzer)));
         when(tarifpositionService.getFuerRechnung(anyCollection(), any(), any()))
             .thenReturn(Collections.emptyList());
 
@@ -1448,8 +1499,8 @@ public class RechnungServiceTest {
         LocalDate von = LocalDate.of(2024, 1, 1);
         LocalDate bis = LocalDate.of(2024, 3, 31);
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation()));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(Collections.emptyList());
+        einheiten(ladestation());
+        mieterDesLaufs(Map.of());
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(900L), von, bis);
 
@@ -1469,9 +1520,8 @@ public class RechnungServiceTest {
         nutzer.setMietende(LocalDate.of(2024, 2, 29));
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
-        when(mieterService.getEinheitIds(50L)).thenReturn(List.of(900L));
+        einheiten(ladestation);
+        mieterDesLaufs(Map.of(900L, List.of(nutzer)));
         when(tarifpositionService.getFuerRechnung(anyCollection(), any(), any()))
             .thenReturn(List.of(tarifposition(ladestrom, ladestation, 2024, 1, "10.000")));
 
@@ -1480,9 +1530,10 @@ public class RechnungServiceTest {
         assertEquals(1, rechnungen.size());
         assertEquals(LocalDate.of(2024, 2, 1), rechnungen.get(0).getVon());
         assertEquals(LocalDate.of(2024, 2, 29), rechnungen.get(0).getBis());
-        // Die Position wird trotz Teilzeitraum aufgenommen (Ueberschneidungsregel)
-        verify(tarifpositionService).getFuerRechnung(anyCollection(),
-            eq(LocalDate.of(2024, 2, 1)), eq(LocalDate.of(2024, 2, 29)));
+        // Die Position wird trotz Teilzeitraum aufgenommen (Ueberschneidungsregel); geladen wird
+        // fuer den ganzen Lauf, eingeschraenkt auf den Mietzeitraum im Speicher
+        verify(tarifpositionService).getFuerRechnung(anyCollection(), eq(von), eq(bis));
+        assertEquals(1, rechnungen.get(0).getTarifZeilen().size());
         // Die Quartalsgrenzen bleiben die Zeilengrenzen
         assertEquals(LocalDate.of(2024, 1, 1), rechnungen.get(0).getTarifZeilen().get(0).getVon());
         assertEquals(LocalDate.of(2024, 3, 31), rechnungen.get(0).getTarifZeilen().get(0).getBis());
@@ -1497,9 +1548,8 @@ public class RechnungServiceTest {
         Mieter nutzer = mieter(50L, "Nutzer ohne Wohnung");
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.33000");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
-        when(mieterService.getEinheitIds(50L)).thenReturn(List.of(900L));
+        einheiten(ladestation);
+        mieterDesLaufs(Map.of(900L, List.of(nutzer)));
         when(tarifpositionService.getFuerRechnung(anyCollection(), any(), any()))
             .thenReturn(List.of(tarifposition(ladestrom, ladestation, 2024, 1, "7.000")));
 
@@ -1520,9 +1570,8 @@ public class RechnungServiceTest {
         Mieter nutzer = mieter(50L, "Nutzer ohne Wohnung");
         Tarif ladestrom = ladestromTarif("Ladestrom", "0.35000");
 
-        when(einheitRepository.findById(900L)).thenReturn(Optional.of(ladestation));
-        when(mieterService.getMieterForQuartal(eq(900L), any(), any())).thenReturn(List.of(nutzer));
-        when(mieterService.getEinheitIds(50L)).thenReturn(List.of(900L));
+        einheiten(ladestation);
+        mieterDesLaufs(Map.of(900L, List.of(nutzer)));
         when(tarifpositionService.getFuerRechnung(anyCollection(), any(), any()))
             .thenReturn(List.of(tarifposition(ladestrom, ladestation, 2024, 1, "10.000")));
 
@@ -1550,19 +1599,11 @@ public class RechnungServiceTest {
         zweiteStation.setQuellReferenz("RFID-901");
 
         doNothing().when(tarifService).validateTarifAbdeckung(von, bis);
-        when(einheitRepository.findById(1L)).thenReturn(Optional.of(consumer));
-        when(mieterService.getMieterForQuartal(eq(1L), any(), any())).thenReturn(List.of(mitWohnung));
-        when(mieterService.getEinheitIds(51L)).thenReturn(List.of(1L, 900L, 901L));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
-        when(tarifService.getTarifeForZeitraum(eq(TarifTyp.GRUNDGEBUEHR), any(), any()))
-            .thenReturn(Collections.emptyList());
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(100.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any()))
-            .thenReturn(150.0);
+        einheiten(consumer, ladestation(), ladestationZwei());
+        mitWohnung.setEinheitIds(List.of(1L, 900L, 901L));
+        mieterDesLaufs(Map.of(1L, List.of(mitWohnung)));
+        tarifeDesLaufs(zevTarif2024, vnbTarif2024);
+        messwerteDesLaufs(consumer, von, 150.0, 100.0);
         // Die Rechnung fragt die Positionen ALLER Einheiten des Mieters ab
         when(tarifpositionService.getFuerRechnung(eq(List.of(1L, 900L, 901L)), any(), any()))
             .thenReturn(List.of(ersteStation, zweiteStation));
@@ -1593,13 +1634,12 @@ public class RechnungServiceTest {
         Einheit ruecklieferung = new Einheit("Netzanschluss Ruecklieferung", EinheitTyp.RUECKLIEFERUNG);
         ruecklieferung.setId(11L);
 
-        when(einheitRepository.findById(10L)).thenReturn(Optional.of(bezug));
-        when(einheitRepository.findById(11L)).thenReturn(Optional.of(ruecklieferung));
+        einheiten(bezug, ruecklieferung);
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(10L, 11L), von, bis);
 
         assertTrue(rechnungen.isEmpty());
-        verify(mieterService, never()).getMieterForQuartal(any(), any(), any());
+        verify(mieterService, never()).getMieterForEinheitenAndQuartal(any(), any(), any());
         verify(tarifpositionService, never()).getFuerRechnung(any(), any(), any());
     }
 
@@ -1608,7 +1648,7 @@ public class RechnungServiceTest {
         LocalDate von = LocalDate.of(2024, 1, 1);
         LocalDate bis = LocalDate.of(2024, 3, 31);
 
-        when(einheitRepository.findById(999L)).thenReturn(Optional.empty());
+        einheiten();
 
         List<RechnungDTO> rechnungen = rechnungService.berechneRechnungen(List.of(999L), von, bis);
 
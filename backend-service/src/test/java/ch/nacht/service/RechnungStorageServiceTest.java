@@ -0,0 +1,230 @@
+package ch.nacht.service;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfReader;
+import com.lowagie.text.pdf.PdfWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RechnungStorageServiceTest {
+
+    private static final long ORG_ID = 7L;
+    private static final byte[] PDF = "%PDF-1.7 Rechnung".getBytes();
+
+    @Mock
+    private OrganizationContextService organizationContextService;
+
+    @TempDir
+    private Path verzeichnis;
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private RechnungStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(RechnungStorageService.CACHE_NAME);
+        service = new RechnungStorageService(organizationContextService, cacheManager, verzeichnis, Duration.ofDays(30));
+    }
+
+    private long anzahlInhalte() throws Exception {
+        try (Stream<Path> dateien = Files.walk(verzeichnis.resolve("inhalt"))) {
+            return dateien.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void store_GleicherInhaltZweiKeys_WirdEinmalAbgelegt() throws Exception {
+        String hash = service.store(ORG_ID, "Wohnung_1_10", PDF);
+        assertEquals(hash, service.store(ORG_ID, "Wohnung_2_20", PDF.clone()));
+
+        assertEquals(1, anzahlInhalte());
+        RechnungStorageService.Archivdatei datei = service.find(ORG_ID, "Wohnung_2_20").orElseThrow();
+        assertEquals(hash, datei.hash());
+        assertEquals(PDF.length, datei.groesse());
+        assertArrayEquals(PDF, Files.readAllBytes(datei.pfad()));
+    }
+
+    @Test
+    void find_AndererMandant_Leer() {
+        service.store(ORG_ID, "Wohnung_1_10", PDF);
+
+        assertTrue(service.find(ORG_ID, "Wohnung_1_10").isPresent());
+        assertTrue(service.find(8L, "Wohnung_1_10").isEmpty());
+        assertTrue(service.find(ORG_ID, "../Wohnung_1_10").isPresent());
+        assertTrue(service.find(ORG_ID, "***").isEmpty());
+    }
+
+    @Test
+    void uebertrage_OhneCache_KopiertBereichAusDatei() throws Exception {
+        service.store(ORG_ID, "Wohnung_1_10", PDF);
+        cacheManager.getCache(RechnungStorageService.CACHE_NAME).clear();
+        RechnungStorageService.Archivdatei datei = service.find(ORG_ID, "Wohnung_1_10").orElseThrow();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.uebertrage(datei, 5, 3, out);
+
+        assertArrayEquals("1.7".getBytes(), out.toByteArray());
+    }
+
+    @Test
+    void get_AusArchivNachNeustart() {
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        service.store(ORG_ID, "Wohnung_1_10", PDF);
+
+        // Neue Instanz auf demselben Verzeichnis, leerer Cache
+        RechnungStorageService neu = new RechnungStorageService(organizationContextService,
+                new ConcurrentMapCacheManager(RechnungStorageService.CACHE_NAME), verzeichnis, Duration.ofDays(30));
+
+        assertArrayEquals(PDF, neu.get("Wohnung_1_10").orElseThrow());
+    }
+
+    @Test
+    void schreibeZip_EinEintragJeRechnungInReihenfolge() throws Exception {
+        service.store(ORG_ID, "Wohnung_1_10", PDF);
+        service.store(ORG_ID, "Wohnung_2_20", "%PDF-1.7 zweite".getBytes());
+        cacheManager.getCache(RechnungStorageService.CACHE_NAME).clear();
+        Map<String, RechnungStorageService.Archivdatei> dateien = new LinkedHashMap<>();
+        dateien.put("Wohnung_2_20.pdf", service.find(ORG_ID, "Wohnung_2_20").orElseThrow());
+        dateien.put("Wohnung_1_10.pdf", service.find(ORG_ID, "Wohnung_1_10").orElseThrow());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.schreibeZip(dateien, out);
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("Wohnung_2_20.pdf", zip.getNextEntry().getName());
+            assertArrayEquals("%PDF-1.7 zweite".getBytes(), zip.readAllBytes());
+            assertEquals("Wohnung_1_10.pdf", zip.getNextEntry().getName());
+            assertArrayEquals(PDF, zip.readAllBytes());
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    private static byte[] pdfMitSeiten(int seiten) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document dokument = new Document();
+        PdfWriter.getInstance(dokument, out);
+        dokument.open();
+        for (int i = 0; i < seiten; i++) {
+            dokument.newPage();
+            dokument.add(new Paragraph("Seite " + (i + 1)));
+        }
+        dokument.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    void schreibeSammelPdf_AlleSeitenAllerRechnungen() throws Exception {
+        service.store(ORG_ID, "Wohnung_1_10", pdfMitSeiten(1));
+        service.store(ORG_ID, "Wohnung_2_20", pdfMitSeiten(2));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.schreibeSammelPdf(List.of(
+                service.find(ORG_ID, "Wohnung_1_10").orElseThrow(),
+                service.find(ORG_ID, "Wohnung_2_20").orElseThrow()), out);
+
+        PdfReader reader = new PdfReader(out.toByteArray());
+        try {
+            assertEquals(3, reader.getNumberOfPages());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void keys_AktuellerMandantSortiert() {
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        service.store(ORG_ID, "L1_Wohnung_2_20", PDF);
+        service.store(ORG_ID, "L1_Wohnung_1_10", PDF);
+        service.store(8L, "L1_Gewerbe_EG", PDF);
+
+        assertEquals(List.of("L1_Wohnung_1_10", "L1_Wohnung_2_20"), service.keys("L1"));
+    }
+
+    @Test
+    void keys_NurDerAngegebeneLauf() {
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        service.store(ORG_ID, "J5_Wohnung_1_10", PDF);
+        service.store(ORG_ID, "J5_Wohnung_2_20", PDF);
+        service.store(ORG_ID, "J51_Wohnung_1_10", PDF);
+        service.store(8L, "J5_Gewerbe_EG", PDF);
+
+        assertEquals(List.of("J5_Wohnung_1_10", "J5_Wohnung_2_20"), service.keys("J5"));
+        assertEquals(List.of("J51_Wohnung_1_10"), service.keys("J51"));
+    }
+
+    @Test
+    void cleanupExpired_EntferntAbgelaufeneReferenzenUndUnreferenzierteInhalte() throws Exception {
+        String hash = service.store(ORG_ID, "Wohnung_1_10", PDF);
+        FileTime alt = FileTime.from(Instant.now().minus(Duration.ofDays(31)));
+        Files.setLastModifiedTime(verzeichnis.resolve("org").resolve(String.valueOf(ORG_ID)).resolve("Wohnung_1_10"), alt);
+        Path inhalt = verzeichnis.resolve("inhalt").resolve(hash.substring(0, 2)).resolve(hash + ".pdf");
+        Files.setLastModifiedTime(inhalt, alt);
+        service.store(ORG_ID, "Wohnung_2_20", "%PDF-1.7 andere Rechnung".getBytes());
+
+        assertTrue(service.find(ORG_ID, "Wohnung_1_10").isEmpty());
+        service.cleanupExpired();
+
+        assertFalse(Files.exists(inhalt));
+        assertEquals(1, anzahlInhalte());
+        assertTrue(service.exists(ORG_ID, "Wohnung_2_20"));
+    }
+
+    private static final String FINGERABDRUCK = "ab".repeat(32);
+
+    @Test
+    void findMemo_JeMandant() {
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        service.store(ORG_ID, "Wohnung_1_10", PDF, FINGERABDRUCK);
+
+        assertArrayEquals(PDF, service.findMemo(FINGERABDRUCK).orElseThrow());
+        assertTrue(service.findMemo(8L, FINGERABDRUCK).isEmpty());
+        assertTrue(service.findMemo(ORG_ID, "../" + FINGERABDRUCK).isEmpty());
+        assertTrue(service.findMemo(ORG_ID, null).isEmpty());
+    }
+
+    @Test
+    void cleanupExpired_GueltigesMemoHaeltInhalt_AbgelaufenesWirdEntfernt() throws Exception {
+        String hash = service.store(ORG_ID, "Wohnung_1_10", PDF, FINGERABDRUCK);
+        FileTime alt = FileTime.from(Instant.now().minus(Duration.ofDays(31)));
+        Files.setLastModifiedTime(verzeichnis.resolve("org").resolve(String.valueOf(ORG_ID)).resolve("Wohnung_1_10"), alt);
+        Path inhalt = verzeichnis.resolve("inhalt").resolve(hash.substring(0, 2)).resolve(hash + ".pdf");
+        Files.setLastModifiedTime(inhalt, alt);
+
+        // Referenz abgelaufen, Memo noch gültig: der Inhalt bleibt
+        service.cleanupExpired();
+        assertTrue(Files.exists(inhalt));
+        assertTrue(service.findMemo(ORG_ID, FINGERABDRUCK).isPresent());
+
+        Path memo = verzeichnis.resolve("memo").resolve(String.valueOf(ORG_ID)).resolve(FINGERABDRUCK);
+        Files.setLastModifiedTime(memo, alt);
+        assertTrue(service.findMemo(ORG_ID, FINGERABDRUCK).isEmpty());
+        service.cleanupExpired();
+
+        assertFalse(Files.exists(memo));
+        assertFalse(Files.exists(inhalt));
+    }
+}
@@ -3,9 +3,9 @@ package ch.nacht.service;
 import ch.nacht.dto.EinheitSummenDTO;
 import ch.nacht.dto.MonatsStatistikDTO;
 import ch.nacht.dto.StatistikDTO;
+import ch.nacht.dto.TagMitAbweichungDTO;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
-import ch.nacht.entity.Messwerte;
 import ch.nacht.entity.Translation;
 import ch.nacht.entity.Verteilmodus;
 import ch.nacht.repository.EinheitRepository;
@@ -15,24 +15,31 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -56,6 +63,15 @@ public class StatistikServiceTest {
     @Mock
     private TranslationService translationService;
 
+    @Mock
+    private StatistikCache statistikCache;
+
+    @Mock
+    private StatistikSnapshotAusfuehrer statistikSnapshotAusfuehrer;
+
+    @Mock
+    private MesswerteCsvSchreiber messwerteCsvSchreiber;
+
     @InjectMocks
     private StatistikService statistikService;
 
@@ -79,51 +95,59 @@ public class StatistikServiceTest {
         lenient().when(organizationContextService.getCurrentOrgId()).thenReturn(1L);
         lenient().when(einstellungenService.getVerteilmodus(any()))
             .thenReturn(Verteilmodus.PRODUCER_MESSUNG);
+        // Abschnitte direkt im Test-Thread ausführen (Parallelität 0 → ein Abschnitt)
+        lenient().when(statistikSnapshotAusfuehrer.fuehreAus(any(), any())).thenAnswer(inv -> {
+            List<Supplier<?>> aufgaben = inv.getArgument(1);
+            return aufgaben.stream().map(Supplier::get).toList();
+        });
+    }
+
+    // Tageswerte der Single-Pass-Abfrage (sumTageJeEinheitBetween); von den Tests befüllt
+    private final List<Object[]> tageswerte = new ArrayList<>();
+    private final List<Einheit> alleEinheiten = new ArrayList<>();
+
+    /** Eine Zeile der Single-Pass-Abfrage: {@code [tag, einheitId, typ, total, zev, zevCalculated]}. */
+    private void tageswert(LocalDate tag, Einheit einheit, Double total, Double zev, Double zevCalculated) {
+        tageswerte.add(new Object[]{tag, einheit.getId(), einheit.getTyp(), total, zev, zevCalculated});
+    }
+
+    /** Nullwerte an jedem Tag für jede Einheit → Einheiten und Tage gelten als vollständig. */
+    private void datenAnAllenTagen(LocalDate von, LocalDate bis, Einheit... einheiten) {
+        von.datesUntil(bis.plusDays(1)).forEach(tag -> {
+            for (Einheit einheit : einheiten) {
+                tageswert(tag, einheit, 0.0, 0.0, 0.0);
+            }
+        });
+    }
+
+    /**
+     * Stubt Einheiten und Tageswerte; die Abdeckungs-Bitmap folgt den Tageswerten (jeder Messwert
+     * setzt per Trigger sein Bit → jede Einheit mit Tageswert ist an dem Tag abgedeckt).
+     */
+    private void stubEinheitenUndTageswerte(Einheit... einheiten) {
+        alleEinheiten.addAll(Arrays.asList(einheiten));
+        when(einheitRepository.findAll()).thenReturn(alleEinheiten);
+        when(messwerteRepository.sumTageJeEinheitBetween(any(), any())).thenReturn(tageswerte);
+        when(messwerteRepository.findAbgedeckteTageBetween(eq(1L), any(), any())).thenAnswer(inv ->
+            tageswerte.stream().map(w -> new Object[]{w[1], w[0]}).toList());
     }
 
     @Test
     void getStatistik_SingleMonth_ReturnsCorrectData() {
         LocalDate von = LocalDate.of(2024, 1, 1);
         LocalDate bis = LocalDate.of(2024, 1, 31);
-        LocalDateTime vonDateTime = von.atStartOfDay();
-        LocalDateTime bisDateTime = bis.plusDays(1).atStartOfDay();
 
         // Mock letztes Messdatum
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
 
-        // Mock Einheiten
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1, consumer2));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1, consumer2));
-
-        // Mock fehlende Tage (keine fehlenden)
-        List<LocalDate> alleDaten = von.datesUntil(bis.plusDays(1)).toList();
-        when(messwerteRepository.findDistinctDatesInRange(any(), any())).thenReturn(alleDaten);
-
-        // Mock Summen nach Typ
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-1000.0); // Producer values are negative
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(800.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-600.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(600.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(600.0);
-
-        // Mock Summen pro Einheit
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(-1000.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(-600.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(0.0);
-
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(consumer1), any(), any())).thenReturn(500.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(consumer1), any(), any())).thenReturn(350.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(consumer1), any(), any())).thenReturn(350.0);
-
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(consumer2), any(), any())).thenReturn(300.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(consumer2), any(), any())).thenReturn(250.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(consumer2), any(), any())).thenReturn(250.0);
+        // Mock Einheiten; alle Einheiten an allen Tagen mit Daten
+        stubEinheitenUndTageswerte(producer, consumer1, consumer2);
+        datenAnAllenTagen(von, bis, producer, consumer1, consumer2);
+
+        // Summen pro Einheit (Producer values are negative)
+        tageswert(von, producer, -1000.0, -600.0, 0.0);
+        tageswert(von, consumer1, 500.0, 350.0, 350.0);
+        tageswert(von, consumer2, 300.0, 250.0, 250.0);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -140,6 +164,8 @@ public class StatistikServiceTest {
         assertEquals(600.0, monat.getSummeProducerZev()); // Absolute value
         assertEquals(600.0, monat.getSummeConsumerZev());
         assertEquals(600.0, monat.getSummeConsumerZevCalculated());
+        // Single Pass: eine Abfrage über den ganzen Zeitraum
+        verify(messwerteRepository).sumTageJeEinheitBetween(von.atStartOfDay(), bis.plusDays(1).atStartOfDay());
     }
 
     @Test
@@ -148,25 +174,10 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
-
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-1000.0); // Produktion (negativ gespeichert → abs = 1000)
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(800.0);   // Verbrauch
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-700.0);  // zev Producer (negativ gespeichert → abs = 700)
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(590.0);   // zev Consumer (B, gemessen) – bewusst != zev_berechnet
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(600.0);   // zev_berechnet Consumer (C)
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(0.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(0.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(0.0);
+        stubEinheitenUndTageswerte(producer, consumer1);
+
+        tageswert(von, producer, -1000.0, -700.0, null); // Produktion/zev Producer (negativ gespeichert)
+        tageswert(von, consumer1, 800.0, 590.0, 600.0);  // Verbrauch, zev (B, gemessen) != zev_berechnet (C)
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -183,18 +194,9 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 3, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 3, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any())).thenReturn(Collections.emptyList());
-
-        // Mock alle Summen mit Standardwerten
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        stubEinheitenUndTageswerte(producer, consumer1);
+        tageswert(LocalDate.of(2024, 1, 10), consumer1, 100.0, 50.0, 50.0);
+        tageswert(LocalDate.of(2024, 3, 10), consumer1, 30.0, 10.0, 10.0);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -203,6 +205,12 @@ public class StatistikServiceTest {
         assertEquals(1, result.getMonate().get(0).getMonat());
         assertEquals(2, result.getMonate().get(1).getMonat());
         assertEquals(3, result.getMonate().get(2).getMonat());
+        // Tageswerte dem richtigen Monat zugeordnet
+        assertEquals(100.0, result.getMonate().get(0).getSummeConsumerTotal());
+        assertEquals(0.0, result.getMonate().get(1).getSummeConsumerTotal());
+        assertEquals(30.0, result.getMonate().get(2).getSummeConsumerTotal());
+        // Single Pass: eine Abfrage für alle Monate
+        verify(messwerteRepository).sumTageJeEinheitBetween(any(), any());
     }
 
     @Test
@@ -211,24 +219,15 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1, consumer2));
+        stubEinheitenUndTageswerte(producer, consumer1, consumer2);
         // Nur producer und consumer1 haben Daten
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
-
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        datenAnAllenTagen(von, bis, producer, consumer1);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
         assertFalse(result.isDatenVollstaendig());
         assertTrue(result.getFehlendeEinheiten().contains("Wohnung B"));
+        assertEquals(List.of("Wohnung B"), result.getMonate().get(0).getFehlendeEinheiten());
     }
 
     @Test
@@ -237,24 +236,39 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
+        stubEinheitenUndTageswerte(producer, consumer1);
         // Nur erste 15 Tage haben Daten
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(LocalDate.of(2024, 1, 16)).toList());
-
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        datenAnAllenTagen(von, LocalDate.of(2024, 1, 15), producer, consumer1);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
         assertFalse(result.isDatenVollstaendig());
         assertEquals(16, result.getFehlendeTage().size()); // 16.-31. Januar fehlen
+        assertEquals(16, result.getMonate().get(0).getFehlendeTage().size());
+    }
+
+    @Test
+    void getStatistik_Vollstaendigkeit_AusAbdeckungsBitmap() {
+        LocalDate von = LocalDate.of(2024, 1, 1);
+        LocalDate bis = LocalDate.of(2024, 1, 31);
+
+        when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
+        when(einheitRepository.findAll()).thenReturn(List.of(producer, consumer1));
+        when(messwerteRepository.sumTageJeEinheitBetween(any(), any())).thenReturn(List.of());
+        // Keine Summen, aber die Bitmap meldet beide Einheiten an allen Tagen ausser dem 31.
+        List<Object[]> abgedeckt = new ArrayList<>();
+        von.datesUntil(bis).forEach(tag -> {
+            abgedeckt.add(new Object[]{producer.getId(), java.sql.Date.valueOf(tag)});
+            abgedeckt.add(new Object[]{consumer1.getId(), tag});
+        });
+        when(messwerteRepository.findAbgedeckteTageBetween(1L, von, bis)).thenReturn(abgedeckt);
+
+        StatistikDTO result = statistikService.getStatistik(von, bis);
+
+        assertFalse(result.isDatenVollstaendig());
+        assertEquals(List.of(), result.getFehlendeEinheiten());
+        assertEquals(List.of(bis), result.getFehlendeTage());
+        assertEquals(List.of(bis), result.getMonate().get(0).getFehlendeTage());
     }
 
     @Test
@@ -263,24 +277,11 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
+        stubEinheitenUndTageswerte(producer, consumer1);
 
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
         // Producer ZEV und Consumer ZEV sind unterschiedlich (Abweichung)
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(95.0); // 5 kWh Differenz
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any()))
-                .thenReturn(95.0);
-
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        tageswert(von, producer, -100.0, -100.0, null);
+        tageswert(von, consumer1, 100.0, 95.0, 95.0); // 5 kWh Differenz
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -295,24 +296,11 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
+        stubEinheitenUndTageswerte(producer, consumer1);
 
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
         // Differenz ist innerhalb der Toleranz (0.1 kWh)
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(99.95); // 0.05 kWh Differenz - innerhalb Toleranz
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any()))
-                .thenReturn(99.95);
-
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        tageswert(von, producer, -100.0, -100.0, null);
+        tageswert(von, consumer1, 100.0, 99.95, 99.95); // 0.05 kWh Differenz - innerhalb Toleranz
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -321,35 +309,47 @@ public class StatistikServiceTest {
     }
 
     @Test
-    void getStatistik_EinheitSummen_CorrectlyCalculated() {
+    void getStatistik_TageAbweichungen_AusTagessummenErmittelt() {
         LocalDate von = LocalDate.of(2024, 1, 1);
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1, consumer2));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1, consumer2));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
+        stubEinheitenUndTageswerte(producer, consumer1, consumer2);
 
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        // 2.1.: ausgeglichen (C = D = E, über zwei Consumer verteilt)
+        tageswert(LocalDate.of(2024, 1, 2), producer, -20.0, -10.0, null);
+        tageswert(LocalDate.of(2024, 1, 2), consumer1, 8.0, 6.0, 6.0);
+        tageswert(LocalDate.of(2024, 1, 2), consumer2, 8.0, 4.0, 4.0);
+        // 3.1.: C = 10, D = 9, E = 10 → C!=D und D!=E, max. Differenz 1
+        tageswert(LocalDate.of(2024, 1, 3), producer, -20.0, -10.0, null);
+        tageswert(LocalDate.of(2024, 1, 3), consumer1, 12.0, 9.0, 10.0);
+
+        StatistikDTO result = statistikService.getStatistik(von, bis);
 
-        // Producer - negative Werte
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(-1000.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(-800.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(0.0);
+        List<TagMitAbweichungDTO> abweichungen = result.getMonate().get(0).getTageAbweichungen();
+        assertEquals(1, abweichungen.size());
+        assertEquals(LocalDate.of(2024, 1, 3), abweichungen.get(0).getDatum());
+        assertEquals("C!=D, D!=E", abweichungen.get(0).getAbweichungstyp());
+        assertEquals(1.0, abweichungen.get(0).getDifferenz(), 0.001);
+    }
+
+    @Test
+    void getStatistik_EinheitSummen_CorrectlyCalculated() {
+        LocalDate von = LocalDate.of(2024, 1, 1);
+        LocalDate bis = LocalDate.of(2024, 1, 31);
+
+        when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
+        stubEinheitenUndTageswerte(producer, consumer1, consumer2);
+
+        // Producer - negative Werte, über zwei Tage verteilt
+        tageswert(LocalDate.of(2024, 1, 1), producer, -600.0, -500.0, 0.0);
+        tageswert(LocalDate.of(2024, 1, 2), producer, -400.0, -300.0, 0.0);
 
         // Consumer 1
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(consumer1), any(), any())).thenReturn(500.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(consumer1), any(), any())).thenReturn(400.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(consumer1), any(), any())).thenReturn(400.0);
+        tageswert(von, consumer1, 500.0, 400.0, 400.0);
 
         // Consumer 2
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(consumer2), any(), any())).thenReturn(300.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(consumer2), any(), any())).thenReturn(200.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(consumer2), any(), any())).thenReturn(200.0);
+        tageswert(von, consumer2, 300.0, 200.0, 200.0);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -386,25 +386,11 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any())).thenReturn(Arrays.asList(producer));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
+        stubEinheitenUndTageswerte(producer);
+        datenAnAllenTagen(von, bis, producer);
 
         // Producer Werte sind in der DB negativ
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-1500.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(-1200.0);
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(0.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(0.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(0.0);
-
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(-1500.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(-1200.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(eq(producer), any(), any())).thenReturn(0.0);
+        tageswert(von, producer, -1500.0, -1200.0, 0.0);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -424,17 +410,9 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.empty());
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any())).thenReturn(Collections.emptyList());
-        when(messwerteRepository.findDistinctDatesInRange(any(), any())).thenReturn(Collections.emptyList());
-
-        // Alle Summen sind null (keine Daten)
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(null);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(null);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(null);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(null);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(null);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(null);
+        stubEinheitenUndTageswerte(producer);
+        // SUM über ausschliesslich null-Werte liefert null
+        tageswert(von, producer, null, null, null);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -443,6 +421,7 @@ public class StatistikServiceTest {
         MonatsStatistikDTO monat = result.getMonate().get(0);
         assertEquals(0.0, monat.getSummeProducerTotal());
         assertEquals(0.0, monat.getSummeConsumerTotal());
+        assertEquals(0.0, monat.getEinheitSummen().get(0).getSummeZevCalculated());
     }
 
     @Test
@@ -471,17 +450,8 @@ public class StatistikServiceTest {
         LocalDate bis = LocalDate.of(2024, 1, 31);
 
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any())).thenReturn(Arrays.asList(producer));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any()))
-                .thenReturn(von.datesUntil(bis.plusDays(1)).toList());
-
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        stubEinheitenUndTageswerte(producer);
+        datenAnAllenTagen(von, bis, producer);
 
         StatistikDTO result = statistikService.getStatistik(von, bis);
 
@@ -489,6 +459,106 @@ public class StatistikServiceTest {
         MonatsStatistikDTO monat = result.getMonate().get(0);
         assertEquals(LocalDate.of(2024, 1, 15), monat.getVon());
         assertEquals(LocalDate.of(2024, 1, 31), monat.getBis());
+        assertTrue(monat.isDatenVollstaendig());
+        verify(messwerteRepository).sumTageJeEinheitBetween(von.atStartOfDay(), bis.plusDays(1).atStartOfDay());
+    }
+
+    // ==================== Statistik-Cache je Monat ====================
+
+    /** Vollständiger gecachter Monat mit Daten der angegebenen Einheiten. */
+    private StatistikCache.MonatsEintrag gecachterMonat(YearMonth monat, Einheit... einheiten) {
+        MonatsStatistikDTO dto = new MonatsStatistikDTO();
+        dto.setJahr(monat.getYear());
+        dto.setMonat(monat.getMonthValue());
+        dto.setVon(monat.atDay(1));
+        dto.setBis(monat.atEndOfMonth());
+        dto.setSummeConsumerTotal(42.0);
+        dto.setFehlendeEinheiten(List.of());
+        dto.setFehlendeTage(List.of());
+        dto.setDatenVollstaendig(true);
+        Set<Long> ids = new HashSet<>();
+        for (Einheit einheit : einheiten) {
+            ids.add(einheit.getId());
+        }
+        return new StatistikCache.MonatsEintrag(dto, ids);
+    }
+
+    @Test
+    void getStatistik_GanzerMonatImCache_KeineAbfrage() {
+        YearMonth januar = YearMonth.of(2024, 1);
+        when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
+        when(einheitRepository.findAll()).thenReturn(List.of(producer, consumer1, consumer2));
+        when(statistikCache.get(1L, januar)).thenReturn(gecachterMonat(januar, producer, consumer1));
+
+        StatistikDTO result = statistikService.getStatistik(januar.atDay(1), januar.atEndOfMonth());
+
+        assertEquals(1, result.getMonate().size());
+        assertEquals(42.0, result.getMonate().get(0).getSummeConsumerTotal());
+        // Vollständigkeit über den Zeitraum aus den Einheiten mit Daten des Eintrags
+        assertEquals(List.of("Wohnung B"), result.getFehlendeEinheiten());
+        assertFalse(result.isDatenVollstaendig());
+        verify(messwerteRepository, never()).sumTageJeEinheitBetween(any(), any());
+        verify(messwerteRepository, never()).sumBilanzKomponentenPerZeitBetween(any(), any());
+        verify(statistikCache, never()).put(any(), any(), any());
+    }
+
+    @Test
+    void getStatistik_BerechneterGanzerMonat_WirdGecacht() {
+        stubMinimalStatistik();
+
+        StatistikDTO result = statistikService.getStatistik(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+
+        ArgumentCaptor<StatistikCache.MonatsEintrag> eintrag = ArgumentCaptor.forClass(StatistikCache.MonatsEintrag.class);
+        verify(statistikCache).put(eq(1L), eq(YearMonth.of(2024, 1)), eintrag.capture());
+        assertSame(result.getMonate().get(0), eintrag.getValue().statistik());
+        assertEquals(Set.of(producer.getId(), consumer1.getId()), eintrag.getValue().einheitenMitDaten());
+    }
+
+    @Test
+    void getStatistik_AngeschnittenerRandmonat_WederGelesenNochGecacht() {
+        YearMonth januar = YearMonth.of(2024, 1);
+        YearMonth februar = YearMonth.of(2024, 2);
+        LocalDate von = LocalDate.of(2024, 1, 15);
+        LocalDate bis = februar.atEndOfMonth();
+        when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 2, 29, 23, 45)));
+        stubEinheitenUndTageswerte(producer);
+        datenAnAllenTagen(von, januar.atEndOfMonth(), producer);
+        when(statistikCache.get(1L, februar)).thenReturn(gecachterMonat(februar, producer));
+
+        StatistikDTO result = statistikService.getStatistik(von, bis);
+
+        assertEquals(2, result.getMonate().size());
+        assertEquals(1, result.getMonate().get(0).getMonat());
+        assertEquals(von, result.getMonate().get(0).getVon());
+        assertEquals(2, result.getMonate().get(1).getMonat());
+        assertTrue(result.isDatenVollstaendig());
+        // Nur der fehlende (angeschnittene) Januar wird abgefragt
+        verify(messwerteRepository).sumTageJeEinheitBetween(von.atStartOfDay(), februar.atDay(1).atStartOfDay());
+        verify(statistikCache, never()).get(1L, januar);
+        verify(statistikCache, never()).put(any(), any(), any());
+    }
+
+    @Test
+    void getStatistik_Parallelitaet_MonateInZusammenhaengendenAbschnitten() {
+        LocalDate von = LocalDate.of(2024, 1, 1);
+        LocalDate bis = LocalDate.of(2024, 3, 31);
+        when(statistikSnapshotAusfuehrer.parallelitaet()).thenReturn(2);
+        when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 3, 31, 23, 45)));
+        stubEinheitenUndTageswerte(consumer1);
+        tageswert(LocalDate.of(2024, 1, 10), consumer1, 100.0, 50.0, 50.0);
+        tageswert(LocalDate.of(2024, 3, 10), consumer1, 30.0, 10.0, 10.0);
+
+        StatistikDTO result = statistikService.getStatistik(von, bis);
+
+        // Abschnitte [Jan] und [Feb, Mär], je eine Abfrage über die eigene Spanne
+        verify(statistikSnapshotAusfuehrer).fuehreAus(eq(1L), argThat(aufgaben -> aufgaben.size() == 2));
+        verify(messwerteRepository).sumTageJeEinheitBetween(
+            LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 2, 1, 0, 0));
+        verify(messwerteRepository).sumTageJeEinheitBetween(
+            LocalDateTime.of(2024, 2, 1, 0, 0), LocalDateTime.of(2024, 4, 1, 0, 0));
+        assertEquals(3, result.getMonate().size());
+        assertEquals(100.0, result.getMonate().get(0).getSummeConsumerTotal());
+        assertEquals(30.0, result.getMonate().get(2).getSummeConsumerTotal());
     }
 
     // ==================== Verteilmodus im StatistikDTO ====================
@@ -526,24 +596,9 @@ public class StatistikServiceTest {
     private void stubKpiRun(double producerTotal, double consumerTotal,
                             double producerZev, double consumerZev, double consumerZevCalc) {
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any())).thenReturn(Collections.emptyList());
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(producerTotal);
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(consumerTotal);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.PRODUCER), any(), any()))
-                .thenReturn(producerZev);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(consumerZev);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(eq(EinheitTyp.CONSUMER), any(), any()))
-                .thenReturn(consumerZevCalc);
-        // Einheit-Summen (berechneEinheitSummen iteriert findAll) – für die KPIs irrelevant
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(0.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(0.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(0.0);
+        stubEinheitenUndTageswerte(producer, consumer1);
+        tageswert(kpiVon, producer, producerTotal, producerZev, null);
+        tageswert(kpiVon, consumer1, consumerTotal, consumerZev, consumerZevCalc);
     }
 
     /** Aktiviert die Bilanz-Einheiten (Bezug + Rücklieferung) und deren Monats-Summen (Beträge). */
@@ -552,13 +607,11 @@ public class StatistikServiceTest {
         bezugEinheit.setId(10L);
         Einheit rueckEinheit = new Einheit("Rücklieferung", EinheitTyp.RUECKLIEFERUNG);
         rueckEinheit.setId(11L);
-        when(einheitRepository.findFirstByTyp(EinheitTyp.BEZUG)).thenReturn(Optional.of(bezugEinheit));
-        when(einheitRepository.findFirstByTyp(EinheitTyp.RUECKLIEFERUNG)).thenReturn(Optional.of(rueckEinheit));
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.BEZUG), any(), any()))
-                .thenReturn(bezug);
+        alleEinheiten.add(bezugEinheit);
+        alleEinheiten.add(rueckEinheit);
+        tageswert(kpiVon, bezugEinheit, bezug, 0.0, null);
         // Rücklieferung wird negativ gespeichert → Betrag im Service
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(eq(EinheitTyp.RUECKLIEFERUNG), any(), any()))
-                .thenReturn(-ruecklieferung);
+        tageswert(kpiVon, rueckEinheit, -ruecklieferung, 0.0, null);
     }
 
     private MonatsStatistikDTO ersterMonat() {
@@ -618,7 +671,7 @@ public class StatistikServiceTest {
 
     @Test
     void berechneKennzahlen_KeineBilanzDaten_BatterieNichtVerfuegbar() {
-        // findFirstByTyp(BEZUG/RUECKLIEFERUNG) nicht gestubt → Optional.empty()
+        // keine BEZUG-/RUECKLIEFERUNG-Einheit
         stubKpiRun(-1200.0, 1000.0, -900.0, 600.0, 600.0);
 
         MonatsStatistikDTO monat = ersterMonat();
@@ -636,8 +689,9 @@ public class StatistikServiceTest {
         stubKpiRun(-1200.0, 1000.0, -900.0, 600.0, 600.0);
         Einheit bezugEinheit = new Einheit("Netzbezug", EinheitTyp.BEZUG);
         bezugEinheit.setId(10L);
-        when(einheitRepository.findFirstByTyp(EinheitTyp.BEZUG)).thenReturn(Optional.of(bezugEinheit));
-        // RUECKLIEFERUNG bleibt Optional.empty()
+        alleEinheiten.add(bezugEinheit);
+        tageswert(kpiVon, bezugEinheit, 400.0, 0.0, null);
+        // keine RUECKLIEFERUNG-Einheit
 
         MonatsStatistikDTO monat = ersterMonat();
 
@@ -696,6 +750,32 @@ public class StatistikServiceTest {
         assertNull(monat.getBatterieWirkungsgrad());
     }
 
+    @Test
+    void berechneBatterieKennzahlen_MehrereMonate_EineAbfrageJeMonatZugeordnet() {
+        stubKpiRun(-1200.0, 1000.0, -900.0, 600.0, 600.0);
+        stubBilanzEinheiten(400.0, 300.0);
+        LocalDate februar = LocalDate.of(2024, 2, 1);
+        tageswert(februar, producer, -1200.0, -900.0, null);
+        tageswert(februar, consumer1, 1000.0, 600.0, 600.0);
+        tageswert(februar, alleEinheiten.get(2), 400.0, 0.0, null);
+        tageswert(februar, alleEinheiten.get(3), -300.0, 0.0, null);
+        List<Object[]> rows = Arrays.asList(
+                new Object[]{LocalDateTime.of(2024, 1, 31, 23, 45), 5.0, 0.0, 0.0, 0.0},
+                new Object[]{LocalDateTime.of(2024, 2, 1, 0, 0), 0.0, 3.0, 0.0, 0.0}
+        );
+        when(messwerteRepository.sumBilanzKomponentenPerZeitBetween(any(), any())).thenReturn(rows);
+
+        List<MonatsStatistikDTO> monate = statistikService.getStatistik(kpiVon, LocalDate.of(2024, 2, 29)).getMonate();
+
+        assertEquals(5.0, monate.get(0).getBatterieGeladen(), 1e-9);
+        assertEquals(0.0, monate.get(0).getBatterieEntladen(), 1e-9);
+        assertEquals(0.0, monate.get(1).getBatterieGeladen(), 1e-9);
+        assertEquals(3.0, monate.get(1).getBatterieEntladen(), 1e-9);
+        assertNull(monate.get(1).getBatterieWirkungsgrad());
+        verify(messwerteRepository).sumBilanzKomponentenPerZeitBetween(
+                kpiVon.atStartOfDay(), LocalDate.of(2024, 3, 1).atStartOfDay());
+    }
+
     // ==================== CSV-Export der 15-Min-Werte (Spec Export-Messdaten) ====================
 
     private final LocalDate exportVon = LocalDate.of(2024, 1, 1);
@@ -712,105 +792,29 @@ public class StatistikServiceTest {
     }
 
     @Test
-    void exportMesswerteCsv_Consumer_ReturnsHeaderWithTranslatedTitlesAndTotalsAndOneRowPerInterval() {
+    void exportMesswerteCsv_Consumer_UebergibtUebersetzteTitelAnSchreiber() {
         consumer1.setOrgId(1L);
         when(einheitRepository.findById(2L)).thenReturn(Optional.of(consumer1));
         stubExportTitel();
+        ExportAusgabe ausgabe = out -> { };
+        when(messwerteCsvSchreiber.export(1L, 2L, exportVon, exportBis,
+                "Datum+Zeit", "Energiebezug Total kWh", "Anteil Bezug aus ZEV kWh")).thenReturn(ausgabe);
 
-        Messwerte m1 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 0), 1.5, 1.0, consumer1);
-        Messwerte m2 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 15), 2.25, 1.5, consumer1);
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumer1), any(), any()))
-                .thenReturn(new java.util.ArrayList<>(Arrays.asList(m1, m2)));
-
-        byte[] result = statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "de");
-
-        String csv = new String(result, StandardCharsets.UTF_8);
-        String[] lines = csv.split("\n");
-        assertEquals(3, lines.length, "Kopfzeile + 2 Datenzeilen");
-        // Header: übersetzte Titel + Monatstotal in Klammern (Summe der gerundeten Zeilen)
-        assertEquals("Datum+Zeit,Energiebezug Total kWh (3.750),Anteil Bezug aus ZEV kWh (2.500)", lines[0]);
-        // Datenzeilen: Zeit dd.MM.yyyy HH:mm, Punkt-Dezimal, 3 NKS
-        assertEquals("01.01.2024 00:00,1.500,1.000", lines[1]);
-        assertEquals("01.01.2024 00:15,2.250,1.500", lines[2]);
+        assertSame(ausgabe, statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "de"));
 
         verify(hibernateFilterService).enableOrgFilter();
     }
 
-    @Test
-    void exportMesswerteCsv_HeaderTotalEqualsSumOfRoundedRows() {
-        // Drei Intervalle mit 0.0005 → je gerundet auf 0.001; Summe der GERUNDETEN Werte = 0.003
-        // (Summe der Rohwerte 0.0015 gerundet wäre 0.002 → beweist: Header aus Rundungsbasis der Zeilen).
-        consumer1.setOrgId(1L);
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(consumer1));
-        stubExportTitel();
-
-        Messwerte m1 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 0), 0.0005, 0.0004, consumer1);
-        Messwerte m2 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 15), 0.0005, 0.0004, consumer1);
-        Messwerte m3 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 30), 0.0005, 0.0004, consumer1);
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumer1), any(), any()))
-                .thenReturn(new java.util.ArrayList<>(Arrays.asList(m1, m2, m3)));
-
-        byte[] result = statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "de");
-
-        String csv = new String(result, StandardCharsets.UTF_8);
-        String[] lines = csv.split("\n");
-        // Header-Total = Summe der gerundeten Zeilen (0.001 * 3 = 0.003 / 0.000 * 3 = 0.000)
-        assertEquals("Datum+Zeit,Energiebezug Total kWh (0.003),Anteil Bezug aus ZEV kWh (0.000)", lines[0]);
-        assertEquals("01.01.2024 00:00,0.001,0.000", lines[1]);
-        assertEquals("01.01.2024 00:15,0.001,0.000", lines[2]);
-        assertEquals("01.01.2024 00:30,0.001,0.000", lines[3]);
-    }
-
-    @Test
-    void exportMesswerteCsv_RoundsToThreeDecimalsHalfUp() {
-        consumer1.setOrgId(1L);
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(consumer1));
-        stubExportTitel();
-
-        // 1.2345 → 1.235 (HALF_UP), 0.1234 → 0.123
-        Messwerte m1 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 0), 1.2345, 0.1234, consumer1);
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumer1), any(), any()))
-                .thenReturn(new java.util.ArrayList<>(List.of(m1)));
-
-        byte[] result = statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "de");
-
-        String[] lines = new String(result, StandardCharsets.UTF_8).split("\n");
-        assertEquals("01.01.2024 00:00,1.235,0.123", lines[1]);
-    }
-
     @Test
     void exportMesswerteCsv_EnglishLanguage_UsesEnglishTitles() {
         consumer1.setOrgId(1L);
         when(einheitRepository.findById(2L)).thenReturn(Optional.of(consumer1));
         stubExportTitel();
 
-        Messwerte m1 = new Messwerte(LocalDateTime.of(2024, 1, 1, 0, 0), 1.0, 0.5, consumer1);
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumer1), any(), any()))
-                .thenReturn(new java.util.ArrayList<>(List.of(m1)));
+        statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "en");
 
-        byte[] result = statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "en");
-
-        String[] lines = new String(result, StandardCharsets.UTF_8).split("\n");
-        assertEquals("Date+Time,Energy consumption total kWh (1.000),Share from ZEV kWh (0.500)", lines[0]);
-    }
-
-    @Test
-    void exportMesswerteCsv_EmptyMesswerte_ReturnsHeaderOnlyWithZeroTotals() {
-        consumer1.setOrgId(1L);
-        when(einheitRepository.findById(2L)).thenReturn(Optional.of(consumer1));
-        stubExportTitel();
-        when(messwerteRepository.findByEinheitAndZeitBetween(eq(consumer1), any(), any()))
-                .thenReturn(new java.util.ArrayList<>());
-
-        byte[] result = statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "de");
-
-        String csv = new String(result, StandardCharsets.UTF_8);
-        String[] lines = csv.split("\n");
-        assertEquals(1, lines.length, "Nur Kopfzeile, keine Datenzeilen");
-        // Leeres Ergebnis: Totals konsistent auf 3 NKS formatiert (Summen mit Skala 3 initialisiert).
-        assertEquals("Datum+Zeit,Energiebezug Total kWh (0.000),Anteil Bezug aus ZEV kWh (0.000)", lines[0]);
-
-        verify(hibernateFilterService).enableOrgFilter();
+        verify(messwerteCsvSchreiber).export(1L, 2L, exportVon, exportBis,
+                "Date+Time", "Energy consumption total kWh", "Share from ZEV kWh");
     }
 
     @Test
@@ -825,7 +829,7 @@ public class StatistikServiceTest {
 
         verify(hibernateFilterService).enableOrgFilter();
         // Kein Fremd-Export: es werden keine Messwerte geladen
-        verify(messwerteRepository, never()).findByEinheitAndZeitBetween(any(), any(), any());
+        verifyNoInteractions(messwerteCsvSchreiber);
     }
 
     @Test
@@ -836,7 +840,7 @@ public class StatistikServiceTest {
                 () -> statistikService.exportMesswerteCsv(99L, exportVon, exportBis, "de"));
         assertEquals("EINHEIT_NICHT_GEFUNDEN", ex.getMessage());
 
-        verify(messwerteRepository, never()).findByEinheitAndZeitBetween(any(), any(), any());
+        verifyNoInteractions(messwerteCsvSchreiber);
     }
 
     @ParameterizedTest
@@ -851,21 +855,14 @@ public class StatistikServiceTest {
                 () -> statistikService.exportMesswerteCsv(2L, exportVon, exportBis, "de"));
         assertEquals("EXPORT_NUR_CONSUMER", ex.getMessage());
 
-        verify(messwerteRepository, never()).findByEinheitAndZeitBetween(any(), any(), any());
+        verifyNoInteractions(messwerteCsvSchreiber);
     }
 
     /** Minimales, vollständiges Stub-Set für einen getStatistik-Lauf über einen Monat. */
     private void stubMinimalStatistik() {
         when(messwerteRepository.findMaxZeit()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 31, 23, 45)));
-        when(einheitRepository.findAll()).thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctEinheitenInRange(any(), any()))
-                .thenReturn(Arrays.asList(producer, consumer1));
-        when(messwerteRepository.findDistinctDatesInRange(any(), any())).thenReturn(Collections.emptyList());
-        when(messwerteRepository.sumTotalByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitTypAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumTotalByEinheitAndZeitBetween(any(), any(), any())).thenReturn(100.0);
-        when(messwerteRepository.sumZevByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
-        when(messwerteRepository.sumZevCalculatedByEinheitAndZeitBetween(any(), any(), any())).thenReturn(50.0);
+        stubEinheitenUndTageswerte(producer, consumer1);
+        tageswert(LocalDate.of(2024, 1, 1), producer, -100.0, -50.0, null);
+        tageswert(LocalDate.of(2024, 1, 1), consumer1, 100.0, 50.0, 50.0);
     }
 }
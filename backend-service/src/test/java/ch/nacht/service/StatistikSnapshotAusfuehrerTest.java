@@ -0,0 +1,128 @@
+package ch.nacht.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StatistikSnapshotAusfuehrerTest {
+
+    private static final long ORG_ID = 7L;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private HibernateFilterService hibernateFilterService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private StatistikSnapshotAusfuehrer ausfuehrer;
+
+    @AfterEach
+    void tearDown() {
+        if (ausfuehrer != null) {
+            ausfuehrer.beendeWorker();
+        }
+    }
+
+    @Test
+    void fuehreAus_EineAufgabe_OhneSnapshotInAufrufenderTransaktion() {
+        ausfuehrer = new StatistikSnapshotAusfuehrer(jdbcTemplate, hibernateFilterService, transactionManager, 4, 10);
+
+        List<String> ergebnisse = ausfuehrer.fuehreAus(ORG_ID, List.<Supplier<String>>of(() -> "Jan"));
+
+        assertEquals(List.of("Jan"), ergebnisse);
+        verifyNoInteractions(jdbcTemplate, hibernateFilterService, transactionManager);
+    }
+
+    @Test
+    void fuehreAus_MehrereAufgaben_WorkerUebernehmenSnapshotUndOrgFilter() {
+        ausfuehrer = new StatistikSnapshotAusfuehrer(jdbcTemplate, hibernateFilterService, transactionManager, 2, 10);
+        when(jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class))
+                .thenReturn("00000003-0000001B-1");
+
+        List<String> ergebnisse = ausfuehrer.fuehreAus(ORG_ID,
+                List.<Supplier<String>>of(() -> "Jan", () -> "Feb", () -> "Mär"));
+
+        // Ergebnisse in Aufgaben-Reihenfolge, jede Aufgabe in eigener Worker-Transaktion
+        assertEquals(List.of("Jan", "Feb", "Mär"), ergebnisse);
+        verify(jdbcTemplate, times(3)).execute("SET TRANSACTION SNAPSHOT '00000003-0000001B-1'");
+        verify(hibernateFilterService, times(3)).enableOrgFilter(ORG_ID);
+        verify(transactionManager, times(3)).getTransaction(any());
+    }
+
+    @Test
+    void fuehreAus_AufgabeSchlaegtFehl_FehlerWirdWeitergeworfen() {
+        ausfuehrer = new StatistikSnapshotAusfuehrer(jdbcTemplate, hibernateFilterService, transactionManager, 2, 10);
+        when(jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class))
+                .thenReturn("00000003-0000001B-1");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> ausfuehrer.fuehreAus(ORG_ID, List.<Supplier<String>>of(
+                        () -> "Jan", () -> { throw new IllegalArgumentException("kaputt"); })));
+
+        assertEquals("kaputt", ex.getMessage());
+    }
+
+    @Test
+    void fuehreAus_PoolAusgelastet_WeitereAufruferSequenziell() {
+        // Pool 5, 2 Threads: (5 - 1) / 2 = 2 gleichzeitig parallele Aufrufer
+        ausfuehrer = new StatistikSnapshotAusfuehrer(jdbcTemplate, hibernateFilterService, transactionManager, 2, 5);
+        when(jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class))
+                .thenReturn("00000003-0000001B-1");
+        CountDownLatch freigabe = new CountDownLatch(1);
+        Supplier<String> blockiert = () -> {
+            try {
+                freigabe.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "x";
+        };
+        ExecutorService aufrufer = Executors.newFixedThreadPool(2);
+        try {
+            aufrufer.submit(() -> ausfuehrer.fuehreAus(ORG_ID, List.of(blockiert, blockiert)));
+            aufrufer.submit(() -> ausfuehrer.fuehreAus(ORG_ID, List.of(blockiert, blockiert)));
+            // Beide Aufrufer haben exportiert, halten also ihren Platz
+            verify(jdbcTemplate, timeout(5000).times(2)).queryForObject("SELECT pg_export_snapshot()", String.class);
+
+            List<String> ergebnisse = ausfuehrer.fuehreAus(ORG_ID,
+                    List.<Supplier<String>>of(() -> "Jan", () -> "Feb"));
+
+            // Dritter Aufrufer rechnet in der eigenen Transaktion, ohne Export und ohne Worker
+            assertEquals(List.of("Jan", "Feb"), ergebnisse);
+            verify(jdbcTemplate, times(2)).queryForObject("SELECT pg_export_snapshot()", String.class);
+        } finally {
+            freigabe.countDown();
+            aufrufer.shutdownNow();
+        }
+    }
+
+    @Test
+    void fuehreAus_UngueltigeSnapshotId_KeinWorkerGestartet() {
+        ausfuehrer = new StatistikSnapshotAusfuehrer(jdbcTemplate, hibernateFilterService, transactionManager, 2, 10);
+        when(jdbcTemplate.queryForObject("SELECT pg_export_snapshot()", String.class))
+                .thenReturn("x'; DROP TABLE messwerte; --");
+
+        assertThrows(IllegalStateException.class,
+                () -> ausfuehrer.fuehreAus(ORG_ID, List.<Supplier<String>>of(() -> "Jan", () -> "Feb")));
+
+        verify(jdbcTemplate, never()).execute(anyString());
+        verifyNoInteractions(transactionManager);
+    }
+}
@@ -16,7 +16,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,9 +43,14 @@ public class TarifServiceTest {
     @Mock
     private HibernateFilterService hibernateFilterService;
 
+    @Mock
+    private DatenVersionService datenVersionService;
+
     @InjectMocks
     private TarifService tarifService;
 
+    private static final Long ORG_ID = 1L;
+
     private Tarif zevTarif2024;
     private Tarif vnbTarif2024;
 
@@ -256,6 +261,7 @@ public class TarifServiceTest {
 
         assertTrue(result);
         verify(tarifRepository).deleteById(1L);
+        verify(datenVersionService).erhoehe(any());
     }
 
     @Test
@@ -266,15 +272,24 @@ public class TarifServiceTest {
 
         assertFalse(result);
         verify(tarifRepository, never()).deleteById(anyLong());
+        verifyNoInteractions(datenVersionService);
+    }
+
+    /** Tarife des Mandanten, aus denen der Tarif-Index aufgebaut wird. */
+    private void tarife(Tarif... tarife) {
+        when(organizationContextService.getCurrentOrgId()).thenReturn(ORG_ID);
+        when(tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc()).thenReturn(Arrays.asList(tarife));
+    }
+
+    private static Tarif tarif(String bezeichnung, TarifTyp typ, LocalDate von, LocalDate bis) {
+        return new Tarif(bezeichnung, typ, new BigDecimal("0.20000"), von, bis);
     }
 
     @Test
     void getTarifeForZeitraum_ReturnsMatchingTarife() {
         LocalDate von = LocalDate.of(2024, 3, 1);
         LocalDate bis = LocalDate.of(2024, 3, 31);
-
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.ZEV, von, bis))
-            .thenReturn(Collections.singletonList(zevTarif2024));
+        tarife(zevTarif2024, vnbTarif2024);
 
         List<Tarif> result = tarifService.getTarifeForZeitraum(TarifTyp.ZEV, von, bis);
 
@@ -283,31 +298,66 @@ public class TarifServiceTest {
     }
 
     @Test
-    void validateTarifAbdeckung_FullCoverage_NoException() {
-        LocalDate von = LocalDate.of(2024, 1, 1);
-        LocalDate bis = LocalDate.of(2024, 1, 31);
+    void getTarifeForZeitraum_UeberschneidendeNachBeginnSortiert() {
+        Tarif sauna = tarif("Sauna", TarifTyp.ZUSATZ, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+        Tarif waschkueche = tarif("Waschküche", TarifTyp.ZUSATZ, LocalDate.of(2023, 1, 1), LocalDate.of(2025, 12, 31));
+        Tarif alt = tarif("Alt", TarifTyp.ZUSATZ, LocalDate.of(2022, 1, 1), LocalDate.of(2022, 12, 31));
+        Tarif spaeter = tarif("Später", TarifTyp.ZUSATZ, LocalDate.of(2024, 7, 1), LocalDate.of(2024, 9, 30));
+        tarife(sauna, spaeter, zevTarif2024, waschkueche, alt);
 
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.ZEV, von, bis))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.VNB, von, bis))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        List<Tarif> result = tarifService.getTarifeForZeitraum(
+                TarifTyp.ZUSATZ, LocalDate.of(2024, 4, 1), LocalDate.of(2024, 6, 30));
 
-        assertDoesNotThrow(() -> tarifService.validateTarifAbdeckung(von, bis));
+        assertEquals(List.of(waschkueche, sauna), result);
     }
 
     @Test
-    void validateTarifAbdeckung_MissingZevTarif_ThrowsException() {
-        LocalDate von = LocalDate.of(2024, 1, 1);
-        LocalDate bis = LocalDate.of(2024, 1, 31);
+    void getTarifeForZeitraum_IndexWirdWiederverwendetUndNachAenderungNeuAufgebaut() {
+        LocalDate von = LocalDate.of(2024, 3, 1);
+        LocalDate bis = LocalDate.of(2024, 3, 31);
+        tarife(zevTarif2024);
+        Tarif neu = tarif("ZEV 2025", TarifTyp.ZEV, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
+        when(tarifRepository.existsOverlappingTarif(any(), any(), any(), any())).thenReturn(false);
+        when(tarifRepository.save(neu)).thenReturn(neu);
+
+        tarifService.getTarifeForZeitraum(TarifTyp.ZEV, von, bis);
+        tarifService.validateTarifAbdeckung(von, bis);
+        verify(tarifRepository, times(1)).findAllByOrderByTariftypAscGueltigVonDesc();
+
+        // Ohne Transaktion wird der Index sofort verworfen
+        tarifService.saveTarif(neu);
+        tarifService.getTarifeForZeitraum(TarifTyp.ZEV, von, bis);
+        verify(tarifRepository, times(2)).findAllByOrderByTariftypAscGueltigVonDesc();
+    }
+
+    @Test
+    void getTarifeByTypenForZeitraum_MehrereTypenNachBeginn() {
+        Tarif zevQ2 = tarif("ZEV Q2", TarifTyp.ZEV, LocalDate.of(2024, 4, 1), LocalDate.of(2024, 6, 30));
+        Tarif zevQ1 = tarif("ZEV Q1", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        Tarif grund = tarif("Grundgebühr", TarifTyp.GRUNDGEBUEHR, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 12, 31));
+        tarife(zevQ2, zevQ1, grund, vnbTarif2024);
 
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.ZEV, von, bis))
-            .thenReturn(Collections.emptyList());
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.VNB, von, bis))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        List<Tarif> result = tarifService.getTarifeByTypenForZeitraum(
+                EnumSet.of(TarifTyp.ZEV, TarifTyp.GRUNDGEBUEHR), LocalDate.of(2024, 3, 1), LocalDate.of(2024, 4, 30));
+
+        assertEquals(List.of(zevQ1, grund, zevQ2), result);
+    }
+
+    @Test
+    void validateTarifAbdeckung_FullCoverage_NoException() {
+        tarife(zevTarif2024, vnbTarif2024);
+
+        assertDoesNotThrow(() -> tarifService.validateTarifAbdeckung(
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)));
+    }
+
+    @Test
+    void validateTarifAbdeckung_MissingZevTarif_ThrowsException() {
+        tarife(vnbTarif2024);
 
         TarifLueckenException exception = assertThrows(
             TarifLueckenException.class,
-            () -> tarifService.validateTarifAbdeckung(von, bis)
+            () -> tarifService.validateTarifAbdeckung(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31))
         );
 
         assertTrue(exception.getLuecken().stream().anyMatch(l -> l.tarifTyp().equals("ZEV")));
@@ -315,17 +365,11 @@ public class TarifServiceTest {
 
     @Test
     void validateTarifAbdeckung_MissingVnbTarif_ThrowsException() {
-        LocalDate von = LocalDate.of(2024, 1, 1);
-        LocalDate bis = LocalDate.of(2024, 1, 31);
-
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.ZEV, von, bis))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.VNB, von, bis))
-            .thenReturn(Collections.emptyList());
+        tarife(zevTarif2024);
 
         TarifLueckenException exception = assertThrows(
             TarifLueckenException.class,
-            () -> tarifService.validateTarifAbdeckung(von, bis)
+            () -> tarifService.validateTarifAbdeckung(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31))
         );
 
         assertTrue(exception.getLuecken().stream().anyMatch(l -> l.tarifTyp().equals("VNB")));
@@ -333,75 +377,54 @@ public class TarifServiceTest {
 
     @Test
     void validateTarifAbdeckung_GapInCoverage_ThrowsException() {
-        LocalDate von = LocalDate.of(2024, 1, 1);
-        LocalDate bis = LocalDate.of(2024, 3, 31);
-
-        // ZEV Tarif only covers January
-        Tarif zevJan = new Tarif(
-            "ZEV Jan",
-            TarifTyp.ZEV,
-            new BigDecimal("0.20000"),
-            LocalDate.of(2024, 1, 1),
-            LocalDate.of(2024, 1, 31)
-        );
-        // ZEV Tarif only covers March (gap in February)
-        Tarif zevMar = new Tarif(
-            "ZEV Mar",
-            TarifTyp.ZEV,
-            new BigDecimal("0.21000"),
-            LocalDate.of(2024, 3, 1),
-            LocalDate.of(2024, 3, 31)
-        );
-
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.ZEV, von, bis))
-            .thenReturn(Arrays.asList(zevJan, zevMar));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.VNB, von, bis))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        // ZEV Tarif only covers January and March (gap in February)
+        Tarif zevJan = tarif("ZEV Jan", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+        Tarif zevMar = tarif("ZEV Mar", TarifTyp.ZEV, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31));
+        tarife(zevMar, zevJan, vnbTarif2024);
 
         TarifLueckenException exception = assertThrows(
             TarifLueckenException.class,
-            () -> tarifService.validateTarifAbdeckung(von, bis)
+            () -> tarifService.validateTarifAbdeckung(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31))
         );
 
-        assertTrue(exception.getLuecken().stream().anyMatch(l -> l.tarifTyp().equals("ZEV")));
+        assertEquals(1, exception.getLuecken().size());
+        assertEquals("ZEV", exception.getLuecken().get(0).tarifTyp());
+        assertEquals("01.02.2024", exception.getLuecken().get(0).datum());
     }
 
     @Test
     void validateTarifAbdeckung_MultipleTarifsWithoutGap_NoException() {
-        LocalDate von = LocalDate.of(2024, 1, 1);
-        LocalDate bis = LocalDate.of(2024, 6, 30);
+        // ZEV Q1 and Q2 - continuous
+        Tarif zevQ1 = tarif("ZEV Q1", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31));
+        Tarif zevQ2 = tarif("ZEV Q2", TarifTyp.ZEV, LocalDate.of(2024, 4, 1), LocalDate.of(2024, 6, 30));
+        tarife(zevQ2, zevQ1, vnbTarif2024);
 
-        // ZEV Tarif H1 (Jan-Jun)
-        Tarif zevH1 = new Tarif(
-            "ZEV H1",
-            TarifTyp.ZEV,
-            new BigDecimal("0.20000"),
-            LocalDate.of(2024, 1, 1),
-            LocalDate.of(2024, 3, 31)
-        );
-        // ZEV Tarif H2 (Apr-Jun) - continuous with H1
-        Tarif zevH2 = new Tarif(
-            "ZEV H2",
-            TarifTyp.ZEV,
-            new BigDecimal("0.21000"),
-            LocalDate.of(2024, 4, 1),
-            LocalDate.of(2024, 6, 30)
-        );
+        assertDoesNotThrow(() -> tarifService.validateTarifAbdeckung(
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 30)));
+    }
+
+    @Test
+    void validateTarifAbdeckung_UeberlappendeTarifeMitLueckeDanach() {
+        // Ein langer Tarif überdeckt einen kürzeren; die Lücke beginnt nach dem längeren
+        Tarif lang = tarif("ZEV lang", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 5, 31));
+        Tarif kurz = tarif("ZEV kurz", TarifTyp.ZEV, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 29));
+        Tarif spaet = tarif("ZEV spät", TarifTyp.ZEV, LocalDate.of(2024, 6, 15), LocalDate.of(2024, 12, 31));
+        tarife(spaet, kurz, lang, vnbTarif2024);
 
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.ZEV, von, bis))
-            .thenReturn(Arrays.asList(zevH1, zevH2));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(TarifTyp.VNB, von, bis))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        TarifLueckenException exception = assertThrows(
+            TarifLueckenException.class,
+            () -> tarifService.validateTarifAbdeckung(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31))
+        );
 
-        assertDoesNotThrow(() -> tarifService.validateTarifAbdeckung(von, bis));
+        assertEquals("01.06.2024", exception.getLuecken().get(0).datum());
+        assertFalse(exception.getLuecken().get(0).weitere());
     }
 
     // ==================== validateQuartale Tests ====================
 
     @Test
     void validateQuartale_NoTarife_ReturnsValidWithMessage() {
-        when(tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc())
-            .thenReturn(Collections.emptyList());
+        tarife();
 
         TarifService.ValidationResult result = tarifService.validateQuartale();
 
@@ -411,73 +434,40 @@ public class TarifServiceTest {
 
     @Test
     void validateQuartale_FullCoverage_ReturnsValid() {
-        when(tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc())
-            .thenReturn(Arrays.asList(zevTarif2024, vnbTarif2024));
-
-        // Mock coverage for all quarters
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        tarife(zevTarif2024, vnbTarif2024);
 
         TarifService.ValidationResult result = tarifService.validateQuartale();
 
         assertTrue(result.valid());
         assertTrue(result.luecken().isEmpty());
+        // Alle vier Quartale aus dem einmal geladenen Index
+        verify(tarifRepository, times(1)).findAllByOrderByTariftypAscGueltigVonDesc();
+        verifyNoMoreInteractions(tarifRepository);
     }
 
     @Test
     void validateQuartale_MissingTarifInQuarter_ReturnsInvalidWithErrors() {
-        // Only ZEV tarif for Q1
-        Tarif zevQ1 = new Tarif(
-            "ZEV Q1",
-            TarifTyp.ZEV,
-            new BigDecimal("0.20000"),
-            LocalDate.of(2024, 1, 1),
-            LocalDate.of(2024, 3, 31)
-        );
-
-        when(tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc())
-            .thenReturn(Collections.singletonList(zevQ1));
-
-        // ZEV covered, VNB missing
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevQ1));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.emptyList());
+        // Only ZEV tarif for Q1, VNB missing
+        tarife(tarif("ZEV Q1", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 31)));
 
         TarifService.ValidationResult result = tarifService.validateQuartale();
 
         assertFalse(result.valid());
-        assertFalse(result.luecken().isEmpty());
+        assertEquals(1, result.luecken().size());
         assertThat(result.luecken().get(0).periode(), containsString("Q1/2024"));
         assertTrue(result.luecken().get(0).luecken().stream().anyMatch(l -> l.tarifTyp().equals("VNB")));
     }
 
     @Test
     void validateQuartale_GapInQuarter_ReturnsInvalidWithErrors() {
-        // ZEV tarif only covers first half of Q1
-        Tarif zevPartial = new Tarif(
-            "ZEV Partial",
-            TarifTyp.ZEV,
-            new BigDecimal("0.20000"),
-            LocalDate.of(2024, 1, 1),
-            LocalDate.of(2024, 2, 15)
-        );
-
-        when(tarifRepository.findAllByOrderByTariftypAscGueltigVonDesc())
-            .thenReturn(Arrays.asList(zevPartial, vnbTarif2024));
-
-        // ZEV has gap, VNB full coverage
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(eq(TarifTyp.ZEV), any(), any()))
-            .thenReturn(Collections.singletonList(zevPartial));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(eq(TarifTyp.VNB), any(), any()))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        // ZEV tarif only covers first half of Q1, VNB full year
+        Tarif zevPartial = tarif("ZEV Partial", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 15));
+        tarife(zevPartial, vnbTarif2024);
 
         TarifService.ValidationResult result = tarifService.validateQuartale();
 
         assertFalse(result.valid());
-        assertFalse(result.luecken().isEmpty());
+        assertEquals("Q1/2024", result.luecken().get(0).periode());
         assertTrue(result.luecken().get(0).luecken().stream().anyMatch(l -> l.tarifTyp().equals("ZEV")));
     }
 
@@ -485,8 +475,7 @@ public class TarifServiceTest {
 
     @Test
     void validateJahre_NoTarife_ReturnsValidWithMessage() {
-        when(tarifRepository.findDistinctYears())
-            .thenReturn(Collections.emptyList());
+        tarife();
 
         TarifService.ValidationResult result = tarifService.validateJahre();
 
@@ -496,20 +485,7 @@ public class TarifServiceTest {
 
     @Test
     void validateJahre_FullCoverage_ReturnsValid() {
-        when(tarifRepository.findDistinctYears())
-            .thenReturn(Collections.singletonList(2024));
-
-        // Mock full year coverage
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.ZEV),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.VNB),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        tarife(zevTarif2024, vnbTarif2024);
 
         TarifService.ValidationResult result = tarifService.validateJahre();
 
@@ -519,20 +495,8 @@ public class TarifServiceTest {
 
     @Test
     void validateJahre_MissingTarifInYear_ReturnsInvalidWithErrors() {
-        when(tarifRepository.findDistinctYears())
-            .thenReturn(Collections.singletonList(2024));
-
         // ZEV covered, VNB missing
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.ZEV),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.VNB),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.emptyList());
+        tarife(zevTarif2024);
 
         TarifService.ValidationResult result = tarifService.validateJahre();
 
@@ -544,56 +508,23 @@ public class TarifServiceTest {
 
     @Test
     void validateJahre_MultipleYears_ChecksAllYears() {
-        when(tarifRepository.findDistinctYears())
-            .thenReturn(Arrays.asList(2024, 2025));
-
-        // 2024 fully covered
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.ZEV),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.singletonList(zevTarif2024));
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.VNB),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
-
-        // 2025 missing both tariffs
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.ZEV),
-            eq(LocalDate.of(2025, 1, 1)),
-            eq(LocalDate.of(2025, 12, 31))))
-            .thenReturn(Collections.emptyList());
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.VNB),
-            eq(LocalDate.of(2025, 1, 1)),
-            eq(LocalDate.of(2025, 12, 31))))
-            .thenReturn(Collections.emptyList());
+        // 2024 fully covered; ZEV reicht bis Ende Januar 2025, VNB fehlt 2025 ganz
+        Tarif zevBisJanuar = tarif("ZEV", TarifTyp.ZEV, LocalDate.of(2024, 1, 1), LocalDate.of(2025, 1, 31));
+        tarife(zevBisJanuar, vnbTarif2024);
 
         TarifService.ValidationResult result = tarifService.validateJahre();
 
         assertFalse(result.valid());
-        assertFalse(result.luecken().isEmpty());
-        assertTrue(result.luecken().stream().anyMatch(p -> p.periode().equals("2025")));
+        assertEquals(1, result.luecken().size());
+        assertEquals("2025", result.luecken().get(0).periode());
+        assertEquals("01.02.2025", result.luecken().get(0).luecken().get(0).datum());
+        verify(tarifRepository, times(1)).findAllByOrderByTariftypAscGueltigVonDesc();
     }
 
     @Test
     void validateJahre_DateFormatIsSwiss() {
-        when(tarifRepository.findDistinctYears())
-            .thenReturn(Collections.singletonList(2024));
-
         // ZEV missing
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.ZEV),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.emptyList());
-        when(tarifRepository.findByTariftypAndZeitraumOverlapping(
-            eq(TarifTyp.VNB),
-            eq(LocalDate.of(2024, 1, 1)),
-            eq(LocalDate.of(2024, 12, 31))))
-            .thenReturn(Collections.singletonList(vnbTarif2024));
+        tarife(vnbTarif2024);
 
         TarifService.ValidationResult result = tarifService.validateJahre();
 
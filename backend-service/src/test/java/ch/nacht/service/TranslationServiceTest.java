@@ -0,0 +1,97 @@
+package ch.nacht.service;
+
+import ch.nacht.entity.Translation;
+import ch.nacht.repository.TranslationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TranslationServiceTest {
+
+    @Mock
+    private TranslationRepository translationRepository;
+
+    @InjectMocks
+    private TranslationService translationService;
+
+    @Test
+    void getBundle_MehrfachUndBeideSprachen_LaedtTabelleEinmal() {
+        when(translationRepository.findAll()).thenReturn(List.of(
+                new Translation("RECHNUNG", "Rechnung", "Invoice"),
+                new Translation("NUR_DEUTSCH", "Nur Deutsch", null)));
+
+        Map<String, String> deutsch = translationService.getBundle("de");
+        Map<String, String> englisch = translationService.getBundle("EN");
+
+        assertEquals("Rechnung", deutsch.get("RECHNUNG"));
+        assertEquals("Invoice", englisch.get("RECHNUNG"));
+        // Fehlender Text: der Key selbst
+        assertEquals("NUR_DEUTSCH", englisch.get("NUR_DEUTSCH"));
+        assertSame(deutsch, translationService.getBundle("de"));
+        assertThrows(UnsupportedOperationException.class, () -> deutsch.put("X", "Y"));
+        verify(translationRepository, times(1)).findAll();
+    }
+
+    @Test
+    void saveTranslation_VerwirftBundle() {
+        when(translationRepository.findAll())
+                .thenReturn(List.of(new Translation("RECHNUNG", "Rechnung", "Invoice")))
+                .thenReturn(List.of(new Translation("RECHNUNG", "Faktura", "Invoice")));
+        Translation geaendert = new Translation("RECHNUNG", "Faktura", "Invoice");
+        when(translationRepository.save(geaendert)).thenReturn(geaendert);
+
+        assertEquals("Rechnung", translationService.getBundle("de").get("RECHNUNG"));
+        translationService.saveTranslation(geaendert);
+
+        assertEquals("Faktura", translationService.getBundle("de").get("RECHNUNG"));
+        verify(translationRepository, times(2)).findAll();
+    }
+
+    @Test
+    void deleteTranslation_VerwirftBundle() {
+        when(translationRepository.findAll())
+                .thenReturn(List.of(new Translation("ALT", "Alt", "Old")))
+                .thenReturn(List.of());
+        when(translationRepository.findById("ALT")).thenReturn(Optional.of(new Translation("ALT", "Alt", "Old")));
+
+        assertTrue(translationService.getBundle("de").containsKey("ALT"));
+        translationService.deleteTranslation("ALT");
+
+        assertFalse(translationService.getBundle("de").containsKey("ALT"));
+    }
+
+    @Test
+    void importTranslations_OhneUeberschreiben_LiestNurEingereichteKeys() {
+        Translation bestehend = new Translation("BESTEHEND", "Alt", "Old");
+        Translation neu = new Translation("NEU", "Neu", "New");
+        when(translationRepository.findAllById(List.of("BESTEHEND", "NEU"))).thenReturn(List.of(bestehend));
+        when(translationRepository.saveAll(List.of(neu))).thenReturn(List.of(neu));
+
+        int anzahl = translationService.importTranslations(List.of(bestehend, neu), false);
+
+        assertEquals(1, anzahl);
+        verify(translationRepository, never()).findAll();
+    }
+
+    @Test
+    void importTranslations_NichtsGespeichert_BundleBleibt() {
+        when(translationRepository.findAll()).thenReturn(List.of(new Translation("RECHNUNG", "Rechnung", "Invoice")));
+        when(translationRepository.saveAll(anyList())).thenReturn(List.of());
+        Map<String, String> vorher = translationService.getBundle("de");
+
+        translationService.importTranslations(List.of(), true);
+
+        assertSame(vorher, translationService.getBundle("de"));
+    }
+}
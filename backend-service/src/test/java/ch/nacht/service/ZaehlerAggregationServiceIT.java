@@ -0,0 +1,153 @@
+package ch.nacht.service;
+
+import ch.nacht.AbstractIntegrationTest;
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.entity.Messwerte;
+import ch.nacht.entity.Organisation;
+import ch.nacht.entity.Quelle;
+import ch.nacht.entity.ZaehlerRohdaten;
+import ch.nacht.repository.AggregationCheckpointRepository;
+import ch.nacht.repository.EinheitRepository;
+import ch.nacht.repository.MesswerteRepository;
+import ch.nacht.repository.OrganisationRepository;
+import ch.nacht.repository.ZaehlerRohdatenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mengenbasierte Aggregation gegen PostgreSQL: {@code findIntervallDeltas} und das
+ * Batch-Schreiben der Messwerte (Update bestehender Zeilen, Insert der übrigen) mit echtem
+ * {@link JdbcTemplate}.
+ *
+ * <p>Ohne Test-Transaktion ({@code NOT_SUPPORTED}): die Aggregation läuft in Worker-Threads mit
+ * eigenen Transaktionen und sieht nur committete Rohdaten.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ZaehlerAggregationServiceIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private ZaehlerRohdatenRepository rohdatenRepository;
+
+    @Autowired
+    private MesswerteRepository messwerteRepository;
+
+    @Autowired
+    private EinheitRepository einheitRepository;
+
+    @Autowired
+    private OrganisationRepository organisationRepository;
+
+    @Autowired
+    private AggregationCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ZaehlerAggregationService aggregationService;
+    private Einheit einheit;
+
+    @BeforeEach
+    void setUp() {
+        aufraeumen();
+
+        Organisation org = new Organisation();
+        org.setKeycloakOrgId(UUID.randomUUID());
+        org.setName("Test Organisation");
+        org.setErstelltAm(LocalDateTime.now());
+        Long orgId = organisationRepository.save(org).getId();
+
+        einheit = new Einheit("Wohnung 1", EinheitTyp.CONSUMER);
+        einheit.setOrgId(orgId);
+        einheit.setMesspunkt("MP-AGG-001");
+        einheit = einheitRepository.save(einheit);
+
+        aggregationService = new ZaehlerAggregationService(rohdatenRepository, messwerteRepository,
+                einheitRepository, mock(MesswerteService.class), mock(MqttMetrics.class),
+                mock(SystemmeldungService.class), mock(DatenVersionService.class), checkpointRepository,
+                jdbcTemplate, transactionManager, true, 1, Duration.ofMinutes(12), 2880);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregationService.beendeWorker();
+        aufraeumen();
+    }
+
+    private void aufraeumen() {
+        messwerteRepository.deleteAll();
+        rohdatenRepository.deleteAll();
+        checkpointRepository.deleteAll();
+        einheitRepository.deleteAll();
+    }
+
+    private void rohdaten(LocalDateTime zeit, String bezug, boolean verarbeitet) {
+        ZaehlerRohdaten r = new ZaehlerRohdaten(einheit.getOrgId(), einheit.getId(), zeit,
+                new BigDecimal(bezug), BigDecimal.ZERO);
+        r.setVerarbeitet(verarbeitet);
+        r.setEmpfangenAm(LocalDateTime.now());
+        rohdatenRepository.save(r);
+    }
+
+    private List<Messwerte> messwerte(LocalDateTime zeit) {
+        return messwerteRepository.findByEinheitAndZeitBetween(einheit, zeit, zeit);
+    }
+
+    @Test
+    void aggregiere_BestehenderMesswertAktualisiert_FehlenderEingefuegt() {
+        // Zwei abgeschlossene Intervalle in der Vergangenheit (Lauf arbeitet mit "jetzt")
+        LocalDateTime jetzt = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime ende1 = jetzt.minusHours(1);
+        LocalDateTime ende2 = ende1.plusMinutes(15);
+        rohdaten(ende1.minusMinutes(15), "100.0", true); // Referenz
+        rohdaten(ende1.minusMinutes(5), "110.0", false);
+        rohdaten(ende2.minusMinutes(5), "125.0", false);
+
+        // Bestehender CSV-Messwert für ende1 -> UPDATE-Pfad; ende2 ohne Zeile -> INSERT-Pfad
+        Messwerte csv = new Messwerte(ende1, 99.0, 0.0, einheit);
+        csv.setOrgId(einheit.getOrgId());
+        csv.setQuelle(Quelle.CSV);
+        messwerteRepository.save(csv);
+
+        aggregationService.aggregiere();
+
+        List<Messwerte> aktualisiert = messwerte(ende1);
+        assertThat(aktualisiert).hasSize(1);
+        assertThat(aktualisiert.get(0).getId()).isEqualTo(csv.getId());
+        assertThat(aktualisiert.get(0).getTotal()).isEqualTo(10.0);
+        assertThat(aktualisiert.get(0).getQuelle()).isEqualTo(Quelle.MQTT);
+
+        List<Messwerte> eingefuegt = messwerte(ende2);
+        assertThat(eingefuegt).hasSize(1);
+        assertThat(eingefuegt.get(0).getTotal()).isEqualTo(15.0);
+        assertThat(eingefuegt.get(0).getQuelle()).isEqualTo(Quelle.MQTT);
+        assertThat(eingefuegt.get(0).getOrgId()).isEqualTo(einheit.getOrgId());
+
+        assertThat(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).isEmpty();
+    }
+}
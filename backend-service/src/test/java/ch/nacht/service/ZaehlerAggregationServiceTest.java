@@ -1,11 +1,13 @@
 package ch.nacht.service;
 
+import ch.nacht.entity.AggregationCheckpoint;
 import ch.nacht.entity.Einheit;
 import ch.nacht.entity.EinheitTyp;
 import ch.nacht.entity.MeldungLevel;
 import ch.nacht.entity.Messwerte;
 import ch.nacht.entity.Quelle;
 import ch.nacht.entity.ZaehlerRohdaten;
+import ch.nacht.repository.AggregationCheckpointRepository;
 import ch.nacht.repository.EinheitRepository;
 import ch.nacht.repository.MesswerteRepository;
 import ch.nacht.repository.ZaehlerRohdatenRepository;
@@ -21,21 +23,33 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.*;
 
 /**
@@ -55,6 +69,8 @@ public class ZaehlerAggregationServiceTest {
     private static final long ORG_ID = 100L;
     private static final long EINHEIT_ID = 1L;
     private static final int INTERVALL = 15;
+    private static final Duration LAUFZEIT = Duration.ofMinutes(12);
+    private static final int AUFHOL_ABSCHNITT = 10_000;
 
     @Mock
     private ZaehlerRohdatenRepository rohdatenRepository;
@@ -74,8 +90,24 @@ public class ZaehlerAggregationServiceTest {
     @Mock
     private SystemmeldungService systemmeldungService;
 
+    @Mock
+    private DatenVersionService datenVersionService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private AggregationCheckpointRepository checkpointRepository;
+
+    /** Intervallweiser Modus (Referenzimplementierung) – Grundlage der meisten Tests. */
     private ZaehlerAggregationService service;
 
+    /** Mengenbasierter Modus (eine Abfrage je Einheit, Batch-Schreiben). */
+    private ZaehlerAggregationService mengenbasiert;
+
     private Einheit einheit;
 
     /** Intervallgrenzen, wie sie der Job im existsBy-Aufruf verwendet (start exklusiv, ende inklusiv). */
@@ -90,8 +122,8 @@ public class ZaehlerAggregationServiceTest {
 
     @BeforeEach
     void setUp() {
-        service = new ZaehlerAggregationService(rohdatenRepository, messwerteRepository, einheitRepository,
-                messwerteService, metrics, systemmeldungService);
+        service = neuerService(false, LAUFZEIT);
+        mengenbasiert = neuerService(true, LAUFZEIT);
 
         einheit = new Einheit("Wohnung 1", EinheitTyp.CONSUMER);
         einheit.setId(EINHEIT_ID);
@@ -103,8 +135,16 @@ public class ZaehlerAggregationServiceTest {
         serviceLogger().addAppender(logAppender);
     }
 
+    private ZaehlerAggregationService neuerService(boolean mengenbasiert, Duration laufzeit) {
+        return new ZaehlerAggregationService(rohdatenRepository, messwerteRepository, einheitRepository,
+                messwerteService, metrics, systemmeldungService, datenVersionService, checkpointRepository, jdbcTemplate,
+                transactionManager, mengenbasiert, 2, laufzeit, AUFHOL_ABSCHNITT);
+    }
+
     @AfterEach
     void tearDown() {
+        service.beendeWorker();
+        mengenbasiert.beendeWorker();
         serviceLogger().detachAppender(logAppender);
         serviceLogger().setLevel(null);
         logAppender.stop();
@@ -743,4 +783,451 @@ public class ZaehlerAggregationServiceTest {
                 contains("3 Intervalle"));
         verify(systemmeldungService, never()).erfasse(any(), eq(MeldungLevel.INFO), any(), any(), any());
     }
+
+    // --- Mengenbasierter Modus (eine Abfrage je Einheit) ------------------------
+
+    /**
+     * Verdrahtet den mengenbasierten Lauf: frühester unverarbeiteter Stand bei {@code erstesEnde},
+     * die Intervall-Abfrage liefert die gegebenen Zeilen.
+     */
+    private void stubMengenbasiert(LocalDateTime erstesEnde, Object[]... zeilen) {
+        ZaehlerRohdaten earliest = new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, erstesEnde,
+                BigDecimal.ZERO, BigDecimal.ZERO);
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID));
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID))
+                .thenReturn(Optional.of(earliest));
+        when(rohdatenRepository.findIntervallDeltas(eq(EINHEIT_ID), any(), any())).thenReturn(List.of(zeilen));
+    }
+
+    /** Zeile der Intervall-Abfrage: {@code [ende, referenz_zeit, Δbezug, Δeinspeisung, serie_ref, serie]}. */
+    private Object[] intervallZeile(LocalDateTime ende, LocalDateTime referenzZeit, String deltaBezug,
+                                    String deltaEinspeisung, String serieReferenz, String serie) {
+        return new Object[]{Timestamp.valueOf(ende),
+                referenzZeit != null ? Timestamp.valueOf(referenzZeit) : null,
+                deltaBezug != null ? new BigDecimal(deltaBezug) : null,
+                deltaEinspeisung != null ? new BigDecimal(deltaEinspeisung) : null,
+                serieReferenz, serie};
+    }
+
+    /**
+     * Kein bestehender Messwert: das Update trifft keine Zeile, alles wird eingefügt. Ein Stub für
+     * beide Statements (Strict Stubs – ein zweiter Stub je SQL würde als Argument-Mismatch gelten).
+     */
+    private void stubKeineBestehendenMesswerte() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> new int[][]{new int[((Collection<?>) inv.getArgument(1)).size()]});
+    }
+
+    /** Fängt die Zeilen (Zeitpunkt → total) des Batch-Inserts ab. */
+    @SuppressWarnings("unchecked")
+    private List<Map.Entry<LocalDateTime, Double>> captureEingefuegt() {
+        ArgumentCaptor<Collection<Map.Entry<LocalDateTime, Double>>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT"), captor.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        return List.copyOf(captor.getValue());
+    }
+
+    @Test
+    void aggregiereMengenbasiert_MehrereIntervalle_EineAbfrageUndEinBatch() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q.minusMinutes(30),
+                intervallZeile(q.minusMinutes(30), q.minusMinutes(45), "1.0", "0.0", null, null),
+                intervallZeile(q.minusMinutes(15), q.minusMinutes(30), "2.0", "0.5", null, null),
+                intervallZeile(q, q.minusMinutes(15), "3.0", "0.0", null, null));
+        stubKeineBestehendenMesswerte();
+
+        mengenbasiert.aggregiere();
+
+        List<Map.Entry<LocalDateTime, Double>> eingefuegt = captureEingefuegt();
+        assertEquals(3, eingefuegt.size());
+        assertEquals(q.minusMinutes(30), eingefuegt.get(0).getKey());
+        assertEquals(1.0, eingefuegt.get(0).getValue(), 1e-9);
+        assertEquals(1.5, eingefuegt.get(1).getValue(), 1e-9);
+        assertEquals(3.0, eingefuegt.get(2).getValue(), 1e-9);
+        // Keine intervallweisen Lookups, ein Markierungs-Update bis zum letzten Intervall
+        verify(rohdatenRepository, never()).existsByEinheitIdAndZeitGreaterThanAndZeitLessThanEqual(any(), any(), any());
+        verify(rohdatenRepository, never()).findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(any(), any());
+        verify(messwerteRepository, never()).save(any());
+        verify(rohdatenRepository).markVerarbeitet(eq(EINHEIT_ID), eq(q), any());
+        verify(messwerteService).calculateSolarDistributionForOrg(
+                eq(ORG_ID), eq(q.minusMinutes(45)), eq(q), eq("PROPORTIONAL"), eq(false));
+    }
+
+    @Test
+    void aggregiereMengenbasiert_BestehenderMesswert_NurUpdateKeinInsert() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q, intervallZeile(q, q.minusMinutes(15), "10.0", "2.0", null, null));
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenReturn(new int[][]{{1}});
+
+        mengenbasiert.aggregiere();
+
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT"), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(rohdatenRepository).markVerarbeitet(eq(EINHEIT_ID), eq(q), any());
+    }
+
+    @Test
+    void aggregiereMengenbasiert_KeineReferenz_NurBaselineAberMarkiert() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q, intervallZeile(q, null, null, null, null, null));
+
+        mengenbasiert.aggregiere();
+
+        verifyNoInteractions(jdbcTemplate);
+        verify(rohdatenRepository).markVerarbeitet(eq(EINHEIT_ID), eq(q), any());
+        verify(messwerteService, never()).calculateSolarDistributionForOrg(any(), any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void aggregiereMengenbasiert_RegisterRuecksprung_DeltaAufNull() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q, intervallZeile(q, q.minusMinutes(15), "-70.0", "10.0", null, null));
+        stubKeineBestehendenMesswerte();
+
+        mengenbasiert.aggregiere();
+
+        assertEquals(-10.0, captureEingefuegt().get(0).getValue(), 1e-9);
+    }
+
+    @Test
+    void aggregiereMengenbasiert_SerienWechsel_KeinMesswertUndAuditMeldung() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q.minusMinutes(15),
+                intervallZeile(q.minusMinutes(15), q.minusMinutes(30), "40000.0", "0.0", "SN-ALT", "SN-NEU"),
+                intervallZeile(q, q.minusMinutes(15), "5.0", "0.0", "SN-NEU", "SN-NEU"));
+        stubKeineBestehendenMesswerte();
+
+        mengenbasiert.aggregiere();
+
+        List<Map.Entry<LocalDateTime, Double>> eingefuegt = captureEingefuegt();
+        assertEquals(1, eingefuegt.size());
+        assertEquals(q, eingefuegt.get(0).getKey());
+        verify(systemmeldungService).erfasseAudit(eq(ORG_ID), eq(MeldungLevel.INFO),
+                eq(SystemmeldungService.KATEGORIE_MQTT), eq(SystemmeldungService.KEY_ZAEHLERTAUSCH),
+                contains("SN-ALT"));
+    }
+
+    @Test
+    void aggregiereMengenbasiert_MehrereIntervalleOhneDaten_ErfasstWarnMeldung() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q, intervallZeile(q, q.minusMinutes(60), "90.0", "0.0", null, null));
+        stubKeineBestehendenMesswerte();
+
+        mengenbasiert.aggregiere();
+
+        verify(systemmeldungService).erfasse(eq(ORG_ID), eq(MeldungLevel.WARN),
+                eq(SystemmeldungService.KATEGORIE_MQTT), eq(SystemmeldungService.KEY_ZAEHLER_AUSFALL),
+                contains("3 Intervalle"));
+        assertEquals(90.0, captureEingefuegt().get(0).getValue(), 1e-9);
+    }
+
+    @Test
+    void aggregiereMengenbasiert_KeineBelegtenIntervalle_KeineMarkierung() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        stubMengenbasiert(q);
+
+        mengenbasiert.aggregiere();
+
+        verify(rohdatenRepository, never()).markVerarbeitet(anyLong(), any(), any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // --- Transaktion je Einheit / Worker-Pool -----------------------------------
+
+    @Test
+    void aggregiere_FehlerEinerEinheit_NurDieseZurueckgerolltUndErrorMeldung() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        Einheit defekt = new Einheit("Wohnung 2", EinheitTyp.CONSUMER);
+        defekt.setId(2L);
+        defekt.setOrgId(ORG_ID);
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID, 2L));
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        when(einheitRepository.findById(2L)).thenReturn(Optional.of(defekt));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID))
+                .thenReturn(Optional.of(new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, q, BigDecimal.ZERO, BigDecimal.ZERO)));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(2L))
+                .thenThrow(new PessimisticLockingFailureException("Lock-Timeout"));
+        when(rohdatenRepository.findIntervallDeltas(eq(EINHEIT_ID), any(), any()))
+                .thenReturn(List.<Object[]>of(intervallZeile(q, q.minusMinutes(15), "1.0", "0.0", null, null)));
+        stubKeineBestehendenMesswerte();
+
+        mengenbasiert.aggregiere();
+
+        verify(rohdatenRepository).markVerarbeitet(eq(EINHEIT_ID), eq(q), any());
+        verify(rohdatenRepository, never()).markVerarbeitet(eq(2L), any(), any());
+        verify(transactionManager).commit(any());
+        verify(transactionManager).rollback(any());
+        verify(systemmeldungService).erfasse(eq(ORG_ID), eq(MeldungLevel.ERROR),
+                eq(SystemmeldungService.KATEGORIE_MQTT), eq(SystemmeldungService.KEY_AGGREGATION_FEHLER),
+                contains("Wohnung 2"));
+        verify(metrics).recordEinheitAggregiert(any(), eq(true));
+        verify(metrics).recordEinheitAggregiert(any(), eq(false));
+        // Verteilung läuft für die erfolgreich aggregierte Einheit trotzdem
+        verify(messwerteService).calculateSolarDistributionForOrg(
+                eq(ORG_ID), eq(q.minusMinutes(15)), eq(q), eq("PROPORTIONAL"), eq(false));
+    }
+
+    @Test
+    void aggregiere_FehlermeldungSchlaegtFehl_LaufEndetOhneException() {
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID));
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID))
+                .thenThrow(new IllegalStateException("defekt"));
+        doThrow(new RuntimeException("DB weg")).when(systemmeldungService)
+                .erfasse(any(), any(), anyString(), anyString(), anyString());
+
+        assertDoesNotThrow(() -> service.aggregiere());
+
+        verify(messwerteService, never()).calculateSolarDistributionForOrg(any(), any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void aggregiere_FristUeberschritten_EinheitAufNaechstenLaufVerschoben() {
+        ZaehlerAggregationService abgelaufen = neuerService(true, Duration.ofSeconds(-1));
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID));
+
+        try {
+            abgelaufen.aggregiere();
+        } finally {
+            abgelaufen.beendeWorker();
+        }
+
+        verify(metrics).recordEinheitVerschoben();
+        verify(einheitRepository, never()).findById(anyLong());
+        verifyNoInteractions(transactionManager);
+    }
+
+    // --- Streaming-Aggregation (ZaehlerStromAggregator) -------------------------
+
+    @Test
+    void aggregiereIntervall_StaendeAusSpeicher_OhneRohdatenLookupUndNurIntervallMarkiert() {
+        LocalDateTime ende = LocalDateTime.of(2026, 1, 1, 10, 15);
+        when(messwerteRepository.findByEinheitAndZeit(einheit, ende)).thenReturn(Optional.empty());
+
+        boolean erzeugt = service.aggregiereIntervall(einheit,
+                rohdaten(ende.minusMinutes(15), "100.0", "0.0", null),
+                rohdaten(ende.minusMinutes(2), "101.5", "0.5", null), ende);
+
+        assertTrue(erzeugt);
+        assertEquals(1.0, captureSavedMesswert().getTotal(), 1e-9);
+        verify(rohdatenRepository, never()).findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(any(), any());
+        verify(rohdatenRepository).markVerarbeitetImIntervall(eq(EINHEIT_ID), eq(ende.minusMinutes(15)), eq(ende), any());
+        verify(rohdatenRepository, never()).markVerarbeitet(anyLong(), any(), any());
+        verify(datenVersionService).erhoehe(einheit.getOrgId());
+        // Aufruf aus afterCommit: nie einer (abgeschlossenen) Transaktion beitreten
+        verify(transactionManager).getTransaction(argThat(d ->
+                d.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test
+    void aggregiereIntervall_OhneReferenz_NurBaselineAberMarkiert() {
+        LocalDateTime ende = LocalDateTime.of(2026, 1, 1, 10, 15);
+
+        boolean erzeugt = service.aggregiereIntervall(einheit, null,
+                rohdaten(ende.minusMinutes(2), "101.5", "0.5", null), ende);
+
+        assertFalse(erzeugt);
+        verify(messwerteRepository, never()).save(any());
+        verify(rohdatenRepository).markVerarbeitetImIntervall(eq(EINHEIT_ID), any(), eq(ende), any());
+        verifyNoInteractions(datenVersionService);
+    }
+
+    // --- Catch-up-Modus (grosser Rückstand, Checkpoints) ------------------------
+
+    /** Mengenbasiert: je Abschnitt eine Zeile am Abschnittsende (mit Referenz). */
+    private void stubAbschnittZeilen() {
+        when(rohdatenRepository.findIntervallDeltas(eq(EINHEIT_ID), any(), any())).thenAnswer(inv -> {
+            LocalDateTime bis = inv.getArgument(2);
+            return List.<Object[]>of(intervallZeile(bis, bis.minusMinutes(15), "1.0", "0.0", null, null));
+        });
+    }
+
+    /** Checkpoint-Repository als einfacher Speicher (save/findByEinheitId). */
+    private AtomicReference<AggregationCheckpoint> stubCheckpointSpeicher() {
+        AtomicReference<AggregationCheckpoint> gespeichert = new AtomicReference<>();
+        when(checkpointRepository.save(any(AggregationCheckpoint.class))).thenAnswer(inv -> {
+            AggregationCheckpoint c = inv.getArgument(0);
+            c.setId(7L);
+            gespeichert.set(c);
+            return c;
+        });
+        when(checkpointRepository.findByEinheitId(EINHEIT_ID))
+                .thenAnswer(inv -> Optional.ofNullable(gespeichert.get()));
+        return gespeichert;
+    }
+
+    @Test
+    void aggregiere_GrosserRueckstand_AbschnittweiseMitCheckpointUndVerteilungErstAmEnde() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        LocalDateTime erstesEnde = q.minusMinutes(15L * 15_000);
+        LocalDateTime ersterAbschnitt = erstesEnde.plusMinutes(15L * (AUFHOL_ABSCHNITT - 1));
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID));
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID)).thenReturn(
+                Optional.of(new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, erstesEnde, BigDecimal.ZERO, BigDecimal.ZERO)),
+                Optional.of(new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, ersterAbschnitt.plusMinutes(1),
+                        BigDecimal.ZERO, BigDecimal.ZERO)));
+        stubAbschnittZeilen();
+        stubKeineBestehendenMesswerte();
+        AtomicReference<AggregationCheckpoint> checkpoint = stubCheckpointSpeicher();
+
+        mengenbasiert.aggregiere();
+
+        // Zwei Abschnitte, je eine Transaktion; Checkpoint nach dem ersten gespeichert, am Ende entfernt
+        verify(rohdatenRepository, times(2)).findIntervallDeltas(eq(EINHEIT_ID), any(), any());
+        verify(transactionManager, times(2)).commit(any());
+        verify(rohdatenRepository).markVerarbeitet(eq(EINHEIT_ID), eq(ersterAbschnitt), any());
+        verify(checkpointRepository).save(checkpoint.get());
+        verify(checkpointRepository).delete(checkpoint.get());
+        // Genau eine Verteilung über die gesamte aufgeholte Spanne
+        verify(messwerteService).calculateSolarDistributionForOrg(eq(ORG_ID),
+                eq(ersterAbschnitt.minusMinutes(15)), eq(q), eq("PROPORTIONAL"), eq(false));
+        verify(metrics).setRueckstand(EINHEIT_ID, 0);
+    }
+
+    @Test
+    void aggregiere_FristImCatchUp_FortschrittGemeldetUndVerteilungZurueckgestellt() {
+        ZaehlerAggregationService knapp = neuerService(true, Duration.ofMillis(300));
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        LocalDateTime erstesEnde = q.minusMinutes(15L * 15_000);
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID));
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID))
+                .thenReturn(Optional.of(new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, erstesEnde,
+                        BigDecimal.ZERO, BigDecimal.ZERO)));
+        when(rohdatenRepository.findIntervallDeltas(eq(EINHEIT_ID), any(), any())).thenAnswer(inv -> {
+            Thread.sleep(500); // erster Abschnitt dauert länger als die Frist
+            LocalDateTime bis = inv.getArgument(2);
+            return List.<Object[]>of(intervallZeile(bis, bis.minusMinutes(15), "1.0", "0.0", null, null));
+        });
+        stubKeineBestehendenMesswerte();
+        stubCheckpointSpeicher();
+        when(checkpointRepository.findOrgIdsMitRueckstand()).thenReturn(List.of(), List.of(ORG_ID));
+
+        try {
+            knapp.aggregiere();
+        } finally {
+            knapp.beendeWorker();
+        }
+
+        verify(rohdatenRepository, times(1)).findIntervallDeltas(eq(EINHEIT_ID), any(), any());
+        verify(systemmeldungService).erfasse(eq(ORG_ID), eq(MeldungLevel.INFO),
+                eq(SystemmeldungService.KATEGORIE_MQTT), eq(SystemmeldungService.KEY_AGGREGATION_AUFHOLEN),
+                contains("10000 / 15001 Intervalle (66 %)"));
+        verify(checkpointRepository, never()).delete(any());
+        verify(messwerteService, never()).calculateSolarDistributionForOrg(any(), any(), any(), any(), anyBoolean());
+    }
+
+    /** Bestehender Checkpoint der Einheit (Neustart mitten im Catch-up). */
+    private AggregationCheckpoint stubBestehenderCheckpoint(LocalDateTime startBei, LocalDateTime verarbeitetBis,
+                                                            LocalDateTime gestartetAm) {
+        AggregationCheckpoint checkpoint = new AggregationCheckpoint(ORG_ID, EINHEIT_ID, startBei, gestartetAm);
+        checkpoint.setId(7L);
+        checkpoint.setVerarbeitetBis(verarbeitetBis);
+        when(checkpointRepository.findAll()).thenReturn(List.of(checkpoint));
+        when(checkpointRepository.findByEinheitId(EINHEIT_ID)).thenReturn(Optional.of(checkpoint));
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of(EINHEIT_ID));
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        // Frühester offener Stand vor der High-Water-Mark (z.B. nachträglich eingetroffen)
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID))
+                .thenReturn(Optional.of(new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, startBei.plusMinutes(1),
+                        BigDecimal.ZERO, BigDecimal.ZERO)));
+        return checkpoint;
+    }
+
+    @Test
+    void aggregiere_BestehenderCheckpoint_SetztHinterVerarbeitetBisFort() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        LocalDateTime verarbeitetBis = q.minusMinutes(15L * AUFHOL_ABSCHNITT);
+        AggregationCheckpoint checkpoint = stubBestehenderCheckpoint(verarbeitetBis.minusDays(30), verarbeitetBis,
+                LocalDateTime.now().minusDays(1));
+        when(checkpointRepository.findOrgIdsMitRueckstand()).thenReturn(List.of(ORG_ID), List.of());
+        stubAbschnittZeilen();
+        stubKeineBestehendenMesswerte();
+
+        mengenbasiert.aggregiere();
+
+        // Ein Abschnitt ab der High-Water-Mark bis zur aktuellen Grenze – nicht ab dem frühesten Stand
+        verify(rohdatenRepository).findIntervallDeltas(EINHEIT_ID, verarbeitetBis, q);
+        verify(checkpointRepository).delete(checkpoint);
+    }
+
+    @Test
+    void aggregiere_CatchUpNachPause_HochrechnungAusAktiverZeit() {
+        ZaehlerAggregationService knapp = neuerService(true, Duration.ofMillis(300));
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        LocalDateTime startBei = q.minusMinutes(15L * 3 * AUFHOL_ABSCHNITT);
+        // Vor 30 Tagen gestartet, seither ein Drittel erledigt – die Wanduhr ergäbe ~60 Tage Rest
+        stubBestehenderCheckpoint(startBei, startBei.plusMinutes(15L * AUFHOL_ABSCHNITT),
+                LocalDateTime.now().minusDays(30));
+        when(checkpointRepository.findOrgIdsMitRueckstand()).thenReturn(List.of(ORG_ID));
+        when(rohdatenRepository.findIntervallDeltas(eq(EINHEIT_ID), any(), any())).thenAnswer(inv -> {
+            Thread.sleep(500); // Abschnitt dauert länger als die Frist
+            LocalDateTime bis = inv.getArgument(2);
+            return List.<Object[]>of(intervallZeile(bis, bis.minusMinutes(15), "1.0", "0.0", null, null));
+        });
+        stubKeineBestehendenMesswerte();
+        when(checkpointRepository.save(any(AggregationCheckpoint.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        try {
+            knapp.aggregiere();
+        } finally {
+            knapp.beendeWorker();
+        }
+
+        ArgumentCaptor<String> parameter = ArgumentCaptor.forClass(String.class);
+        verify(systemmeldungService).erfasse(eq(ORG_ID), eq(MeldungLevel.INFO),
+                eq(SystemmeldungService.KATEGORIE_MQTT), eq(SystemmeldungService.KEY_AGGREGATION_AUFHOLEN),
+                parameter.capture());
+        assertTrue(parameter.getValue().contains("20000 / 30000 Intervalle (66 %)"), parameter.getValue());
+        String fertig = parameter.getValue().substring(parameter.getValue().indexOf("fertig ") + 7);
+        LocalDateTime fertigUm = LocalDateTime.parse(fertig, DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"));
+        // Rate aus ~500 ms aktiver Zeit für 10 000 Intervalle: Rest in Sekunden, nicht in Tagen
+        assertTrue(fertigUm.isBefore(LocalDateTime.now().plusHours(1)), fertig);
+    }
+
+    @Test
+    void aggregiere_AndereEinheitHoltAuf_VerteilungDesMandantenVorgemerkt() {
+        stubCatchUpEinInterval();
+        stubStaende(rohdaten("100.0", "0.0"), rohdaten("101.0", "0.0"));
+        when(messwerteRepository.findByEinheitAndZeit(eq(einheit), any())).thenReturn(Optional.empty());
+        AggregationCheckpoint andere = new AggregationCheckpoint(ORG_ID, 2L, LocalDateTime.now().minusDays(30),
+                LocalDateTime.now());
+        when(checkpointRepository.findOrgIdsMitRueckstand()).thenReturn(List.of(ORG_ID));
+        when(checkpointRepository.findAll()).thenReturn(List.of(andere));
+        when(einheitRepository.findById(2L)).thenReturn(Optional.empty());
+
+        service.aggregiere();
+
+        verify(messwerteRepository).save(any());
+        verify(checkpointRepository).merkeVerteilungVor(eq(ORG_ID), any());
+        verify(messwerteService, never()).calculateSolarDistributionForOrg(any(), any(), any(), any(), anyBoolean());
+        verify(systemmeldungService, never()).autoResolve(any(), any());
+    }
+
+    @Test
+    void aggregiere_CheckpointOhneOffeneRohdaten_AbgeschlossenVerteiltUndMeldungErledigt() {
+        LocalDateTime q = floorAufQuartal(LocalDateTime.now());
+        AggregationCheckpoint checkpoint = new AggregationCheckpoint(ORG_ID, EINHEIT_ID, q.minusDays(200),
+                LocalDateTime.now().minusHours(1));
+        checkpoint.setId(7L);
+        checkpoint.setVerteilungAb(q.minusDays(200));
+        when(checkpointRepository.findOrgIdsMitRueckstand()).thenReturn(List.of(ORG_ID), List.of());
+        when(checkpointRepository.findAll()).thenReturn(List.of(checkpoint));
+        when(checkpointRepository.findByEinheitId(EINHEIT_ID)).thenReturn(Optional.of(checkpoint));
+        when(rohdatenRepository.findEinheitIdsWithUnverarbeitet()).thenReturn(List.of());
+        when(einheitRepository.findById(EINHEIT_ID)).thenReturn(Optional.of(einheit));
+        when(rohdatenRepository.findFirstByEinheitIdAndVerarbeitetFalseOrderByZeitAsc(EINHEIT_ID))
+                .thenReturn(Optional.empty());
+
+        service.aggregiere();
+
+        verify(checkpointRepository).delete(checkpoint);
+        verify(messwerteService).calculateSolarDistributionForOrg(eq(ORG_ID), eq(q.minusDays(200)), eq(q),
+                eq("PROPORTIONAL"), eq(false));
+        verify(systemmeldungService).autoResolve(ORG_ID, SystemmeldungService.KEY_AGGREGATION_AUFHOLEN);
+    }
 }
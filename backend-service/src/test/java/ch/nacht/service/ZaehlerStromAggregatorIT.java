@@ -0,0 +1,143 @@
+package ch.nacht.service;
+
+import ch.nacht.AbstractIntegrationTest;
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.entity.Messwerte;
+import ch.nacht.entity.Organisation;
+import ch.nacht.entity.ZaehlerRohdaten;
+import ch.nacht.repository.AggregationCheckpointRepository;
+import ch.nacht.repository.EinheitRepository;
+import ch.nacht.repository.MesswerteRepository;
+import ch.nacht.repository.OrganisationRepository;
+import ch.nacht.repository.ZaehlerRohdatenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Streaming-Aggregation mit echten Transaktionen: {@link ZaehlerStromAggregator#uebernimm} wird
+ * wie beim MQTT-Ingest innerhalb einer (committenden) Transaktion aufgerufen; der Messwert wird im
+ * {@code afterCommit} geschrieben und muss danach tatsächlich in der DB stehen.
+ *
+ * <p>Bewusst ohne Test-Transaktion ({@code NOT_SUPPORTED}): {@code afterCommit} läuft nur bei
+ * einem echten Commit.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ZaehlerStromAggregatorIT extends AbstractIntegrationTest {
+
+    @Autowired
+    private ZaehlerRohdatenRepository rohdatenRepository;
+
+    @Autowired
+    private MesswerteRepository messwerteRepository;
+
+    @Autowired
+    private EinheitRepository einheitRepository;
+
+    @Autowired
+    private OrganisationRepository organisationRepository;
+
+    @Autowired
+    private AggregationCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ZaehlerAggregationService aggregationService;
+    private ZaehlerStromAggregator aggregator;
+    private TransactionTemplate ingest;
+    private Einheit einheit;
+
+    @BeforeEach
+    void setUp() {
+        aufraeumen();
+
+        Organisation org = new Organisation();
+        org.setKeycloakOrgId(UUID.randomUUID());
+        org.setName("Test Organisation");
+        org.setErstelltAm(LocalDateTime.now());
+        Long orgId = organisationRepository.save(org).getId();
+
+        einheit = new Einheit("Wohnung 1", EinheitTyp.CONSUMER);
+        einheit.setOrgId(orgId);
+        einheit.setMesspunkt("MP-STREAM-001");
+        einheit = einheitRepository.save(einheit);
+
+        aggregationService = new ZaehlerAggregationService(rohdatenRepository, messwerteRepository,
+                einheitRepository, mock(MesswerteService.class), mock(MqttMetrics.class),
+                mock(SystemmeldungService.class), mock(DatenVersionService.class), checkpointRepository,
+                mock(JdbcTemplate.class), transactionManager, true, 1, Duration.ofMinutes(12), 2880);
+        aggregator = new ZaehlerStromAggregator(aggregationService, rohdatenRepository, messwerteRepository,
+                mock(MesswerteService.class), true, Duration.ofMinutes(5), Duration.ofDays(1));
+        ingest = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregationService.beendeWorker();
+        aufraeumen();
+    }
+
+    private void aufraeumen() {
+        messwerteRepository.deleteAll();
+        rohdatenRepository.deleteAll();
+        einheitRepository.deleteAll();
+    }
+
+    private ZaehlerRohdaten rohdaten(LocalDateTime zeit, String bezug) {
+        ZaehlerRohdaten r = new ZaehlerRohdaten(einheit.getOrgId(), einheit.getId(), zeit,
+                new BigDecimal(bezug), BigDecimal.ZERO);
+        r.setEmpfangenAm(LocalDateTime.now());
+        return r;
+    }
+
+    /** Wie der MQTT-Ingest: Stand speichern und in derselben Transaktion übergeben. */
+    private ZaehlerRohdaten empfange(LocalDateTime zeit, String bezug) {
+        return ingest.execute(status -> {
+            ZaehlerRohdaten stand = rohdatenRepository.save(rohdaten(zeit, bezug));
+            aggregator.uebernimm(einheit, List.of(stand));
+            return stand;
+        });
+    }
+
+    @Test
+    void uebernimm_InnerhalbIngestTransaktion_MesswertNachCommitPersistiert() {
+        LocalDateTime ende = LocalDateTime.of(2026, 1, 1, 10, 15);
+        rohdatenRepository.save(rohdaten(ende.minusMinutes(20), "100.0")); // Referenz 09:55
+        ZaehlerRohdaten imIntervall = empfange(ende.minusMinutes(10), "110.0");
+
+        // Folgemessung schliesst das Intervall (10:00, 10:15] im afterCommit ab
+        empfange(ende.plusMinutes(5), "130.0");
+
+        Optional<Messwerte> messwert = messwerteRepository.findByEinheitAndZeit(einheit, ende);
+        assertThat(messwert).isPresent();
+        assertThat(messwert.get().getTotal()).isEqualTo(10.0);
+        assertThat(rohdatenRepository.findById(imIntervall.getId()).orElseThrow().isVerarbeitet()).isTrue();
+        // Die abschliessende Messung gehört zum offenen Intervall und bleibt für später offen
+        assertThat(rohdatenRepository.findByEinheitIdAndZeit(einheit.getId(), ende.plusMinutes(5))
+                .orElseThrow().isVerarbeitet()).isFalse();
+    }
+}
@@ -0,0 +1,194 @@
+package ch.nacht.service;
+
+import ch.nacht.entity.Einheit;
+import ch.nacht.entity.EinheitTyp;
+import ch.nacht.entity.Quelle;
+import ch.nacht.entity.ZaehlerRohdaten;
+import ch.nacht.repository.MesswerteRepository;
+import ch.nacht.repository.ZaehlerRohdatenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ZaehlerStromAggregatorTest {
+
+    private static final long ORG_ID = 100L;
+    private static final long EINHEIT_ID = 1L;
+    private static final LocalDateTime T = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    @Mock
+    private ZaehlerAggregationService aggregationService;
+
+    @Mock
+    private ZaehlerRohdatenRepository rohdatenRepository;
+
+    @Mock
+    private MesswerteRepository messwerteRepository;
+
+    @Mock
+    private MesswerteService messwerteService;
+
+    private ZaehlerStromAggregator aggregator;
+    private Einheit einheit;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new ZaehlerStromAggregator(aggregationService, rohdatenRepository, messwerteRepository,
+                messwerteService, true, Duration.ofMinutes(5), Duration.ofDays(1));
+        einheit = new Einheit("Wohnung 1", EinheitTyp.CONSUMER);
+        einheit.setId(EINHEIT_ID);
+        einheit.setOrgId(ORG_ID);
+    }
+
+    private ZaehlerRohdaten stand(int minuten, String bezug) {
+        return new ZaehlerRohdaten(ORG_ID, EINHEIT_ID, T.plusMinutes(minuten), new BigDecimal(bezug), BigDecimal.ZERO);
+    }
+
+    private void stubKaltstartReferenz(ZaehlerRohdaten referenz) {
+        when(rohdatenRepository.findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(eq(EINHEIT_ID), any()))
+                .thenReturn(Optional.ofNullable(referenz));
+    }
+
+    @Test
+    void uebernimm_Kaltstart_LiestReferenzEinmalUndSchliesstNichts() {
+        stubKaltstartReferenz(stand(0, "100.0"));
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5")));
+        aggregator.uebernimm(einheit, List.of(stand(10, "101.0")));
+
+        verify(rohdatenRepository, times(1)).findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(EINHEIT_ID, T);
+        verifyNoInteractions(aggregationService);
+    }
+
+    @Test
+    void uebernimm_GrenzeUeberschritten_SchliesstIntervallAusDemSpeicher() {
+        ZaehlerRohdaten r0 = stand(0, "100.0");
+        ZaehlerRohdaten s10 = stand(10, "101.0");
+        ZaehlerRohdaten s20 = stand(20, "102.0");
+        stubKaltstartReferenz(r0);
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5"), s10));
+        aggregator.uebernimm(einheit, List.of(stand(16, "101.5"), s20));
+        aggregator.uebernimm(einheit, List.of(stand(31, "103.0")));
+
+        verify(aggregationService).aggregiereIntervall(einheit, r0, s10, T.plusMinutes(15));
+        verify(aggregationService).aggregiereIntervall(einheit, s10, s20, T.plusMinutes(30));
+        // Steady State: nur der Kaltstart liest aus zaehler_rohdaten
+        verify(rohdatenRepository, times(1)).findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(any(), any());
+    }
+
+    @Test
+    void uebernimm_UnsortierterBatch_NachEventZeitVerarbeitet() {
+        ZaehlerRohdaten r0 = stand(0, "100.0");
+        ZaehlerRohdaten s15 = stand(15, "101.0");
+        stubKaltstartReferenz(r0);
+
+        aggregator.uebernimm(einheit, List.of(stand(20, "101.5"), s15, stand(5, "100.5")));
+
+        verify(aggregationService).aggregiereIntervall(einheit, r0, s15, T.plusMinutes(15));
+    }
+
+    @Test
+    void uebernimm_VerspaeteteMessung_WirdReferenzDesOffenenIntervalls() {
+        ZaehlerRohdaten s16 = stand(16, "101.5");
+        ZaehlerRohdaten spaet = stand(12, "101.2");
+        stubKaltstartReferenz(stand(0, "100.0"));
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5")));
+        aggregator.uebernimm(einheit, List.of(s16));
+        aggregator.uebernimm(einheit, List.of(spaet));
+        aggregator.uebernimm(einheit, List.of(stand(31, "103.0")));
+
+        verify(aggregationService).aggregiereIntervall(einheit, spaet, s16, T.plusMinutes(30));
+    }
+
+    @Test
+    void uebernimm_FehlerBeimAbschluss_ZustandVerworfenUndKaltstart() {
+        stubKaltstartReferenz(stand(0, "100.0"));
+        when(aggregationService.aggregiereIntervall(any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("DB weg"));
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5")));
+        aggregator.uebernimm(einheit, List.of(stand(16, "101.5")));
+        aggregator.uebernimm(einheit, List.of(stand(20, "102.0")));
+
+        verify(rohdatenRepository, times(2)).findFirstByEinheitIdAndZeitLessThanEqualOrderByZeitDesc(any(), any());
+    }
+
+    @Test
+    void uebernimm_Inaktiv_KeineVerarbeitung() {
+        ZaehlerStromAggregator inaktiv = new ZaehlerStromAggregator(aggregationService, rohdatenRepository,
+                messwerteRepository, messwerteService, false, Duration.ofMinutes(5), Duration.ofDays(1));
+
+        inaktiv.uebernimm(einheit, List.of(stand(5, "100.5")));
+
+        verifyNoInteractions(rohdatenRepository, aggregationService);
+    }
+
+    @Test
+    void verteileAbgeschlossene_GestreamteIntervalle_EinmalJeMandant() {
+        stubKaltstartReferenz(stand(0, "100.0"));
+        when(aggregationService.aggregiereIntervall(any(), any(), any(), any())).thenReturn(true);
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5"), stand(16, "101.5"), stand(31, "103.0")));
+        aggregator.verteileAbgeschlossene();
+        aggregator.verteileAbgeschlossene();
+
+        verify(messwerteService, times(1)).calculateSolarDistributionForOrg(
+                ORG_ID, T, T.plusMinutes(30), "PROPORTIONAL", false);
+    }
+
+    @Test
+    void verteileAbgeschlossene_VerteilungFehlgeschlagen_IntervalleBleibenVorgemerkt() {
+        stubKaltstartReferenz(stand(0, "100.0"));
+        when(aggregationService.aggregiereIntervall(any(), any(), any(), any())).thenReturn(true);
+        when(messwerteService.calculateSolarDistributionForOrg(any(), any(), any(), any(), anyBoolean()))
+                .thenThrow(new IllegalStateException("DB weg"))
+                .thenReturn(null);
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5"), stand(16, "101.5")));
+        aggregator.verteileAbgeschlossene();
+        aggregator.verteileAbgeschlossene();
+        aggregator.verteileAbgeschlossene();
+
+        // Fehlversuch + erfolgreiche Wiederholung, danach nichts mehr offen
+        verify(messwerteService, times(2)).calculateSolarDistributionForOrg(
+                ORG_ID, T, T.plusMinutes(15), "PROPORTIONAL", false);
+    }
+
+    @Test
+    void stelleOffeneVerteilungWiederHer_UnverteilteMesswerte_BereichWirdVerteilt() {
+        when(messwerteRepository.findUnverteilteConsumerZeitraeume(eq(Quelle.MQTT), any()))
+                .thenReturn(List.<Object[]>of(new Object[]{ORG_ID, T.plusMinutes(15), T.plusMinutes(45)}));
+
+        aggregator.stelleOffeneVerteilungWiederHer();
+        aggregator.verteileAbgeschlossene();
+
+        verify(messwerteService).calculateSolarDistributionForOrg(
+                ORG_ID, T, T.plusMinutes(45), "PROPORTIONAL", false);
+    }
+
+    @Test
+    void verteileAbgeschlossene_KeinMesswertGebildet_KeineVerteilung() {
+        stubKaltstartReferenz(null);
+
+        aggregator.uebernimm(einheit, List.of(stand(5, "100.5"), stand(16, "101.5")));
+        aggregator.verteileAbgeschlossene();
+
+        verifyNoInteractions(messwerteService);
+    }
+}
@@ -0,0 +1,59 @@
+package ch.nacht.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-Tests für {@link ZeitreihenDownsampling}: LTTB behält erste/letzte Punkte und Spitzen,
+ * liefert genau {@code maxPunkte} aufsteigende Indizes, und die Vereinigung ist sortiert und
+ * ohne Duplikate.
+ */
+public class ZeitreihenDownsamplingTest {
+
+    private static double[] index(int n) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i;
+        }
+        return x;
+    }
+
+    @Test
+    void lttb_WenigerPunkteAlsMaximum_LiefertAlleIndizes() {
+        assertArrayEquals(new int[]{0, 1, 2, 3}, ZeitreihenDownsampling.lttb(index(4), new double[4], 4, 10));
+    }
+
+    @Test
+    void lttb_ReduziertAufMaxPunkte_ErsterLetzterUndSpitzeBleiben() {
+        int n = 35_000;
+        double[] y = new double[n];
+        y[12_345] = 100.0;
+        y[30_000] = -50.0;
+
+        int[] auswahl = ZeitreihenDownsampling.lttb(index(n), y, n, 1000);
+
+        assertEquals(1000, auswahl.length);
+        assertEquals(0, auswahl[0]);
+        assertEquals(n - 1, auswahl[auswahl.length - 1]);
+        for (int i = 1; i < auswahl.length; i++) {
+            assertTrue(auswahl[i] > auswahl[i - 1], "Indizes aufsteigend");
+        }
+        assertTrue(Arrays.stream(auswahl).anyMatch(i -> i == 12_345), "positive Spitze");
+        assertTrue(Arrays.stream(auswahl).anyMatch(i -> i == 30_000), "negative Spitze");
+    }
+
+    @Test
+    void lttb_ZuKleinesMaximum_ThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ZeitreihenDownsampling.lttb(index(10), new double[10], 10, 2));
+    }
+
+    @Test
+    void vereinige_SortiertOhneDuplikate() {
+        assertArrayEquals(new int[]{0, 2, 3, 5, 9},
+                ZeitreihenDownsampling.vereinige(new int[]{0, 3, 9}, new int[]{0, 2, 5, 9}));
+    }
+}
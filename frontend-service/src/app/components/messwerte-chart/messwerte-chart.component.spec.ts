@@ -136,7 +136,7 @@ describe('MesswerteChartComponent', () => {
       component.dateFrom = '2024-01-01';
       component.dateTo = '2024-03-31';
       component.onSubmit();
-      expect(messwerteServiceSpy.getMesswerteByEinheit).toHaveBeenCalledWith(1, '2024-01-01', '2024-03-31');
+      expect(messwerteServiceSpy.getMesswerteByEinheit).toHaveBeenCalledWith(1, '2024-01-01', '2024-03-31', 2000);
     });
   });
 });
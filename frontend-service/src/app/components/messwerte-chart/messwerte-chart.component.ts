@@ -15,6 +15,9 @@ import { EinheitSelectorComponent } from '../einheit-selector/einheit-selector.c
 
 Chart.register(...registerables);
 
+/** Obergrenze Datenpunkte je Diagramm; das Backend reduziert längere Reihen per LTTB. */
+const MAX_CHART_PUNKTE = 2000;
+
 interface ChartData {
   einheitId: number;
   einheitName: string;
@@ -107,7 +110,7 @@ export class MesswerteChartComponent extends WithMessage implements OnInit, OnDe
     this.charts = [];
 
     const requests = this.selectedEinheiten.map(e =>
-      this.messwerteService.getMesswerteByEinheit(e.id!, this.dateFrom, this.dateTo)
+      this.messwerteService.getMesswerteByEinheit(e.id!, this.dateFrom, this.dateTo, MAX_CHART_PUNKTE)
     );
 
     forkJoin(requests).subscribe({
@@ -112,6 +112,15 @@ describe('MesswerteService', () => {
       req.flush(mockMesswertData);
     });
 
+    it('should pass maxPoints when given', () => {
+      service.getMesswerteByEinheit(1, '2024-01-01', '2024-12-31', 2000).subscribe();
+
+      const req = httpMock.expectOne(
+        `${apiUrl}/by-einheit?einheitId=1&dateFrom=2024-01-01&dateTo=2024-12-31&maxPoints=2000`
+      );
+      req.flush([]);
+    });
+
     it('should return empty array when no data', () => {
       service.getMesswerteByEinheit(1, '2024-01-01', '2024-01-31').subscribe(result => {
         expect(result).toEqual([]);
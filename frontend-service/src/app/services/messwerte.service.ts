@@ -47,11 +47,14 @@ export class MesswerteService {
     return this.http.get<CalculationProgress>(`${this.apiUrl}/calculation-progress`);
   }
 
-  getMesswerteByEinheit(einheitId: number, dateFrom: string, dateTo: string): Observable<MesswertData[]> {
-    const params = new HttpParams()
+  getMesswerteByEinheit(einheitId: number, dateFrom: string, dateTo: string, maxPoints?: number): Observable<MesswertData[]> {
+    let params = new HttpParams()
       .set('einheitId', einheitId.toString())
       .set('dateFrom', dateFrom)
       .set('dateTo', dateTo);
+    if (maxPoints) {
+      params = params.set('maxPoints', maxPoints.toString());
+    }
 
     return this.http.get<MesswertData[]>(`${this.apiUrl}/by-einheit`, { params });
   }